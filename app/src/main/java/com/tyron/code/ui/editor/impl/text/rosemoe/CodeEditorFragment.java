@@ -64,6 +64,7 @@ import com.tyron.completion.java.util.DiagnosticUtil;
 import com.tyron.completion.java.util.JavaDataContextUtil;
 import com.tyron.completion.progress.ProgressManager;
 import com.tyron.editor.CharPosition;
+import com.tyron.editor.util.text.Rope;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.vfs2.FileContent;
@@ -326,7 +327,7 @@ public class CodeEditorFragment extends Fragment implements Savable,
         mEditor.subscribeEvent(LongPressEvent.class, (event, unsubscribe) -> {
             event.intercept();
 
-            updateFile(mEditor.getText());
+            updateFile(getSnapshot());
             Cursor cursor = mEditor.getCursor();
             if (cursor.isSelected()) {
                 int index = mEditor.getCharIndex(event.getLine(), event.getColumn());
@@ -369,7 +370,7 @@ public class CodeEditorFragment extends Fragment implements Savable,
             if (event.getAction() == ContentChangeEvent.ACTION_SET_NEW_TEXT) {
                 return;
             }
-            updateFile(event.getEditor().getText());
+            updateFile(getSnapshot());
         });
 
         LogViewModel logViewModel =
@@ -530,7 +531,7 @@ public class CodeEditorFragment extends Fragment implements Savable,
         if (ProjectManager.getInstance().getCurrentProject() != null && !toDisk) {
             ProjectManager.getInstance().getCurrentProject().getModule(mCurrentFile)
                     .getFileManager()
-                    .setSnapshotContent(mCurrentFile, mEditor.getText().toString(), false);
+                    .setSnapshotContent(mCurrentFile, getSnapshot(), false);
         } else {
             ProgressManager.getInstance().runNonCancelableAsync(() -> {
                 try {
@@ -672,7 +673,18 @@ public class CodeEditorFragment extends Fragment implements Savable,
         }
     }
 
-    private void updateFile(CharSequence contents) {
+    /**
+     * @return The current text of the editor as an immutable snapshot
+     */
+    private Rope getSnapshot() {
+        Content text = mEditor.getText();
+        if (text instanceof ContentWrapper) {
+            return ((ContentWrapper) text).getSnapshot();
+        }
+        return Rope.of(text);
+    }
+
+    private void updateFile(Rope contents) {
         Project project = ProjectManager.getInstance().getCurrentProject();
         if (project == null) {
             return;
@@ -682,7 +694,7 @@ public class CodeEditorFragment extends Fragment implements Savable,
             if (!module.getFileManager().isOpened(mCurrentFile)) {
                 return;
             }
-            module.getFileManager().setSnapshotContent(mCurrentFile, contents.toString(), this);
+            module.getFileManager().setSnapshotContent(mCurrentFile, contents, this);
         }
     }
 
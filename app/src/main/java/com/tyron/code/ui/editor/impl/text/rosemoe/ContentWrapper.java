@@ -8,6 +8,7 @@ import com.tyron.editor.AbstractContent;
 import com.tyron.editor.event.ContentEvent;
 import com.tyron.editor.event.ContentListener;
 import com.tyron.editor.event.impl.ContentEventImpl;
+import com.tyron.editor.util.text.Rope;
 
 import java.util.List;
 import java.util.Map;
@@ -22,6 +23,12 @@ public class ContentWrapper extends Content implements com.tyron.editor.Content
 
     private AtomicInteger sequence;
 
+    /**
+     * The text as an immutable rope, updated by every edit. Not initialized here since the
+     * super constructor inserts the initial text before the fields of this class are set.
+     */
+    private volatile Rope snapshot;
+
     public ContentWrapper() {
 
     }
@@ -45,6 +52,7 @@ public class ContentWrapper extends Content implements com.tyron.editor.Content
         super.insert(line, column, text);
 
         int offset = getCharIndex(line, column);
+        snapshot = getSnapshot().insert(offset, text);
         Content newText = this;
         CharSequence newString = newText.subSequence(offset, offset + text.length());
         updateText(newText, offset, "", newString, false, System.currentTimeMillis(), offset, 0,
@@ -74,12 +82,23 @@ public class ContentWrapper extends Content implements com.tyron.editor.Content
         CharSequence oldString = subSequence(startOffset, endOffset);
 
         super.delete(startLine, columnOnStartLine, endLine, columnOnEndLine);
+        snapshot = getSnapshot().delete(startOffset, endOffset);
 
         Content newText = this;
         updateText(newText, startOffset, oldString, "", false, System.currentTimeMillis(),
                 startOffset, endOffset - startOffset, startOffset);
     }
 
+    /**
+     * @return The current text as an immutable snapshot that can be kept and read from any
+     * thread while this content is being edited
+     */
+    @NonNull
+    public Rope getSnapshot() {
+        Rope current = snapshot;
+        return current != null ? current : Rope.EMPTY;
+    }
+
     private AtomicInteger getSequence() {
         if (sequence == null) {
             sequence = new AtomicInteger(0);
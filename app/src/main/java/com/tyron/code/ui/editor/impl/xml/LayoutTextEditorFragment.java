@@ -7,6 +7,7 @@ import android.view.View;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.os.BundleKt;
+import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentResultListener;
 
@@ -20,11 +21,27 @@ import com.tyron.code.util.ProjectUtils;
 
 import java.io.File;
 
+import io.github.rosemoe.sora.event.ContentChangeEvent;
+
 /**
  * A {@link CodeEditorFragment} that supports editing layout files
  */
 public class LayoutTextEditorFragment extends CodeEditorFragment {
 
+    /**
+     * The delay after the last change of the text before the preview is updated, so it is not
+     * inflated again for every character typed.
+     */
+    private static final long PREVIEW_UPDATE_DELAY = 300;
+
+    private final Runnable mUpdatePreview = () -> {
+        Fragment fragment = getChildFragmentManager()
+                .findFragmentById(R.id.layout_editor_container);
+        if (fragment instanceof LayoutEditorFragment) {
+            ((LayoutEditorFragment) fragment).updateLayout(getEditor().getText().toString());
+        }
+    };
+
     public static LayoutTextEditorFragment newInstance(File file) {
         Bundle args = new Bundle();
         args.putString("path", file.getAbsolutePath());
@@ -50,6 +67,19 @@ public class LayoutTextEditorFragment extends CodeEditorFragment {
         });
         fragmentManager.setFragmentResultListener(LayoutEditorFragment.KEY_SAVE,
                                                   getViewLifecycleOwner(), listener);
+
+        getEditor().subscribeEvent(ContentChangeEvent.class, (event, unsubscribe) -> {
+            getEditor().removeCallbacks(mUpdatePreview);
+            if (getChildFragmentManager().findFragmentById(R.id.layout_editor_container) != null) {
+                getEditor().postDelayed(mUpdatePreview, PREVIEW_UPDATE_DELAY);
+            }
+        });
+    }
+
+    @Override
+    public void onDestroyView() {
+        getEditor().removeCallbacks(mUpdatePreview);
+        super.onDestroyView();
     }
 
     public void preview() {
@@ -57,7 +87,8 @@ public class LayoutTextEditorFragment extends CodeEditorFragment {
         File currentFile = getEditor().getCurrentFile();
         if (ProjectUtils.isLayoutXMLFile(currentFile)) {
             getChildFragmentManager().beginTransaction().add(R.id.layout_editor_container,
-                    LayoutEditorFragment.newInstance(currentFile)).addToBackStack(null).commit();
+                    LayoutEditorFragment.newInstance(currentFile, getEditor().getText().toString()))
+                    .addToBackStack(null).commit();
         } else {
             // TODO: handle unknown files
 //            JavaCompilerProvider service =
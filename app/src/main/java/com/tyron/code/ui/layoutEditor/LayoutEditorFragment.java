@@ -11,6 +11,7 @@ import android.os.Bundle;
 import android.util.Log;
 import android.view.Display;
 import android.view.DragEvent;
+import android.view.InflateException;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -33,7 +34,6 @@ import androidx.transition.TransitionManager;
 import com.flipkart.android.proteus.ProteusContext;
 import com.flipkart.android.proteus.ProteusView;
 import com.flipkart.android.proteus.ViewTypeParser;
-import com.flipkart.android.proteus.exceptions.ProteusInflateException;
 import com.flipkart.android.proteus.toolbox.Attributes;
 import com.flipkart.android.proteus.toolbox.ProteusHelper;
 import com.flipkart.android.proteus.value.Dimension;
@@ -53,16 +53,21 @@ import com.tyron.code.R;
 import com.tyron.code.ui.layoutEditor.attributeEditor.AttributeEditorDialogFragment;
 import com.tyron.code.ui.layoutEditor.model.ViewPalette;
 import com.tyron.completion.java.provider.CompletionEngine;
+import com.tyron.completion.xml.XmlRepository;
 import com.tyron.layoutpreview.BoundaryDrawingFrameLayout;
 import com.tyron.layoutpreview.convert.LayoutToXmlConverter;
 import com.tyron.layoutpreview.inflate.PreviewLayoutInflater;
+import com.tyron.xml.completion.repository.Repository;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -85,11 +90,23 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         return fragment;
     }
 
+    /**
+     * Creates a new LayoutEditorFragment instance for the contents of a layout xml file that is
+     * being edited, the preview can then be kept up to date with {@link #updateLayout(String)}.
+     */
+    public static LayoutEditorFragment newInstance(File file, String text) {
+        LayoutEditorFragment fragment = newInstance(file);
+        fragment.requireArguments().putString("text", text);
+        return fragment;
+    }
+
     private final ExecutorService mService = Executors.newSingleThreadExecutor();
     private LayoutEditorViewModel mEditorViewModel;
 
     private File mCurrentFile;
+    private String mCurrentText;
     private PreviewLayoutInflater mInflater;
+    private Repository mRepository;
     private BoundaryDrawingFrameLayout mEditorRoot;
     private EditorDragListener mDragListener;
 
@@ -98,6 +115,28 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
 
     private boolean isDumb;
 
+    /**
+     * Whether the views were changed in the editor since they were inflated, the text can then
+     * no longer be matched with the views.
+     */
+    private boolean mViewsEdited;
+
+    /**
+     * Forgets the resources resolved by the preview when a resource file of the module is
+     * updated, and inflates the layout again so it shows their new values.
+     */
+    private final Repository.UpdateListener mUpdateListener = file -> {
+        // the layout itself is updated as it is typed, see updateLayout
+        if (file.equals(mCurrentFile) || mInflater == null) {
+            return;
+        }
+        mInflater.clearResources();
+        View root = mEditorRoot;
+        if (root != null) {
+            root.post(this::refreshLayout);
+        }
+    };
+
     private final View.OnLongClickListener mOnLongClickListener = v -> {
         ClipData clipData = ClipData.newPlainText("", "");
         View.DragShadowBuilder shadowBuilder = new View.DragShadowBuilder(v);
@@ -153,6 +192,7 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
                     (requestKey, result) -> {
                 String key = result.getString("key", "");
                 String value = result.getString("value", "");
+                mViewsEdited = true;
                 if (value.isEmpty()) {
                     getChildFragmentManager().setFragmentResult(AttributeEditorDialogFragment.KEY_ATTRIBUTE_REMOVED, result);
                     manager.removeAttribute(key);
@@ -170,6 +210,7 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         super.onCreate(savedInstanceState);
 
         mCurrentFile = (File) requireArguments().getSerializable("file");
+        mCurrentText = requireArguments().getString("text");
         isDumb = ProjectManager.getInstance().getCurrentProject() == null ||
                 CompletionEngine.isIndexing();
         mEditorViewModel = new ViewModelProvider(this)
@@ -227,6 +268,7 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         mDragListener.setDelegate(new EditorDragListener.Delegate() {
             @Override
             public void onAddView(ViewGroup parent, View view) {
+                mViewsEdited = true;
                 if (view instanceof ViewGroup) {
                     setDragListeners(((ViewGroup) view));
                 }
@@ -242,6 +284,7 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
 
             @Override
             public void onRemoveView(ViewGroup parent, View view) {
+                mViewsEdited = true;
                 if (parent instanceof ProteusView && view instanceof ProteusView) {
                     ProteusView proteusParent = (ProteusView) parent;
                     ProteusView proteusChild = (ProteusView) view;
@@ -276,6 +319,7 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
                 View dragged = state.getView();
                 ViewGroup parent = (ViewGroup) dragged.getParent();
                 if (parent != null) {
+                    mViewsEdited = true;
                     parent.removeView(dragged);
 
                     if (parent instanceof ProteusView && dragged instanceof ProteusView) {
@@ -294,6 +338,9 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         super.onDestroyView();
 
         ProjectManager.getInstance().removeOnProjectOpenListener(this);
+        if (mRepository != null) {
+            mRepository.removeUpdateListener(mUpdateListener);
+        }
     }
 
     private Dialog exit(String title, String message) {
@@ -322,8 +369,22 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         // need to wrap the context to a default theme so
         // material widgets wont use CodeAssist's theme
         ContextThemeWrapper wrapper = new ContextThemeWrapper(requireContext(), R.style.Theme_MaterialComponents_DayNight);
-        mInflater = new PreviewLayoutInflater(wrapper, (AndroidModule) module);
-        mInflater.parseResources(mService).whenComplete((inflater, exception) ->
+        AndroidModule androidModule = (AndroidModule) module;
+        // resolve resources from the repository the xml completion keeps for the module,
+        // instead of parsing every resource again each time the preview is opened
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return XmlRepository.getRepository(currentProject, androidModule)
+                        .getRepository();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, mService).thenApplyAsync(repository -> {
+            mRepository = repository;
+            mInflater = new PreviewLayoutInflater(wrapper, androidModule, repository);
+            return mInflater;
+        }, requireActivity()::runOnUiThread).thenCompose(inflater ->
+                inflater.parseResources(mService)).whenComplete((inflater, exception) ->
                 requireActivity().runOnUiThread(() -> {
                     if (inflater == null) {
                         exit(getString(R.string.error),
@@ -336,6 +397,9 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
 
     private void afterParse(PreviewLayoutInflater inflater) {
         mInflater = inflater;
+        if (mRepository != null) {
+            mRepository.addUpdateListener(mUpdateListener);
+        }
         setLoadingText("Inflating xml");
         inflateFile(mCurrentFile);
     }
@@ -344,18 +408,19 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         Optional<ProteusView> optionalView;
 
         try {
-            optionalView = mInflater.inflateLayout(file.getName()
-                    .replace(".xml", ""));
-        } catch (ProteusInflateException e) {
+            if (mCurrentText != null) {
+                optionalView = Optional.of(mInflater.inflate(mCurrentText));
+            } else {
+                optionalView = mInflater.inflateLayout(file.getName()
+                        .replace(".xml", ""));
+            }
+        } catch (InflateException e) {
             optionalView = Optional.empty();
         }
         setLoadingText(null);
 
         if (optionalView.isPresent()) {
-            mEditorRoot.removeAllViews();
-            mEditorRoot.addView(optionalView.get().getAsView());
-            setDragListeners(mEditorRoot);
-            setClickListeners(mEditorRoot);
+            showView(optionalView.get());
 
             requireActivity().runOnUiThread(() -> resizeLayoutEditor(mEditorRoot));
         } else {
@@ -363,6 +428,56 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         }
     }
 
+    /**
+     * Updates the preview to the edited text of the layout. Only the element that encloses the
+     * changes is inflated again, the text is kept until the inflater is ready otherwise.
+     */
+    public void updateLayout(@NonNull String text) {
+        mCurrentText = text;
+        if (mInflater == null || mEditorRoot == null || mEditorRoot.getChildCount() == 0) {
+            return;
+        }
+
+        ProteusView view;
+        try {
+            if (mViewsEdited) {
+                view = mInflater.inflate(text);
+                mViewsEdited = false;
+            } else {
+                view = mInflater.update(text);
+            }
+        } catch (InflateException e) {
+            // the text may be incomplete while it is typed, keep the last preview
+            return;
+        }
+        if (view.getAsView() != mEditorRoot.getChildAt(0)) {
+            showView(view);
+        } else {
+            // the views of the changed element are new
+            setDragListeners(mEditorRoot);
+            setClickListeners(mEditorRoot);
+        }
+    }
+
+    private void refreshLayout() {
+        if (mInflater == null || mCurrentText == null || mViewsEdited
+                || mEditorRoot == null || mEditorRoot.getChildCount() == 0) {
+            return;
+        }
+        try {
+            showView(mInflater.inflate(mCurrentText));
+        } catch (InflateException e) {
+            // keep the last preview, it is updated again when the text changes
+        }
+    }
+
+    private void showView(ProteusView view) {
+        mEditorRoot.removeAllViews();
+        mEditorRoot.addView(view.getAsView());
+        setDragListeners(mEditorRoot);
+        setClickListeners(mEditorRoot);
+    }
+
     private void resizeLayoutEditor(View root) {
         final Point point = new Point();
         ((WindowManager)requireActivity().getSystemService(Context.WINDOW_SERVICE))
@@ -415,6 +415,22 @@ public class MainFragment extends Fragment implements ProjectManager.OnProjectOp
                 }
             });
         }
+
+        @Override
+        public void onModelRefreshed(Project project, boolean success, String message) {
+            if (getActivity() == null) {
+                return;
+            }
+            requireActivity().runOnUiThread(() -> {
+                // clears the progress of indexing the refreshed model
+                mMainViewModel.setCurrentState(null);
+                if (success) {
+                    mLogViewModel.d(LogViewModel.BUILD_LOG, message);
+                } else {
+                    mLogViewModel.e(LogViewModel.BUILD_LOG, message);
+                }
+            });
+        }
     }
 
     private void compile(BuildType type) {
@@ -0,0 +1,363 @@
+package com.tyron.code.ui.project;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Throwables;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.source.util.JavacTask;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.api.JavacTool;
+import com.sun.tools.javac.parser.ParserFactory;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.api.Module;
+import com.tyron.completion.java.parse.CompilationInfo;
+import com.tyron.completion.java.provider.PruneMethodBodies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * Indexes the java files of the modules of a project so completion works as soon as the project
+ * is opened.
+ * <p>
+ * In-order to keep indexing as fast as possible, method bodies of each class are removed. When
+ * the file is opened in the editor, its contents will be re-parsed with method bodies included.
+ * <p>
+ * The files are read, parsed and pruned by a pool of workers, each with its own {@link JavacTask},
+ * while the calling thread feeds the results to the {@link CompilationInfo} of the module, which
+ * is not thread safe. The pruned source, or stub, of each file is stored in
+ * {@code build/.index/stubs} of its module under the hash of its contents, so files that did not
+ * change since the project was last opened are not parsed again. Stubs of contents that no file
+ * of the module has anymore are deleted once the module is indexed.
+ */
+class ProjectIndexer implements AutoCloseable {
+
+    /**
+     * Part of the key of every stub, increment it when the way stubs are computed changes.
+     */
+    private static final int STUB_VERSION = 1;
+
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final ProjectManager.TaskListener mListener;
+    private final ExecutorService mExecutor;
+    private final int mMaxInFlight;
+    private final ThreadLocal<StubParser> mParsers = ThreadLocal.withInitial(StubParser::new);
+
+    private final AtomicLong mReadNanos = new AtomicLong();
+    private final AtomicLong mLoadNanos = new AtomicLong();
+    private final AtomicLong mParseNanos = new AtomicLong();
+    private final AtomicLong mPruneNanos = new AtomicLong();
+    private final AtomicLong mStoreNanos = new AtomicLong();
+    private final AtomicLong mLoadedStubs = new AtomicLong();
+    private long mUpdateNanos;
+    private long mWallNanos;
+    private int mIndexedFiles;
+
+    ProjectIndexer(ProjectManager.TaskListener listener) {
+        mListener = listener;
+        // the calling thread is kept busy updating the compilation infos
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        mExecutor = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+                .setNameFormat("Project indexer #%d")
+                .setDaemon(true)
+                .build());
+        // bounds the stubs waiting for the calling thread
+        mMaxInFlight = workers * 4;
+    }
+
+    /**
+     * Indexes the java files of the given module, which must already be added to its project.
+     */
+    void indexModule(@NonNull Module module) throws IOException {
+        long start = System.nanoTime();
+        module.open();
+        module.index();
+
+        if (!(module instanceof JavaModule)) {
+            return;
+        }
+        JavaModule javaModule = (JavaModule) module;
+        List<File> files = new ArrayList<>(javaModule.getJavaFiles().values());
+        File stubDirectory = new File(module.getRootFile(), "build/.index/stubs");
+
+        CompletionService<Stub> completionService = new ExecutorCompletionService<>(mExecutor);
+        List<Future<Stub>> pending = new ArrayList<>();
+        Set<String> usedKeys = ConcurrentHashMap.newKeySet();
+        Iterator<File> remaining = files.iterator();
+        try {
+            while (remaining.hasNext() && pending.size() < mMaxInFlight) {
+                File file = remaining.next();
+                pending.add(completionService.submit(() -> createStub(file, stubDirectory)));
+            }
+            long lastProgress = 0;
+            for (int done = 0; done < files.size(); done++) {
+                Future<Stub> future = completionService.take();
+                pending.remove(future);
+                if (remaining.hasNext()) {
+                    File file = remaining.next();
+                    pending.add(completionService.submit(() -> createStub(file, stubDirectory)));
+                }
+                Stub stub = getResult(future);
+                usedKeys.add(stub.key);
+                update(module, stub);
+
+                long now = System.nanoTime();
+                if (now - lastProgress > PROGRESS_INTERVAL_NANOS) {
+                    lastProgress = now;
+                    mListener.onTaskStarted(String.format(Locale.ROOT, "Indexing %s (%d/%d)",
+                            module.getName(), done + 1, files.size()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Indexing of " + module.getName() + " was interrupted", e);
+        } finally {
+            for (Future<Stub> future : pending) {
+                future.cancel(true);
+            }
+        }
+        deleteUnusedStubs(stubDirectory, usedKeys);
+        mIndexedFiles += files.size();
+        mWallNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Returns how long indexing took so far, and how long each phase took summed over the workers.
+     */
+    @NonNull
+    String getTimings() {
+        return String.format(Locale.ROOT,
+                "Indexed %d files in %d ms (%d stubs up to date). Read %d ms, load %d ms, " +
+                "parse %d ms, prune %d ms, store %d ms, update %d ms.",
+                mIndexedFiles, toMillis(mWallNanos), mLoadedStubs.get(), toMillis(mReadNanos.get()),
+                toMillis(mLoadNanos.get()), toMillis(mParseNanos.get()),
+                toMillis(mPruneNanos.get()), toMillis(mStoreNanos.get()), toMillis(mUpdateNanos));
+    }
+
+    @Override
+    public void close() {
+        mExecutor.shutdownNow();
+    }
+
+    private void update(Module module, Stub stub) {
+        CompilationInfo info = CompilationInfo.get(module.getProject(), stub.file);
+        if (info == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        info.updateImmediately(new SimpleJavaFileObject(stub.file.toURI(),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return stub.contents;
+            }
+        });
+        mUpdateNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Runs on a worker, returns the stored stub of the file if it did not change or computes it.
+     */
+    private Stub createStub(File file, File stubDirectory) throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        String key = Hashing.murmur3_128()
+                .newHasher()
+                .putInt(STUB_VERSION)
+                .putBytes(bytes)
+                .hash()
+                .toString();
+        File stubFile = new File(stubDirectory, key.substring(0, 2) + "/" + key + ".stub");
+        mReadNanos.addAndGet(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        String stored = readStub(stubFile);
+        if (stored != null) {
+            mLoadNanos.addAndGet(System.nanoTime() - start);
+            mLoadedStubs.incrementAndGet();
+            return new Stub(file, key, stored);
+        }
+
+        String contents = new String(bytes, StandardCharsets.UTF_8);
+        start = System.nanoTime();
+        JavaFileObject fileObject = new SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return contents;
+            }
+        };
+        StubParser parser = mParsers.get();
+        JCTree.JCCompilationUnit root = parser.parse(fileObject, contents);
+        mParseNanos.addAndGet(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        String stub = new PruneMethodBodies(parser.task).scan(root, 0L).toString();
+        mPruneNanos.addAndGet(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        writeStub(stubFile, stub);
+        mStoreNanos.addAndGet(System.nanoTime() - start);
+        return new Stub(file, key, stub);
+    }
+
+    @Nullable
+    private static String readStub(File stubFile) {
+        if (!stubFile.isFile()) {
+            return null;
+        }
+        try (InputStream inputStream = new GZIPInputStream(new FileInputStream(stubFile))) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // the stub is corrupted, compute it again
+            return null;
+        }
+    }
+
+    private static void writeStub(File stubFile, String stub) {
+        File directory = stubFile.getParentFile();
+        // another worker may create the directory at the same time
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            return;
+        }
+        File tempFile = new File(directory, stubFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            // stubs are mostly whitespace where method bodies were, so they compress well
+            try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(tempFile))) {
+                outputStream.write(stub.getBytes(StandardCharsets.UTF_8));
+            }
+            // another worker may have stored the same stub, which has the same contents
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.renameTo(stubFile);
+        } catch (IOException e) {
+            // the index is an optimization, the file will just be parsed again next time
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Deletes the stubs whose key is not in the given set, along with temporary files left behind
+     * by a worker that was stopped while storing a stub.
+     */
+    private static void deleteUnusedStubs(File stubDirectory, Set<String> usedKeys) {
+        File[] directories = stubDirectory.listFiles(File::isDirectory);
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            File[] stubFiles = directory.listFiles();
+            if (stubFiles == null) {
+                continue;
+            }
+            for (File stubFile : stubFiles) {
+                String name = stubFile.getName();
+                if (!name.endsWith(".stub") ||
+                    !usedKeys.contains(name.substring(0, name.length() - ".stub".length()))) {
+                    //noinspection ResultOfMethodCallIgnored
+                    stubFile.delete();
+                }
+            }
+            // only succeeds if every stub of the directory was deleted
+            //noinspection ResultOfMethodCallIgnored
+            directory.delete();
+        }
+    }
+
+    private static Stub getResult(Future<Stub> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static class Stub {
+        private final File file;
+        private final String key;
+        private final String contents;
+
+        Stub(File file, String key, String contents) {
+            this.file = file;
+            this.key = key;
+            this.contents = contents;
+        }
+    }
+
+    /**
+     * The javac context of a worker. Creating a task sets up a file manager and a context, which
+     * costs more than parsing most files, so each worker creates a single task and parses every
+     * file with the parser factory of its context.
+     */
+    private static class StubParser {
+        private final JavacTaskImpl task;
+        private final ParserFactory parserFactory;
+        private final Log log;
+
+        StubParser() {
+            task = (JavacTaskImpl) JavacTool.create().getTask(null, null, diagnostic -> {
+            }, Collections.singletonList("-proc:none"), null, Collections.emptyList());
+            Context context = task.getContext();
+            parserFactory = ParserFactory.instance(context);
+            log = Log.instance(context);
+        }
+
+        JCTree.JCCompilationUnit parse(JavaFileObject fileObject, CharSequence contents) {
+            // errors are reported against the file being parsed
+            JavaFileObject previous = log.useSource(fileObject);
+            try {
+                JCTree.JCCompilationUnit root =
+                        parserFactory.newParser(contents, false, true, true).parseCompilationUnit();
+                root.sourcefile = fileObject;
+                return root;
+            } finally {
+                log.useSource(previous);
+            }
+        }
+    }
+}
@@ -9,17 +9,15 @@ import com.tyron.builder.BuildModule;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.ContentRoot;
-import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
 import com.tyron.builder.project.impl.AndroidModuleImpl;
 import com.tyron.code.gradle.util.GradleLaunchUtil;
 import com.tyron.code.template.CodeTemplate;
 import com.tyron.code.ui.editor.log.AppLogFragment;
+import com.tyron.code.ui.project.ProjectModelCache.ContentRootModel;
+import com.tyron.code.ui.project.ProjectModelCache.ModuleModel;
 import com.tyron.code.util.ProjectUtils;
-import com.tyron.completion.java.compiler.Parser;
-import com.tyron.completion.java.parse.CompilationInfo;
 import com.tyron.completion.java.provider.CompletionEngine;
-import com.tyron.completion.java.provider.PruneMethodBodies;
 import com.tyron.completion.progress.ProgressManager;
 
 import org.apache.commons.io.FileUtils;
@@ -41,17 +39,22 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
-import javax.tools.JavaFileObject;
-import javax.tools.SimpleJavaFileObject;
-
 public class ProjectManager {
 
     public interface TaskListener {
         void onTaskStarted(String message);
 
         void onComplete(Project project, boolean success, String message);
+
+        /**
+         * Called when a project opened from its cached model was indexed again because building
+         * its model found a change. {@link #onComplete} has already been called for the project.
+         */
+        default void onModelRefreshed(Project project, boolean success, String message) {
+        }
     }
 
     public interface OnProjectOpenListener {
@@ -68,6 +71,12 @@ public class ProjectManager {
     }
 
     private final List<OnProjectOpenListener> mProjectOpenListeners = new ArrayList<>();
+    /**
+     * Held while the current project changes and while indexed modules replace the modules of
+     * the current project, so that modules are never published to a project that is no longer
+     * open. Indexing itself happens without it.
+     */
+    private final Object mLock = new Object();
     private volatile Project mCurrentProject;
 
     private ProjectManager() {
@@ -100,7 +109,9 @@ public class ProjectManager {
                                boolean downloadLibs,
                                TaskListener mListener,
                                ILogger logger) {
-        mCurrentProject = project;
+        synchronized (mLock) {
+            mCurrentProject = project;
+        }
 
         boolean shouldReturn = false;
 
@@ -127,116 +138,270 @@ public class ProjectManager {
         BuildModule.getAndroidJar();
         BuildModule.getLambdaStubs();
 
+        ProjectModelCache modelCache = new ProjectModelCache(mCurrentProject.getRootFile());
+        String fingerprint;
+        List<ModuleModel> cachedModel;
+        try {
+            fingerprint = modelCache.fingerprint();
+            cachedModel = modelCache.load(fingerprint);
+        } catch (IOException e) {
+            logger.warning("Failed to read the build files: " + e.getMessage());
+            fingerprint = null;
+            cachedModel = null;
+        }
+
+        if (cachedModel != null) {
+            // the build files did not change, open the project from the cached model and
+            // build the model again afterwards in case a dependency changed
+            try {
+                IndexedModel indexed = indexModel(cachedModel, project, mListener);
+                if (!publish(project, indexed)) {
+                    return;
+                }
+                finishOpen(project, mListener, indexed.mTimings);
+            } catch (Throwable t) {
+                logger.warning("Failed to open the cached project model: " + t.getMessage());
+                cachedModel = null;
+            }
+        }
+
+        List<ModuleModel> model;
+        try {
+            model = fetchModel(project, mListener, cachedModel != null);
+        } catch (Throwable t) {
+            if (cachedModel == null) {
+                mListener.onComplete(project, false,
+                        Throwables.getStackTraceAsString(t) + "\n");
+            } else {
+                logger.warning("Failed to refresh the project model: " + t.getMessage());
+            }
+            return;
+        }
+
+        if (fingerprint != null) {
+            try {
+                modelCache.store(fingerprint, model);
+            } catch (IOException e) {
+                logger.warning("Failed to cache the project model: " + e.getMessage());
+            }
+        }
+
+        if (cachedModel != null) {
+            if (!model.equals(cachedModel)) {
+                refreshModel(project, model, mListener, logger);
+            }
+            return;
+        }
+
+        // another project may have been opened while the model was built
+        if (project != mCurrentProject) {
+            return;
+        }
+
+        IndexedModel indexed;
+        try {
+            project.setIndexing(true);
+            indexed = indexModel(model, project, mListener);
+        } catch (Throwable t) {
+            mListener.onComplete(project, false, Throwables.getStackTraceAsString(t) + "\n");
+            return;
+        }
+        if (publish(project, indexed)) {
+            finishOpen(project, mListener, indexed.mTimings);
+        }
+    }
+
+    private void finishOpen(Project project, TaskListener listener, String indexTimings) {
+        mProjectOpenListeners.forEach(it -> it.onProjectOpen(mCurrentProject));
+
+        mCurrentProject.setIndexing(false);
+        listener.onComplete(project, true, "Index successful. " + indexTimings);
+    }
+
+    /**
+     * Indexes a project opened from its cached model again with the model built afterwards.
+     * The project was already reported as open, so only {@link TaskListener#onModelRefreshed}
+     * is called.
+     */
+    private void refreshModel(Project project,
+                              List<ModuleModel> model,
+                              TaskListener listener,
+                              ILogger logger) {
+        // another project may have been opened while the model was refreshed
+        if (project != mCurrentProject) {
+            return;
+        }
+        boolean success;
+        String message;
+        try {
+            project.setIndexing(true);
+            IndexedModel indexed = indexModel(model, project, listener);
+            if (!publish(project, indexed)) {
+                return;
+            }
+            message = "Project model refreshed. " + indexed.mTimings;
+            success = true;
+        } catch (Throwable t) {
+            logger.warning("Failed to index the refreshed project model: " + t.getMessage());
+            message = Throwables.getStackTraceAsString(t) + "\n";
+            success = false;
+        } finally {
+            project.setIndexing(false);
+        }
+        listener.onModelRefreshed(project, success, message);
+    }
+
+    /**
+     * Runs the configuration phase of the project to build its model.
+     *
+     * @param background Whether the project is already open from the cached model, in which case
+     *                   the progress is not reported and the logs are kept
+     */
+    private List<ModuleModel> fetchModel(Project project,
+                                         TaskListener listener,
+                                         boolean background) throws IOException {
         GradleConnector gradleConnector = GradleConnector.newConnector();
-        gradleConnector.forProjectDirectory(mCurrentProject.getRootFile());
+        gradleConnector.forProjectDirectory(project.getRootFile());
         gradleConnector.useDistribution(URI.create("codeAssist"));
 
         try (ProjectConnection projectConnection = gradleConnector.connect()) {
-            mListener.onTaskStarted("Build model");
+            ModelBuilder<IdeaProject> model = projectConnection.model(IdeaProject.class);
+            GradleLaunchUtil.configureLauncher(model);
 
-            // clears the logs
-            AppLogFragment.outputStream.write("\033[H\033[2J".getBytes());
+            if (!background) {
+                listener.onTaskStarted("Build model");
 
-            ProgressListener progressListener =
-                    event -> mListener.onTaskStarted(event.getDisplayName());
+                // clears the logs
+                AppLogFragment.outputStream.write("\033[H\033[2J".getBytes());
 
-            ModelBuilder<IdeaProject> model = projectConnection.model(IdeaProject.class);
-            GradleLaunchUtil.configureLauncher(model);
+                ProgressListener progressListener =
+                        event -> listener.onTaskStarted(event.getDisplayName());
+                model.addProgressListener(progressListener);
+            }
 
             IdeaProject ideaProject = model
                     .setStandardError(AppLogFragment.outputStream)
                     .setStandardOutput(AppLogFragment.outputStream)
-                    .addProgressListener(progressListener)
                     .get();
 
-            mListener.onTaskStarted("Index model");
-
-            // remove the previous models
-            mCurrentProject.clear();
-            buildModel(ideaProject, mCurrentProject);
-        } catch (Throwable t) {
-            mListener.onComplete(mCurrentProject, false, Throwables.getStackTraceAsString(t) + "\n");
-            return;
+            List<ModuleModel> modules = new ArrayList<>();
+            for (IdeaModule ideaModule : ideaProject.getModules().getAll()) {
+                modules.add(toModuleModel(ideaModule));
+            }
+            return modules;
         }
-
-        mProjectOpenListeners.forEach(it -> it.onProjectOpen(mCurrentProject));
-
-        mCurrentProject.setIndexing(false);
-        mListener.onComplete(project, true, "Index successful");
     }
 
-    private void buildModel(IdeaProject project, Project currentProject) throws IOException {
-        List<? extends IdeaModule> allModules = project.getModules().getAll();
-        for (IdeaModule ideaModule : allModules) {
-            Module module = buildModule(ideaModule);
-            currentProject.addModule(module);
-            indexModule(module);
+    /**
+     * Builds and indexes the modules of the model. They are added to a project of their own
+     * while they are indexed, so the editor and completion keep using the current modules of
+     * the project until {@link #publish} replaces them.
+     */
+    private IndexedModel indexModel(List<ModuleModel> model,
+                                    Project project,
+                                    TaskListener listener) throws IOException {
+        listener.onTaskStarted("Index model");
+
+        Project staging = new Project(project.getRootFile());
+        try (ProjectIndexer indexer = new ProjectIndexer(listener)) {
+            for (ModuleModel moduleModel : model) {
+                Module module = buildModule(moduleModel);
+                staging.addModule(module);
+                indexer.indexModule(module);
+            }
+            String timings = indexer.getTimings();
+            listener.onTaskStarted(timings);
+            return new IndexedModel(staging.getModules(), timings);
         }
     }
 
     /**
-     * Indexes each module so completion would work immediately
-     * <p>
-     * In-order to keep indexing as fast as possible, method bodies of each classes are removed.
-     * When the file is opened in the editor, its contents will be re-parsed with method bodies
-     * included.
+     * Replaces the modules of the project with the indexed ones.
+     *
+     * @return false if another project was opened while the modules were indexed, in which case
+     * they are dropped
      */
-    private void indexModule(Module module) throws IOException {
-        module.open();
-        module.index();
-
-        JavaModule javaModule = (JavaModule) module;
-        for (File value : javaModule.getJavaFiles().values()) {
-            CompilationInfo info = CompilationInfo.get(module.getProject(), value);
-            if (info == null) {
-                continue;
+    private boolean publish(Project project, IndexedModel indexed) {
+        synchronized (mLock) {
+            if (project != mCurrentProject) {
+                return false;
             }
-            info.updateImmediately(new SimpleJavaFileObject(value.toURI(),
-                    JavaFileObject.Kind.SOURCE) {
-                @Override
-                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
-                    Parser parser = Parser.parseFile(module.getProject(), value.toPath());
-                    return new PruneMethodBodies(info.impl.getJavacTask()).scan(parser.root, 0L);
-                }
-            });
+            project.setModules(indexed.mModules);
+            return true;
         }
     }
 
-    private Module buildModule(IdeaModule module) {
-        File projectDirectory = module.getGradleProject().getProjectDirectory();
-        AndroidModuleImpl impl = new AndroidModuleImpl(projectDirectory);
-        impl.setName(module.getProjectIdentifier().getProjectPath());
+    private static class IndexedModel {
+        private final Collection<Module> mModules;
+        private final String mTimings;
 
-        final DomainObjectSet<? extends IdeaContentRoot> contentRoots = module.getContentRoots();
-        for (IdeaContentRoot contentRoot : contentRoots) {
-            ContentRoot implContentRoot = new ContentRoot(contentRoot.getRootDirectory());
+        IndexedModel(Collection<Module> modules, String timings) {
+            mModules = modules;
+            mTimings = timings;
+        }
+    }
 
+    private ModuleModel toModuleModel(IdeaModule module) {
+        List<ContentRootModel> contentRoots = new ArrayList<>();
+        for (IdeaContentRoot contentRoot : module.getContentRoots()) {
+            List<File> sourceDirectories = new ArrayList<>();
             for (IdeaSourceDirectory sourceDirectory : contentRoot.getSourceDirectories()) {
-                implContentRoot.addSourceDirectory(sourceDirectory.getDirectory());
+                sourceDirectories.add(sourceDirectory.getDirectory().getAbsoluteFile());
             }
-
-            impl.addContentRoot(implContentRoot);
+            contentRoots.add(new ContentRootModel(contentRoot.getRootDirectory().getAbsoluteFile(),
+                    sourceDirectories));
         }
 
+        List<File> libraries = new ArrayList<>();
+        List<String> moduleDependencies = new ArrayList<>();
         for (IdeaDependency dependency : module.getDependencies()) {
             if (!"COMPILE".equals(dependency.getScope().getScope())) {
                 continue;
             }
             if (dependency instanceof ExternalDependency) {
-                impl.addLibrary(((ExternalDependency) dependency).getFile());
+                libraries.add(((ExternalDependency) dependency).getFile().getAbsoluteFile());
             } else if (dependency instanceof IdeaModuleDependency) {
-                impl.addModuleDependency(((IdeaModuleDependency) dependency).getTargetModuleName());
+                moduleDependencies.add(((IdeaModuleDependency) dependency).getTargetModuleName());
             }
         }
         // TODO: add child modules
         DomainObjectSet<? extends HierarchicalElement> children = module.getChildren();
 
+        return new ModuleModel(module.getProjectIdentifier().getProjectPath(),
+                module.getGradleProject().getProjectDirectory().getAbsoluteFile(),
+                contentRoots,
+                libraries,
+                moduleDependencies);
+    }
+
+    private Module buildModule(ModuleModel module) {
+        AndroidModuleImpl impl = new AndroidModuleImpl(module.getProjectDirectory());
+        impl.setName(module.getName());
+
+        for (ContentRootModel contentRoot : module.getContentRoots()) {
+            ContentRoot implContentRoot = new ContentRoot(contentRoot.getRootDirectory());
+
+            for (File sourceDirectory : contentRoot.getSourceDirectories()) {
+                implContentRoot.addSourceDirectory(sourceDirectory);
+            }
+
+            impl.addContentRoot(implContentRoot);
+        }
+
+        for (File library : module.getLibraries()) {
+            impl.addLibrary(library);
+        }
+        for (String moduleDependency : module.getModuleDependencies()) {
+            impl.addModuleDependency(moduleDependency);
+        }
         return impl;
     }
 
     public void closeProject(@NonNull Project project) {
-        if (project.equals(mCurrentProject)) {
-            mCurrentProject = null;
+        synchronized (mLock) {
+            if (project.equals(mCurrentProject)) {
+                mCurrentProject = null;
+            }
         }
     }
 
@@ -0,0 +1,372 @@
+package com.tyron.code.ui.project;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores the modules, content roots and dependencies resolved by the Gradle model build of a
+ * project, so reopening the project does not have to wait for the configuration phase.
+ * <p>
+ * The model is stored in {@code build/.index/gradle-model.bin} of the project along with a
+ * fingerprint of every file that can change it: the build scripts and the scripts they apply,
+ * {@code settings.gradle}, {@code gradle.properties}, the version catalogs, the wrapper
+ * properties and the sources of {@code buildSrc}. A stored model is
+ * only returned while its fingerprint still matches. Dependencies can still change without these
+ * files changing, a snapshot being published for example, so the model should be refreshed in
+ * the background after opening a project from the cache.
+ */
+class ProjectModelCache {
+
+    private static final int MAGIC = 0x47524d44;
+    /**
+     * Increment it when the stored format, or what is stored, changes.
+     */
+    private static final int VERSION = 1;
+
+    private static final List<String> BUILD_FILE_NAMES = Arrays.asList(
+            "build.gradle", "build.gradle.kts", "settings.gradle", "settings.gradle.kts",
+            "gradle.properties", "gradle-wrapper.properties");
+
+    /**
+     * Matches {@code apply from: 'file'} in Groovy scripts and {@code apply(from = "file")} in
+     * Kotlin scripts, with the path optionally wrapped in {@code file(...)} or
+     * {@code rootProject.file(...)}. The first group is set for the latter.
+     */
+    private static final Pattern APPLY_FROM = Pattern.compile(
+            "apply\\s*\\(?\\s*from\\s*[:=]\\s*(?:(rootProject\\.)?file\\s*\\(\\s*)?['\"]([^'\"]+)['\"]");
+
+    private final File mRoot;
+    private final File mCacheFile;
+
+    ProjectModelCache(@NonNull File root) {
+        mRoot = root;
+        mCacheFile = new File(root, "build/.index/gradle-model.bin");
+    }
+
+    /**
+     * Computes the fingerprint of the files the model depends on. Compute it before building
+     * the model, so a change made while the model is being built is not missed.
+     */
+    @NonNull
+    String fingerprint() throws IOException {
+        Set<File> collected = new LinkedHashSet<>();
+        collectBuildFiles(mRoot, collected);
+        collectAppliedScripts(collected);
+        List<File> buildFiles = new ArrayList<>(collected);
+        Collections.sort(buildFiles);
+
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putInt(VERSION);
+        String rootPath = mRoot.getAbsolutePath();
+        for (File file : buildFiles) {
+            byte[] contents = Files.readAllBytes(file.toPath());
+            hasher.putString(file.getAbsolutePath().substring(rootPath.length()), StandardCharsets.UTF_8);
+            hasher.putInt(contents.length);
+            hasher.putBytes(contents);
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void collectBuildFiles(File directory, Set<File> buildFiles) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String name = child.getName();
+            if (child.isDirectory()) {
+                // outputs and caches never contain build files
+                if (name.startsWith(".") || name.equals("build")) {
+                    continue;
+                }
+                if (name.equals("src")) {
+                    // neither do sources, except those of buildSrc which are part of the build
+                    if (directory.getName().equals("buildSrc")) {
+                        collectFiles(child, buildFiles);
+                    }
+                    continue;
+                }
+                collectBuildFiles(child, buildFiles);
+            } else if (BUILD_FILE_NAMES.contains(name) || name.endsWith(".versions.toml")) {
+                buildFiles.add(child);
+            }
+        }
+    }
+
+    private static void collectFiles(File directory, Set<File> files) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectFiles(child, files);
+            } else {
+                files.add(child);
+            }
+        }
+    }
+
+    /**
+     * Adds the local scripts applied with {@code apply from} by the given scripts, and by the
+     * scripts they apply in turn. Paths that cannot be resolved without running the script, or
+     * that point to a URL, are skipped.
+     */
+    private void collectAppliedScripts(Set<File> buildFiles) throws IOException {
+        Deque<File> scripts = new ArrayDeque<>(buildFiles);
+        while (!scripts.isEmpty()) {
+            File script = scripts.removeFirst();
+            String name = script.getName();
+            if (!name.endsWith(".gradle") && !name.endsWith(".gradle.kts")) {
+                continue;
+            }
+            String contents = new String(Files.readAllBytes(script.toPath()), StandardCharsets.UTF_8);
+            Matcher matcher = APPLY_FROM.matcher(contents);
+            while (matcher.find()) {
+                File directory = matcher.group(1) != null ? mRoot : script.getParentFile();
+                File applied = resolveAppliedScript(directory, matcher.group(2));
+                if (applied != null && applied.isFile() && buildFiles.add(applied)) {
+                    scripts.addLast(applied);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private File resolveAppliedScript(File directory, String path) {
+        if (path.contains("://")) {
+            return null;
+        }
+        for (String rootDir : Arrays.asList("$rootDir/", "${rootDir}/",
+                "$rootProject.projectDir/", "${rootProject.projectDir}/")) {
+            if (path.startsWith(rootDir)) {
+                return new File(mRoot, path.substring(rootDir.length()));
+            }
+        }
+        if (path.contains("$")) {
+            return null;
+        }
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(directory, path);
+    }
+
+    /**
+     * Returns the stored model of the project, or {@code null} if there is none or the files it
+     * depends on changed since it was stored.
+     */
+    @Nullable
+    List<ModuleModel> load(@NonNull String fingerprint) {
+        if (!mCacheFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mCacheFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return null;
+            }
+            if (!fingerprint.equals(input.readUTF())) {
+                return null;
+            }
+            int moduleCount = input.readInt();
+            List<ModuleModel> modules = new ArrayList<>(moduleCount);
+            for (int i = 0; i < moduleCount; i++) {
+                String name = input.readUTF();
+                File projectDirectory = new File(input.readUTF());
+                int contentRootCount = input.readInt();
+                List<ContentRootModel> contentRoots = new ArrayList<>(contentRootCount);
+                for (int j = 0; j < contentRootCount; j++) {
+                    File rootDirectory = new File(input.readUTF());
+                    contentRoots.add(new ContentRootModel(rootDirectory, readFiles(input)));
+                }
+                List<File> libraries = readFiles(input);
+                int moduleDependencyCount = input.readInt();
+                List<String> moduleDependencies = new ArrayList<>(moduleDependencyCount);
+                for (int j = 0; j < moduleDependencyCount; j++) {
+                    moduleDependencies.add(input.readUTF());
+                }
+                modules.add(new ModuleModel(name, projectDirectory, contentRoots, libraries,
+                        moduleDependencies));
+            }
+            return modules;
+        } catch (IOException e) {
+            // the cache is corrupted, the model will be built again
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given model, built while the build files had the given fingerprint.
+     */
+    void store(@NonNull String fingerprint, @NonNull List<ModuleModel> modules) throws IOException {
+        File directory = mCacheFile.getParentFile();
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        File tempFile = new File(directory, mCacheFile.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(fingerprint);
+            output.writeInt(modules.size());
+            for (ModuleModel module : modules) {
+                output.writeUTF(module.getName());
+                output.writeUTF(module.getProjectDirectory().getAbsolutePath());
+                output.writeInt(module.getContentRoots().size());
+                for (ContentRootModel contentRoot : module.getContentRoots()) {
+                    output.writeUTF(contentRoot.getRootDirectory().getAbsolutePath());
+                    writeFiles(output, contentRoot.getSourceDirectories());
+                }
+                writeFiles(output, module.getLibraries());
+                output.writeInt(module.getModuleDependencies().size());
+                for (String moduleDependency : module.getModuleDependencies()) {
+                    output.writeUTF(moduleDependency);
+                }
+            }
+        }
+        Files.move(tempFile.toPath(), mCacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static List<File> readFiles(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        List<File> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            files.add(new File(input.readUTF()));
+        }
+        return files;
+    }
+
+    private static void writeFiles(DataOutputStream output, List<File> files) throws IOException {
+        output.writeInt(files.size());
+        for (File file : files) {
+            output.writeUTF(file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * The parts of an {@code IdeaModule} needed to create a module of the project.
+     */
+    static class ModuleModel {
+        private final String mName;
+        private final File mProjectDirectory;
+        private final List<ContentRootModel> mContentRoots;
+        private final List<File> mLibraries;
+        private final List<String> mModuleDependencies;
+
+        ModuleModel(String name,
+                    File projectDirectory,
+                    List<ContentRootModel> contentRoots,
+                    List<File> libraries,
+                    List<String> moduleDependencies) {
+            mName = name;
+            mProjectDirectory = projectDirectory;
+            mContentRoots = contentRoots;
+            mLibraries = libraries;
+            mModuleDependencies = moduleDependencies;
+        }
+
+        String getName() {
+            return mName;
+        }
+
+        File getProjectDirectory() {
+            return mProjectDirectory;
+        }
+
+        List<ContentRootModel> getContentRoots() {
+            return mContentRoots;
+        }
+
+        List<File> getLibraries() {
+            return mLibraries;
+        }
+
+        List<String> getModuleDependencies() {
+            return mModuleDependencies;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ModuleModel that = (ModuleModel) o;
+            return mName.equals(that.mName) &&
+                   mProjectDirectory.equals(that.mProjectDirectory) &&
+                   mContentRoots.equals(that.mContentRoots) &&
+                   mLibraries.equals(that.mLibraries) &&
+                   mModuleDependencies.equals(that.mModuleDependencies);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mName, mProjectDirectory, mContentRoots, mLibraries,
+                    mModuleDependencies);
+        }
+    }
+
+    static class ContentRootModel {
+        private final File mRootDirectory;
+        private final List<File> mSourceDirectories;
+
+        ContentRootModel(File rootDirectory, List<File> sourceDirectories) {
+            mRootDirectory = rootDirectory;
+            mSourceDirectories = sourceDirectories;
+        }
+
+        File getRootDirectory() {
+            return mRootDirectory;
+        }
+
+        List<File> getSourceDirectories() {
+            return mSourceDirectories;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ContentRootModel that = (ContentRootModel) o;
+            return mRootDirectory.equals(that.mRootDirectory) &&
+                   mSourceDirectories.equals(that.mSourceDirectories);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mRootDirectory, mSourceDirectories);
+        }
+    }
+}
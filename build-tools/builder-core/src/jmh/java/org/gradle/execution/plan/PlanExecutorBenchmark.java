@@ -0,0 +1,186 @@
+package org.gradle.execution.plan;
+
+import org.gradle.StartParameter;
+import org.gradle.initialization.DefaultBuildCancellationToken;
+import org.gradle.internal.build.ExecutionResult;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.work.DefaultWorkerLeaseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link DefaultPlanExecutor} with and without work stealing on a synthetic plan of 10k small nodes, where
+ * contention on the state lock dominates the time spent running the nodes themselves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PlanExecutorBenchmark {
+
+    @Param({"false", "true"})
+    public String workStealing;
+
+    @Param({"10000"})
+    public int nodeCount;
+
+    @Param({"100"})
+    public int tokensPerNode;
+
+    private DefaultWorkerLeaseService workerLeaseService;
+    private DefaultPlanExecutor executor;
+    private SyntheticPlan plan;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        DefaultResourceLockCoordinationService coordinationService = new DefaultResourceLockCoordinationService();
+        DefaultParallelismConfiguration parallelismConfiguration = new DefaultParallelismConfiguration(true, Runtime.getRuntime().availableProcessors());
+        workerLeaseService = new DefaultWorkerLeaseService(coordinationService, parallelismConfiguration);
+        StartParameter startParameter = new StartParameter();
+        Map<String, String> systemProperties = new HashMap<>();
+        systemProperties.put(DefaultPlanExecutor.WORK_STEALING_PROPERTY_NAME, workStealing);
+        startParameter.setSystemPropertiesArgs(systemProperties);
+        executor = new DefaultPlanExecutor(parallelismConfiguration, new DefaultExecutorFactory(), workerLeaseService, new DefaultBuildCancellationToken(), coordinationService, startParameter);
+    }
+
+    @Setup(Level.Invocation)
+    public void createPlan() {
+        plan = new SyntheticPlan(nodeCount, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.stop();
+    }
+
+    @Benchmark
+    public void executePlan() {
+        ExecutionResult<Void> result = workerLeaseService.runAsWorkerThread(() -> executor.process(plan, node -> Blackhole.consumeCPU(tokensPerNode)));
+        result.rethrow();
+    }
+
+    /**
+     * A plan of small work items forming a random DAG, where each item depends on a few earlier ones.
+     * All methods are called with the state lock held, so it needs no synchronization of its own.
+     */
+    private static class SyntheticPlan implements WorkSource<Integer> {
+        private final int[] remainingDependencies;
+        private final List<List<Integer>> dependents;
+        private final ArrayDeque<Integer> ready = new ArrayDeque<>();
+        private final List<Throwable> failures = new ArrayList<>();
+        private int started;
+        private int finished;
+
+        SyntheticPlan(int nodeCount, long seed) {
+            Random random = new Random(seed);
+            remainingDependencies = new int[nodeCount];
+            dependents = new ArrayList<>(nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                dependents.add(new ArrayList<>(2));
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                int dependencyCount = i < 100 ? 0 : random.nextInt(4);
+                for (int j = 0; j < dependencyCount; j++) {
+                    int dependency = i - 1 - random.nextInt(Math.min(i, 500));
+                    dependents.get(dependency).add(i);
+                    remainingDependencies[i]++;
+                }
+                if (remainingDependencies[i] == 0) {
+                    ready.add(i);
+                }
+            }
+        }
+
+        @Override
+        public State executionState() {
+            if (started == remainingDependencies.length) {
+                return State.NoMoreWorkToStart;
+            }
+            return ready.isEmpty() ? State.NoWorkReadyToStart : State.MaybeWorkReadyToStart;
+        }
+
+        @Override
+        public Selection<Integer> selectNext() {
+            Integer next = ready.poll();
+            if (next != null) {
+                started++;
+                return Selection.of(next);
+            }
+            return started == remainingDependencies.length ? Selection.noMoreWorkToStart() : Selection.noWorkReadyToStart();
+        }
+
+        @Override
+        public void finishedExecuting(Integer item, @Nullable Throwable failure) {
+            if (failure != null) {
+                failures.add(failure);
+            }
+            finished++;
+            for (Integer dependent : dependents.get(item)) {
+                if (--remainingDependencies[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        @Override
+        public boolean canExecuteOnAnyThread(Integer item) {
+            return true;
+        }
+
+        @Override
+        public boolean canDeferFinishing(Integer item) {
+            return dependents.get(item).isEmpty();
+        }
+
+        @Override
+        public void abortAllAndFail(Throwable t) {
+            failures.add(t);
+        }
+
+        @Override
+        public void cancelExecution() {
+        }
+
+        @Override
+        public boolean allExecutionComplete() {
+            return finished == remainingDependencies.length;
+        }
+
+        @Override
+        public void collectFailures(Collection<? super Throwable> failures) {
+            failures.addAll(this.failures);
+        }
+
+        @Override
+        public Diagnostics healthDiagnostics() {
+            return new Diagnostics("synthetic plan", Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        }
+    }
+}
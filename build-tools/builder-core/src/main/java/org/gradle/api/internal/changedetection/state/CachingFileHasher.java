@@ -0,0 +1,145 @@
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.hash.HashCode;
+
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.Hashes;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A {@link FileHasher} that remembers the hash of each file across builds, keyed by its absolute
+ * path. A remembered hash is reused while the length, the modification time and the file key
+ * (device and inode on Unix) of the file are unchanged, so jars and class files that did not
+ * change are never read again.
+ * <p>
+ * The file key catches files that were replaced by a different file with the same length and
+ * timestamp, which happens when a tool restores the timestamps of the files it copies. It is only
+ * compared when the caller did not provide the metadata of the file, which avoids a second stat.
+ * <p>
+ * The {@link FileTimeStampInspector} rejects timestamps that cannot tell whether a file changed
+ * since its hash was recorded.
+ */
+public class CachingFileHasher implements FileHasher {
+    private final FileHasher delegate;
+    private final PersistentIndexedCache<String, FileInfo> cache;
+    private final StringInterner stringInterner;
+    private final FileTimeStampInspector timestampInspector;
+    private final FileHasherStatistics.Collector statisticsCollector;
+
+    public CachingFileHasher(
+            FileHasher delegate,
+            CrossBuildFileHashCache store,
+            StringInterner stringInterner,
+            FileTimeStampInspector timestampInspector,
+            String cacheName,
+            int inMemorySize,
+            FileHasherStatistics.Collector statisticsCollector
+    ) {
+        this.delegate = delegate;
+        this.stringInterner = stringInterner;
+        this.timestampInspector = timestampInspector;
+        this.statisticsCollector = statisticsCollector;
+        // hashes created by another hash function must never be mixed with the current ones
+        String qualifiedCacheName = cacheName + "-" + Hashes.getFileContentHashFunctionName();
+        this.cache = store.createCache(
+                PersistentIndexedCacheParameters.of(qualifiedCacheName, BaseSerializerFactory.STRING_SERIALIZER, new FileInfoSerializer()),
+                inMemorySize,
+                true);
+    }
+
+    @Override
+    public HashCode hash(File file) {
+        BasicFileAttributes attributes = readAttributes(file);
+        return hash(file, attributes.size(), attributes.lastModifiedTime().toMillis(), fileKeyOf(attributes));
+    }
+
+    @Override
+    public HashCode hash(File file, long length, long lastModified) {
+        return hash(file, length, lastModified, null);
+    }
+
+    private HashCode hash(File file, long length, long lastModified, @Nullable String fileKey) {
+        String absolutePath = file.getAbsolutePath();
+        FileInfo info = cache.getIfPresent(absolutePath);
+        if (info != null
+                && info.length == length
+                && info.timestamp == lastModified
+                && (fileKey == null || info.fileKey == null || fileKey.equals(info.fileKey))
+                && timestampInspector.timestampCanBeUsedToDetectFileChange(absolutePath, lastModified)) {
+            return info.hash;
+        }
+
+        HashCode hash = delegate.hash(file, length, lastModified);
+        statisticsCollector.reportFileHashed(length);
+        cache.put(stringInterner.intern(absolutePath), new FileInfo(hash, length, lastModified, fileKey));
+        return hash;
+    }
+
+    public void discard(String path) {
+        cache.remove(path);
+    }
+
+    private static BasicFileAttributes readAttributes(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s'.", file), e);
+        }
+    }
+
+    @Nullable
+    private static String fileKeyOf(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return fileKey == null ? null : fileKey.toString();
+    }
+
+    static class FileInfo {
+        private final HashCode hash;
+        private final long length;
+        private final long timestamp;
+        @Nullable
+        private final String fileKey;
+
+        FileInfo(HashCode hash, long length, long timestamp, @Nullable String fileKey) {
+            this.hash = hash;
+            this.length = length;
+            this.timestamp = timestamp;
+            this.fileKey = fileKey;
+        }
+    }
+
+    private static class FileInfoSerializer extends AbstractSerializer<FileInfo> {
+        private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
+
+        @Override
+        public FileInfo read(Decoder decoder) throws IOException {
+            HashCode hash = hashCodeSerializer.read(decoder);
+            long length = decoder.readLong();
+            long timestamp = decoder.readLong();
+            String fileKey = decoder.readNullableString();
+            return new FileInfo(hash, length, timestamp, fileKey);
+        }
+
+        @Override
+        public void write(Encoder encoder, FileInfo value) throws IOException {
+            hashCodeSerializer.write(encoder, value.hash);
+            encoder.writeLong(value.length);
+            encoder.writeLong(value.timestamp);
+            encoder.writeNullableString(value.fileKey);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.gradle.api.internal.changedetection.state;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Decides whether the timestamp of a file can be used to detect changes to it.
+ * <p>
+ * File systems store timestamps with a limited resolution, so a file that is changed again within
+ * the same tick keeps its timestamp. A file whose timestamp is the same as the time of the end of
+ * the last build could have been changed after its hash was recorded, so its timestamp is not used.
+ */
+public abstract class FileTimeStampInspector {
+    private final File workDir;
+    private final File markerFile;
+    private long lastBuildTimestamp;
+
+    protected FileTimeStampInspector(File workDir) {
+        this.workDir = workDir;
+        this.markerFile = new File(workDir, "last-build.bin");
+    }
+
+    /**
+     * Returns the time of the end of the last build, as seen by the file system.
+     */
+    protected long getLastBuildTimestamp() {
+        return lastBuildTimestamp;
+    }
+
+    /**
+     * Returns the current time as seen by the file system.
+     */
+    protected long currentTimestamp() {
+        File file = new File(workDir, "this-build.bin");
+        touch(file);
+        return file.lastModified();
+    }
+
+    public boolean timestampCanBeUsedToDetectFileChange(String file, long timestamp) {
+        return timestamp != lastBuildTimestamp;
+    }
+
+    protected void updateOnStartBuild() {
+        lastBuildTimestamp = markerFile.exists() ? markerFile.lastModified() : 0;
+    }
+
+    protected void updateOnFinishBuild() {
+        touch(markerFile);
+        lastBuildTimestamp = markerFile.lastModified();
+    }
+
+    private static void touch(File file) {
+        file.getParentFile().mkdirs();
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not update %s", file), e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.cache.scopes.GlobalScopedCache;
+import org.gradle.initialization.RootBuildLifecycleListener;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Used for the file hashes of the Gradle user home, which are shared by all builds.
+ * <p>
+ * Files changed during the current build can be changed again within the resolution of their
+ * timestamp, so the hashes recorded for them are discarded at the end of the build instead of
+ * being trusted by the next one.
+ */
+public class GradleUserHomeScopeFileTimeStampInspector extends FileTimeStampInspector implements RootBuildLifecycleListener {
+    private final Object lock = new Object();
+    private final Set<String> filesWithCurrentTimestamp = new HashSet<>();
+    private CachingFileHasher fileHasher;
+    private long currentTimestamp;
+
+    public GradleUserHomeScopeFileTimeStampInspector(GlobalScopedCache cacheRepository) {
+        super(cacheRepository.baseDirForCrossVersionCache("file-changes"));
+    }
+
+    public void attach(CachingFileHasher fileHasher) {
+        this.fileHasher = fileHasher;
+    }
+
+    @Override
+    public void afterStart() {
+        updateOnStartBuild();
+        currentTimestamp = currentTimestamp();
+    }
+
+    @Override
+    public boolean timestampCanBeUsedToDetectFileChange(String file, long timestamp) {
+        if (timestamp >= currentTimestamp) {
+            synchronized (lock) {
+                filesWithCurrentTimestamp.add(file);
+            }
+        }
+        return super.timestampCanBeUsedToDetectFileChange(file, timestamp);
+    }
+
+    @Override
+    public void beforeComplete() {
+        updateOnFinishBuild();
+        synchronized (lock) {
+            try {
+                // these files have an unreliable timestamp, discard their hashes and hash them again next time
+                for (String path : filesWithCurrentTimestamp) {
+                    fileHasher.discard(path);
+                }
+            } finally {
+                filesWithCurrentTimestamp.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.gradle.execution.plan;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The longest chain of dependent nodes in an execution plan, weighted by the duration of each
+ * node. However many workers are available, the plan cannot finish faster than its critical path.
+ * <p>
+ * The priority of a node is the length of the longest path from the node to the end of the
+ * plan, its own duration included. Starting the nodes with the highest priority first keeps the
+ * critical path from being delayed by work that has slack.
+ */
+class CriticalPath {
+    private final Map<Node, Long> priorities;
+    private final List<Node> nodes;
+    private final long duration;
+
+    private CriticalPath(Map<Node, Long> priorities, List<Node> nodes, long duration) {
+        this.priorities = priorities;
+        this.nodes = nodes;
+        this.duration = duration;
+    }
+
+    /**
+     * Predicts the critical path of the given nodes from the estimated duration of each node.
+     * Nodes without an estimate take no time.
+     */
+    static CriticalPath predict(Collection<Node> plan, Map<Node, Long> estimates) {
+        Map<Node, Long> priorities = new IdentityHashMap<>();
+        Map<Node, Node> next = new IdentityHashMap<>();
+        for (Node node : plan) {
+            computePriority(node, plan, estimates, priorities, next);
+        }
+        // shouldRunAfter is only honored through the order of the queue, so never move a node before a node it should run after, directly or through other nodes
+        Map<Node, Long> clamped = new IdentityHashMap<>();
+        for (Node node : plan) {
+            clampPriority(node, priorities, clamped);
+        }
+        priorities.putAll(clamped);
+
+        Node first = null;
+        long duration = 0;
+        for (Node node : plan) {
+            long priority = priorities.get(node);
+            if (first == null || priority > duration) {
+                first = node;
+                duration = priority;
+            }
+        }
+        List<Node> nodes = new ArrayList<>();
+        for (Node node = first; node != null; node = next.get(node)) {
+            nodes.add(node);
+        }
+        return new CriticalPath(priorities, nodes, duration);
+    }
+
+    /**
+     * Computes the priorities of the given node and of the nodes depending on it, without recursion
+     * as dependency chains can be long.
+     */
+    private static void computePriority(Node root, Collection<Node> plan, Map<Node, Long> estimates, Map<Node, Long> priorities, Map<Node, Node> next) {
+        if (priorities.containsKey(root)) {
+            return;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.peek();
+            boolean dependentsComputed = true;
+            for (Node dependent : node.getDependencyPredecessors()) {
+                if (!priorities.containsKey(dependent) && plan.contains(dependent)) {
+                    stack.push(dependent);
+                    dependentsComputed = false;
+                }
+            }
+            if (!dependentsComputed) {
+                continue;
+            }
+            stack.pop();
+            if (priorities.containsKey(node)) {
+                continue;
+            }
+            long longestDependent = 0;
+            Node nextNode = null;
+            for (Node dependent : node.getDependencyPredecessors()) {
+                Long priority = priorities.get(dependent);
+                if (priority != null && (nextNode == null || priority > longestDependent)) {
+                    longestDependent = priority;
+                    nextNode = dependent;
+                }
+            }
+            priorities.put(node, estimates.getOrDefault(node, 0L) + longestDependent);
+            if (nextNode != null) {
+                next.put(node, nextNode);
+            }
+        }
+    }
+
+    /**
+     * Lowers the priority of the given node and of the nodes it should run after to the lowest priority of the nodes they should run after,
+     * directly or transitively, without recursion as shouldRunAfter chains can be long.
+     */
+    private static void clampPriority(Node root, Map<Node, Long> priorities, Map<Node, Long> clamped) {
+        if (clamped.containsKey(root)) {
+            return;
+        }
+        Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.peek();
+            if (visited.add(node)) {
+                for (Node successor : shouldSuccessorsOf(node)) {
+                    if (priorities.containsKey(successor) && !clamped.containsKey(successor) && !visited.contains(successor)) {
+                        stack.push(successor);
+                    }
+                }
+                continue;
+            }
+            stack.pop();
+            if (clamped.containsKey(node)) {
+                continue;
+            }
+            long priority = priorities.get(node);
+            for (Node successor : shouldSuccessorsOf(node)) {
+                // a successor that is not clamped yet is part of a cycle, use its own priority
+                Long successorPriority = clamped.containsKey(successor) ? clamped.get(successor) : priorities.get(successor);
+                if (successorPriority != null && successorPriority < priority) {
+                    priority = successorPriority;
+                }
+            }
+            clamped.put(node, priority);
+        }
+    }
+
+    private static Set<Node> shouldSuccessorsOf(Node node) {
+        return node instanceof TaskNode ? ((TaskNode) node).getShouldSuccessors() : Collections.emptySet();
+    }
+
+    /**
+     * Reconstructs the critical path of an execution from the start and finish time of each node.
+     * Starting from the node that finished last, the path follows the dependency that finished last,
+     * which is the one the node was waiting for.
+     */
+    static CriticalPath measure(Map<Node, Long> startTimes, Map<Node, Long> finishTimes) {
+        Node last = null;
+        for (Map.Entry<Node, Long> entry : finishTimes.entrySet()) {
+            if (last == null || entry.getValue() > finishTimes.get(last)) {
+                last = entry.getKey();
+            }
+        }
+        if (last == null) {
+            return new CriticalPath(Collections.emptyMap(), Collections.emptyList(), 0);
+        }
+
+        List<Node> nodes = new ArrayList<>();
+        Node node = last;
+        while (node != null) {
+            nodes.add(node);
+            Node waitedFor = null;
+            for (Node dependency : node.getDependencySuccessors()) {
+                Long finishTime = finishTimes.get(dependency);
+                if (finishTime != null && (waitedFor == null || finishTime > finishTimes.get(waitedFor))) {
+                    waitedFor = dependency;
+                }
+            }
+            node = waitedFor;
+        }
+        Collections.reverse(nodes);
+        long duration = finishTimes.get(last) - startTimes.get(nodes.get(0));
+        return new CriticalPath(Collections.emptyMap(), nodes, duration);
+    }
+
+    /**
+     * Returns the priority of the given node, or {@code null} if the node was not part of the
+     * plan when the priorities were computed.
+     */
+    @Nullable
+    Long getPriority(Node node) {
+        return priorities.get(node);
+    }
+
+    List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the length of the path in milliseconds.
+     */
+    long getDuration() {
+        return duration;
+    }
+}
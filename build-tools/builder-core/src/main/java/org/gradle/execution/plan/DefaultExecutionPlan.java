@@ -10,6 +10,7 @@ import org.gradle.api.NonNullApi;
 import org.gradle.api.Task;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
+import org.gradle.internal.MutableBoolean;
 import org.gradle.internal.Pair;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
@@ -23,14 +24,17 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -68,6 +72,13 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
     private final Set<Node> finalizers = new LinkedHashSet<>();
     private final Set<Node> preExecutionNodesVisited = new HashSet<>();
     private final OrdinalNodeAccess ordinalNodeAccess;
+    @Nullable
+    private final NodeDurationHistory durationHistory;
+    private final Map<Node, Long> startTimes = new IdentityHashMap<>();
+    private final Map<Node, Long> finishTimes = new IdentityHashMap<>();
+    private Map<Node, Long> estimatedDurations = Collections.emptyMap();
+    @Nullable
+    private CriticalPath predictedCriticalPath;
     private Consumer<LocalTaskNode> completionHandler = localTaskNode -> {
     };
 
@@ -81,6 +92,10 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
 
     private boolean buildCancelled;
 
+    // Whether the execution has been aborted, and whether every node has been aborted rather than only the nodes that can be canceled
+    private volatile boolean aborted;
+    private boolean abortedAll;
+
     public DefaultExecutionPlan(
             String displayName,
             TaskNodeFactory taskNodeFactory,
@@ -89,6 +104,22 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
             ExecutionNodeAccessHierarchy outputHierarchy,
             ExecutionNodeAccessHierarchy destroyableHierarchy,
             ResourceLockCoordinationService lockCoordinator
+    ) {
+        this(displayName, taskNodeFactory, ordinalGroupFactory, dependencyResolver, outputHierarchy, destroyableHierarchy, lockCoordinator, null);
+    }
+
+    /**
+     * Creates a plan that starts the nodes on the predicted critical path first, when a duration history is given.
+     */
+    public DefaultExecutionPlan(
+            String displayName,
+            TaskNodeFactory taskNodeFactory,
+            OrdinalGroupFactory ordinalGroupFactory,
+            TaskDependencyResolver dependencyResolver,
+            ExecutionNodeAccessHierarchy outputHierarchy,
+            ExecutionNodeAccessHierarchy destroyableHierarchy,
+            ResourceLockCoordinationService lockCoordinator,
+            @Nullable NodeDurationHistory durationHistory
     ) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
@@ -97,6 +128,7 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
         this.destroyableHierarchy = destroyableHierarchy;
         this.lockCoordinator = lockCoordinator;
         this.ordinalNodeAccess = new OrdinalNodeAccess(ordinalGroupFactory);
+        this.durationHistory = durationHistory;
     }
 
     @Override
@@ -217,6 +249,13 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
         ).run();
         dependencyResolver.clear();
         executionQueue.setNodes(nodeMapping);
+        if (durationHistory != null) {
+            estimatedDurations = durationHistory.getEstimatedDurations(nodeMapping);
+            if (!estimatedDurations.isEmpty()) {
+                predictedCriticalPath = CriticalPath.predict(nodeMapping, estimatedDurations);
+                executionQueue.sortByPriority(predictedCriticalPath);
+            }
+        }
     }
 
     @Override
@@ -239,6 +278,9 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
     @Override
     public void close() {
         lockCoordinator.removeLockReleaseListener(resourceUnlockListener);
+        if (durationHistory != null && !finishTimes.isEmpty()) {
+            recordDurations(durationHistory);
+        }
         completionHandler = localTaskNode -> {
         };
         for (Node node : nodeMapping) {
@@ -257,6 +299,53 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
         finalizers.clear();
         preExecutionNodesVisited.clear();
         ordinalNodeAccess.reset();
+        startTimes.clear();
+        finishTimes.clear();
+        aborted = false;
+        abortedAll = false;
+        estimatedDurations = Collections.emptyMap();
+        predictedCriticalPath = null;
+    }
+
+    private void recordDurations(NodeDurationHistory durationHistory) {
+        Map<Node, Long> durations = new IdentityHashMap<>();
+        for (Map.Entry<Node, Long> entry : finishTimes.entrySet()) {
+            Node node = entry.getKey();
+            // a failed node usually stopped early, so its duration says little about the next execution
+            if (node.isSuccessful()) {
+                durations.put(node, entry.getValue() - startTimes.get(node));
+            }
+        }
+        durationHistory.recordDurations(durations);
+        if (!durationHistory.isReportEnabled()) {
+            return;
+        }
+
+        CriticalPath actualCriticalPath = CriticalPath.measure(startTimes, finishTimes);
+        StringBuilder report = new StringBuilder();
+        report.append("Critical path of ").append(displayName).append('\n');
+        if (predictedCriticalPath != null) {
+            report.append("Predicted: ").append(predictedCriticalPath.getDuration()).append(" ms\n");
+            appendPath(report, predictedCriticalPath);
+        } else {
+            report.append("Predicted: no duration history\n");
+        }
+        report.append("Actual: ").append(actualCriticalPath.getDuration()).append(" ms\n");
+        appendPath(report, actualCriticalPath);
+        durationHistory.writeReport(report.toString());
+    }
+
+    private void appendPath(StringBuilder report, CriticalPath path) {
+        report.append(format("  %10s %10s  %s\n", "estimated", "actual", "node"));
+        for (Node node : path.getNodes()) {
+            Long estimate = estimatedDurations.get(node);
+            Long startTime = startTimes.get(node);
+            Long finishTime = finishTimes.get(node);
+            report.append(format("  %10s %10s  %s\n",
+                    estimate == null ? "-" : estimate + " ms",
+                    finishTime == null ? "-" : (finishTime - startTime) + " ms",
+                    node));
+        }
     }
 
     private void resourceUnlocked(ResourceLock resourceLock) {
@@ -636,6 +725,9 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
 
     private void recordNodeExecutionStarted(Node node) {
         runningNodes.add(node);
+        if (durationHistory != null) {
+            startTimes.put(node, TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+        }
     }
 
     private void recordNodeCompleted(Node node) {
@@ -670,11 +762,44 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
         }
     }
 
+    @Override
+    public boolean canExecuteOnAnyThread(Node node) {
+        lockCoordinator.assertHasStateLock();
+        // project and shared resource locks are owned by the thread that acquired them in selectNext()
+        return node.getProjectToLock() == null && node.getResourcesToLock().isEmpty();
+    }
+
+    @Override
+    public boolean canDeferFinishing(Node node) {
+        if (!canExecuteOnAnyThread(node)) {
+            return false;
+        }
+        // the nodes waiting for this one can't start before it is finished, so finishing it must not wait for a batch
+        MutableBoolean hasWaitingNodes = new MutableBoolean();
+        node.visitAllNodesWaitingForThisNode(waitingNode -> {
+            if (!waitingNode.isComplete()) {
+                hasWaitingNodes.set(true);
+            }
+        });
+        return !hasWaitingNodes.get();
+    }
+
     @Override
     public void finishedExecuting(Node node, @Nullable Throwable failure) {
+        finishedExecuting(node, failure, -1, System.nanoTime());
+    }
+
+    @Override
+    public void finishedExecuting(Node node, @Nullable Throwable failure, long startTime, long finishTime) {
         lockCoordinator.assertHasStateLock();
         try {
             runningNodes.remove(node);
+            if (durationHistory != null && startTimes.containsKey(node)) {
+                if (startTime >= 0) {
+                    startTimes.put(node, TimeUnit.NANOSECONDS.toMillis(startTime));
+                }
+                finishTimes.put(node, TimeUnit.NANOSECONDS.toMillis(finishTime));
+            }
 
             if (failure != null) {
                 node.setExecutionFailure(failure);
@@ -712,6 +837,32 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
         }
     }
 
+    @Override
+    public void returnSelected(Node node) {
+        lockCoordinator.assertHasStateLock();
+        try {
+            runningNodes.remove(node);
+            startTimes.remove(node);
+            node.returnToQueue();
+            executionQueue.addFirst(node);
+            maybeNodesReady = true;
+            maybeNodesSelectable = true;
+        } finally {
+            unlockProjectFor(node);
+            unlockSharedResourcesFor(node);
+            invalidNodeRunning = false;
+        }
+        if (aborted) {
+            // The node missed the abort, as it was not queued at the time
+            abortExecution(abortedAll);
+        }
+    }
+
+    @Override
+    public boolean isAborted() {
+        return aborted;
+    }
+
     private void maybeNodeReady(Node node) {
         if (node.allDependenciesComplete()) {
             maybeNodesReady = true;
@@ -759,6 +910,8 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
     }
 
     private boolean abortExecution(boolean abortAll) {
+        this.aborted = true;
+        this.abortedAll |= abortAll;
         boolean aborted = false;
         executionQueue.restart();
         while (executionQueue.hasNext()) {
@@ -915,6 +1068,27 @@ public class DefaultExecutionPlan implements ExecutionPlan, WorkSource<Node> {
             nodes.remove(nextPos);
         }
 
+        /**
+         * Order the nodes by descending priority on the given critical path, keeping the current order of nodes with the same priority.
+         */
+        public void sortByPriority(CriticalPath criticalPath) {
+            nodes.sort(Comparator.comparingLong((Node node) -> {
+                Long priority = criticalPath.getPriority(node);
+                return priority == null ? 0 : priority;
+            }).reversed());
+            nextPos = 0;
+        }
+
+        /**
+         * Add the given node to the front of the queue. Leave the current node unchanged.
+         */
+        public void addFirst(Node node) {
+            nodes.add(0, node);
+            if (nextPos > 0) {
+                nextPos++;
+            }
+        }
+
         /**
          * Move the given node to the front of the queue. Leave the current node unchanged.
          */
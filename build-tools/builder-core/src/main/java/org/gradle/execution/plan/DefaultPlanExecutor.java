@@ -16,6 +16,7 @@ import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.logging.text.TreeFormatter;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLockState;
 import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
 import org.gradle.internal.work.WorkerLeaseService;
 
@@ -25,13 +26,18 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.ToLongFunction;
 
@@ -41,6 +47,14 @@ import static org.gradle.internal.resources.ResourceLockState.Disposition.RETRY;
 @NonNullApi
 public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
     public static final String STAT_PROPERTY_NAME = "org.gradle.internal.executor.stats";
+    /**
+     * When set to {@code true}, the executor threads select work in batches and share it through per-worker queues.
+     */
+    public static final String WORK_STEALING_PROPERTY_NAME = "org.gradle.internal.executor.workstealing";
+    /**
+     * The maximum number of items a worker selects, or finishes, in a single acquisition of the state lock when work stealing is enabled.
+     */
+    private static final int MAX_BATCH_SIZE = 8;
     private static final Logger LOGGER = Logging.getLogger(DefaultPlanExecutor.class);
     private final int executorCount;
     private final WorkerLeaseService workerLeaseService;
@@ -50,6 +64,8 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
     private final MergedQueues queue;
     private final ExecutorState state = new ExecutorState();
     private final ExecutorStats stats;
+    @Nullable
+    private final WorkStealingQueues workStealingQueues;
 
     public DefaultPlanExecutor(
             ParallelismConfiguration parallelismConfiguration,
@@ -69,6 +85,7 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
         this.executorCount = numberOfParallelExecutors;
         this.workerLeaseService = workerLeaseService;
         this.stats = startParameter.getSystemPropertiesArgs().getOrDefault(STAT_PROPERTY_NAME, "false").equalsIgnoreCase("true") ? new CollectingExecutorStats(state) : state;
+        this.workStealingQueues = startParameter.getSystemPropertiesArgs().getOrDefault(WORK_STEALING_PROPERTY_NAME, "false").equalsIgnoreCase("true") ? new WorkStealingQueues() : null;
         this.queue = new MergedQueues(coordinationService, false);
         this.executor = executorFactory.create("Execution worker");
     }
@@ -93,7 +110,7 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
         WorkerLease currentWorkerLease = workerLeaseService.getCurrentWorkerLease();
         MergedQueues thisPlanOnly = new MergedQueues(coordinationService, true);
         thisPlanOnly.add(planDetails);
-        new ExecutorWorker(thisPlanOnly, currentWorkerLease, cancellationToken, coordinationService, workerLeaseService, stats).run();
+        new ExecutorWorker(thisPlanOnly, currentWorkerLease, cancellationToken, coordinationService, workerLeaseService, stats, null).run();
 
         List<Throwable> failures = new ArrayList<>();
         awaitCompletion(workSource, currentWorkerLease, failures);
@@ -132,7 +149,7 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
         state.maybeStartWorkers(() -> {
             LOGGER.debug("Using {} parallel executor threads", executorCount);
             for (int i = 1; i < executorCount; i++) {
-                executor.execute(new ExecutorWorker(queue, null, cancellationToken, coordinationService, workerLeaseService, stats));
+                executor.execute(new ExecutorWorker(queue, null, cancellationToken, coordinationService, workerLeaseService, stats, workStealingQueues));
             }
         });
     }
@@ -151,6 +168,8 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
         final WorkSource.Selection<Object> selection;
         final WorkSource<Object> plan;
         final Action<Object> executor;
+        // whether the item may be finished in a batch with later items, decided when it is selected
+        boolean deferFinishing;
 
         public WorkItem(WorkSource.Selection<Object> selection, WorkSource<Object> plan, Action<Object> executor) {
             this.selection = selection;
@@ -285,6 +304,83 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
         }
     }
 
+    /**
+     * The queues of the items that worker threads have selected in a batch but not yet started. Each worker takes items from the
+     * head of its own queue, and when it runs out of work it takes them from the head of the queues of the other workers.
+     * None of this requires the state lock, the items have already been selected and can run on any thread.
+     */
+    private static class WorkStealingQueues {
+        private final List<Deque<WorkItem>> queues = new CopyOnWriteArrayList<>();
+        private final AtomicInteger queuedItems = new AtomicInteger();
+
+        public Deque<WorkItem> register() {
+            Deque<WorkItem> queue = new ConcurrentLinkedDeque<>();
+            queues.add(queue);
+            return queue;
+        }
+
+        public void unregister(Deque<WorkItem> queue) {
+            queues.remove(queue);
+        }
+
+        public void add(Deque<WorkItem> queue, WorkItem workItem) {
+            queuedItems.incrementAndGet();
+            queue.addLast(workItem);
+        }
+
+        @Nullable
+        public WorkItem poll(Deque<WorkItem> queue) {
+            WorkItem workItem = queue.pollFirst();
+            if (workItem != null) {
+                queuedItems.decrementAndGet();
+            }
+            return workItem;
+        }
+
+        /**
+         * Takes an item from the queue of another worker, starting with a random one so that thieves spread over the queues.
+         */
+        @Nullable
+        public WorkItem steal(Deque<WorkItem> ownQueue) {
+            if (queuedItems.get() == 0) {
+                return null;
+            }
+            Object[] candidates = queues.toArray();
+            int start = ThreadLocalRandom.current().nextInt(candidates.length);
+            for (int i = 0; i < candidates.length; i++) {
+                Deque<WorkItem> candidate = Cast.uncheckedCast(candidates[(start + i) % candidates.length]);
+                if (candidate != ownQueue) {
+                    WorkItem workItem = poll(candidate);
+                    if (workItem != null) {
+                        return workItem;
+                    }
+                }
+            }
+            return null;
+        }
+
+        public boolean hasQueuedItems() {
+            return queuedItems.get() > 0;
+        }
+    }
+
+    private static class FinishedItem {
+        final Object item;
+        final WorkSource<Object> plan;
+        @Nullable
+        final Throwable failure;
+        final long startTime;
+        final long finishTime;
+
+        public FinishedItem(Object item, WorkSource<Object> plan, @Nullable Throwable failure, long startTime, long finishTime) {
+            this.item = item;
+            this.plan = plan;
+            this.failure = failure;
+            this.startTime = startTime;
+            this.finishTime = finishTime;
+        }
+    }
+
     private static class ExecutorWorker implements Runnable {
         private final MergedQueues queue;
         private WorkerLease workerLease;
@@ -292,6 +388,12 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
         private final ResourceLockCoordinationService coordinationService;
         private final WorkerLeaseService workerLeaseService;
         private final WorkerStats stats;
+        @Nullable
+        private final WorkStealingQueues workStealingQueues;
+        // items selected by this worker that hold locks owned by this thread, so they cannot be stolen
+        private final Deque<WorkItem> pinnedItems = new ArrayDeque<>();
+        private final List<FinishedItem> finishedItems = new ArrayList<>();
+        private Deque<WorkItem> stealableItems;
 
         private ExecutorWorker(
                 MergedQueues queue,
@@ -299,7 +401,8 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
                 BuildCancellationToken cancellationToken,
                 ResourceLockCoordinationService coordinationService,
                 WorkerLeaseService workerLeaseService,
-                ExecutorStats executorStats
+                ExecutorStats executorStats,
+                @Nullable WorkStealingQueues workStealingQueues
         ) {
             this.queue = queue;
             this.workerLease = workerLease;
@@ -307,6 +410,7 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
             this.coordinationService = coordinationService;
             this.workerLeaseService = workerLeaseService;
             this.stats = executorStats.startWorker();
+            this.workStealingQueues = workStealingQueues;
         }
 
         @Override
@@ -320,14 +424,23 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
                     releaseLeaseOnCompletion = false;
                 }
 
-                while (true) {
-                    WorkItem workItem = getNextItem(workerLease);
-                    if (workItem == null) {
-                        break;
+                if (workStealingQueues != null) {
+                    stealableItems = workStealingQueues.register();
+                }
+                try {
+                    while (true) {
+                        WorkItem workItem = workStealingQueues == null ? getNextItem(workerLease) : getNextItemWithStealing(workerLease);
+                        if (workItem == null) {
+                            break;
+                        }
+                        Object selected = workItem.selection.getItem();
+                        LOGGER.info("{} ({}) started.", selected, Thread.currentThread());
+                        execute(selected, workItem.plan, workItem.executor, workItem.deferFinishing);
+                    }
+                } finally {
+                    if (workStealingQueues != null) {
+                        workStealingQueues.unregister(stealableItems);
                     }
-                    Object selected = workItem.selection.getItem();
-                    LOGGER.info("{} ({}) started.", selected, Thread.currentThread());
-                    execute(selected, workItem.plan, workItem.executor);
                 }
 
                 if (releaseLeaseOnCompletion) {
@@ -338,6 +451,187 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
             }
         }
 
+        /**
+         * Returns the next item selected earlier by this worker, or by another worker when this worker has none. Only when there
+         * are no such items, finishes the items executed so far and selects a new batch of items, using a single acquisition of the state lock.
+         * Items selected earlier are not executed once the build has been canceled or their plan has been aborted, they are returned to their plan instead.
+         *
+         * @return The next item to execute or {@code null} when there are no items remaining
+         */
+        @Nullable
+        private WorkItem getNextItemWithStealing(final WorkerLease workerLease) {
+            WorkItem workItem = pinnedItems.pollFirst();
+            if (workItem == null) {
+                workItem = workStealingQueues.poll(stealableItems);
+            }
+            while (true) {
+                if (workItem != null) {
+                    if (!isAborted(workItem)) {
+                        return workItem;
+                    }
+                    returnUnstartedItems(workItem);
+                }
+                MutableReference<Boolean> steal = MutableReference.of(false);
+                WorkItem selected = selectBatch(workerLease, steal);
+                if (selected != null || !steal.get()) {
+                    return selected;
+                }
+                // Null when the items were taken by their owners in the meantime, check the queue again
+                workItem = workStealingQueues.steal(stealableItems);
+            }
+        }
+
+        private boolean isAborted(WorkItem workItem) {
+            return cancellationToken.isCancellationRequested() || workItem.plan.isAborted();
+        }
+
+        /**
+         * Returns the given item, along with the other items this worker has selected but not started, to their plans. The items pinned to this
+         * worker hold locks owned by this thread, so they are returned here rather than being left for another worker.
+         */
+        private void returnUnstartedItems(WorkItem first) {
+            List<WorkItem> items = new ArrayList<>();
+            items.add(first);
+            items.addAll(pinnedItems);
+            pinnedItems.clear();
+            for (WorkItem item = workStealingQueues.poll(stealableItems); item != null; item = workStealingQueues.poll(stealableItems)) {
+                items.add(item);
+            }
+            coordinationService.withStateLock(() -> {
+                for (WorkItem item : items) {
+                    try {
+                        item.plan.returnSelected(item.selection.getItem());
+                    } catch (Throwable t) {
+                        queue.abortAllAndFail(t);
+                    }
+                }
+                if (cancellationToken.isCancellationRequested()) {
+                    queue.cancelExecution();
+                }
+                coordinationService.notifyStateChange();
+            });
+        }
+
+        /**
+         * Selects up to {@link #MAX_BATCH_SIZE} items, as long as they can run on any thread. The first item is returned and the
+         * rest are made available to the other workers. Before selecting, the items that finished since the last call are marked finished.
+         *
+         * @param steal Set to {@code true} when no item could be selected, but other workers have queued items this worker should take instead of waiting
+         */
+        @Nullable
+        private WorkItem selectBatch(final WorkerLease workerLease, MutableReference<Boolean> steal) {
+            final MutableReference<WorkItem> selected;
+            stats.startSelect();
+            try {
+                selected = MutableReference.empty();
+                coordinationService.withStateLock(resourceLockState -> {
+                    stats.finishWaitingForNextItem();
+                    finishPendingItems();
+                    if (cancellationToken.isCancellationRequested()) {
+                        queue.cancelExecution();
+                    }
+
+                    WorkSource.State state = queue.executionState();
+                    if (state == WorkSource.State.NoMoreWorkToStart) {
+                        return FINISHED;
+                    } else if (state == WorkSource.State.NoWorkReadyToStart) {
+                        return waitOrSteal(workerLease, steal);
+                    }
+
+                    // Else there may be items ready, acquire a worker lease
+                    if (!workerLease.tryLock()) {
+                        stats.startWaitingForNextItem();
+                        // Cannot get a lease to run work
+                        return RETRY;
+                    }
+
+                    WorkSource.Selection<WorkItem> workItem;
+                    try {
+                        workItem = queue.selectNext();
+                    } catch (Throwable t) {
+                        resourceLockState.releaseLocks();
+                        queue.abortAllAndFail(t);
+                        return FINISHED;
+                    }
+                    if (workItem.isNoMoreWorkToStart()) {
+                        return FINISHED;
+                    } else if (workItem.isNoWorkReadyToStart()) {
+                        return waitOrSteal(workerLease, steal);
+                    }
+
+                    selected.set(workItem.getItem());
+                    try {
+                        decideFinishing(workItem.getItem());
+                        selectMoreItems(workItem.getItem());
+                    } catch (Throwable t) {
+                        queue.abortAllAndFail(t);
+                    }
+                    return FINISHED;
+                });
+            } finally {
+                stats.finishSelect();
+            }
+
+            return selected.get();
+        }
+
+        private ResourceLockState.Disposition waitOrSteal(WorkerLease workerLease, MutableReference<Boolean> steal) {
+            if (workStealingQueues.hasQueuedItems() && workerLease.tryLock()) {
+                // Keep the worker lease to run the stolen item
+                steal.set(true);
+                return FINISHED;
+            }
+            stats.startWaitingForNextItem();
+            // Release worker lease while waiting
+            workerLease.unlock();
+            return RETRY;
+        }
+
+        /**
+         * Selects further items while every item selected so far holds no locks owned by this thread. Otherwise, a later selection
+         * could acquire such a lock again and release it when the first of the two items finishes.
+         */
+        private void selectMoreItems(WorkItem first) {
+            if (!first.plan.canExecuteOnAnyThread(first.selection.getItem()) || isAborted(first)) {
+                // Once execution is canceled or aborted, the items that should still run are executed one at a time
+                return;
+            }
+            for (int i = 1; i < MAX_BATCH_SIZE; i++) {
+                WorkSource.Selection<WorkItem> next = queue.selectNext();
+                if (next.isNoMoreWorkToStart() || next.isNoWorkReadyToStart()) {
+                    return;
+                }
+                WorkItem workItem = next.getItem();
+                decideFinishing(workItem);
+                if (!workItem.plan.canExecuteOnAnyThread(workItem.selection.getItem())) {
+                    pinnedItems.addLast(workItem);
+                    return;
+                }
+                workStealingQueues.add(stealableItems, workItem);
+            }
+        }
+
+        private static void decideFinishing(WorkItem workItem) {
+            workItem.deferFinishing = workItem.plan.canDeferFinishing(workItem.selection.getItem());
+        }
+
+        private void finishPendingItems() {
+            coordinationService.assertHasStateLock();
+            if (finishedItems.isEmpty()) {
+                return;
+            }
+            for (FinishedItem finishedItem : finishedItems) {
+                try {
+                    finishedItem.plan.finishedExecuting(finishedItem.item, finishedItem.failure, finishedItem.startTime, finishedItem.finishTime);
+                } catch (Throwable t) {
+                    queue.abortAllAndFail(t);
+                }
+            }
+            finishedItems.clear();
+            // Notify other threads that the items are finished as this may unblock further work
+            coordinationService.notifyStateChange();
+        }
+
         /**
          * Selects an item that's ready to execute and executes the provided action against it. If no item is ready, blocks until some
          * can be executed.
@@ -400,8 +694,9 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
             return selected.get();
         }
 
-        private void execute(Object selected, WorkSource<Object> executionPlan, Action<Object> worker) {
+        private void execute(Object selected, WorkSource<Object> executionPlan, Action<Object> worker, boolean deferFinishing) {
             Throwable failure = null;
+            long startTime = System.nanoTime();
             try {
                 stats.startExecute();
                 try {
@@ -412,13 +707,22 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
                     stats.finishExecute();
                 }
             } finally {
-                markFinished(selected, executionPlan, failure);
+                markFinished(selected, executionPlan, failure, deferFinishing, startTime, System.nanoTime());
             }
         }
 
-        private void markFinished(Object selected, WorkSource<Object> executionPlan, @Nullable Throwable failure) {
+        private void markFinished(Object selected, WorkSource<Object> executionPlan, @Nullable Throwable failure, boolean deferFinishing, long startTime, long finishTime) {
             stats.startMarkFinished();
             try {
+                if (workStealingQueues != null) {
+                    // Finish the item with the next selection, unless it failed, it releases locks or unblocks other items,
+                    // or enough items are waiting to be finished. The execution times are passed along so that they don't include the delay
+                    finishedItems.add(new FinishedItem(selected, executionPlan, failure, startTime, finishTime));
+                    if (!deferFinishing || failure != null || finishedItems.size() >= MAX_BATCH_SIZE) {
+                        coordinationService.withStateLock(this::finishPendingItems);
+                    }
+                    return;
+                }
                 coordinationService.withStateLock(() -> {
                     try {
                         executionPlan.finishedExecuting(selected, failure);
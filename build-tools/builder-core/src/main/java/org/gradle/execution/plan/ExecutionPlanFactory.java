@@ -4,6 +4,8 @@ import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.service.scopes.Scopes;
 import org.gradle.internal.service.scopes.ServiceScope;
 
+import javax.annotation.Nullable;
+
 @ServiceScope(Scopes.Build.class)
 public class ExecutionPlanFactory {
     private final String displayName;
@@ -13,6 +15,8 @@ public class ExecutionPlanFactory {
     private final ExecutionNodeAccessHierarchy outputHierarchy;
     private final ExecutionNodeAccessHierarchy destroyableHierarchy;
     private final ResourceLockCoordinationService lockCoordinationService;
+    @Nullable
+    private final NodeDurationHistory durationHistory;
 
     public ExecutionPlanFactory(
             String displayName,
@@ -21,7 +25,8 @@ public class ExecutionPlanFactory {
             TaskDependencyResolver dependencyResolver,
             ExecutionNodeAccessHierarchy outputHierarchy,
             ExecutionNodeAccessHierarchy destroyableHierarchy,
-            ResourceLockCoordinationService lockCoordinationService
+            ResourceLockCoordinationService lockCoordinationService,
+            @Nullable NodeDurationHistory durationHistory
     ) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
@@ -30,9 +35,10 @@ public class ExecutionPlanFactory {
         this.outputHierarchy = outputHierarchy;
         this.destroyableHierarchy = destroyableHierarchy;
         this.lockCoordinationService = lockCoordinationService;
+        this.durationHistory = durationHistory;
     }
 
     public ExecutionPlan createPlan() {
-        return new DefaultExecutionPlan(displayName, taskNodeFactory, ordinalGroupFactory, dependencyResolver, outputHierarchy, destroyableHierarchy, lockCoordinationService);
+        return new DefaultExecutionPlan(displayName, taskNodeFactory, ordinalGroupFactory, dependencyResolver, outputHierarchy, destroyableHierarchy, lockCoordinationService, durationHistory);
     }
 }
\ No newline at end of file
@@ -150,6 +150,11 @@ public class LocalTaskNode extends TaskNode {
         return task.getIdentityPath().toString();
     }
 
+    @Override
+    public String getDurationKey() {
+        return task.getIdentityPath().toString();
+    }
+
     private void addOutputFilesToMutations(Set<OutputFilePropertySpec> outputFilePropertySpecs) {
         final MutationInfo mutations = getMutationInfo();
         outputFilePropertySpecs.forEach(spec -> {
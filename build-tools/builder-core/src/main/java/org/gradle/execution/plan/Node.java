@@ -277,6 +277,14 @@ public abstract class Node {
         nodeStartAction.accept(this);
     }
 
+    /**
+     * Moves a node that has been selected for execution, but has not been started, back to the state it had before it was selected.
+     */
+    public void returnToQueue() {
+        assert state == ExecutionState.EXECUTING;
+        state = ExecutionState.SHOULD_RUN;
+    }
+
     public void finishExecution(Consumer<Node> completionAction) {
         assert state == ExecutionState.EXECUTING;
         state = ExecutionState.EXECUTED;
@@ -537,6 +545,15 @@ public abstract class Node {
         return false;
     }
 
+    /**
+     * Returns the key under which the duration of this node is remembered across builds, or {@code null} if its duration is not remembered.
+     * Nodes that share a key are expected to take about as long as each other.
+     */
+    @Nullable
+    public String getDurationKey() {
+        return null;
+    }
+
     /**
      * Returns the project state that this node requires mutable access to, if any.
      */
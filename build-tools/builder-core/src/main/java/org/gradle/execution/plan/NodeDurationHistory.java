@@ -0,0 +1,149 @@
+package org.gradle.execution.plan;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+import static org.gradle.internal.serialize.BaseSerializerFactory.LONG_SERIALIZER;
+import static org.gradle.internal.serialize.BaseSerializerFactory.STRING_SERIALIZER;
+
+import org.gradle.cache.FileLockManager;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.scopes.BuildScopedCache;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers how long the nodes of a build took to execute in previous builds, so that
+ * {@link DefaultExecutionPlan} can start the nodes on the critical path first.
+ * <p>
+ * Nodes are identified by their {@link Node#getDurationKey() duration key}: tasks by their
+ * identity path and transform nodes by their transformation step and the artifact it is applied
+ * to. Other nodes are not recorded and are estimated to take no time.
+ */
+@ServiceScope(Scopes.Build.class)
+public class NodeDurationHistory implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeDurationHistory.class);
+
+    /**
+     * Set to {@code false} to execute the plan in its original order, without recording durations.
+     */
+    public static final String CRITICAL_PATH_PROPERTY_NAME = "org.gradle.internal.plan.criticalpath";
+
+    /**
+     * Set to {@code true} to write the predicted and actual critical path of every build to {@code build/reports/critical-path.txt}.
+     */
+    public static final String CRITICAL_PATH_REPORT_PROPERTY_NAME = "org.gradle.internal.plan.criticalpath.report";
+
+    private final BuildScopedCache cacheRepository;
+    @Nullable
+    private final File reportFile;
+    private PersistentCache cache;
+    private PersistentIndexedCache<String, Long> durations;
+
+    /**
+     * @param reportFile The file to write the critical path report to, or {@code null} to not write a report
+     */
+    public NodeDurationHistory(BuildScopedCache cacheRepository, @Nullable File reportFile) {
+        this.cacheRepository = cacheRepository;
+        this.reportFile = reportFile;
+    }
+
+    /**
+     * Returns the estimated durations of the given nodes in milliseconds. Nodes that have not
+     * executed before are left out.
+     */
+    public Map<Node, Long> getEstimatedDurations(Iterable<Node> nodes) {
+        PersistentIndexedCache<String, Long> durations = getDurations();
+        return cache.useCache(() -> {
+            Map<Node, Long> estimates = new HashMap<>();
+            for (Node node : nodes) {
+                String key = node.getDurationKey();
+                Long duration = key == null ? null : durations.getIfPresent(key);
+                if (duration != null) {
+                    estimates.put(node, duration);
+                }
+            }
+            return estimates;
+        });
+    }
+
+    /**
+     * Records the measured durations of the given nodes, in milliseconds. Nodes that share a key
+     * are averaged first, so each key is updated once per build. The new estimate of a key is the
+     * average of its previous estimate and the measured duration, so a single slow or up-to-date
+     * execution does not replace the history.
+     */
+    public void recordDurations(Map<Node, Long> measured) {
+        Map<String, long[]> totals = new HashMap<>();
+        for (Map.Entry<Node, Long> entry : measured.entrySet()) {
+            String key = entry.getKey().getDurationKey();
+            if (key != null) {
+                long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+                total[0] += entry.getValue();
+                total[1]++;
+            }
+        }
+        if (totals.isEmpty()) {
+            return;
+        }
+        PersistentIndexedCache<String, Long> durations = getDurations();
+        cache.useCache(() -> {
+            for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+                String key = entry.getKey();
+                long duration = entry.getValue()[0] / entry.getValue()[1];
+                Long previous = durations.getIfPresent(key);
+                durations.put(key, previous == null ? duration : (previous + duration) / 2);
+            }
+        });
+    }
+
+    public boolean isReportEnabled() {
+        return reportFile != null;
+    }
+
+    /**
+     * Writes the given critical path report to the report file, when {@link #isReportEnabled() enabled}.
+     */
+    public void writeReport(String report) {
+        if (reportFile == null) {
+            return;
+        }
+        LOGGER.info(report);
+        try {
+            Files.createDirectories(reportFile.getParentFile().toPath());
+            Files.write(reportFile.toPath(), report.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOGGER.debug("Could not write critical path report to {}", reportFile, e);
+        }
+    }
+
+    private synchronized PersistentIndexedCache<String, Long> getDurations() {
+        if (durations == null) {
+            cache = cacheRepository
+                    .cache("nodeDurations")
+                    .withDisplayName("node duration history cache")
+                    .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
+                    .open();
+            durations = cache.createCache(PersistentIndexedCacheParameters.of("nodeDurations", STRING_SERIALIZER, LONG_SERIALIZER));
+        }
+        return durations;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+}
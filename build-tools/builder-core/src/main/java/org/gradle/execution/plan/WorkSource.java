@@ -140,6 +140,56 @@ public interface WorkSource<T> {
 
     void finishedExecuting(T item, @Nullable Throwable failure);
 
+    /**
+     * Same as {@link #finishedExecuting(Object, Throwable)}, for an item whose execution started and ended at the given times, as returned by
+     * {@link System#nanoTime()}. These may be earlier than the time the item is finished, when it has been queued after it was selected or
+     * when marking it as finished has been deferred.
+     */
+    default void finishedExecuting(T item, @Nullable Throwable failure, long startTime, long finishTime) {
+        finishedExecuting(item, failure);
+    }
+
+    /**
+     * Returns an item returned by {@link #selectNext()} that will not be executed, because execution has been canceled or aborted since it was
+     * selected. The item is handled as if it had not been selected: it is canceled along with the other items that have not started, or it can
+     * be selected again if it should still run.
+     *
+     * <p>Note: the caller must hold the state lock, and must be the thread that selected the item if it cannot {@link #canExecuteOnAnyThread(Object) execute on any thread}.</p>
+     */
+    default void returnSelected(T item) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns whether execution has been canceled or aborted after a failure, so that the items that have been selected but not started yet
+     * should be {@link #returnSelected(Object) returned} instead of executed.
+     *
+     * <p>Note: the caller does not need to hold the state lock.</p>
+     */
+    default boolean isAborted() {
+        return false;
+    }
+
+    /**
+     * Returns whether the given item, returned by {@link #selectNext()}, may be executed by a worker thread other than the one that selected it.
+     * This is only the case when selecting the item did not acquire any locks that are owned by the selecting thread, such as a project lock.
+     *
+     * <p>Note: the caller must hold the state lock.</p>
+     */
+    default boolean canExecuteOnAnyThread(T item) {
+        return false;
+    }
+
+    /**
+     * Returns whether marking the given item, returned by {@link #selectNext()}, as finished may be delayed to finish it together with other items.
+     * This is only the case when the item can execute on any thread and no other item is waiting for it to finish.
+     *
+     * <p>Note: the caller must hold the state lock.</p>
+     */
+    default boolean canDeferFinishing(T item) {
+        return false;
+    }
+
     void abortAllAndFail(Throwable t);
 
     void cancelExecution();
@@ -71,6 +71,7 @@ import org.gradle.execution.TaskSelector;
 import org.gradle.execution.plan.DefaultNodeValidator;
 import org.gradle.execution.plan.ExecutionNodeAccessHierarchies;
 import org.gradle.execution.plan.ExecutionPlanFactory;
+import org.gradle.execution.plan.NodeDurationHistory;
 import org.gradle.execution.plan.OrdinalGroupFactory;
 import org.gradle.execution.plan.TaskDependencyResolver;
 import org.gradle.execution.plan.TaskNodeDependencyResolver;
@@ -592,14 +593,22 @@ public class BuildScopeServices extends DefaultServiceRegistry {
         return new OrdinalGroupFactory();
     }
 
+    NodeDurationHistory createNodeDurationHistory(BuildScopedCache cacheRepository, BuildLayout buildLayout, StartParameter startParameter) {
+        boolean report = Boolean.parseBoolean(startParameter.getSystemPropertiesArgs().get(NodeDurationHistory.CRITICAL_PATH_REPORT_PROPERTY_NAME));
+        return new NodeDurationHistory(cacheRepository, report ? new File(buildLayout.getRootDirectory(), "build/reports/critical-path.txt") : null);
+    }
+
     ExecutionPlanFactory createExecutionPlanFactory(
             GradleInternal gradleInternal,
             TaskNodeFactory taskNodeFactory,
             OrdinalGroupFactory ordinalGroupFactory,
             TaskDependencyResolver dependencyResolver,
             ExecutionNodeAccessHierarchies executionNodeAccessHierarchies,
-            ResourceLockCoordinationService lockCoordinationService
+            ResourceLockCoordinationService lockCoordinationService,
+            NodeDurationHistory durationHistory,
+            StartParameter startParameter
     ) {
+        boolean criticalPathFirst = Boolean.parseBoolean(startParameter.getSystemPropertiesArgs().getOrDefault(NodeDurationHistory.CRITICAL_PATH_PROPERTY_NAME, "true"));
         return new ExecutionPlanFactory(
                 gradleInternal.getIdentityPath().toString(),
                 taskNodeFactory,
@@ -607,7 +616,8 @@ public class BuildScopeServices extends DefaultServiceRegistry {
                 dependencyResolver,
                 executionNodeAccessHierarchies.getOutputHierarchy(),
                 executionNodeAccessHierarchies.getDestroyableHierarchy(),
-                lockCoordinationService
+                lockCoordinationService,
+                criticalPathFirst ? durationHistory : null
         );
     }
     ExecutionNodeAccessHierarchies createExecutionNodeAccessHierarchies() {
@@ -2,8 +2,11 @@ package org.gradle.internal.service.scopes;
 
 import com.google.common.hash.HashCode;
 import org.gradle.StartParameter;
+import org.gradle.api.internal.changedetection.state.CachingFileHasher;
 import org.gradle.api.internal.changedetection.state.CrossBuildFileHashCache;
 import org.gradle.api.internal.changedetection.state.DefaultResourceSnapshotterCacheService;
+import org.gradle.api.internal.changedetection.state.FileHasherStatistics;
+import org.gradle.api.internal.changedetection.state.GradleUserHomeScopeFileTimeStampInspector;
 import org.gradle.api.internal.changedetection.state.ResourceEntryFilter;
 import org.gradle.api.internal.changedetection.state.ResourceFilter;
 import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
@@ -38,7 +41,9 @@ import org.gradle.internal.fingerprint.impl.DefaultFileCollectionSnapshotter;
 import org.gradle.internal.fingerprint.impl.DefaultGenericFileTreeSnapshotter;
 import org.gradle.internal.fingerprint.impl.DefaultInputFingerprinter;
 import org.gradle.internal.fingerprint.impl.FileCollectionFingerprinterRegistrations;
+import org.gradle.internal.hash.DefaultFileHasher;
 import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.service.ServiceRegistration;
@@ -73,6 +78,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 
 public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
@@ -88,6 +94,11 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
 
     public static final String MAX_HIERARCHIES_TO_WATCH_PROPERTY = "org.gradle.vfs.watch.hierarchies.max";
 
+    /**
+     * Directory trees are snapshot in parallel unless this system property is set to {@code false}.
+     */
+    public static final String PARALLEL_SNAPSHOTTING_PROPERTY = "org.gradle.vfs.snapshot.parallel";
+
     private static final int DEFAULT_MAX_HIERARCHIES_TO_WATCH = 50;
     private static final int FILE_HASHER_MEMORY_CACHE_SIZE = 400000;
 
@@ -103,6 +114,21 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
                 : DEFAULT_MAX_HIERARCHIES_TO_WATCH;
     }
 
+    /**
+     * Returns the pool shared by all file system accesses to snapshot directory trees on, or {@code null} when parallel snapshotting is disabled.
+     */
+    @Nullable
+    private static ForkJoinPool getSnapshottingPool() {
+        if ("false".equalsIgnoreCase(System.getProperty(PARALLEL_SNAPSHOTTING_PROPERTY))) {
+            return null;
+        }
+        return SnapshottingPoolHolder.POOL;
+    }
+
+    private static class SnapshottingPoolHolder {
+        private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
     @Nullable
     private static String getSystemProperty(String systemProperty, Map<String, String> systemPropertiesArgs) {
         return systemPropertiesArgs.getOrDefault(systemProperty, System.getProperty(systemProperty));
@@ -124,9 +150,9 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
     }
 
     private static class GlobalScopeServices {
-//        FileHasherStatistics.Collector createCachingFileHasherStatisticsCollector() {
-//            return new FileHasherStatistics.Collector();
-//        }
+        FileHasherStatistics.Collector createCachingFileHasherStatisticsCollector() {
+            return new FileHasherStatistics.Collector();
+        }
 
         DirectorySnapshotterStatistics.Collector createDirectorySnapshotterStatisticsCollector() {
             return new DirectorySnapshotterStatistics.Collector();
@@ -138,18 +164,23 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
             return new CrossBuildFileHashCache(scopedCache, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES);
         }
 
-//        FileHasher createCachingFileHasher(
-//                FileHasherStatistics.Collector statisticsCollector,
-//                CrossBuildFileHashCache fileStore,
-//                FileSystem fileSystem,
-//                GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector,
-//                StreamHasher streamHasher,
-//                StringInterner stringInterner
-//        ) {
-//            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
-//            fileTimeStampInspector.attach(fileHasher);
-//            return fileHasher;
-//        }
+        GradleUserHomeScopeFileTimeStampInspector createFileTimeStampInspector(GlobalScopedCache scopedCache, ListenerManager listenerManager) {
+            GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector = new GradleUserHomeScopeFileTimeStampInspector(scopedCache);
+            listenerManager.addListener(fileTimeStampInspector);
+            return fileTimeStampInspector;
+        }
+
+        FileHasher createCachingFileHasher(
+                FileHasherStatistics.Collector statisticsCollector,
+                CrossBuildFileHashCache fileStore,
+                GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector,
+                StreamHasher streamHasher,
+                StringInterner stringInterner
+        ) {
+            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            fileTimeStampInspector.attach(fileHasher);
+            return fileHasher;
+        }
 
         LocationsWrittenByCurrentBuild createLocationsUpdatedByCurrentBuild(ListenerManager listenerManager) {
             LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild = new LocationsWrittenByCurrentBuild();
@@ -228,7 +259,8 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
                     stat,
                     virtualFileSystem,
                     writeListener,
-                    statisticsCollector
+                    statisticsCollector,
+                    getSnapshottingPool()
 //                    DirectoryScanner.getDefaultExcludes()
             );
 //            listenerManager.addListener(new DefaultExcludesBuildListener(fileSystemAccess) {
@@ -313,7 +345,8 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
                     stat,
                     root,
                     writeListener,
-                    statisticsCollector
+                    statisticsCollector,
+                    getSnapshottingPool()
 //                    DirectoryScanner.getDefaultExcludes()
             );
 
@@ -0,0 +1,141 @@
+package org.gradle.execution.plan;
+
+import static org.junit.Assert.assertEquals;
+
+import org.gradle.api.internal.TaskInternal;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CriticalPathTest {
+
+    @Test
+    public void testNodesOnTheCriticalPathComeFirst() {
+        TestNode x = new TestNode("x");
+        TestNode a = new TestNode("a");
+        TestNode b = new TestNode("b");
+        b.addDependencySuccessor(a);
+        List<Node> plan = Arrays.asList(x, a, b);
+        Map<Node, Long> estimates = new HashMap<>();
+        estimates.put(x, 50L);
+        estimates.put(a, 100L);
+        estimates.put(b, 100L);
+
+        CriticalPath criticalPath = CriticalPath.predict(plan, estimates);
+
+        assertEquals(200, criticalPath.getDuration());
+        assertEquals(Arrays.asList(a, b), criticalPath.getNodes());
+        assertEquals(Arrays.asList(a, b, x), sort(plan, criticalPath));
+    }
+
+    @Test
+    public void testNodesWithoutEstimateKeepTheirOrder() {
+        TestNode a = new TestNode("a");
+        TestNode b = new TestNode("b");
+        TestNode c = new TestNode("c");
+        List<Node> plan = Arrays.asList(a, b, c);
+
+        CriticalPath criticalPath = CriticalPath.predict(plan, Collections.singletonMap(c, 10L));
+
+        assertEquals(Arrays.asList(c, a, b), sort(plan, criticalPath));
+    }
+
+    @Test
+    public void testNodeIsNotMovedBeforeNodesItShouldRunAfter() {
+        TestNode a = new TestNode("a");
+        TestNode b = new TestNode("b");
+        TestNode c = new TestNode("c");
+        TestNode x = new TestNode("x");
+        b.addShouldSuccessor(a);
+        c.addShouldSuccessor(b);
+        List<Node> plan = Arrays.asList(a, b, c, x);
+        Map<Node, Long> estimates = new HashMap<>();
+        estimates.put(a, 5L);
+        estimates.put(b, 20L);
+        estimates.put(c, 1000L);
+        estimates.put(x, 10L);
+
+        CriticalPath criticalPath = CriticalPath.predict(Arrays.asList(c, b, a, x), estimates);
+
+        assertEquals(Long.valueOf(5), criticalPath.getPriority(b));
+        assertEquals(Long.valueOf(5), criticalPath.getPriority(c));
+        assertEquals(Arrays.asList(x, a, b, c), sort(plan, criticalPath));
+    }
+
+    @Test
+    public void testMeasuredPathFollowsTheDependencyThatFinishedLast() {
+        TestNode a = new TestNode("a");
+        TestNode b = new TestNode("b");
+        TestNode c = new TestNode("c");
+        c.addDependencySuccessor(a);
+        c.addDependencySuccessor(b);
+        Map<Node, Long> startTimes = new HashMap<>();
+        Map<Node, Long> finishTimes = new HashMap<>();
+        startTimes.put(a, 0L);
+        finishTimes.put(a, 10L);
+        startTimes.put(b, 0L);
+        finishTimes.put(b, 30L);
+        startTimes.put(c, 30L);
+        finishTimes.put(c, 40L);
+
+        CriticalPath criticalPath = CriticalPath.measure(startTimes, finishTimes);
+
+        assertEquals(Arrays.asList(b, c), criticalPath.getNodes());
+        assertEquals(40, criticalPath.getDuration());
+    }
+
+    private static List<Node> sort(List<Node> plan, CriticalPath criticalPath) {
+        DefaultExecutionPlan.ExecutionQueue queue = new DefaultExecutionPlan.ExecutionQueue();
+        queue.setNodes(plan);
+        queue.sortByPriority(criticalPath);
+        Node[] nodes = new Node[queue.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = queue.next();
+        }
+        return Arrays.asList(nodes);
+    }
+
+    private static class TestNode extends TaskNode {
+        private final String name;
+        private Set<Node> lifecycleSuccessors = new LinkedHashSet<>();
+
+        TestNode(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Set<Node> getLifecycleSuccessors() {
+            return lifecycleSuccessors;
+        }
+
+        @Override
+        public void setLifecycleSuccessors(Set<Node> successors) {
+            lifecycleSuccessors = successors;
+        }
+
+        @Override
+        public TaskInternal getTask() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Throwable getNodeFailure() {
+            return null;
+        }
+
+        @Override
+        public void resolveDependencies(TaskDependencyResolver dependencyResolver) {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -87,6 +87,12 @@ public abstract class TransformationNode extends CreationOrderedNode implements
         return transformationStep.getDisplayName();
     }
 
+    @Override
+    public String getDurationKey() {
+        // a transform takes as long as the artifact it is applied to, so each artifact gets its own estimate
+        return transformationStep.getDisplayName() + " " + artifact.getId().getDisplayName();
+    }
+
     public TransformationStep getTransformationStep() {
         return transformationStep;
     }
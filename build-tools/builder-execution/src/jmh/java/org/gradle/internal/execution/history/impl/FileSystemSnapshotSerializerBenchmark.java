@@ -0,0 +1,217 @@
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.collect.Interners;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.RootTrackingFileSystemSnapshotHierarchyVisitor;
+import org.gradle.internal.snapshot.SnapshotVisitResult;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compact format of {@link FileSystemSnapshotSerializer} with the format it replaced,
+ * on a snapshot resembling merged resources: many resource directories with the same file names.
+ * The previous format is only written here, {@link FileSystemSnapshotSerializer} just reads it.
+ * The size of the encoded snapshot is reported next to the timings as {@code encodedBytes}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileSystemSnapshotSerializerBenchmark {
+
+    private static final String[] QUALIFIERS = {
+            "", "-hdpi", "-mdpi", "-xhdpi", "-xxhdpi", "-xxxhdpi", "-night", "-v21", "-v23", "-land", "-sw600dp"
+    };
+    private static final String[] TYPES = {"drawable", "layout", "mipmap", "values", "xml"};
+
+    // entry types of the previous format
+    private static final byte DIR_OPEN = 0;
+    private static final byte REGULAR_FILE = 1;
+    private static final byte MISSING = 2;
+    private static final byte DIR_CLOSE = 3;
+    private static final byte END = 4;
+
+    @Param({"legacy", "compact"})
+    public String format;
+
+    @Param({"2000"})
+    public int fileCount;
+
+    private FileSystemSnapshotSerializer serializer;
+    private FileSystemSnapshot snapshot;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        serializer = new FileSystemSnapshotSerializer(Interners.newStrongInterner());
+        snapshot = createSnapshot(new Random(0));
+        encoded = write();
+    }
+
+    @Benchmark
+    public byte[] encode(EncodedSize size) throws Exception {
+        byte[] bytes = write();
+        size.encodedBytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public FileSystemSnapshot decode(EncodedSize size) throws Exception {
+        size.encodedBytes = encoded.length;
+        try (KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(encoded))) {
+            return serializer.read(decoder);
+        }
+    }
+
+    /**
+     * Reports the size of the snapshot in the benchmarked format. The counter is assigned rather
+     * than incremented, so it shows the size of one snapshot instead of a sum over invocations.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long encodedBytes;
+    }
+
+    private byte[] write() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream)) {
+            if (format.equals("legacy")) {
+                writeLegacy(encoder, snapshot);
+            } else {
+                serializer.write(encoder, snapshot);
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Writes the format used before the compact one: every entry starts with the ordinal of its
+     * type, and names, access types and hashes are written in full.
+     */
+    private static void writeLegacy(Encoder encoder, FileSystemSnapshot value) throws IOException {
+        value.accept(new RootTrackingFileSystemSnapshotHierarchyVisitor() {
+            @Override
+            public void enterDirectory(DirectorySnapshot directorySnapshot, boolean isRoot) {
+                try {
+                    encoder.writeByte(DIR_OPEN);
+                    writePath(encoder, isRoot, directorySnapshot);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public SnapshotVisitResult visitEntry(FileSystemLocationSnapshot snapshot, boolean isRoot) {
+                snapshot.accept(new FileSystemLocationSnapshot.FileSystemLocationSnapshotVisitor() {
+                    @Override
+                    public void visitRegularFile(RegularFileSnapshot fileSnapshot) {
+                        try {
+                            encoder.writeByte(REGULAR_FILE);
+                            writePath(encoder, isRoot, fileSnapshot);
+                            encoder.writeByte((byte) fileSnapshot.getAccessType().ordinal());
+                            encoder.writeBinary(fileSnapshot.getHash().asBytes());
+                            FileMetadata metadata = fileSnapshot.getMetadata();
+                            encoder.writeSmallLong(metadata.getLastModified());
+                            encoder.writeSmallLong(metadata.getLength());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+
+                    @Override
+                    public void visitMissing(MissingFileSnapshot missingSnapshot) {
+                        try {
+                            encoder.writeByte(MISSING);
+                            writePath(encoder, isRoot, missingSnapshot);
+                            encoder.writeByte((byte) missingSnapshot.getAccessType().ordinal());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+                return SnapshotVisitResult.CONTINUE;
+            }
+
+            @Override
+            public void leaveDirectory(DirectorySnapshot directorySnapshot, boolean isRoot) {
+                try {
+                    encoder.writeByte(DIR_CLOSE);
+                    encoder.writeByte((byte) directorySnapshot.getAccessType().ordinal());
+                    encoder.writeBinary(directorySnapshot.getHash().asBytes());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        encoder.writeByte(END);
+    }
+
+    private static void writePath(Encoder encoder, boolean isRoot, FileSystemLocationSnapshot snapshot) throws IOException {
+        encoder.writeString(isRoot ? snapshot.getAbsolutePath() : snapshot.getName());
+    }
+
+    private FileSystemSnapshot createSnapshot(Random random) {
+        String rootPath = "/home/user/AndroidStudioProjects/MyApplication/app/build/intermediates/merged_res/debug";
+        long buildTime = 1_700_000_000_000L;
+        int filesPerDirectory = Math.max(1, fileCount / (TYPES.length * QUALIFIERS.length));
+        List<FileSystemLocationSnapshot> directories = new ArrayList<>();
+        for (String type : TYPES) {
+            for (String qualifier : QUALIFIERS) {
+                String name = type + qualifier;
+                String path = rootPath + File.separatorChar + name;
+                List<FileSystemLocationSnapshot> files = new ArrayList<>();
+                for (int i = 0; i < filesPerDirectory; i++) {
+                    // the same resource is usually provided for several qualifiers
+                    String fileName = type.equals("values") ? name + "_" + i + ".arsc.flat" : type + "_ic_resource_" + i + ".xml.flat";
+                    files.add(new RegularFileSnapshot(
+                            path + File.separatorChar + fileName,
+                            fileName,
+                            randomHash(random),
+                            DefaultFileMetadata.file(buildTime + random.nextInt(5000), 200 + random.nextInt(20_000), FileMetadata.AccessType.DIRECT)
+                    ));
+                }
+                directories.add(new DirectorySnapshot(path, name, FileMetadata.AccessType.DIRECT, randomHash(random), files));
+            }
+        }
+        return new DirectorySnapshot(rootPath, "debug", FileMetadata.AccessType.DIRECT, randomHash(random), directories);
+    }
+
+    private static HashCode randomHash(Random random) {
+        return Hashing.md5().hashLong(random.nextLong());
+    }
+}
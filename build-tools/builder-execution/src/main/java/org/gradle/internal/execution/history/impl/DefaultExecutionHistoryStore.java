@@ -56,6 +56,7 @@ public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
         this.store = cache.get().createCache(
                 PersistentIndexedCacheParameters.of("executionHistory", String.class, serializer)
                         .withCacheDecorator(inMemoryCacheDecorator)
+                        .withMemoryMapped(true)
         );
     }
 
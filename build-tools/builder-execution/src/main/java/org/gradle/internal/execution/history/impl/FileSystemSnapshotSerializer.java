@@ -24,8 +24,28 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Serializes the output snapshots stored in the execution history.
+ * <p>
+ * Snapshots are written in a compact format, which starts with {@link #COMPACT_FORMAT} and a
+ * version. Each entry is a single byte combining its type and access type, followed by:
+ * <ul>
+ *     <li>the name of the entry. Roots use their absolute path, other entries refer to a table of
+ *     the names already written by the snapshot, so names repeated across directories, like
+ *     {@code values.xml} in every resource directory, are written once. A new name is written
+ *     with the length of the prefix it shares with the previous sibling, which sorts next to it,
+ *     and the rest of the name.</li>
+ *     <li>the hash of files and directories, in a slot of the length written before the first hash.</li>
+ *     <li>the last modified time of files, as the difference to the previous file, and their length.</li>
+ * </ul>
+ * All numbers are variable length. Snapshots written before the compact format start with an
+ * entry type instead, and are still read, so existing history stays valid and is rewritten in
+ * the compact format the next time the work executes.
+ */
 public class FileSystemSnapshotSerializer implements Serializer<FileSystemSnapshot> {
     private enum EntryType {
         DIR_OPEN,
@@ -35,6 +55,16 @@ public class FileSystemSnapshotSerializer implements Serializer<FileSystemSnapsh
         END
     }
 
+    private static final EntryType[] ENTRY_TYPES = EntryType.values();
+    private static final FileMetadata.AccessType[] ACCESS_TYPES = FileMetadata.AccessType.values();
+
+    /**
+     * Starts a snapshot in the compact format. Never the ordinal of an {@link EntryType}, which
+     * snapshots in the previous format start with.
+     */
+    static final byte COMPACT_FORMAT = (byte) 0xC5;
+    static final int COMPACT_FORMAT_VERSION = 1;
+
     private final Interner<String> stringInterner;
 
     public FileSystemSnapshotSerializer(Interner<String> stringInterner) {
@@ -43,14 +73,80 @@ public class FileSystemSnapshotSerializer implements Serializer<FileSystemSnapsh
 
     @Override
     public FileSystemSnapshot read(Decoder decoder) throws Exception {
+        byte first = decoder.readByte();
+        if (first == COMPACT_FORMAT) {
+            return readCompact(decoder);
+        }
+        return readLegacy(decoder, toEntryType(first));
+    }
+
+    private FileSystemSnapshot readCompact(Decoder decoder) throws IOException {
+        int version = decoder.readSmallInt();
+        if (version != COMPACT_FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported file system snapshot format version " + version + ".");
+        }
+        CompactDecoder compactDecoder = new CompactDecoder(decoder);
         SnapshotStack stack = new SnapshotStack();
         stack.push();
         Deque<String> pathTracker = new ArrayDeque<>();
         while (true) {
-            EntryType type = readEntryType(decoder);
+            int tag = decoder.readByte() & 0xFF;
+            EntryType type = ENTRY_TYPES[tag / ACCESS_TYPES.length];
             if (type == EntryType.END) {
                 break;
             }
+            if (type != EntryType.DIR_CLOSE) {
+                String name = pathTracker.isEmpty()
+                        ? stringInterner.intern(decoder.readString())
+                        : compactDecoder.readName();
+                pathTracker.addLast(name);
+                if (type == EntryType.DIR_OPEN) {
+                    compactDecoder.enterDirectory();
+                    stack.push();
+                    continue;
+                }
+            } else {
+                compactDecoder.leaveDirectory();
+            }
+            String internedAbsolutePath;
+            String internedName;
+            String path = pathTracker.removeLast();
+            if (pathTracker.isEmpty()) {
+                internedAbsolutePath = path;
+                internedName = stringInterner.intern(PathUtil.getFileName(internedAbsolutePath));
+            } else {
+                internedAbsolutePath = stringInterner.intern(toAbsolutePath(pathTracker, path));
+                internedName = path;
+            }
+            FileMetadata.AccessType accessType = ACCESS_TYPES[tag % ACCESS_TYPES.length];
+            switch (type) {
+                case REGULAR_FILE:
+                    HashCode contentHash = compactDecoder.readHashCode();
+                    long lastModified = compactDecoder.readLastModified();
+                    long length = decoder.readSmallLong();
+                    stack.add(new RegularFileSnapshot(internedAbsolutePath, internedName, contentHash, DefaultFileMetadata
+                            .file(lastModified, length, accessType)));
+                    break;
+                case MISSING:
+                    stack.add(new MissingFileSnapshot(internedAbsolutePath, internedName, accessType));
+                    break;
+                case DIR_CLOSE:
+                    HashCode merkleHash = compactDecoder.readHashCode();
+                    List<FileSystemLocationSnapshot> children = stack.pop();
+                    stack.add(new DirectorySnapshot(internedAbsolutePath, internedName, accessType, merkleHash, children));
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+        return CompositeFileSystemSnapshot.of(stack.pop());
+    }
+
+    private FileSystemSnapshot readLegacy(Decoder decoder, EntryType firstType) throws IOException {
+        SnapshotStack stack = new SnapshotStack();
+        stack.push();
+        Deque<String> pathTracker = new ArrayDeque<>();
+        for (EntryType type = firstType; type != EntryType.END; type = readEntryType(decoder)) {
             if (type != EntryType.DIR_CLOSE) {
                 String path = decoder.readString();
                 String internedPath = stringInterner.intern(path);
@@ -96,12 +192,16 @@ public class FileSystemSnapshotSerializer implements Serializer<FileSystemSnapsh
 
     @Override
     public void write(Encoder encoder, FileSystemSnapshot value) throws Exception {
+        encoder.writeByte(COMPACT_FORMAT);
+        encoder.writeSmallInt(COMPACT_FORMAT_VERSION);
+        CompactEncoder compactEncoder = new CompactEncoder(encoder);
         value.accept(new RootTrackingFileSystemSnapshotHierarchyVisitor() {
             @Override
             public void enterDirectory(DirectorySnapshot directorySnapshot, boolean isRoot) {
                 try {
-                    writeEntryType(encoder, EntryType.DIR_OPEN);
-                    writePath(encoder, isRoot, directorySnapshot);
+                    writeTag(encoder, EntryType.DIR_OPEN, FileMetadata.AccessType.DIRECT);
+                    compactEncoder.writePath(isRoot, directorySnapshot);
+                    compactEncoder.enterDirectory();
                 } catch (IOException e) {
                     throw new UncheckedIOException(e);
                 }
@@ -113,12 +213,11 @@ public class FileSystemSnapshotSerializer implements Serializer<FileSystemSnapsh
                     @Override
                     public void visitRegularFile(RegularFileSnapshot fileSnapshot) {
                         try {
-                            writeEntryType(encoder, EntryType.REGULAR_FILE);
-                            writePath(encoder, isRoot, fileSnapshot);
-                            writeAccessType(encoder, fileSnapshot.getAccessType());
-                            writeHashCode(encoder, fileSnapshot.getHash());
+                            writeTag(encoder, EntryType.REGULAR_FILE, fileSnapshot.getAccessType());
+                            compactEncoder.writePath(isRoot, fileSnapshot);
+                            compactEncoder.writeHashCode(fileSnapshot.getHash());
                             FileMetadata metadata = fileSnapshot.getMetadata();
-                            encoder.writeSmallLong(metadata.getLastModified());
+                            compactEncoder.writeLastModified(metadata.getLastModified());
                             encoder.writeSmallLong(metadata.getLength());
                         } catch (IOException e) {
                             throw new UncheckedIOException(e);
@@ -128,9 +227,8 @@ public class FileSystemSnapshotSerializer implements Serializer<FileSystemSnapsh
                     @Override
                     public void visitMissing(MissingFileSnapshot missingSnapshot) {
                         try {
-                            writeEntryType(encoder, EntryType.MISSING);
-                            writePath(encoder, isRoot, missingSnapshot);
-                            writeAccessType(encoder, missingSnapshot.getAccessType());
+                            writeTag(encoder, EntryType.MISSING, missingSnapshot.getAccessType());
+                            compactEncoder.writePath(isRoot, missingSnapshot);
                         } catch (IOException e) {
                             throw new UncheckedIOException(e);
                         }
@@ -142,43 +240,171 @@ public class FileSystemSnapshotSerializer implements Serializer<FileSystemSnapsh
             @Override
             public void leaveDirectory(DirectorySnapshot directorySnapshot, boolean isRoot) {
                 try {
-                    writeEntryType(encoder, EntryType.DIR_CLOSE);
-                    writeAccessType(encoder, directorySnapshot.getAccessType());
-                    writeHashCode(encoder, directorySnapshot.getHash());
+                    compactEncoder.leaveDirectory();
+                    writeTag(encoder, EntryType.DIR_CLOSE, directorySnapshot.getAccessType());
+                    compactEncoder.writeHashCode(directorySnapshot.getHash());
                 } catch (IOException e) {
                     throw new UncheckedIOException(e);
                 }
             }
         });
-        encoder.writeByte((byte) EntryType.END.ordinal());
+        writeTag(encoder, EntryType.END, FileMetadata.AccessType.DIRECT);
     }
 
-    private static void writePath(Encoder encoder, boolean isRoot, FileSystemLocationSnapshot snapshot) throws IOException {
-        encoder.writeString(isRoot ? snapshot.getAbsolutePath() : snapshot.getName());
+    private static EntryType readEntryType(Decoder decoder) throws IOException {
+        return toEntryType(decoder.readByte());
     }
 
-    private static EntryType readEntryType(Decoder decoder) throws IOException {
-        return EntryType.values()[decoder.readByte()];
+    private static EntryType toEntryType(byte ordinal) {
+        if (ordinal < 0 || ordinal >= ENTRY_TYPES.length) {
+            throw new IllegalStateException("Unknown file system snapshot entry type " + ordinal + ".");
+        }
+        return ENTRY_TYPES[ordinal];
     }
 
-    private static void writeEntryType(Encoder encoder, EntryType type) throws IOException {
-        encoder.writeByte((byte) type.ordinal());
+    private static void writeTag(Encoder encoder, EntryType type, FileMetadata.AccessType accessType) throws IOException {
+        encoder.writeByte((byte) (type.ordinal() * ACCESS_TYPES.length + accessType.ordinal()));
     }
 
     private static FileMetadata.AccessType readAccessType(Decoder decoder) throws IOException {
         return FileMetadata.AccessType.values()[decoder.readByte()];
     }
 
-    private static void writeAccessType(Encoder encoder, FileMetadata.AccessType accessType) throws IOException {
-        encoder.writeByte((byte) accessType.ordinal());
-    }
-
     private static HashCode readHashCode(Decoder decoder) throws IOException {
         return HashCode.fromBytes(decoder.readBinary());
     }
 
-    private static void writeHashCode(Encoder encoder, HashCode hashCode) throws IOException {
-        encoder.writeBinary(hashCode.asBytes());
+    /**
+     * Tracks what the compact format refers back to while writing a snapshot.
+     */
+    private static class CompactEncoder {
+        private final Encoder encoder;
+        private final Map<String, Integer> names = new HashMap<>();
+        private final Deque<String> previousSiblings = new ArrayDeque<>();
+        private byte[] hashBuffer;
+        private long previousLastModified;
+
+        CompactEncoder(Encoder encoder) {
+            this.encoder = encoder;
+            previousSiblings.addLast("");
+        }
+
+        void writePath(boolean isRoot, FileSystemLocationSnapshot snapshot) throws IOException {
+            if (isRoot) {
+                encoder.writeString(snapshot.getAbsolutePath());
+            } else {
+                writeName(snapshot.getName());
+            }
+        }
+
+        private void writeName(String name) throws IOException {
+            Integer index = names.get(name);
+            if (index != null) {
+                encoder.writeSmallInt(index + 1);
+            } else {
+                int sharedPrefix = sharedPrefixLength(previousSiblings.getLast(), name);
+                encoder.writeSmallInt(0);
+                encoder.writeSmallInt(sharedPrefix);
+                encoder.writeString(name.substring(sharedPrefix));
+                names.put(name, names.size());
+            }
+            previousSiblings.removeLast();
+            previousSiblings.addLast(name);
+        }
+
+        void enterDirectory() {
+            previousSiblings.addLast("");
+        }
+
+        void leaveDirectory() {
+            previousSiblings.removeLast();
+        }
+
+        void writeHashCode(HashCode hashCode) throws IOException {
+            int length = hashCode.bits() / 8;
+            if (hashBuffer == null) {
+                hashBuffer = new byte[length];
+                encoder.writeSmallInt(length);
+            } else if (length != hashBuffer.length) {
+                throw new IllegalArgumentException("Hash " + hashCode + " does not have the length of the other hashes of the snapshot, " + hashBuffer.length + " bytes.");
+            }
+            hashCode.writeBytesTo(hashBuffer, 0, length);
+            encoder.writeBytes(hashBuffer, 0, length);
+        }
+
+        void writeLastModified(long lastModified) throws IOException {
+            long delta = lastModified - previousLastModified;
+            previousLastModified = lastModified;
+            encoder.writeSmallLong((delta << 1) ^ (delta >> 63));
+        }
+
+        private static int sharedPrefixLength(String previous, String name) {
+            int max = Math.min(previous.length(), name.length());
+            int length = 0;
+            while (length < max && previous.charAt(length) == name.charAt(length)) {
+                length++;
+            }
+            // do not split a surrogate pair
+            if (length > 0 && Character.isHighSurrogate(name.charAt(length - 1))) {
+                length--;
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Resolves what the compact format refers back to while reading a snapshot.
+     */
+    private class CompactDecoder {
+        private final Decoder decoder;
+        private final List<String> names = new ArrayList<>();
+        private final Deque<String> previousSiblings = new ArrayDeque<>();
+        private int hashLength = -1;
+        private long previousLastModified;
+
+        CompactDecoder(Decoder decoder) {
+            this.decoder = decoder;
+            previousSiblings.addLast("");
+        }
+
+        String readName() throws IOException {
+            int reference = decoder.readSmallInt();
+            String name;
+            if (reference != 0) {
+                name = names.get(reference - 1);
+            } else {
+                int sharedPrefix = decoder.readSmallInt();
+                String suffix = decoder.readString();
+                name = stringInterner.intern(previousSiblings.getLast().substring(0, sharedPrefix) + suffix);
+                names.add(name);
+            }
+            previousSiblings.removeLast();
+            previousSiblings.addLast(name);
+            return name;
+        }
+
+        void enterDirectory() {
+            previousSiblings.addLast("");
+        }
+
+        void leaveDirectory() {
+            previousSiblings.removeLast();
+        }
+
+        HashCode readHashCode() throws IOException {
+            if (hashLength < 0) {
+                hashLength = decoder.readSmallInt();
+            }
+            byte[] hash = new byte[hashLength];
+            decoder.readBytes(hash);
+            return HashCode.fromBytes(hash);
+        }
+
+        long readLastModified() throws IOException {
+            long zigZag = decoder.readSmallLong();
+            previousLastModified += (zigZag >>> 1) ^ -(zigZag & 1);
+            return previousLastModified;
+        }
     }
 
     private static class SnapshotStack {
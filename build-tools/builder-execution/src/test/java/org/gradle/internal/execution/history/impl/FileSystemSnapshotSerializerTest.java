@@ -0,0 +1,149 @@
+package org.gradle.internal.execution.history.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.Interners;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.internal.snapshot.CompositeFileSystemSnapshot;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotVisitResult;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FileSystemSnapshotSerializerTest {
+
+    private static final String ROOT = File.separator + "project" + File.separator + "build";
+    private static final String VALUES = ROOT + File.separator + "values";
+    private static final String VALUES_NIGHT = ROOT + File.separator + "values-night";
+    private static final String MISSING = File.separator + "project" + File.separator + "missing.txt";
+
+    private final FileSystemSnapshotSerializer serializer = new FileSystemSnapshotSerializer(Interners.newStrongInterner());
+
+    @Test
+    public void testCompactFormatRoundTrip() throws Exception {
+        FileSystemSnapshot snapshot = createSnapshot();
+
+        byte[] bytes = encode(encoder -> serializer.write(encoder, snapshot));
+
+        assertEquals(FileSystemSnapshotSerializer.COMPACT_FORMAT, bytes[0]);
+        assertEquals(describe(snapshot), describe(decode(bytes)));
+    }
+
+    @Test
+    public void testPreviousFormatIsRead() throws Exception {
+        byte[] bytes = encode(encoder -> {
+            // entry types are the ordinals of DIR_OPEN, REGULAR_FILE, MISSING, DIR_CLOSE and END
+            encoder.writeByte((byte) 0);
+            encoder.writeString(ROOT);
+            encoder.writeByte((byte) 0);
+            encoder.writeString("values");
+            writeLegacyFile(encoder, "strings.xml", hash(1), 1_000L, 10L);
+            writeLegacyFile(encoder, "colors.xml", hash(2), 2_000L, 20L);
+            writeLegacyDirectoryEnd(encoder, hash(3));
+            encoder.writeByte((byte) 0);
+            encoder.writeString("values-night");
+            writeLegacyFile(encoder, "colors.xml", hash(4), 1_500L, 30L);
+            writeLegacyDirectoryEnd(encoder, hash(5));
+            writeLegacyDirectoryEnd(encoder, hash(6));
+            encoder.writeByte((byte) 2);
+            encoder.writeString(MISSING);
+            encoder.writeByte((byte) FileMetadata.AccessType.VIA_SYMLINK.ordinal());
+            encoder.writeByte((byte) 4);
+        });
+
+        assertEquals(describe(createSnapshot()), describe(decode(bytes)));
+    }
+
+    private static FileSystemSnapshot createSnapshot() {
+        DirectorySnapshot values = new DirectorySnapshot(VALUES, "values", FileMetadata.AccessType.DIRECT, hash(3), Arrays.asList(
+                file(VALUES, "strings.xml", hash(1), 1_000L, 10L),
+                file(VALUES, "colors.xml", hash(2), 2_000L, 20L)
+        ));
+        DirectorySnapshot valuesNight = new DirectorySnapshot(VALUES_NIGHT, "values-night", FileMetadata.AccessType.DIRECT, hash(5), Arrays.asList(
+                file(VALUES_NIGHT, "colors.xml", hash(4), 1_500L, 30L)
+        ));
+        DirectorySnapshot root = new DirectorySnapshot(ROOT, "build", FileMetadata.AccessType.DIRECT, hash(6), Arrays.asList(values, valuesNight));
+        MissingFileSnapshot missing = new MissingFileSnapshot(MISSING, "missing.txt", FileMetadata.AccessType.VIA_SYMLINK);
+        return CompositeFileSystemSnapshot.of(Arrays.asList(root, missing));
+    }
+
+    private static RegularFileSnapshot file(String parent, String name, HashCode hash, long lastModified, long length) {
+        return new RegularFileSnapshot(parent + File.separator + name, name, hash,
+                DefaultFileMetadata.file(lastModified, length, FileMetadata.AccessType.DIRECT));
+    }
+
+    private static HashCode hash(int value) {
+        return Hashing.md5().hashInt(value);
+    }
+
+    private static void writeLegacyFile(Encoder encoder, String name, HashCode hash, long lastModified, long length) throws Exception {
+        encoder.writeByte((byte) 1);
+        encoder.writeString(name);
+        encoder.writeByte((byte) FileMetadata.AccessType.DIRECT.ordinal());
+        encoder.writeBinary(hash.asBytes());
+        encoder.writeSmallLong(lastModified);
+        encoder.writeSmallLong(length);
+    }
+
+    private static void writeLegacyDirectoryEnd(Encoder encoder, HashCode hash) throws Exception {
+        encoder.writeByte((byte) 3);
+        encoder.writeByte((byte) FileMetadata.AccessType.DIRECT.ordinal());
+        encoder.writeBinary(hash.asBytes());
+    }
+
+    private static byte[] encode(EncoderAction action) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream)) {
+            action.execute(encoder);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private FileSystemSnapshot decode(byte[] bytes) throws Exception {
+        try (KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(bytes))) {
+            return serializer.read(decoder);
+        }
+    }
+
+    /**
+     * Snapshots do not implement equals, so they are compared by what they contain.
+     */
+    private static List<String> describe(FileSystemSnapshot snapshot) {
+        List<String> entries = new ArrayList<>();
+        snapshot.accept(entry -> {
+            StringBuilder description = new StringBuilder()
+                    .append(entry.getType()).append(' ')
+                    .append(entry.getAbsolutePath()).append(' ')
+                    .append(entry.getName()).append(' ')
+                    .append(entry.getAccessType()).append(' ')
+                    .append(entry.getHash());
+            if (entry instanceof RegularFileSnapshot) {
+                FileMetadata metadata = ((RegularFileSnapshot) entry).getMetadata();
+                description.append(' ').append(metadata.getLastModified())
+                        .append(' ').append(metadata.getLength());
+            }
+            entries.add(description.toString());
+            return SnapshotVisitResult.CONTINUE;
+        });
+        return entries;
+    }
+
+    private interface EncoderAction {
+        void execute(Encoder encoder) throws Exception;
+    }
+}
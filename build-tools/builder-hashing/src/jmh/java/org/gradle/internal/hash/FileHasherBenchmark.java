@@ -0,0 +1,106 @@
+package org.gradle.internal.hash;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the hash functions selectable through
+ * {@link Hashes#HASH_FUNCTION_PROPERTY}, and of streamed against memory mapped reads, over a mix
+ * resembling a dependency classpath: a few large AARs and jars among many small class files.
+ * <p>
+ * Every parameter combination runs in its own fork, so the property can be set before
+ * {@link Hashes} is initialized.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileHasherBenchmark {
+
+    private static final int[] ARCHIVE_SIZES = {
+            8 * 1024 * 1024, 3 * 1024 * 1024, 1536 * 1024, 1024 * 1024
+    };
+    private static final int CLASS_FILE_COUNT = 400;
+
+    @Param({"md5", "murmur3_128"})
+    public String function;
+
+    private File directory;
+    private List<File> files;
+    private StreamHasher streamHasher;
+    private FileHasher fileHasher;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        System.setProperty(Hashes.HASH_FUNCTION_PROPERTY, function);
+        streamHasher = new DefaultStreamHasher();
+        fileHasher = new DefaultFileHasher(streamHasher);
+
+        directory = Files.createTempDirectory("file-hasher").toFile();
+        files = new ArrayList<>();
+        Random random = new Random(0);
+        for (int i = 0; i < ARCHIVE_SIZES.length; i++) {
+            files.add(createFile(random, "library" + i + ".aar", ARCHIVE_SIZES[i]));
+        }
+        for (int i = 0; i < CLASS_FILE_COUNT; i++) {
+            // class files are mostly between 1 and 20 KB
+            files.add(createFile(random, "Class" + i + ".class", 1024 + random.nextInt(20 * 1024)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void hashFiles(Blackhole blackhole) {
+        for (File file : files) {
+            blackhole.consume(fileHasher.hash(file, file.length(), file.lastModified()));
+        }
+    }
+
+    @Benchmark
+    public void hashFilesStreamed(Blackhole blackhole) throws IOException {
+        for (File file : files) {
+            try (InputStream inputStream = new FileInputStream(file)) {
+                blackhole.consume(streamHasher.hash(inputStream));
+            }
+        }
+    }
+
+    private File createFile(Random random, String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        File file = new File(directory, name);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+}
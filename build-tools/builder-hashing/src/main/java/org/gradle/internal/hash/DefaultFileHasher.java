@@ -7,9 +7,17 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.io.UncheckedIOException;
 
 public class DefaultFileHasher implements FileHasher {
+
+    /**
+     * Files at least this large are hashed through a memory mapping instead of a stream. Mapping
+     * has a fixed setup cost, so small class files are cheaper to read into a buffer.
+     */
+    private static final long MAPPED_HASHING_THRESHOLD = 1024 * 1024;
+
     private final StreamHasher streamHasher;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
@@ -18,11 +26,23 @@ public class DefaultFileHasher implements FileHasher {
 
     @Override
     public HashCode hash(File file) {
+        return hash(file, file.length());
+    }
+
+    @Override
+    public HashCode hash(File file, long length, long lastModified) {
+        return hash(file, length);
+    }
+
+    private HashCode hash(File file, long length) {
+        if (length >= MAPPED_HASHING_THRESHOLD) {
+            return hashMapped(file);
+        }
         InputStream inputStream;
         try {
             inputStream = new FileInputStream(file);
         } catch (FileNotFoundException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s' as it does not exist.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s' as it does not exist.", file), e);
         }
         try {
             return streamHasher.hash(inputStream);
@@ -35,8 +55,14 @@ public class DefaultFileHasher implements FileHasher {
         }
     }
 
-    @Override
-    public HashCode hash(File file, long length, long lastModified) {
-        return hash(file);
+    private HashCode hashMapped(File file) {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            // hash what is on disk now, like the stream does, even if the file changed since its length was read
+            return streamHasher.hash(randomAccessFile.getChannel(), randomAccessFile.length());
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s' as it does not exist.", file), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s'.", file), e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -8,12 +8,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 
 public class DefaultStreamHasher implements StreamHasher {
     private static final HashCode SIGNATURE = Hashes.signature(DefaultStreamHasher.class);
 
+    /**
+     * Size of the regions mapped at once, keeps the address space used by a single file bounded.
+     */
+    private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
 
     @Override
@@ -21,7 +28,7 @@ public class DefaultStreamHasher implements StreamHasher {
         try {
             return doHash(inputStream, ByteStreams.nullOutputStream());
         } catch (IOException e) {
-            throw new UncheckedIOException("Failed to create MD5 hash for file content.", e);
+            throw new UncheckedIOException("Failed to create hash for file content.", e);
         }
     }
 
@@ -30,10 +37,28 @@ public class DefaultStreamHasher implements StreamHasher {
         return doHash(inputStream, outputStream);
     }
 
+    /**
+     * Hashes the channel through memory mapped regions, which avoids copying large files through
+     * a heap buffer.
+     */
+    @Override
+    public HashCode hash(FileChannel channel, long length) throws IOException {
+        PrimitiveHasher hasher = Hashes.newFileContentHasher();
+        hasher.putHash(SIGNATURE);
+        long position = 0;
+        while (position < length) {
+            long size = Math.min(MAPPED_REGION_SIZE, length - position);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            hasher.putBytes(region);
+            position += size;
+        }
+        return hasher.hash();
+    }
+
     private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
         byte[] buffer = takeBuffer();
         try {
-            PrimitiveHasher hasher = Hashes.newPrimitiveHasher();
+            PrimitiveHasher hasher = Hashes.newFileContentHasher();
             hasher.putHash(SIGNATURE);
             while (true) {
                 int nread = inputStream.read(buffer);
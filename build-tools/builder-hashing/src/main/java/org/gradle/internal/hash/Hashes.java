@@ -8,10 +8,18 @@ import com.google.common.hash.Hashing;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 
 public class Hashes {
-    
+
+    /**
+     * System property used to select the function behind {@link #newFileContentHasher()}, either
+     * {@code murmur3_128} (the default) or {@code md5}.
+     */
+    public static final String HASH_FUNCTION_PROPERTY = "org.gradle.internal.hash.function";
+
     private Hashes() {
 
     }
@@ -24,9 +32,42 @@ public class Hashes {
 
     private static final HashFunction SHA512 = Hashing.sha512();
 
+    /**
+     * A non-cryptographic 128-bit function, several times faster than MD5 on file contents while
+     * producing hashes of the same length.
+     */
+    private static final HashFunction MURMUR3_128 = Hashing.murmur3_128();
 
     private static final HashFunction DEFAULT = MD5;
 
+    private static final String FILE_CONTENT_NAME = System.getProperty(HASH_FUNCTION_PROPERTY, "murmur3_128").toLowerCase(Locale.ROOT);
+
+    /**
+     * Only used for file contents, whose hashes are persisted by caches that are keyed by the name
+     * of the function. Everything else keeps using the default function.
+     */
+    private static final HashFunction FILE_CONTENT = forName(FILE_CONTENT_NAME);
+
+    private static HashFunction forName(String name) {
+        switch (name) {
+            case "md5":
+                return MD5;
+            case "murmur3_128":
+                return MURMUR3_128;
+            default:
+                throw new IllegalArgumentException("Unknown hash function '" + name + "' set by " + HASH_FUNCTION_PROPERTY);
+        }
+    }
+
+    /**
+     * Returns the name of the function used to hash file contents. Anything persisting file content
+     * hashes should store it so that values created by another function are not mixed with the
+     * current ones.
+     */
+    public static String getFileContentHashFunctionName() {
+        return FILE_CONTENT_NAME;
+    }
+
     public static HashCode signature(String signature) {
         Hasher hasher = DEFAULT.newHasher();
         hasher.putString("SIGNATURE", StandardCharsets.UTF_8);
@@ -50,7 +91,18 @@ public class Hashes {
      * Returns a new {@link PrimitiveHasher} based on the default hashing implementation.
      */
     public static PrimitiveHasher newPrimitiveHasher() {
-        Hasher hasher = DEFAULT.newHasher();
+        return newPrimitiveHasher(DEFAULT);
+    }
+
+    /**
+     * Returns a new {@link PrimitiveHasher} based on the function used to hash file contents.
+     */
+    public static PrimitiveHasher newFileContentHasher() {
+        return newPrimitiveHasher(FILE_CONTENT);
+    }
+
+    private static PrimitiveHasher newPrimitiveHasher(HashFunction function) {
+        Hasher hasher = function.newHasher();
         return new PrimitiveHasher() {
             @Override
             public void putBytes(byte[] bytes) {
@@ -62,6 +114,11 @@ public class Hashes {
                 hasher.putBytes(bytes, off, len);
             }
 
+            @Override
+            public void putBytes(ByteBuffer buffer) {
+                hasher.putBytes(buffer);
+            }
+
             @Override
             public void putByte(byte value) {
                 hasher.putByte(value);
@@ -109,7 +166,7 @@ public class Hashes {
     }
 
     /**
-     * Hash the contents of the given {@link java.io.InputStream} with the default hash function.
+     * Hash the contents of the given {@link java.io.InputStream} with the file content hash function.
      */
     public static HashCode hashStream(InputStream stream) throws IOException {
         return new DefaultStreamHasher().hash(stream);
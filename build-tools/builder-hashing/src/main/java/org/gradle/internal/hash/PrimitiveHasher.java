@@ -2,6 +2,8 @@ package org.gradle.internal.hash;
 
 import com.google.common.hash.HashCode;
 
+import java.nio.ByteBuffer;
+
 /**
  * Hasher abstraction that can be fed different kinds of primitives that it then forwards directly to the hash function.
  * Inspired by the Google Guava project – https://github.com/google/guava.
@@ -17,6 +19,20 @@ public interface PrimitiveHasher {
      */
     void putBytes(byte[] bytes, int off, int len);
 
+    /**
+     * Feed the remaining bytes of the buffer into the hasher.
+     */
+    default void putBytes(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            putBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            putBytes(bytes);
+        }
+    }
+
     /**
      * Feed a single byte into the hasher.
      */
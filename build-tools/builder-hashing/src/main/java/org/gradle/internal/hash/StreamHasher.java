@@ -5,6 +5,9 @@ import com.google.common.hash.HashCode;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 
 public interface StreamHasher {
     /**
@@ -17,4 +20,16 @@ public interface StreamHasher {
      * The method will not close either stream.
      */
     HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException;
-}
\ No newline at end of file
+
+    /**
+     * Returns the hash of the first {@code length} bytes of the given channel, which must be the
+     * same as hashing a stream of them. The channel will not be closed by the method.
+     */
+    default HashCode hash(FileChannel channel, long length) throws IOException {
+        try {
+            return hash(Channels.newInputStream(channel.position(0)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
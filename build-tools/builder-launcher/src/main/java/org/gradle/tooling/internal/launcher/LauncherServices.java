@@ -170,7 +170,7 @@ public class LauncherServices extends AbstractPluginServiceRegistry {
 //                                                     GradleEnterprisePluginManager gradleEnterprisePluginManager,
                                                      BuildLifecycleAwareVirtualFileSystem virtualFileSystem,
 //                                                     StatStatistics.Collector statStatisticsCollector,
-//                                                     FileHasherStatistics.Collector fileHasherStatisticsCollector,
+                                                     FileHasherStatistics.Collector fileHasherStatisticsCollector,
                                                      DirectorySnapshotterStatistics.Collector directorySnapshotterStatisticsCollector,
                                                      BuildOperationRunner buildOperationRunner,
                                                      Clock clock
@@ -181,7 +181,7 @@ public class LauncherServices extends AbstractPluginServiceRegistry {
                     new BuildCompletionNotifyingBuildActionRunner(
                             new FileSystemWatchingBuildActionRunner(eventEmitter, virtualFileSystem,
                                     new StatStatistics.Collector(),
-                                    new FileHasherStatistics.Collector(),
+                                    fileHasherStatisticsCollector,
                                     directorySnapshotterStatisticsCollector, buildOperationRunner,
 
                                     new BuildOutcomeReportingBuildActionRunner(
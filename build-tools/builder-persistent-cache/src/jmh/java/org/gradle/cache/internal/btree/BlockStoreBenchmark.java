@@ -0,0 +1,94 @@
+package org.gradle.cache.internal.btree;
+
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lookup and update throughput of {@link BTreePersistentIndexedCache} backed by a
+ * {@link FileBackedBlockStore} and by a {@link MappedBlockStore}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockStoreBenchmark {
+
+    @Param({"file", "mapped"})
+    public String store;
+
+    @Param({"10000"})
+    public int entryCount;
+
+    private File directory;
+    private BTreePersistentIndexedCache<String, String> cache;
+    private String[] keys;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("block-store").toFile();
+        File cacheFile = new File(directory, "cache.bin");
+        BlockStore backingStore = "mapped".equals(store)
+                ? new MappedBlockStore(cacheFile)
+                : new FileBackedBlockStore(cacheFile);
+        cache = new BTreePersistentIndexedCache<>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER,
+                BaseSerializerFactory.STRING_SERIALIZER, (short) 512, 512, backingStore);
+
+        keys = new String[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            // resembles the absolute paths used as keys by the file hash cache
+            keys[i] = "/data/project/app/src/main/java/com/example/File" + i + ".java";
+            cache.put(keys[i], "hash-" + i);
+        }
+        random = new Random(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void lookup(Blackhole blackhole) {
+        blackhole.consume(cache.get(keys[random.nextInt(entryCount)]));
+    }
+
+    @Benchmark
+    public void update() {
+        int index = random.nextInt(entryCount);
+        cache.put(keys[index], "updated-" + random.nextInt());
+    }
+
+    @Benchmark
+    public void lookupMissing(Blackhole blackhole) {
+        blackhole.consume(cache.get("/missing/" + random.nextInt()));
+    }
+}
@@ -12,6 +12,7 @@ public class PersistentIndexedCacheParameters<K, V> {
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private final CacheDecorator cacheDecorator;
+    private final boolean memoryMapped;
 
     public static <K, V> PersistentIndexedCacheParameters<K, V> of(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, null);
@@ -26,10 +27,15 @@ public class PersistentIndexedCacheParameters<K, V> {
     }
 
     private PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer, @Nullable CacheDecorator cacheDecorator) {
+        this(cacheName, keySerializer, valueSerializer, cacheDecorator, false);
+    }
+
+    private PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer, @Nullable CacheDecorator cacheDecorator, boolean memoryMapped) {
         this.cacheName = cacheName;
         this.keySerializer = keySerializer;
         this.valueSerializer = valueSerializer;
         this.cacheDecorator = cacheDecorator;
+        this.memoryMapped = memoryMapped;
     }
 
     public String getCacheName() {
@@ -49,7 +55,19 @@ public class PersistentIndexedCacheParameters<K, V> {
         return cacheDecorator;
     }
 
+    /**
+     * Whether the cache file is mapped into memory and each block is checksummed. Such a cache is stored in a
+     * different file than a cache with the same name that is not memory mapped.
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
     public PersistentIndexedCacheParameters<K, V> withCacheDecorator(CacheDecorator cacheDecorator) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, memoryMapped);
+    }
+
+    public PersistentIndexedCacheParameters<K, V> withMemoryMapped(boolean memoryMapped) {
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, memoryMapped);
     }
 }
\ No newline at end of file
@@ -26,6 +26,7 @@ import org.gradle.cache.LockTimeoutException;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.MappedBlockStore;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 
 import org.slf4j.Logger;
@@ -269,7 +270,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for " + parameters.getCacheName() + ", path " + cacheFile + ", access " + this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer(), parameters.isMemoryMapped());
 
                 MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
@@ -294,7 +295,9 @@ public class DefaultCacheAccess implements CacheCoordinator {
     }
 
     private <K, V> File findCacheFile(PersistentIndexedCacheParameters<K, V> parameters) {
-        return new File(baseDir, parameters.getCacheName() + ".bin");
+        // the mapped store uses a different block format
+        String extension = parameters.isMemoryMapped() ? ".mbin" : ".bin";
+        return new File(baseDir, parameters.getCacheName() + extension);
     }
 
     @Override
@@ -302,7 +305,10 @@ public class DefaultCacheAccess implements CacheCoordinator {
         return findCacheFile(parameters).exists();
     }
 
-    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, boolean memoryMapped) {
+        if (memoryMapped) {
+            return new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer, (short) 512, 512, new MappedBlockStore(cacheFile));
+        }
         return new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer);
     }
 
@@ -469,6 +475,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleMemoryMapped(faultMessages, parameters.isMemoryMapped());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = "\n";
@@ -511,6 +518,14 @@ public class DefaultCacheAccess implements CacheCoordinator {
                                 cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleMemoryMapped(Collection<String> faultMessages, boolean memoryMapped) {
+            if (memoryMapped != parameters.isMemoryMapped()) {
+                faultMessages.add(
+                        String.format(" * Requested memory mapped store (%s) doesn't match current cache store (%s)",
+                                memoryMapped, parameters.isMemoryMapped()));
+            }
+        }
     }
 
     @VisibleForTesting
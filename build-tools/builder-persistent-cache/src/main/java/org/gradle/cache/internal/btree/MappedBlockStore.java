@@ -0,0 +1,397 @@
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link BlockStore} which maps the cache file into memory, so that reading or writing a block
+ * does not need a seek and a buffered stream per access like {@link FileBackedBlockStore}.
+ *
+ * <p>Every block ends with a CRC32 of its header and contents instead of the byte count, torn or
+ * otherwise corrupted blocks are reported as a {@link CorruptedCacheException}. The file is grown
+ * in chunks while the store is open and truncated to the used size when it is closed. The used size
+ * is also kept in the first bytes of the file, so the unused part of the last chunk is dropped when
+ * the file is opened again after the process died without closing it.
+ *
+ * <p>The file format is not compatible with {@link FileBackedBlockStore}, a cache must always be
+ * opened with the same kind of store.
+ */
+public class MappedBlockStore implements BlockStore {
+    private static final int MIN_GROWTH = 64 * 1024;
+    // the end of the used part of the file
+    private static final int FILE_HEADER_SIZE = Block.LONG_SIZE;
+
+    private final File cacheFile;
+    private final BlockOutput output = new BlockOutput();
+    private final DataOutputStream dataOutput = new DataOutputStream(output);
+    private final CRC32 crc = new CRC32();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean readOnly;
+    private long nextBlock;
+    private Factory factory;
+    private long currentFileSize;
+
+    public MappedBlockStore(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    @Override
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = openRandomAccessFile();
+            channel = file.getChannel();
+            long size = channel.size();
+            if (size < FILE_HEADER_SIZE) {
+                if (readOnly) {
+                    throw new CorruptedCacheException(String.format("%s has no header.", this));
+                }
+                initialize();
+            } else {
+                map(size);
+                currentFileSize = buffer.getLong(0);
+                if (currentFileSize < FILE_HEADER_SIZE || currentFileSize > size) {
+                    throw new CorruptedCacheException(String.format("%s has an invalid header.", this));
+                }
+                nextBlock = currentFileSize;
+                if (!readOnly && size > currentFileSize) {
+                    // the store was not closed, drop the unused part of the last chunk
+                    buffer = null;
+                    channel.truncate(currentFileSize);
+                    map(currentFileSize);
+                }
+            }
+            if (currentFileSize == FILE_HEADER_SIZE) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RandomAccessFile openRandomAccessFile() throws FileNotFoundException {
+        try {
+            readOnly = false;
+            return new RandomAccessFile(cacheFile, "rw");
+        } catch (FileNotFoundException e) {
+            readOnly = true;
+            return new RandomAccessFile(cacheFile, "r");
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            buffer = null;
+            if (!readOnly && channel.size() > currentFileSize) {
+                // drop the unused part of the last chunk
+                channel.truncate(currentFileSize);
+            }
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            buffer = null;
+            channel.truncate(0);
+            initialize();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the header of an empty file.
+     */
+    private void initialize() throws IOException {
+        currentFileSize = FILE_HEADER_SIZE;
+        nextBlock = FILE_HEADER_SIZE;
+        map(MIN_GROWTH);
+        buffer.putLong(0, currentFileSize);
+    }
+
+    @Override
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    @Override
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(FILE_HEADER_SIZE), payloadType);
+    }
+
+    @Override
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(String.format("%s exceeds the maximum size of a mapped file.", this));
+        }
+        buffer = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Makes sure the mapped region covers the given offset, growing the file if required.
+     */
+    private void ensureCapacity(long end) throws IOException {
+        int capacity = buffer.capacity();
+        if (end <= capacity) {
+            return;
+        }
+        if (readOnly) {
+            throw new IOException(String.format("%s is read-only.", this));
+        }
+        long size = Math.max(end, Math.min((long) capacity * 2, Integer.MAX_VALUE));
+        map(Math.max(size, MIN_GROWTH));
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+        private static final int TAIL_SIZE = INT_SIZE; // checksum
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = BlockPointer.pos(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        @Override
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+
+            BlockPayload payload = getPayload();
+            output.reset();
+
+            // Write header
+            dataOutput.writeByte(payload.getType());
+            dataOutput.writeInt(payloadSize);
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+            // Write body
+            payload.write(dataOutput);
+
+            // Write checksum
+            crc.reset();
+            crc.update(output.getBuffer(), 0, output.size());
+            dataOutput.writeInt((int) crc.getValue());
+
+            ensureCapacity(Math.max(finalSize, pos + output.size()));
+            buffer.position((int) pos);
+            buffer.put(output.getBuffer(), 0, output.size());
+
+            if (currentFileSize < finalSize) {
+                currentFileSize = finalSize;
+                buffer.putLong(0, currentFileSize);
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= currentFileSize) {
+                throw blockCorruptedException();
+            }
+            if (currentFileSize > buffer.capacity()) {
+                map(currentFileSize);
+            }
+
+            ByteBuffer block = buffer.duplicate();
+            block.limit((int) currentFileSize);
+            block.position((int) pos);
+            DataInputStream inputStream = new DataInputStream(new BlockInput(block));
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = inputStream.readByte();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = inputStream.readInt();
+            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > currentFileSize) {
+                throw blockCorruptedException();
+            }
+            payload.read(inputStream);
+
+            // Read and verify checksum
+            int end = block.position();
+            if (end + TAIL_SIZE > currentFileSize) {
+                throw blockCorruptedException();
+            }
+            int checksum = block.getInt();
+            block.limit(end);
+            block.position((int) pos);
+            crc.reset();
+            crc.update(block);
+            if ((int) crc.getValue() != checksum) {
+                throw blockCorruptedException();
+            }
+        }
+
+        @Override
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedBlockStore.this));
+        }
+    }
+
+    /**
+     * Collects the bytes of a block before they are copied into the mapped buffer, reused for
+     * every write.
+     */
+    private static class BlockOutput extends ByteArrayOutputStream {
+        BlockOutput() {
+            super(1024);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Reads from the current position of a buffer, reaching the end of file at its limit.
+     */
+    private static class BlockInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        BlockInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
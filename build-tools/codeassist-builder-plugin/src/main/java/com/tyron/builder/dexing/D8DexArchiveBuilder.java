@@ -1,26 +1,49 @@
 package com.tyron.builder.dexing;
 
 import com.android.tools.r8.AssertionsConfiguration;
+import com.android.tools.r8.ByteDataView;
 import com.android.tools.r8.CompilationMode;
 import com.android.tools.r8.D8;
 import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DexFilePerClassFileConsumer;
 import com.android.tools.r8.Diagnostic;
+import com.android.tools.r8.DiagnosticsHandler;
 import com.android.tools.r8.OutputMode;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.ProgramResourceProvider;
+import com.android.tools.r8.ResourceException;
 import com.android.tools.r8.StringConsumer.FileConsumer;
+import com.android.tools.r8.origin.Origin;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.android.SdkConstants;
 import com.android.ide.common.blame.Message;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 final class D8DexArchiveBuilder extends DexArchiveBuilder {
@@ -48,20 +71,24 @@ final class D8DexArchiveBuilder extends DexArchiveBuilder {
             @Nullable DependencyGraphUpdater<File> desugarGraphUpdater)
             throws DexArchiveBuilderException {
         InterceptingDiagnosticsHandler diagnosticsHandler = new InterceptingDiagnosticsHandler();
+        DexClassCache dexClassCache = dexParams.getDexClassCache();
+        if (dexClassCache != null && !dexParams.getWithDesugaring()) {
+            try {
+                convertWithCache(input, output, dexClassCache, diagnosticsHandler);
+            } catch (Throwable e) {
+                throw getExceptionToRethrow(e, diagnosticsHandler, false);
+            }
+            return;
+        }
         try {
 
             D8Command.Builder builder = D8Command.builder(diagnosticsHandler);
-            AtomicInteger entryCount = new AtomicInteger();
-            input.forEach(
-                    entry -> {
-                        builder.addClassProgramData(
-                                readAllBytes(entry), D8DiagnosticsHandler.getOrigin(entry));
-                        entryCount.incrementAndGet();
-                    });
-            if (entryCount.get() == 0) {
+            List<ClassFileEntry> entries = input.collect(Collectors.toList());
+            if (entries.isEmpty()) {
                 // nothing to do here, just return
                 return;
             }
+            builder.addProgramResourceProvider(new ClassFileEntryResourceProvider(entries));
 
             builder.setMode(
                             dexParams.getDebuggable()
@@ -109,6 +136,197 @@ final class D8DexArchiveBuilder extends DexArchiveBuilder {
         }
     }
 
+    /**
+     * Dexes only the classes that are not in the cache, one dex file per class, and stores them in
+     * the cache. The cached dex files of all classes are then written to the output: copied one per
+     * class, or merged into an indexed dex archive, which is much cheaper than dexing the classes
+     * again. Merged archives are cached too, so a bucket of unchanged classes is only copied.
+     * <p>
+     * The cache stays pinned until the output is written, so the cleanup cannot delete the files
+     * it returned meanwhile.
+     */
+    private void convertWithCache(
+            @NotNull Stream<ClassFileEntry> input,
+            @NotNull Path output,
+            @NotNull DexClassCache dexClassCache,
+            @NotNull InterceptingDiagnosticsHandler diagnosticsHandler)
+            throws Exception {
+        // D8 names its output after the class it defines, which may not match the path of the
+        // class file. Such output is written to a temporary file and used without caching it.
+        Path[] uncachedDir = new Path[1];
+        try (Closeable ignored = dexClassCache.pin()) {
+            convertWithPinnedCache(
+                    input, output, dexClassCache, diagnosticsHandler, uncachedDir);
+        } finally {
+            if (uncachedDir[0] != null) {
+                deleteRecursively(uncachedDir[0]);
+            }
+        }
+    }
+
+    private void convertWithPinnedCache(
+            @NotNull Stream<ClassFileEntry> input,
+            @NotNull Path output,
+            @NotNull DexClassCache dexClassCache,
+            @NotNull InterceptingDiagnosticsHandler diagnosticsHandler,
+            @NotNull Path[] uncachedDir)
+            throws Exception {
+        // cached dex files by class descriptor, in input order
+        Map<String, File> dexFiles = new LinkedHashMap<>();
+        Map<String, String> missingKeys = new HashMap<>();
+        List<ClassFileEntry> missingEntries = new ArrayList<>();
+        Hasher bucketHasher = Hashing.sha256().newHasher();
+        byte[] buffer = new byte[8192];
+        for (Iterator<ClassFileEntry> iterator = input.iterator(); iterator.hasNext(); ) {
+            ClassFileEntry entry = iterator.next();
+            // one buffer for all classes, only the key of a class is kept
+            long size = entry.getSize();
+            if (size > buffer.length) {
+                buffer = new byte[Math.toIntExact(size)];
+            }
+            int length = size < 0 ? -1 : entry.readAllBytes(buffer);
+            String key;
+            if (length < 0) {
+                byte[] classBytes = readAllBytes(entry);
+                key = dexClassCache.getKey(classBytes, classBytes.length);
+            } else {
+                key = dexClassCache.getKey(buffer, length);
+            }
+            String descriptor = getDescriptor(entry.getRelativePath());
+            bucketHasher.putUnencodedChars(descriptor).putUnencodedChars(key);
+            File dexFile = dexClassCache.getDexFile(key);
+            // a missing class keeps its position in the output until it is dexed
+            dexFiles.put(descriptor, dexFile);
+            if (dexFile == null) {
+                missingKeys.put(descriptor, key);
+                // read again by D8, rather than holding on to the bytes until it runs
+                missingEntries.add(entry);
+            }
+        }
+        if (dexFiles.isEmpty()) {
+            // nothing to do here, just return
+            return;
+        }
+
+        // only jar buckets are written to a single archive that can be cached as a whole
+        boolean archiveOutput = !dexParams.getDexPerClass()
+                && output.getFileName().toString().endsWith(SdkConstants.DOT_JAR);
+        String bucketKey = bucketHasher.hash().toString();
+        File cachedBucket = archiveOutput ? dexClassCache.getBucket(bucketKey) : null;
+        if (cachedBucket != null) {
+            // the classes that are missing were merged into it before
+            Files.copy(cachedBucket.toPath(), output, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        if (!missingEntries.isEmpty()) {
+            D8Command.Builder builder = D8Command.builder(diagnosticsHandler);
+            builder.addProgramResourceProvider(new ClassFileEntryResourceProvider(missingEntries));
+            configure(builder)
+                    .setDisableDesugaring(true)
+                    .setProgramConsumer(
+                            new DexFilePerClassFileConsumer() {
+                                @Override
+                                public synchronized void accept(
+                                        String primaryClassDescriptor,
+                                        ByteDataView data,
+                                        Set<String> descriptors,
+                                        DiagnosticsHandler handler) {
+                                    String key = missingKeys.get(primaryClassDescriptor);
+                                    try {
+                                        File dexFile;
+                                        if (key != null) {
+                                            dexFile = dexClassCache.putDexFile(
+                                                    key,
+                                                    data.getBuffer(),
+                                                    data.getOffset(),
+                                                    data.getLength());
+                                        } else {
+                                            if (uncachedDir[0] == null) {
+                                                uncachedDir[0] =
+                                                        Files.createTempDirectory("uncached-dex");
+                                            }
+                                            dexFile = writeUncached(uncachedDir[0], data);
+                                        }
+                                        dexFiles.put(primaryClassDescriptor, dexFile);
+                                    } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                    }
+                                }
+
+                                @Override
+                                public void finished(DiagnosticsHandler handler) {}
+                            });
+            D8.run(builder.build(), MoreExecutors.newDirectExecutorService());
+        }
+
+        if (dexParams.getDexPerClass()) {
+            for (Map.Entry<String, File> dexFile : dexFiles.entrySet()) {
+                if (dexFile.getValue() == null) {
+                    continue;
+                }
+                String descriptor = dexFile.getKey();
+                Path dexPath =
+                        output.resolve(descriptor.substring(1, descriptor.length() - 1) + ".dex");
+                Files.createDirectories(dexPath.getParent());
+                Files.copy(
+                        dexFile.getValue().toPath(), dexPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return;
+        }
+
+        D8Command.Builder merger = D8Command.builder(diagnosticsHandler);
+        for (File dexFile : dexFiles.values()) {
+            if (dexFile != null) {
+                merger.addProgramFiles(dexFile.toPath());
+            }
+        }
+        configure(merger)
+                .setOutput(output, OutputMode.DexIndexed)
+                .setDisableDesugaring(true);
+        D8.run(merger.build(), MoreExecutors.newDirectExecutorService());
+        if (archiveOutput) {
+            dexClassCache.putBucket(bucketKey, output);
+        }
+    }
+
+
+    @NotNull
+    private static File writeUncached(@NotNull Path dir, @NotNull ByteDataView data)
+            throws IOException {
+        Path file = Files.createTempFile(dir, "class", ".dex");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(data.getBuffer(), data.getOffset(), data.getLength());
+        }
+        return file.toFile();
+    }
+
+    private static void deleteRecursively(@NotNull Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @NotNull
+    private D8Command.Builder configure(@NotNull D8Command.Builder builder) {
+        builder.setMode(dexParams.getDebuggable() ? CompilationMode.DEBUG : CompilationMode.RELEASE)
+                .setMinApiLevel(dexParams.getMinSdkVersion())
+                .setIntermediate(true)
+                .setIncludeClassesChecksum(dexParams.getDebuggable());
+        if (dexParams.getDebuggable()) {
+            builder.addAssertionsConfiguration(AssertionsConfiguration.Builder::enableAllAssertions);
+        }
+        return builder;
+    }
+
+    @NotNull
+    private static String getDescriptor(@NotNull String classFilePath) {
+        String normalizedPath = classFilePath.replace(File.separatorChar, '/');
+        return "L" + normalizedPath.substring(0, normalizedPath.length() - ".class".length()) + ";";
+    }
+
     @NotNull
     private static byte[] readAllBytes(@NotNull ClassFileEntry entry) {
         try {
@@ -118,6 +336,67 @@ final class D8DexArchiveBuilder extends DexArchiveBuilder {
         }
     }
 
+    /**
+     * Provides class file entries to D8 without reading them up front. The bytes of an entry are
+     * only read when D8 parses the class, and can be collected as soon as it is done with them, so
+     * the heap does not have to hold every class of the input at once.
+     */
+    private static final class ClassFileEntryResourceProvider implements ProgramResourceProvider {
+        @NotNull private final List<ProgramResource> resources;
+
+        ClassFileEntryResourceProvider(@NotNull List<ClassFileEntry> entries) {
+            resources = new ArrayList<>(entries.size());
+            for (ClassFileEntry entry : entries) {
+                resources.add(new ClassFileEntryResource(entry));
+            }
+        }
+
+        @Override
+        public Collection<ProgramResource> getProgramResources() {
+            return resources;
+        }
+    }
+
+    private static final class ClassFileEntryResource implements ProgramResource {
+        @NotNull private final ClassFileEntry entry;
+        @NotNull private final Origin origin;
+
+        ClassFileEntryResource(@NotNull ClassFileEntry entry) {
+            this.entry = entry;
+            this.origin = D8DiagnosticsHandler.getOrigin(entry);
+        }
+
+        @Override
+        public Kind getKind() {
+            return Kind.CF;
+        }
+
+        @Override
+        public InputStream getByteStream() throws ResourceException {
+            return new ByteArrayInputStream(getBytes());
+        }
+
+        @Override
+        public byte[] getBytes() throws ResourceException {
+            try {
+                return entry.readAllBytes();
+            } catch (IOException e) {
+                throw new ResourceException(origin, e);
+            }
+        }
+
+        @Nullable
+        @Override
+        public Set<String> getClassDescriptors() {
+            return null;
+        }
+
+        @Override
+        public Origin getOrigin() {
+            return origin;
+        }
+    }
+
     @NotNull
     private static DexArchiveBuilderException getExceptionToRethrow(
             @NotNull Throwable t,
@@ -0,0 +1,279 @@
+package com.tyron.builder.dexing;
+
+import com.android.tools.r8.Version;
+import com.google.common.hash.Hashing;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A content addressed store of the dex output of single class files, shared by every project and
+ * variant that dexes with the same parameters.
+ * <p>
+ * Without desugaring, the dex output of a class depends only on its own bytes, the D8 version, the
+ * min SDK version and whether it is debuggable, so an unchanged class never has to be dexed twice.
+ * Entries are keyed by the SHA-256 of the class file, in a directory per set of parameters. The
+ * cache also keeps the merged dex archive of each bucket, keyed by the classes in it, so a bucket
+ * whose classes have all been merged before is copied instead of merged again.
+ * <p>
+ * Using an entry updates its timestamp, at most once a day, and {@link #cleanUpIfNeeded(File)}
+ * deletes the entries that have not been used for {@link #MAX_UNUSED_DAYS} days. Entries must only
+ * be looked up and used while the cache is pinned with {@link #pin()}, the cleanup does not run
+ * while any build, in this or another process, has it pinned.
+ */
+public final class DexClassCache {
+
+    static final int MAX_UNUSED_DAYS = 7;
+
+    private static final long TIMESTAMP_RESOLUTION = TimeUnit.DAYS.toMillis(1);
+    private static final String CLEANUP_MARKER = "gc.properties";
+    private static final String USE_LOCK = "gc.lock";
+    private static final String BUCKETS_DIR = "buckets";
+
+    private static final Map<File, UseLock> USE_LOCKS = new ConcurrentHashMap<>();
+
+    @NotNull private final File rootDir;
+    @NotNull private final File cacheDir;
+
+    private DexClassCache(@NotNull File rootDir, @NotNull File cacheDir) {
+        this.rootDir = rootDir;
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Returns the cache for the given dexing parameters under {@code rootDir}. Only valid for
+     * dexing without desugaring.
+     */
+    @NotNull
+    public static DexClassCache create(@NotNull File rootDir, int minSdkVersion, boolean debuggable) {
+        String parameters = Version.getVersionString() + "/" + minSdkVersion + "/" + debuggable;
+        String parametersKey = Hashing.sha256().hashUnencodedChars(parameters).toString();
+        return new DexClassCache(rootDir, new File(rootDir, parametersKey.substring(0, 16)));
+    }
+
+    /**
+     * Keeps the cleanup from deleting any entry until the returned handle is closed. The files
+     * returned by {@link #getDexFile(String)} and {@link #getBucket(String)} may only be read
+     * while the cache is pinned.
+     */
+    @NotNull
+    public Closeable pin() throws IOException {
+        UseLock useLock = getUseLock(rootDir);
+        useLock.acquire();
+        return useLock::release;
+    }
+
+    /** Returns the key of the class file with the given content. */
+    @NotNull
+    public String getKey(@NotNull byte[] classBytes, int length) {
+        return Hashing.sha256().hashBytes(classBytes, 0, length).toString();
+    }
+
+    /** Returns the dex file of the class file with the given key, or {@code null} if it is not cached. */
+    @Nullable
+    public File getDexFile(@NotNull String key) {
+        return markUsed(getClassFile(key));
+    }
+
+    /**
+     * Stores the dex output of the class file with the given key and returns the cached file.
+     * Concurrent builds may store the same key at the same time, which is fine as they write the
+     * same content.
+     */
+    @NotNull
+    public File putDexFile(@NotNull String key, @NotNull byte[] dexBytes, int offset, int length)
+            throws IOException {
+        File file = getClassFile(key);
+        Path tmpFile = createTmpFile(file);
+        try {
+            try (OutputStream out = Files.newOutputStream(tmpFile)) {
+                out.write(dexBytes, offset, length);
+            }
+            Files.move(tmpFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+        return file;
+    }
+
+    /**
+     * Returns the merged dex archive of the bucket with the given key, or {@code null} if it is not
+     * cached.
+     */
+    @Nullable
+    public File getBucket(@NotNull String key) {
+        return markUsed(getBucketFile(key));
+    }
+
+    /** Stores a copy of the merged dex archive of the bucket with the given key. */
+    public void putBucket(@NotNull String key, @NotNull Path archive) throws IOException {
+        File file = getBucketFile(key);
+        Path tmpFile = createTmpFile(file);
+        try {
+            Files.copy(archive, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    @NotNull
+    private File getClassFile(@NotNull String key) {
+        return new File(cacheDir, key.substring(0, 2) + "/" + key + ".dex");
+    }
+
+    @NotNull
+    private File getBucketFile(@NotNull String key) {
+        return new File(cacheDir, BUCKETS_DIR + "/" + key + ".jar");
+    }
+
+    @NotNull
+    private static Path createTmpFile(@NotNull File file) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        return Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+    }
+
+    /**
+     * Returns the given file if it exists, after updating its timestamp if the last update is
+     * older than the timestamp resolution, so that the cleanup keeps it.
+     */
+    @Nullable
+    private static File markUsed(@NotNull File file) {
+        long lastModified = file.lastModified();
+        if (lastModified == 0) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastModified > TIMESTAMP_RESOLUTION) {
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(now);
+        }
+        return file;
+    }
+
+    /**
+     * Deletes the entries under {@code rootDir} that have not been used for {@link
+     * #MAX_UNUSED_DAYS} days. Does nothing if the cache has been cleaned up in the last day.
+     */
+    public static void cleanUpIfNeeded(@NotNull File rootDir) throws IOException {
+        File marker = new File(rootDir, CLEANUP_MARKER);
+        long now = System.currentTimeMillis();
+        if (now - marker.lastModified() < TIMESTAMP_RESOLUTION) {
+            return;
+        }
+        Files.createDirectories(rootDir.toPath());
+        getUseLock(rootDir).runIfUnused(() -> {
+            if (!marker.createNewFile() && !marker.setLastModified(now)) {
+                return;
+            }
+            File lockFile = new File(rootDir, USE_LOCK);
+            long maxLastModified = now - TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS);
+            try (Stream<Path> files = Files.walk(rootDir.toPath())) {
+                files.filter(Files::isRegularFile)
+                        .map(Path::toFile)
+                        .filter(file -> !file.equals(marker) && !file.equals(lockFile))
+                        .filter(file -> file.lastModified() < maxLastModified)
+                        .forEach(File::delete);
+            }
+        });
+    }
+
+    @NotNull
+    private static UseLock getUseLock(@NotNull File rootDir) {
+        return USE_LOCKS.computeIfAbsent(
+                rootDir.getAbsoluteFile(), dir -> new UseLock(new File(dir, USE_LOCK)));
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * A lock on the cache that builds share and the cleanup takes exclusively. The builds of this
+     * process are counted and hold one shared lock on the lock file between them, as a process
+     * cannot hold overlapping locks on a file, and other processes lock the same file.
+     */
+    private static final class UseLock {
+        @NotNull private final File lockFile;
+        private int users;
+        @Nullable private FileChannel channel;
+        @Nullable private FileLock fileLock;
+
+        UseLock(@NotNull File lockFile) {
+            this.lockFile = lockFile;
+        }
+
+        synchronized void acquire() throws IOException {
+            if (users == 0) {
+                FileChannel lockChannel = openLockFile();
+                try {
+                    // waits for a cleanup in another process to finish
+                    fileLock = lockChannel.lock(0, Long.MAX_VALUE, true);
+                } catch (IOException | RuntimeException e) {
+                    lockChannel.close();
+                    throw e;
+                }
+                channel = lockChannel;
+            }
+            users++;
+        }
+
+        synchronized void release() throws IOException {
+            if (users == 0) {
+                throw new IllegalStateException("The dex class cache is not pinned");
+            }
+            if (--users == 0) {
+                try {
+                    fileLock.release();
+                } finally {
+                    channel.close();
+                    fileLock = null;
+                    channel = null;
+                }
+            }
+        }
+
+        /** Runs the action unless a build in this or another process uses the cache. */
+        synchronized void runIfUnused(@NotNull IOAction action) throws IOException {
+            if (users > 0) {
+                return;
+            }
+            try (FileChannel lockChannel = openLockFile()) {
+                FileLock exclusiveLock = lockChannel.tryLock();
+                if (exclusiveLock == null) {
+                    return;
+                }
+                try {
+                    action.run();
+                } finally {
+                    exclusiveLock.release();
+                }
+            }
+        }
+
+        @NotNull
+        private FileChannel openLockFile() throws IOException {
+            Files.createDirectories(lockFile.getParentFile().toPath());
+            return FileChannel.open(
+                    lockFile.toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+    }
+}
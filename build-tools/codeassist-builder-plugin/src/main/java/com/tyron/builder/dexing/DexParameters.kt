@@ -14,5 +14,7 @@ class DexParameters(
     val desugarClasspath: ClassFileProviderFactory,
     val coreLibDesugarConfig: String?,
     val coreLibDesugarOutputKeepRuleFile: File?,
-    val messageReceiver: MessageReceiver
+    val messageReceiver: MessageReceiver,
+    /** Cache of dexed classes, `null` if dexing should not use one. Never used with desugaring. */
+    val dexClassCache: DexClassCache? = null
 )
@@ -1,10 +1,17 @@
 package com.tyron.builder.dexing;
 
+import com.tyron.builder.files.EntryLocation;
+import com.tyron.builder.files.Zip64NotSupportedException;
+import com.tyron.builder.files.ZipCentralDirectory;
+
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
@@ -14,6 +21,11 @@ import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+/**
+ * Class files of a jar. The jar is memory mapped and its entries are located from the central
+ * directory, so an entry is only read and inflated when its bytes are asked for. Zip64 jars are
+ * read with {@link ZipFile} instead.
+ */
 final class JarClassFileInput implements ClassFileInput {
 
     /** If we are unable to read .class files from the input. */
@@ -27,6 +39,8 @@ final class JarClassFileInput implements ClassFileInput {
     @NotNull private final Path rootPath;
     @Nullable
     private ZipFile jarFile;
+    @Nullable
+    private MappedByteBuffer mappedJar;
 
     public JarClassFileInput(@NotNull Path rootPath) {
         this.rootPath = rootPath;
@@ -37,11 +51,23 @@ final class JarClassFileInput implements ClassFileInput {
         if (jarFile != null) {
             jarFile.close();
         }
+        // the mapping is released once the entries referencing it are collected
+        mappedJar = null;
     }
 
     @Override
     @NotNull
     public Stream<ClassFileEntry> entries(BiPredicate<Path, String> filter) {
+        if (jarFile == null) {
+            try {
+                return mappedEntries(filter);
+            } catch (Zip64NotSupportedException ignored) {
+                // read it with ZipFile below
+            } catch (IOException e) {
+                throw new JarClassFileInputsException(
+                        "Unable to read jar file " + rootPath.toString(), e);
+            }
+        }
         if (jarFile == null) {
             try {
                 jarFile = new ZipFile(rootPath.toFile());
@@ -64,6 +90,27 @@ final class JarClassFileInput implements ClassFileInput {
         return entryList.stream().map(this::createEntryFromEntry);
     }
 
+    @NotNull
+    private Stream<ClassFileEntry> mappedEntries(BiPredicate<Path, String> filter)
+            throws IOException, Zip64NotSupportedException {
+        ZipCentralDirectory centralDirectory = new ZipCentralDirectory(rootPath.toFile());
+        List<EntryLocation> locations = new ArrayList<>();
+        for (EntryLocation location : centralDirectory.getEntryLocations().values()) {
+            if (CLASS_MATCHER.test(location.getName())
+                    && filter.test(rootPath, location.getName())) {
+                locations.add(location);
+            }
+        }
+        if (mappedJar == null) {
+            // the mapping stays valid after the channel is closed
+            try (FileChannel channel = FileChannel.open(rootPath, StandardOpenOption.READ)) {
+                mappedJar = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        MappedByteBuffer jar = mappedJar;
+        return locations.stream().map(location -> new MappedJarClassFileEntry(location, jar, this));
+    }
+
     @Override
     public Path getPath() {
         return rootPath;
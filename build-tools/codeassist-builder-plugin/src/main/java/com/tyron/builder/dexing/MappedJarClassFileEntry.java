@@ -0,0 +1,169 @@
+package com.tyron.builder.dexing;
+
+import com.tyron.builder.files.EntryLocation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A jar entry read from a memory mapping of the jar. Nothing is read until the bytes are asked
+ * for, and they are not kept afterwards, so a jar with many classes only costs the heap for the
+ * classes being dexed at the moment.
+ */
+final class MappedJarClassFileEntry implements ClassFileEntry {
+
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    @NotNull private final EntryLocation location;
+    @NotNull private final ByteBuffer mappedJar;
+    @NotNull private final ClassFileInput input;
+
+    public MappedJarClassFileEntry(
+            @NotNull EntryLocation location,
+            @NotNull ByteBuffer mappedJar,
+            @NotNull ClassFileInput input) {
+        this.location = location;
+        this.mappedJar = mappedJar;
+        this.input = input;
+    }
+
+    @Override
+    public String name() {
+        return "Zip:" + location.getName();
+    }
+
+    @Override
+    public long getSize() {
+        return location.getSize();
+    }
+
+    @Override
+    public String getRelativePath() {
+        return location.getName();
+    }
+
+    @NotNull
+    @Override
+    public ClassFileInput getInput() {
+        return input;
+    }
+
+    @Override
+    public byte[] readAllBytes() throws IOException {
+        byte[] bytes = new byte[Math.toIntExact(location.getSize())];
+        readAllBytes(bytes);
+        return bytes;
+    }
+
+    @Override
+    public int readAllBytes(byte[] bytes) throws IOException {
+        int size = Math.toIntExact(location.getSize());
+        if (bytes.length < size) {
+            throw new IOException(
+                    "Buffer of " + bytes.length + " bytes is too small for " + location.getName());
+        }
+        ByteBuffer data = getData();
+        switch (location.getCompressionMethod()) {
+            case STORED:
+                data.get(bytes, 0, size);
+                return size;
+            case DEFLATED:
+                Inflater nowrapInflater = new Inflater(true);
+                try (InputStream inflater =
+                        new InflaterInputStream(
+                                new ByteBufferInputStream(data), nowrapInflater, 8192)) {
+                    int read = 0;
+                    while (read < size) {
+                        int count = inflater.read(bytes, read, size - read);
+                        if (count < 0) {
+                            break;
+                        }
+                        read += count;
+                    }
+                    if (read != size) {
+                        throw new ZipException("Truncated entry " + location.getName());
+                    }
+                    return read;
+                } finally {
+                    nowrapInflater.end();
+                }
+            default:
+                throw new ZipException(
+                        "Unsupported compression method "
+                                + location.getCompressionMethod()
+                                + " for "
+                                + location.getName());
+        }
+    }
+
+    /** Returns a view of the compressed data of this entry, which follows its local header. */
+    @NotNull
+    private ByteBuffer getData() throws ZipException {
+        ByteBuffer buffer = mappedJar.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int headerOffset = Math.toIntExact(location.getLocalHeaderOffset());
+        if (buffer.getInt(headerOffset) != LOCAL_FILE_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + location.getName());
+        }
+        int nameLength = buffer.getShort(headerOffset + 26) & 0xFFFF;
+        int extraLength = buffer.getShort(headerOffset + 28) & 0xFFFF;
+        int dataOffset = headerOffset + LOCAL_FILE_HEADER_SIZE + nameLength + extraLength;
+        buffer.position(dataOffset);
+        buffer.limit(Math.addExact(dataOffset, Math.toIntExact(location.getCompressedSize())));
+        return buffer.slice();
+    }
+
+    /**
+     * Reads a buffer without copying it to the heap first. Like {@link java.util.zip.ZipFile}, it
+     * ends with an extra zero byte, which an {@link Inflater} in nowrap mode may need to finish.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+        private boolean dummyByteRead;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (buffer.hasRemaining()) {
+                return buffer.get() & 0xFF;
+            }
+            if (!dummyByteRead) {
+                dummyByteRead = true;
+                return 0;
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(@NotNull byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                if (dummyByteRead || length == 0) {
+                    return dummyByteRead ? -1 : 0;
+                }
+                dummyByteRead = true;
+                bytes[offset] = 0;
+                return 1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -27,6 +27,13 @@ class ZipCentralDirectory(
      */
     val entries: Map<String, DirectoryEntry> by lazy { readZipEntries() }
 
+    /**
+     * Where the data of each file entry of the Zip archive is stored, so entries can be read from
+     * a mapping of the file without opening it as a [java.util.zip.ZipFile].
+     */
+    @get:Throws(Zip64NotSupportedException::class)
+    val entryLocations: Map<String, EntryLocation> by lazy { readEntryLocations() }
+
     private val directoryBuffer: ByteBuffer by lazy { initBuffer() }
 
     /**
@@ -190,29 +197,72 @@ class ZipCentralDirectory(
     }
 
     private fun readZipEntries(): Map<String, DirectoryEntry> {
-        val buffer = directoryBuffer
         val entries = mutableMapOf<String, DirectoryEntry>()
+        visitRecords { name, _, crc, _, decompressedSize, _ ->
+            // only add files, not directories
+            if (decompressedSize > 0 || !name.endsWith("/")) {
+                val entry = DirectoryEntry(name, crc, decompressedSize)
+                entries[entry.name] = entry
+            }
+        }
+
+        return Collections.unmodifiableMap(entries)
+    }
+
+    private fun readEntryLocations(): Map<String, EntryLocation> {
+        val locations = mutableMapOf<String, EntryLocation>()
+        visitRecords { name, compressionMethod, _, compressedSize, decompressedSize, localHeaderOffset ->
+            if (!name.endsWith("/")) {
+                locations[name] = EntryLocation(
+                    name,
+                    compressionMethod,
+                    compressedSize,
+                    decompressedSize,
+                    localHeaderOffset
+                )
+            }
+        }
+
+        return Collections.unmodifiableMap(locations)
+    }
+
+    private inline fun visitRecords(
+        visitor: (
+            name: String,
+            compressionMethod: Int,
+            crc: Long,
+            compressedSize: Long,
+            decompressedSize: Long,
+            localHeaderOffset: Long
+        ) -> Unit
+    ) {
+        // each visit reads its own view, so the entries and the locations can be read independently
+        val buffer = directoryBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+        buffer.position(0)
         while (buffer.remaining() >= CENTRAL_DIRECTORY_FILE_HEADER_SIZE && buffer.int == CENTRAL_DIRECTORY_FILE_HEADER_MAGIC) {
             // Read all the data
             /*
-            skip those and go over the 12 bytes directly
+            skip those and go over the 6 bytes directly
             val version = buf.short
             val versionNeeded = buf.short
-            val flags = buf.short
-            val compression = buf.short
+            val flags = buf.short*/
+            buffer.position(buffer.position() + 6)
+            val compressionMethod = ushortToInt(buffer.short)
+            /*
+            skip those and go over the 4 bytes directly
             val modTime = buf.short
             val modDate = buf.short*/
-            buffer.position(buffer.position() + 12)
+            buffer.position(buffer.position() + 4)
 
             val crc: Long = uintToLong(buffer.int)
-            /*val compressedSize =*/ uintToLong(buffer.int)
+            val compressedSize = uintToLong(buffer.int)
             val decompressedSize = uintToLong(buffer.int)
             val pathLength = ushortToInt(buffer.short)
             val extraLength = ushortToInt(buffer.short)
             val commentLength = ushortToInt(buffer.short)
             // Skip 2 (disk number) + 2 (internal attributes)+ 4 (external attributes)
             buffer.position(buffer.position() + 8)
-            /*val start =*/ uintToLong(buffer.int) // offset to local file entry header
+            val localHeaderOffset = uintToLong(buffer.int)
 
             // Read the filename
             val pathBytes = ByteArray(pathLength)
@@ -221,14 +271,8 @@ class ZipCentralDirectory(
 
             buffer.position(buffer.position() + extraLength + commentLength)
 
-            // only add files, not directories
-            if (decompressedSize > 0 || !name.endsWith("/")) {
-                val entry = DirectoryEntry(name, crc, decompressedSize)
-                entries[entry.name] = entry
-            }
+            visitor(name, compressionMethod, crc, compressedSize, decompressedSize, localHeaderOffset)
         }
-
-        return Collections.unmodifiableMap(entries)
     }
 
     private fun uintToLong(i: Int) : Long {
@@ -246,6 +290,19 @@ data class DirectoryEntry(
     val size: Long
 )
 
+/**
+ * The location of the data of a Zip entry. The data starts after the local file header at
+ * [localHeaderOffset], whose length depends on the name and extra fields it contains.
+ */
+data class EntryLocation(
+    val name: String,
+    /** 0 if the entry is stored, 8 if it is deflated. */
+    val compressionMethod: Int,
+    val compressedSize: Long,
+    val size: Long,
+    val localHeaderOffset: Long
+)
+
 private const val EOCD_SIGNATURE: Int = 0x06054b50
 /** Signature of the Zip64 EOCD locator record.  */
 private val ZIP64_EOCD_LOCATOR_SIGNATURE = byteArrayOf(0x50, 0x4B, 0x06, 0x07)
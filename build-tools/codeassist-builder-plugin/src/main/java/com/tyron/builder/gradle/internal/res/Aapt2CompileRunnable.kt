@@ -4,7 +4,7 @@ import com.tyron.builder.common.resources.CompileResourceRequest
 import com.tyron.builder.gradle.internal.LoggerWrapper
 import com.tyron.builder.gradle.internal.services.Aapt2Input
 import com.tyron.builder.gradle.internal.services.getLeasingAapt2
-import com.tyron.builder.internal.aapt.v2.Aapt2Exception
+import com.tyron.builder.internal.aapt.v2.Aapt2CompileException
 import org.gradle.api.logging.Logging
 import org.gradle.api.provider.ListProperty
 import org.gradle.api.provider.Property
@@ -37,17 +37,16 @@ fun runAapt2Compile(
     val loggerWrapper = LoggerWrapper(logger)
     val daemon = aapt2Input.getLeasingAapt2()
     val errorFormatMode = aapt2Input.buildService.get().parameters.errorFormatMode.get()
-    requests.forEach { request ->
-        try {
-            daemon.compile(request, loggerWrapper)
-        } catch (exception: Aapt2Exception) {
-            throw rewriteCompileException(
-                exception,
-                request,
-                errorFormatMode,
-                enableBlame,
-                logger
-            )
-        }
+    try {
+        // Sent as one batch, so the daemon can pipeline the requests
+        daemon.compile(requests, loggerWrapper)
+    } catch (exception: Aapt2CompileException) {
+        throw rewriteCompileException(
+            exception.failure,
+            exception.request,
+            errorFormatMode,
+            enableBlame,
+            logger
+        )
     }
 }
\ No newline at end of file
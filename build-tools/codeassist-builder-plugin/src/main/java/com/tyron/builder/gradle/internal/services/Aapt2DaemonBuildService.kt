@@ -21,10 +21,10 @@ import org.gradle.api.services.BuildService
 import org.gradle.api.services.BuildServiceParameters
 import org.gradle.api.tasks.Input
 import org.gradle.api.tasks.Internal
-import java.io.Closeable
 import java.io.IOException
 import java.nio.file.Files
 import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors
 import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.ScheduledFuture
@@ -67,7 +67,7 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
     private val registeredServices = mutableSetOf<Aapt2DaemonServiceKey>()
     private val services = mutableMapOf<Aapt2DaemonServiceKey, Aapt2DaemonManager>()
     private val closer = Closer.create()
-    private val logger: ILogger = LoggerWrapper.getLogger(this.javaClass)
+    private val logger: ILogger = serviceLogger
 
     fun getLeasingAapt2(aapt2Input: Aapt2Input) : Aapt2 {
         val manager = getManager(Aapt2DaemonServiceKey(aapt2Input.version.get()), getAapt2ExecutablePath(aapt2Input))
@@ -92,21 +92,26 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
     @Synchronized
     private fun getManager(key: Aapt2DaemonServiceKey, aaptExecutablePath: Path) : Aapt2DaemonManager {
         return services.getOrPut(key) {
-            Aapt2DaemonManager(
-                logger = logger,
-                daemonFactory = { displayId ->
-                    Aapt2DaemonImpl(
-                        displayId = "#$displayId",
-                        aaptExecutable = aaptExecutablePath,
-                        daemonTimeouts = daemonTimeouts,
-                        logger = logger
-                    )
-                },
-                expiryTime = daemonExpiryTimeSeconds,
-                expiryTimeUnit = TimeUnit.SECONDS,
-                listener = Aapt2DaemonManagerMaintainer()
-            )
-        }.also { closer.register(Closeable { it.shutdown() }) }
+            val maxDaemons = parameters.maxAapt2Daemons.get()
+            val sharedKey = SharedManagerKey(aaptExecutablePath.toAbsolutePath(), logger, maxDaemons)
+            sharedManagers.computeIfAbsent(sharedKey) {
+                Aapt2DaemonManager(
+                    logger = logger,
+                    daemonFactory = { displayId ->
+                        Aapt2DaemonImpl(
+                            displayId = "#$displayId",
+                            aaptExecutable = aaptExecutablePath,
+                            daemonTimeouts = daemonTimeouts,
+                            logger = logger
+                        )
+                    },
+                    expiryTime = daemonExpiryTimeSeconds,
+                    expiryTimeUnit = TimeUnit.SECONDS,
+                    listener = Aapt2DaemonManagerMaintainer(),
+                    maxDaemons = maxDaemons
+                )
+            }
+        }
     }
 
     fun getAapt2ExecutablePath(aapt2: Aapt2Input): Path {
@@ -126,6 +131,7 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
 
     abstract class Parameters: BuildServiceParameters {
         abstract val errorFormatMode: Property<SyncOptions.ErrorFormatMode>
+        abstract val maxAapt2Daemons: Property<Int>
     }
 
     class RegistrationAction(project: Project, val projectOptions: ProjectOptions) :
@@ -136,6 +142,7 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
         ) {
         override fun configure(parameters: Parameters) {
             parameters.errorFormatMode.set(SyncOptions.getErrorFormatMode(projectOptions))
+            parameters.maxAapt2Daemons.set(computeMaxAapt2Daemons(projectOptions))
         }
     }
 }
@@ -186,11 +193,27 @@ fun Aapt2Input.getLeasingAapt2(): Aapt2 {
     return buildService.get().getLeasingAapt2(this)
 }
 
+/**
+ * Daemon managers by AAPT2 executable and manager settings. They are shared by all the builds
+ * running in this JVM, so that the next build finds its daemons already started instead of paying
+ * for their startup. A build with another logger or daemon limit gets its own manager.
+ */
+private val sharedManagers = ConcurrentHashMap<SharedManagerKey, Aapt2DaemonManager>()
+
+private data class SharedManagerKey(
+    val aaptExecutable: Path,
+    val logger: ILogger,
+    val maxDaemons: Int
+)
+
+/** Shared by the services of all builds, as Gradle routes it to the output of the current build. */
+private val serviceLogger: ILogger = LoggerWrapper.getLogger(Aapt2DaemonBuildService::class.java)
+
 /**
  * Responsible for scheduling maintenance on the Aapt2Service.
  *
  * There are three ways the daemons can all be shut down.
- * 1. An explicit call of [Aapt2DaemonManager.shutdown]. (e.g. at the end of each build invocation.)
+ * 1. An explicit call of [Aapt2DaemonManager.shutdown].
  * 2. All the daemons being timed out by the logic in [Aapt2DaemonManager.maintain].
  *    Calls to maintain are scheduled below, and only while there are daemons running to avoid
  *    leaking a thread.
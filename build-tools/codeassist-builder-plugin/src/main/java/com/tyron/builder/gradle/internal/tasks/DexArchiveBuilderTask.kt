@@ -101,6 +101,13 @@ abstract class DexArchiveBuilderTask : IncrementalTask() {
     @get:InputFiles
     abstract val externalLibDexFiles: ConfigurableFileCollection
 
+    /**
+     * Location of the per-class dex cache shared by all projects. The cache is content addressed,
+     * so it does not affect the outputs and is [Internal].
+     */
+    @get:Internal
+    abstract val dexClassCacheDir: DirectoryProperty
+
     /**
      * Task runs incrementally if input changes allow that and if the number of buckets is the same
      * as in the previous run. This is necessary in order to have correct incremental builds as
@@ -178,6 +185,7 @@ abstract class DexArchiveBuilderTask : IncrementalTask() {
             desugarGraphDir = desugarGraphDir.get().asFile.takeIf { dexParams.withDesugaring.get() },
 
             inputJarHashesFile = inputJarHashesFile.get().asFile,
+            dexClassCacheDir = dexClassCacheDir.asFile.orNull,
             numberOfBuckets = numberOfBuckets.get(),
             workerExecutor = workerExecutor,
             projectPath = project.provider { project.projectPath.toString() },
@@ -255,6 +263,9 @@ abstract class DexArchiveBuilderTask : IncrementalTask() {
                 .set(SyncOptions.ErrorFormatMode.HUMAN_READABLE)
             task.dexParams.minSdkVersion.set(creationConfig.minSdkVersion.apiLevel)
             task.dexParams.withDesugaring.set(creationConfig.isCoreLibraryDesugaringEnabled)
+            task.dexClassCacheDir.set(
+                File(task.project.gradle.gradleUserHomeDir, "caches/dex-classes")
+            )
         }
 
         private fun getDexForExternalLibs(
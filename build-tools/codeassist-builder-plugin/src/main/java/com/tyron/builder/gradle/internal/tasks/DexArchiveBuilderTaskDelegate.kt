@@ -4,6 +4,7 @@ import com.google.common.base.Throwables
 import com.google.common.collect.Lists
 import com.google.common.hash.Hashing
 import com.google.common.io.Closer
+import com.google.common.io.Files
 import com.tyron.builder.dexing.*
 import com.tyron.builder.dexing.r8.ClassFileProviderFactory
 import com.tyron.builder.internal.dexing.DexParameters
@@ -20,10 +21,12 @@ import org.gradle.work.FileChange
 import org.gradle.workers.WorkerExecutor
 import java.io.BufferedInputStream
 import java.io.File
+import java.io.IOException
 import java.io.ObjectInputStream
 import java.io.ObjectOutputStream
 import java.nio.file.Path
 import java.util.ArrayList
+import java.util.stream.Collectors
 
 /**
  * Delegate for the [DexArchiveBuilderTask]. This is where the actual processing happens. Using the
@@ -65,6 +68,8 @@ class DexArchiveBuilderTaskDelegate(
 
     // Other info
     private val inputJarHashesFile: File,
+    /** Root directory of the per-class [DexClassCache], `null` to dex every class again. */
+    private val dexClassCacheDir: File? = null,
     private val numberOfBuckets: Int,
     private val workerExecutor: WorkerExecutor,
     private val projectPath: Provider<String>,
@@ -72,6 +77,12 @@ class DexArchiveBuilderTaskDelegate(
 ) {
     private val outputMapping = OutputMapping(isIncremental)
 
+    /**
+     * Buckets of all input scopes, collected before any of them is submitted so they can be
+     * submitted largest first.
+     */
+    private val pendingBuckets = ArrayList<PendingBucket>()
+
     //(b/141854812) Temporarily disable incremental support when core library desugaring enabled in release build
     private val isIncremental =
         isIncremental && projectOutputs.keepRules == null && subProjectOutputs?.keepRules == null
@@ -193,11 +204,29 @@ class DexArchiveBuilderTaskDelegate(
                     )
                 }
 
+                // Buckets of all scopes share the worker pool. Start the largest ones first so
+                // that a big library does not start last and become the tail of the task.
+                pendingBuckets.sortByDescending { it.estimatedSize }
+                for (bucket in pendingBuckets) {
+                    workerExecutor.noIsolation().submit(DexWorkAction::class.java) { params ->
+                        params.dexSpec.set(bucket.spec)
+                    }
+                }
+                pendingBuckets.clear()
+
                 // all work items have been submitted, now wait for completion.
                 // TODO (gavra): use build services in worker actions so ClassFileProviderFactory are not closed too early
                 workerExecutor.await()
 
                 loggerWrapper.debug("Done with all dex archive conversions")
+
+                if (dexClassCacheDir != null && !dexParams.withDesugaring) {
+                    try {
+                        DexClassCache.cleanUpIfNeeded(dexClassCacheDir)
+                    } catch (e: IOException) {
+                        loggerWrapper.debug("Could not clean up dex class cache $dexClassCacheDir", e)
+                    }
+                }
             }
         } catch (e: Exception) {
             loggerWrapper.error(Throwables.getStackTraceAsString(e))
@@ -345,6 +374,18 @@ class DexArchiveBuilderTaskDelegate(
         outputKeepRulesDir: File?
     ) {
         inputs.getRoots().forEach { loggerWrapper.debug("Dexing ${it.absolutePath}") }
+        // a bucket holds about an equal share of the classes of its group that are dexed
+        val estimatedBucketSize = when (inputs) {
+            is JarBucketGroup -> inputs.jarFile.length()
+            is DirectoryBucketGroup -> if (isIncremental) {
+                changedFiles.filter { file -> inputs.getRoots().any { file.startsWith(it) } }
+                    .sumOf { it.length() }
+            } else {
+                inputs.getRoots().sumOf { root ->
+                    root.walk().filter { it.isFile }.sumOf { it.length() }
+                }
+            }
+        } / numberOfBuckets
 
         for (bucketId in 0 until numberOfBuckets) {
             // For directory inputs, we prefer dexPerClass mode to support incremental dexing per
@@ -380,9 +421,8 @@ class DexArchiveBuilderTaskDelegate(
             }
 
             val classBucket = ClassBucket(inputs, bucketId)
-            workerExecutor.noIsolation().submit(DexWorkAction::class.java) { params ->
-//                params.initializeWith(projectPath, taskPath, analyticsService)
-                params.dexSpec.set(
+            pendingBuckets.add(
+                PendingBucket(
                     IncrementalDexSpec(
                         inputClassFiles = classBucket,
                         outputPath = preDexOutputFile,
@@ -390,18 +430,24 @@ class DexArchiveBuilderTaskDelegate(
                             dexPerClass,
                             bootClasspath,
                             classpath,
-                            outputKeepRuleFile
+                            outputKeepRuleFile,
+                            dexClassCacheDir
                         ),
                         isIncremental = isIncremental,
                         changedFiles = changedFiles,
                         desugarGraphFile = desugarGraphDir?.let {
                             getDesugarGraphFile(it, classBucket)
                         }
-                    ))
-            }
+                    ),
+                    estimatedBucketSize
+                )
+            )
         }
     }
 
+    /** A bucket waiting to be submitted to the worker pool. */
+    private class PendingBucket(val spec: IncrementalDexSpec, val estimatedSize: Long)
+
     private fun getClasspath(withDesugaring: Boolean): List<Path> {
         if (!withDesugaring) {
             return emptyList()
@@ -501,10 +547,16 @@ class DexArchiveBuilderTaskDelegate(
             }
             previousFileHashes = fileHashes.toMap()
 
-            fun getFileHash(file: File): String = file.inputStream().buffered().use {
-                Hashing.sha256()
-                    .hashBytes(it.readBytes())
-                    .toString()
+            // Streams the jar instead of reading it into a byte array, same hash as before.
+            fun getFileHash(file: File): String =
+                Files.asByteSource(file).hash(Hashing.sha256()).toString()
+
+            // Jars are hashed in parallel, they are independent and external libraries can be large.
+            fun putFileHashes(files: List<File>) {
+                files.parallelStream()
+                    .map { it to getFileHash(it) }
+                    .collect(Collectors.toList())
+                    .forEach { (file, hash) -> fileHashes[file] = hash }
             }
 
             if (isPreviousLoaded) {
@@ -514,14 +566,14 @@ class DexArchiveBuilderTaskDelegate(
                     subProjectChangedClasses,
                     externalLibChangedClasses,
                     mixedScopeChangedClasses
-                ).flatten().filter { it.file.extension == SdkConstants.EXT_JAR }.forEach {
+                ).flatten().filter { it.file.extension == SdkConstants.EXT_JAR }.map {
                     check(it.changeType != ChangeType.REMOVED) {
                         "Reported ${it.file.canonicalPath} as removed. Output mapping should be non-incremental."
                     }
-                    fileHashes[it.file] = getFileHash(it.file)
-                }
+                    it.file
+                }.toList().let { putFileHashes(it) }
             } else {
-                getAllFilesToProcess().forEach { fileHashes[it] = getFileHash(it) }
+                putFileHashes(getAllFilesToProcess().toList())
             }
             GFileUtils.deleteIfExists(inputJarHashesFile)
             GFileUtils.mkdirs(inputJarHashesFile.parentFile)
@@ -15,6 +15,20 @@ interface Aapt2 {
     /** Perform the requested compilation. Throws [Aapt2Exception] on failure */
     fun compile(request: CompileResourceRequest, logger: ILogger)
 
+    /**
+     * Perform the requested compilations. Implementations may send all the requests before
+     * waiting for their results. Throws [Aapt2CompileException] for the first request that fails.
+     */
+    fun compile(requests: List<CompileResourceRequest>, logger: ILogger) {
+        for (request in requests) {
+            try {
+                compile(request, logger)
+            } catch (e: Aapt2Exception) {
+                throw Aapt2CompileException(request, e)
+            }
+        }
+    }
+
     /** Perform the requested linking. Throws [Aapt2Exception] on failure. */
     fun link(request: AaptPackageConfig, logger: ILogger)
 
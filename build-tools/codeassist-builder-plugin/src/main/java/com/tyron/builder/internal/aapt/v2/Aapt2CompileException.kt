@@ -0,0 +1,7 @@
+package com.tyron.builder.internal.aapt.v2
+
+import com.tyron.builder.common.resources.CompileResourceRequest
+
+/** Exception thrown when one of the requests of a batch compilation fails. */
+class Aapt2CompileException(val request: CompileResourceRequest, val failure: Aapt2Exception) :
+        RuntimeException(failure.message, failure)
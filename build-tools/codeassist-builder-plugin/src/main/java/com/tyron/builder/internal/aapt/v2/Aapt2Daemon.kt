@@ -7,6 +7,7 @@ import com.tyron.builder.internal.aapt.AaptConvertConfig
 import com.tyron.builder.internal.aapt.AaptPackageConfig
 import java.lang.IllegalStateException
 import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicLong
 import javax.annotation.concurrent.NotThreadSafe
 
 /**
@@ -32,6 +33,25 @@ abstract class Aapt2Daemon(
     var state: State = State.NEW
         private set
 
+    private val requestCount = AtomicLong()
+    private val requestLatencyNanos = AtomicLong()
+
+    /** The number of requests processed by this daemon. May be read from any thread. */
+    val processedRequests: Long
+        get() = requestCount.get()
+
+    /**
+     * The total time between sending a request to this daemon and receiving its result, in
+     * nanoseconds. May be read from any thread.
+     */
+    val totalRequestLatencyNanos: Long
+        get() = requestLatencyNanos.get()
+
+    protected fun recordRequest(latencyNanos: Long) {
+        requestCount.incrementAndGet()
+        requestLatencyNanos.addAndGet(latencyNanos)
+    }
+
     private fun checkStarted() {
         when (state) {
             State.NEW -> {
@@ -82,8 +102,10 @@ abstract class Aapt2Daemon(
 
     override fun compile(request: CompileResourceRequest, logger: ILogger) {
         checkStarted()
+        val start = System.nanoTime()
         try {
             doCompile(request, logger)
+            recordRequest(System.nanoTime() - start)
         } catch (e: Aapt2Exception) {
             // Propagate errors in the users sources directly.
             throw e
@@ -102,10 +124,49 @@ abstract class Aapt2Daemon(
     @Throws(TimeoutException::class, Aapt2InternalException::class, Aapt2Exception::class)
     protected abstract fun doCompile(request: CompileResourceRequest, logger: ILogger)
 
+    override fun compile(requests: List<CompileResourceRequest>, logger: ILogger) {
+        if (requests.isEmpty()) {
+            return
+        }
+        checkStarted()
+        try {
+            doCompile(requests, logger)
+        } catch (e: Aapt2CompileException) {
+            // Propagate errors in the users sources directly.
+            throw e
+        } catch (e: TimeoutException) {
+            handleError("Compile of ${requests.size} files timed out", e)
+        } catch (e: Exception) {
+            handleError("Unexpected error during compile of ${requests.size} files", e)
+        }
+    }
+
+    /**
+     * Implementors may override this to send all the requests to the daemon process before
+     * waiting for their results, which must then be recorded with [recordRequest]. By default the
+     * requests are compiled one at a time.
+     *
+     * This will only be called after [startProcess] is called and before [stopProcess] is called
+     */
+    @Throws(TimeoutException::class, Aapt2InternalException::class, Aapt2CompileException::class)
+    protected open fun doCompile(requests: List<CompileResourceRequest>, logger: ILogger) {
+        for (request in requests) {
+            val start = System.nanoTime()
+            try {
+                doCompile(request, logger)
+            } catch (e: Aapt2Exception) {
+                throw Aapt2CompileException(request, e)
+            }
+            recordRequest(System.nanoTime() - start)
+        }
+    }
+
     override fun link(request: AaptPackageConfig, logger: ILogger) {
         checkStarted()
+        val start = System.nanoTime()
         try {
             doLink(request, logger)
+            recordRequest(System.nanoTime() - start)
         } catch (e: Aapt2Exception) {
             // Propagate errors in the users sources directly.
             throw e
@@ -126,8 +187,10 @@ abstract class Aapt2Daemon(
 
     override fun convert(request: AaptConvertConfig, logger: ILogger) {
         checkStarted()
+        val start = System.nanoTime()
         try {
             doConvert(request, logger)
+            recordRequest(System.nanoTime() - start)
         } catch (e: Aapt2Exception) {
             // Propagate errors in the users sources directly.
             throw e
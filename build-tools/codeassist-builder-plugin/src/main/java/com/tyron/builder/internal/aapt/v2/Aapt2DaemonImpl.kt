@@ -11,7 +11,9 @@ import java.io.IOException
 import java.io.Writer
 import java.nio.file.Files
 import java.nio.file.Path
+import java.util.ArrayDeque
 import java.util.Locale
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.TimeoutException
 
 /**
@@ -122,33 +124,105 @@ class Aapt2DaemonImpl(
         try {
             processOutput.delegate = waitForTask
             Aapt2DaemonUtil.requestCompile(writer, request)
-            // Temporary workaround for b/111629686, manually generate the partial R file for raw and non xml res.
-            request.partialRFile?.apply {
-                if (request.inputDirectoryName.startsWith("raw") || !request.inputFile.path.endsWith(".xml")) {
-                    val type = request.inputDirectoryName.substringBefore('-')
-                    val nameWithoutExtension = request.inputFile.name.substringBefore('.')
-                    Files.write(toPath(), ImmutableList.of("default int $type $nameWithoutExtension"))
+            writePartialRFile(request)
+            checkCompileResult(
+                request,
+                waitForTask.future.get(daemonTimeouts.compile, daemonTimeouts.compileUnit),
+                logger
+            )
+        } finally {
+            processOutput.delegate = noOutputExpected
+        }
+    }
+
+    /**
+     * Writes all the compile requests to the daemon without waiting for the previous ones to
+     * finish, so that the daemon does not sit idle while a result travels back and the next
+     * request is sent. AAPT2 handles the requests in order, so each result is matched with the
+     * oldest request still waiting.
+     *
+     * At most [MAX_PIPELINED_REQUESTS] are in flight. When one fails no more requests are sent,
+     * but the ones in flight are still waited for so that the daemon can be reused.
+     */
+    @Throws(TimeoutException::class, Aapt2InternalException::class, Aapt2CompileException::class)
+    override fun doCompile(requests: List<CompileResourceRequest>, logger: ILogger) {
+        val pipeline = PipelinedTaskCompletion(displayName, logger)
+        val inFlight = ArrayDeque<PendingCompile>()
+        var failure: Aapt2CompileException? = null
+        fun awaitOldest() {
+            val pending = inFlight.removeFirst()
+            val result = pending.waitForTask.future.get(
+                daemonTimeouts.compile, daemonTimeouts.compileUnit)
+            recordRequest(System.nanoTime() - pending.startNanos)
+            try {
+                checkCompileResult(pending.request, result, logger)
+            } catch (e: Aapt2Exception) {
+                if (failure == null) {
+                    failure = Aapt2CompileException(pending.request, e)
                 }
             }
-            when (val result = waitForTask.future.get(daemonTimeouts.compile, daemonTimeouts.compileUnit)) {
-                is WaitForTaskCompletion.Result.Succeeded -> {}
-                is WaitForTaskCompletion.Result.Failed -> {
-                    val args = makeCompileCommand(request).joinToString(" \\\n        ")
-                    throw Aapt2Exception.create(
-                        logger = logger,
-                        description = "Android resource compilation failed",
-                        output = result.stdErr,
-                        processName = displayName,
-                        command = "$aaptPath compile $args"
-                    )
+        }
+        try {
+            processOutput.delegate = pipeline
+            for (request in requests) {
+                if (failure != null) {
+                    break
                 }
-                is WaitForTaskCompletion.Result.InternalAapt2Error -> {
-                    throw result.failure
+                if (inFlight.size >= MAX_PIPELINED_REQUESTS) {
+                    awaitOldest()
                 }
+                // Register the request before sending it, its output may arrive immediately.
+                val waitForTask = pipeline.add()
+                inFlight.addLast(PendingCompile(request, waitForTask, System.nanoTime()))
+                Aapt2DaemonUtil.requestCompile(writer, request)
+                writePartialRFile(request)
+            }
+            while (inFlight.isNotEmpty()) {
+                awaitOldest()
             }
         } finally {
             processOutput.delegate = noOutputExpected
         }
+        failure?.let { throw it }
+    }
+
+    private class PendingCompile(
+            val request: CompileResourceRequest,
+            val waitForTask: WaitForTaskCompletion,
+            val startNanos: Long)
+
+    private fun writePartialRFile(request: CompileResourceRequest) {
+        // Temporary workaround for b/111629686, manually generate the partial R file for raw and non xml res.
+        request.partialRFile?.apply {
+            if (request.inputDirectoryName.startsWith("raw") || !request.inputFile.path.endsWith(".xml")) {
+                val type = request.inputDirectoryName.substringBefore('-')
+                val nameWithoutExtension = request.inputFile.name.substringBefore('.')
+                Files.write(toPath(), ImmutableList.of("default int $type $nameWithoutExtension"))
+            }
+        }
+    }
+
+    @Throws(Aapt2Exception::class, IOException::class)
+    private fun checkCompileResult(
+            request: CompileResourceRequest,
+            result: WaitForTaskCompletion.Result,
+            logger: ILogger) {
+        when (result) {
+            is WaitForTaskCompletion.Result.Succeeded -> {}
+            is WaitForTaskCompletion.Result.Failed -> {
+                val args = makeCompileCommand(request).joinToString(" \\\n        ")
+                throw Aapt2Exception.create(
+                    logger = logger,
+                    description = "Android resource compilation failed",
+                    output = result.stdErr,
+                    processName = displayName,
+                    command = "$aaptPath compile $args"
+                )
+            }
+            is WaitForTaskCompletion.Result.InternalAapt2Error -> {
+                throw result.failure
+            }
+        }
     }
 
     @Throws(TimeoutException::class, Aapt2InternalException::class, Aapt2Exception::class)
@@ -348,6 +422,44 @@ class Aapt2DaemonImpl(
         }
     }
 
+    /**
+     * Dispatches the output of the daemon to the requests in flight, in the order they were sent.
+     * A request is complete once the daemon reports it is done with it.
+     */
+    class PipelinedTaskCompletion(
+            private val displayName: String,
+            val logger: ILogger) : GrabProcessOutput.IProcessOutput {
+
+        private val inFlight = ConcurrentLinkedQueue<WaitForTaskCompletion>()
+
+        /** Returns the completion of a request about to be sent to the daemon. */
+        fun add(): WaitForTaskCompletion =
+                WaitForTaskCompletion(displayName, logger).also { inFlight.add(it) }
+
+        override fun out(line: String?) {
+            line?.let { logger.lifecycle("%1\$s: %2\$s", displayName, it) }
+        }
+
+        override fun err(line: String?) {
+            if (line == null) {
+                // The process exited, none of the requests in flight will complete.
+                while (true) {
+                    val waitForTask = inFlight.poll() ?: return
+                    waitForTask.err(null)
+                }
+            }
+            val waitForTask = inFlight.peek()
+            if (waitForTask == null) {
+                logger.error(null, "$displayName: Unexpected error output: $line")
+                return
+            }
+            waitForTask.err(line)
+            if (line == "Done") {
+                inFlight.poll()
+            }
+        }
+    }
+
     class AllowShutdown(private val displayName: String,
             val logger: ILogger) : GrabProcessOutput.IProcessOutput {
 
@@ -365,4 +477,8 @@ class Aapt2DaemonImpl(
         }
     }
 
+    companion object {
+        /** How many compile requests may be sent to a daemon before waiting for the oldest one. */
+        private const val MAX_PIPELINED_REQUESTS = 64
+    }
 }
@@ -7,7 +7,9 @@ import com.tyron.builder.common.resources.CompileResourceRequest
 import com.tyron.builder.internal.aapt.AaptConvertConfig
 import com.tyron.builder.internal.aapt.AaptPackageConfig
 import java.io.Closeable
+import java.util.concurrent.Semaphore
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import javax.annotation.concurrent.GuardedBy
 import javax.annotation.concurrent.NotThreadSafe
 import javax.annotation.concurrent.ThreadSafe
@@ -15,10 +17,12 @@ import javax.annotation.concurrent.ThreadSafe
 /**
  * Maintains a pool of AAPT2 daemon processes.
  *
- * The pool is expanded if all processes are busy when a request is received.
- * No attempt is made to limit the size of the pool.
- * Users of this class are expected to manage the desired concurrency level through the use of
- * gradle workers, a thread pool or similar.
+ * The pool is expanded if all processes are busy when a request is received, up to [maxDaemons]
+ * processes, which defaults to the number of cores. Past that, leasing a daemon blocks until one
+ * is returned, unless the leasing thread already holds a daemon: it may be waiting for a daemon
+ * held by a thread that waits for it in turn, so it gets one past the limit instead. Users of this class are expected to manage the desired concurrency level through
+ * the use of gradle workers, a thread pool or similar, and to send many compile requests at once
+ * through [Aapt2.compile] so that each daemon is kept busy.
  *
  * Users of this class are expected to call leaseProcess on a worker thread in a
  * try-with-resources/use block. The operations on the [LeasedAaptDaemon] are then blocking on that
@@ -31,10 +35,23 @@ class Aapt2DaemonManager(
     expiryTime: Long,
     expiryTimeUnit: TimeUnit,
     private val listener: Listener = NoOpListener(),
-    private val timeSource: Ticker = Ticker.systemTicker()) {
+    private val timeSource: Ticker = Ticker.systemTicker(),
+    val maxDaemons: Int = Runtime.getRuntime().availableProcessors()) {
 
     private val expiryTimeNanoSeconds = expiryTimeUnit.toNanos(expiryTime)
 
+    /** One permit per daemon that may be leased, so that the pool does not grow past the limit. */
+    private val leases = Semaphore(maxDaemons, true)
+
+    /** The number of threads waiting for a daemon to be returned. */
+    private val waitingCount = AtomicInteger()
+
+    /** Requests processed by daemons that have been removed from the pool. */
+    @GuardedBy("this")
+    private var retiredRequests: Long = 0
+    @GuardedBy("this")
+    private var retiredRequestLatencyNanos: Long = 0
+
     @GuardedBy("this")
     private var latestDisplayId: Int = 0
 
@@ -45,6 +62,11 @@ class Aapt2DaemonManager(
             val daemon: Aapt2Daemon,
             var lastUsedNanoSeconds: Long,
             var busy: Boolean = false) {
+        /** The thread this daemon is leased to, while it is busy. */
+        var leasedBy: Thread? = null
+        /** Whether the lease took one of the permits of the pool, to release on return. */
+        var holdsPermit: Boolean = false
+
         fun shutdown() = daemon.shutDown()
     }
 
@@ -52,13 +74,40 @@ class Aapt2DaemonManager(
      * Returns a [LeasedAaptDaemon], either from a pool of started daemons,
      * Or starting a new process if all the existing daemons in the pool are in use
      *
-     * Blocks until the daemon is ready to receive commands.
+     * Blocks until a daemon is available if [maxDaemons] daemons are already in use, and until
+     * the daemon is ready to receive commands.
      */
-    @Synchronized
+    // Not synchronized so that waiting for a daemon does not block returning one.
     fun leaseDaemon(): LeasedAaptDaemon {
+        val holdsPermit = !holdsDaemon(Thread.currentThread())
+        if (holdsPermit && !leases.tryAcquire()) {
+            waitingCount.incrementAndGet()
+            try {
+                leases.acquireUninterruptibly()
+            } finally {
+                waitingCount.decrementAndGet()
+            }
+        }
+        try {
+            return takeDaemon(holdsPermit)
+        } catch (e: Throwable) {
+            if (holdsPermit) {
+                leases.release()
+            }
+            throw e
+        }
+    }
+
+    @Synchronized
+    private fun holdsDaemon(thread: Thread): Boolean = pool.any { it.busy && it.leasedBy === thread }
+
+    @Synchronized
+    private fun takeDaemon(holdsPermit: Boolean): LeasedAaptDaemon {
         val daemon =
                 pool.find { !it.busy } ?: newAaptDaemon()
         daemon.busy = true
+        daemon.leasedBy = Thread.currentThread()
+        daemon.holdsPermit = holdsPermit
         return LeasedAaptDaemon(daemon, this::returnProcess)
     }
 
@@ -80,10 +129,19 @@ class Aapt2DaemonManager(
         if (!pool.isEmpty()) {
             listener.lastDaemonStopped()
         }
-        pool.forEach { it.shutdown() }
+        pool.forEach {
+            retire(it)
+            it.shutdown()
+        }
         pool.clear()
     }
 
+    @GuardedBy("this")
+    private fun retire(daemon: LeasableAaptDaemon) {
+        retiredRequests += daemon.daemon.processedRequests
+        retiredRequestLatencyNanos += daemon.daemon.totalRequestLatencyNanos
+    }
+
     @GuardedBy("this")  // Only called from leaseDaemon, so already synchronized
     private fun newAaptDaemon(): LeasableAaptDaemon {
         val displayId = latestDisplayId++
@@ -97,11 +155,25 @@ class Aapt2DaemonManager(
     }
 
     /** Marks the process as returned, and updates when it was last used */
-    @Synchronized
     private fun returnProcess(key: LeasableAaptDaemon) {
+        val holdsPermit = key.holdsPermit
+        try {
+            markReturned(key)
+        } finally {
+            if (holdsPermit) {
+                leases.release()
+            }
+        }
+    }
+
+    @Synchronized
+    private fun markReturned(key: LeasableAaptDaemon) {
+        key.leasedBy = null
+        key.holdsPermit = false
         if (key.daemon.state != Aapt2Daemon.State.RUNNING) {
             // If the daemon was not started or has stopped there's no point keeping it in the pool.
             // No need to shut it down either, that would have already happened if needed.
+            retire(key)
             pool.remove(key)
             if (pool.isEmpty()) {
                 listener.lastDaemonStopped()
@@ -122,7 +194,10 @@ class Aapt2DaemonManager(
             when {
             // Daemons that are in use, or have been used recently are kept
                 daemon.busy || daemon.lastUsedNanoSeconds >= expireHorizon -> pool.add(daemon)
-                else -> expired.add(daemon)
+                else -> {
+                    retire(daemon)
+                    expired.add(daemon)
+                }
             }
         }
         if (pool.isEmpty()) {
@@ -152,6 +227,12 @@ class Aapt2DaemonManager(
             leasableDaemon.daemon.compile(request, logger)
         }
 
+        @Throws(Aapt2CompileException::class)
+        override fun compile(requests: List<CompileResourceRequest>, logger: ILogger) {
+            Preconditions.checkState(leaseValid, "Leased process is already closed")
+            leasableDaemon.daemon.compile(requests, logger)
+        }
+
         @Throws(Aapt2Exception::class)
         override fun link(request: AaptPackageConfig, logger: ILogger) {
             Preconditions.checkState(leaseValid, "Leased process is already closed")
@@ -177,6 +258,10 @@ class Aapt2DaemonManager(
             leaseDaemon().use { it.compile(request, logger) }
         }
 
+        override fun compile(requests: List<CompileResourceRequest>, logger: ILogger) {
+            leaseDaemon().use { it.compile(requests, logger) }
+        }
+
         override fun link(request: AaptPackageConfig, logger: ILogger) {
             leaseDaemon().use { it.link(request, logger) }
         }
@@ -207,8 +292,35 @@ class Aapt2DaemonManager(
     }
 
     @Synchronized
-    fun stats(): Stats = Stats(poolSize = pool.size, busyCount = pool.count { it.busy })
+    fun stats(): Stats {
+        var processedRequests = retiredRequests
+        var requestLatencyNanos = retiredRequestLatencyNanos
+        for (daemon in pool) {
+            processedRequests += daemon.daemon.processedRequests
+            requestLatencyNanos += daemon.daemon.totalRequestLatencyNanos
+        }
+        return Stats(
+            poolSize = pool.size,
+            busyCount = pool.count { it.busy },
+            queueDepth = waitingCount.get(),
+            processedRequests = processedRequests,
+            averageRequestLatencyNanos =
+                if (processedRequests == 0L) 0 else requestLatencyNanos / processedRequests
+        )
+    }
 
-    data class Stats(val poolSize: Int, val busyCount: Int)
+    /**
+     * @property queueDepth the number of threads waiting for a daemon, as all of them are in use
+     * @property processedRequests the number of requests processed by the daemons of this manager
+     * @property averageRequestLatencyNanos the average time between sending a request to a daemon
+     *     and receiving its result
+     */
+    data class Stats(
+        val poolSize: Int,
+        val busyCount: Int,
+        val queueDepth: Int = 0,
+        val processedRequests: Long = 0,
+        val averageRequestLatencyNanos: Long = 0
+    )
 
 }
\ No newline at end of file
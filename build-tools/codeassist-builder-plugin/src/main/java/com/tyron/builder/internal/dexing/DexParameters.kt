@@ -20,7 +20,8 @@ class DexParameters(
         dexPerClass: Boolean,
         bootClasspath: DexArchiveBuilderTaskDelegate.ClasspathServiceKey,
         classpath: DexArchiveBuilderTaskDelegate.ClasspathServiceKey,
-        coreLibDesugarOutputKeepRuleFile: File?): DexParametersForWorkers {
+        coreLibDesugarOutputKeepRuleFile: File?,
+        dexClassCacheDir: File?): DexParametersForWorkers {
         return DexParametersForWorkers(
             minSdkVersion = minSdkVersion,
             debuggable = debuggable,
@@ -30,7 +31,8 @@ class DexParameters(
             desugarClasspath = classpath,
             coreLibDesugarConfig = coreLibDesugarConfig,
             coreLibDesugarOutputKeepRuleFile = coreLibDesugarOutputKeepRuleFile,
-            errorFormatMode = errorFormatMode)
+            errorFormatMode = errorFormatMode,
+            dexClassCacheDir = dexClassCacheDir.takeUnless { withDesugaring })
     }
 }
 
@@ -48,7 +50,9 @@ class DexParametersForWorkers(
     val desugarClasspath: DexArchiveBuilderTaskDelegate.ClasspathServiceKey,
     val coreLibDesugarConfig: String?,
     val coreLibDesugarOutputKeepRuleFile: File?,
-    val errorFormatMode: SyncOptions.ErrorFormatMode
+    val errorFormatMode: SyncOptions.ErrorFormatMode,
+    /** Root directory of the [com.tyron.builder.dexing.DexClassCache], `null` if not used. */
+    val dexClassCacheDir: File?
 ) : Serializable {
 
     companion object {
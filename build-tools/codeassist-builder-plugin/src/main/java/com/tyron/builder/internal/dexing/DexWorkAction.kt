@@ -183,7 +183,14 @@ private fun getDexArchiveBuilder(
                 coreLibDesugarConfig = dexSpec.dexParams.coreLibDesugarConfig,
                 coreLibDesugarOutputKeepRuleFile =
                 dexSpec.dexParams.coreLibDesugarOutputKeepRuleFile,
-                messageReceiver = messageReceiver
+                messageReceiver = messageReceiver,
+                dexClassCache = dexSpec.dexParams.dexClassCacheDir?.let {
+                    DexClassCache.create(
+                        it,
+                        dexSpec.dexParams.minSdkVersion,
+                        dexSpec.dexParams.debuggable
+                    )
+                }
             )
         )
     }
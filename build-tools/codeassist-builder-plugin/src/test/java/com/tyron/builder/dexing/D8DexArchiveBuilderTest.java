@@ -0,0 +1,104 @@
+package com.tyron.builder.dexing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import com.tyron.builder.dexing.r8.ClassFileProviderFactory;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+public class D8DexArchiveBuilderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path classes;
+    private DexClassCache cache;
+
+    @Before
+    public void setup() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+
+        File sources = temporaryFolder.newFolder("src");
+        File foo = write(new File(sources, "a/Foo.java"), "package a; public class Foo {}");
+        File bar = write(new File(sources, "b/Bar.java"), "package b; public class Bar {}");
+        classes = temporaryFolder.newFolder("classes").toPath();
+        assertEquals(0, compiler.run(null, null, null, "--release", "8",
+                "-d", classes.toString(), foo.getPath(), bar.getPath()));
+
+        // the class file of b.Bar is not at the path of its name
+        Files.createDirectories(classes.resolve("c"));
+        Files.move(classes.resolve("b/Bar.class"), classes.resolve("c/Misplaced.class"));
+
+        cache = DexClassCache.create(temporaryFolder.newFolder("cache"), 21, true);
+    }
+
+    @Test
+    public void testClassAtAnotherPathIsDexedWithoutTheCache() throws IOException {
+        Path first = temporaryFolder.newFolder("first").toPath();
+        convert(first);
+
+        assertEquals(Arrays.asList("a/Foo.dex", "b/Bar.dex"), list(first));
+
+        // a.Foo comes from the cache now, b.Bar is dexed again
+        Path second = temporaryFolder.newFolder("second").toPath();
+        convert(second);
+
+        assertEquals(list(first), list(second));
+        assertTrue(Arrays.equals(
+                Files.readAllBytes(first.resolve("b/Bar.dex")),
+                Files.readAllBytes(second.resolve("b/Bar.dex"))));
+    }
+
+    private void convert(Path output) throws IOException {
+        DexParameters parameters = new DexParameters(
+                21,
+                true,
+                true,
+                false,
+                new ClassFileProviderFactory(Collections.emptyList()),
+                new ClassFileProviderFactory(Collections.emptyList()),
+                null,
+                null,
+                message -> {},
+                cache);
+        try (ClassFileInput input = ClassFileInputs.fromPath(classes)) {
+            DexArchiveBuilder.createD8DexBuilder(parameters)
+                    .convert(input.entries((path, name) -> true), output, null);
+        }
+    }
+
+    private static List<String> list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .map(file -> dir.relativize(file).toString().replace(File.separatorChar, '/'))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static File write(File file, String content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,145 @@
+package com.tyron.builder.dexing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+public class DexClassCacheTest {
+
+    private static final long UNUSED = TimeUnit.DAYS.toMillis(DexClassCache.MAX_UNUSED_DAYS + 1);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File rootDir;
+    private DexClassCache cache;
+
+    @Before
+    public void setup() throws IOException {
+        rootDir = temporaryFolder.newFolder("dex-classes");
+        cache = DexClassCache.create(rootDir, 21, true);
+    }
+
+    @Test
+    public void testCachedDexFileIsFoundByClassContent() throws IOException {
+        byte[] classBytes = bytes("class A");
+        String key = cache.getKey(classBytes, classBytes.length);
+        assertNull(cache.getDexFile(key));
+
+        File stored = cache.putDexFile(key, bytes("--dex A--"), 2, 5);
+
+        assertEquals(stored, cache.getDexFile(cache.getKey(bytes("class A"), 7)));
+        assertArrayEquals(bytes("dex A"), Files.readAllBytes(stored.toPath()));
+        assertNull(cache.getDexFile(cache.getKey(bytes("class B"), 7)));
+    }
+
+    @Test
+    public void testEntriesAreSeparatedByParameters() throws IOException {
+        String key = cache.getKey(bytes("class A"), 7);
+        cache.putDexFile(key, bytes("dex A"), 0, 5);
+
+        assertNotNull(DexClassCache.create(rootDir, 21, true).getDexFile(key));
+        assertNull(DexClassCache.create(rootDir, 24, true).getDexFile(key));
+        assertNull(DexClassCache.create(rootDir, 21, false).getDexFile(key));
+    }
+
+    @Test
+    public void testCachedBucketIsACopyOfTheArchive() throws IOException {
+        Path archive = temporaryFolder.newFile("0.jar").toPath();
+        Files.write(archive, bytes("merged"));
+        assertNull(cache.getBucket("bucket"));
+
+        cache.putBucket("bucket", archive);
+        Files.delete(archive);
+
+        File bucket = cache.getBucket("bucket");
+        assertNotNull(bucket);
+        assertArrayEquals(bytes("merged"), Files.readAllBytes(bucket.toPath()));
+    }
+
+    @Test
+    public void testUsingAnEntryKeepsItFromTheCleanup() throws IOException {
+        String key = cache.getKey(bytes("class A"), 7);
+        File dexFile = cache.putDexFile(key, bytes("dex A"), 0, 5);
+        assertTrue(dexFile.setLastModified(System.currentTimeMillis() - UNUSED));
+
+        assertNotNull(cache.getDexFile(key));
+        DexClassCache.cleanUpIfNeeded(rootDir);
+
+        assertTrue(dexFile.isFile());
+    }
+
+    @Test
+    public void testCleanupDeletesUnusedEntries() throws IOException {
+        File used = cache.putDexFile(cache.getKey(bytes("class A"), 7), bytes("dex A"), 0, 5);
+        File unused = cache.putDexFile(cache.getKey(bytes("class B"), 7), bytes("dex B"), 0, 5);
+        assertTrue(unused.setLastModified(System.currentTimeMillis() - UNUSED));
+
+        DexClassCache.cleanUpIfNeeded(rootDir);
+
+        assertTrue(used.isFile());
+        assertFalse(unused.isFile());
+    }
+
+    @Test
+    public void testCleanupRunsAtMostOnceADay() throws IOException {
+        DexClassCache.cleanUpIfNeeded(rootDir);
+        File unused = cache.putDexFile(cache.getKey(bytes("class B"), 7), bytes("dex B"), 0, 5);
+        assertTrue(unused.setLastModified(System.currentTimeMillis() - UNUSED));
+
+        DexClassCache.cleanUpIfNeeded(rootDir);
+
+        assertTrue(unused.isFile());
+    }
+
+    @Test
+    public void testCleanupDoesNotRunWhileTheCacheIsPinned() throws IOException {
+        File unused = cache.putDexFile(cache.getKey(bytes("class B"), 7), bytes("dex B"), 0, 5);
+        assertTrue(unused.setLastModified(System.currentTimeMillis() - UNUSED));
+
+        try (Closeable ignored = cache.pin()) {
+            DexClassCache.cleanUpIfNeeded(rootDir);
+            assertTrue(unused.isFile());
+        }
+
+        // the cleanup was skipped, so it runs as soon as the cache is no longer used
+        DexClassCache.cleanUpIfNeeded(rootDir);
+        assertFalse(unused.isFile());
+    }
+
+    @Test
+    public void testPinsOfOtherCachesAreCounted() throws IOException {
+        File unused = cache.putDexFile(cache.getKey(bytes("class B"), 7), bytes("dex B"), 0, 5);
+        assertTrue(unused.setLastModified(System.currentTimeMillis() - UNUSED));
+
+        Closeable first = cache.pin();
+        Closeable second = DexClassCache.create(rootDir, 24, false).pin();
+        first.close();
+        DexClassCache.cleanUpIfNeeded(rootDir);
+        assertTrue(unused.isFile());
+
+        second.close();
+        DexClassCache.cleanUpIfNeeded(rootDir);
+        assertFalse(unused.isFile());
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
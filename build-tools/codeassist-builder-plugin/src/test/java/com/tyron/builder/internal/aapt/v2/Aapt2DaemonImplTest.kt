@@ -0,0 +1,136 @@
+package com.tyron.builder.internal.aapt.v2
+
+import com.android.SdkConstants
+import com.android.utils.NullLogger
+import com.tyron.builder.common.resources.CompileResourceRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.fail
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+class Aapt2DaemonImplTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var script: File
+    private lateinit var compiledLog: File
+    private val daemons = mutableListOf<Aapt2Daemon>()
+
+    @Before
+    fun setup() {
+        assumeTrue(SdkConstants.currentPlatform() != SdkConstants.PLATFORM_WINDOWS)
+        script = temporaryFolder.newFile("aapt2")
+        script.writeText(FAKE_AAPT2)
+        script.setExecutable(true)
+        compiledLog = temporaryFolder.newFile("compiled.txt")
+    }
+
+    @After
+    fun shutdown() {
+        daemons.forEach { it.shutDown() }
+    }
+
+    @Test
+    fun requestsOfABatchArePipelined() {
+        // the daemon only answers once it has received three requests
+        val daemon = startDaemon(prefetch = 3)
+        val requests = (1..5).map { request("values$it.xml") }
+
+        daemon.compile(requests, NullLogger())
+
+        assertEquals(requests.map { it.inputFile.absolutePath }, compiledLog.readLines())
+        assertEquals(5, daemon.processedRequests)
+    }
+
+    @Test
+    fun failureIsReportedForItsRequestAndDaemonStaysUsable() {
+        val daemon = startDaemon(prefetch = 1)
+        val failing = request("fail.xml")
+
+        try {
+            daemon.compile(listOf(request("before.xml"), failing, request("after.xml")), NullLogger())
+            fail("Expected the compilation to fail")
+        } catch (e: Aapt2CompileException) {
+            assertSame(failing, e.request)
+        }
+
+        val next = request("next.xml")
+        daemon.compile(listOf(next), NullLogger())
+        assertEquals(next.inputFile.absolutePath, compiledLog.readLines().last())
+    }
+
+    private fun startDaemon(prefetch: Int): Aapt2Daemon =
+        Aapt2DaemonImpl(
+            displayId = "#${daemons.size}",
+            aaptPath = script.absolutePath,
+            aaptCommand = listOf(
+                script.absolutePath,
+                Aapt2DaemonUtil.DAEMON_MODE_COMMAND,
+                prefetch.toString(),
+                compiledLog.absolutePath
+            ),
+            versionString = "fake",
+            daemonTimeouts = Aapt2DaemonTimeouts(
+                compile = 10,
+                compileUnit = TimeUnit.SECONDS
+            ),
+            logger = NullLogger()
+        ).also { daemons.add(it) }
+
+    private fun request(name: String) =
+        CompileResourceRequest(
+            File(temporaryFolder.root, "res/values/$name"),
+            File(temporaryFolder.root, "out")
+        )
+
+    companion object {
+        /**
+         * Speaks the AAPT2 daemon protocol. Compile requests are only answered once the number of
+         * requests given as the second argument has been received, so a client that waits for each
+         * result before sending the next request times out. Files with "fail" in their name fail
+         * to compile. The files compiled are appended to the file given as the third argument.
+         */
+        private val FAKE_AAPT2 = """
+            #!/bin/sh
+            prefetch=${'$'}2
+            log=${'$'}3
+            received=0
+            queue=""
+            answer() {
+                case "${'$'}1" in
+                    *fail*) echo "Error" >&2; echo "${'$'}1: error: failed to compile." >&2 ;;
+                esac
+                echo "${'$'}1" >> "${'$'}log"
+                echo "Done" >&2
+            }
+            echo "Ready"
+            while IFS= read -r command; do
+                [ -z "${'$'}command" ] && continue
+                file=""
+                while IFS= read -r arg && [ -n "${'$'}arg" ]; do
+                    file="${'$'}arg"
+                done
+                case "${'$'}command" in
+                    quit) echo "Exiting daemon"; exit 0 ;;
+                    c)
+                        received=${'$'}((received + 1))
+                        queue="${'$'}queue ${'$'}file"
+                        if [ "${'$'}received" -ge "${'$'}prefetch" ]; then
+                            for f in ${'$'}queue; do answer "${'$'}f"; done
+                            queue=""
+                        fi
+                        ;;
+                    *) echo "Done" >&2 ;;
+                esac
+            done
+        """.trimIndent() + "\n"
+    }
+}
@@ -0,0 +1,130 @@
+package com.tyron.builder.internal.aapt.v2
+
+import com.android.utils.ILogger
+import com.android.utils.NullLogger
+import com.tyron.builder.common.resources.CompileResourceRequest
+import com.tyron.builder.internal.aapt.AaptConvertConfig
+import com.tyron.builder.internal.aapt.AaptPackageConfig
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.concurrent.thread
+
+class Aapt2DaemonManagerTest {
+
+    private val manager = Aapt2DaemonManager(
+        logger = NullLogger(),
+        daemonFactory = { displayId -> FakeAapt2Daemon(displayId) },
+        expiryTime = 1,
+        expiryTimeUnit = TimeUnit.MINUTES,
+        maxDaemons = 2
+    )
+
+    @After
+    fun shutdown() {
+        manager.shutdown()
+    }
+
+    @Test
+    fun leasePastTheLimitWaitsForADaemonToBeReturned() {
+        val first = lease()
+        // a second lease on this thread would not count towards the limit
+        val release = CountDownLatch(1)
+        val secondLeased = CountDownLatch(1)
+        val holder = thread {
+            lease().use {
+                secondLeased.countDown()
+                release.await()
+            }
+        }
+        assertTrue(secondLeased.await(10, TimeUnit.SECONDS))
+
+        val leased = CountDownLatch(1)
+        val waiting = thread {
+            lease().use { leased.countDown() }
+        }
+
+        assertFalse(leased.await(200, TimeUnit.MILLISECONDS))
+        assertEquals(1, manager.stats().queueDepth)
+        assertEquals(2, manager.stats().poolSize)
+
+        first.close()
+        assertTrue(leased.await(10, TimeUnit.SECONDS))
+        waiting.join()
+        release.countDown()
+        holder.join()
+        assertEquals(0, manager.stats().queueDepth)
+        assertEquals(2, manager.stats().poolSize)
+    }
+
+    @Test
+    fun threadHoldingADaemonDoesNotWaitForAnother() {
+        val bothLeased = CyclicBarrier(2)
+        val failure = AtomicReference<Throwable>()
+        val threads = (1..2).map {
+            thread {
+                try {
+                    lease().use {
+                        bothLeased.await(10, TimeUnit.SECONDS)
+                        // the pool is full, waiting here would wait for the other thread forever
+                        lease().use { }
+                    }
+                } catch (e: Throwable) {
+                    failure.compareAndSet(null, e)
+                }
+            }
+        }
+
+        threads.forEach { it.join(10_000) }
+        threads.forEach { assertFalse("Nested lease is stuck", it.isAlive) }
+        assertNull(failure.get())
+        assertEquals(0, manager.stats().busyCount)
+
+        // the nested leases did not take permits, so the limit still holds
+        val first = lease()
+        val release = CountDownLatch(1)
+        val leased = CountDownLatch(2)
+        val others = (1..2).map {
+            thread {
+                lease().use {
+                    leased.countDown()
+                    release.await()
+                }
+            }
+        }
+        assertFalse(leased.await(200, TimeUnit.MILLISECONDS))
+        assertEquals(1, leased.count)
+        first.close()
+        assertTrue(leased.await(10, TimeUnit.SECONDS))
+        release.countDown()
+        others.forEach { it.join() }
+    }
+
+    /** Leases a daemon and starts it, as the pool only keeps daemons that are running. */
+    private fun lease(): Aapt2DaemonManager.LeasedAaptDaemon =
+        manager.leaseDaemon().also { it.compile(request, NullLogger()) }
+
+    private val request = CompileResourceRequest(File("res/values/values.xml"), File("out"))
+
+    private class FakeAapt2Daemon(displayId: Int) :
+        Aapt2Daemon("Fake AAPT2 daemon #$displayId", NullLogger()) {
+
+        override fun startProcess() {}
+
+        override fun doCompile(request: CompileResourceRequest, logger: ILogger) {}
+
+        override fun doLink(request: AaptPackageConfig, logger: ILogger) {}
+
+        override fun doConvert(request: AaptConvertConfig, logger: ILogger) {}
+
+        override fun stopProcess() {}
+    }
+}
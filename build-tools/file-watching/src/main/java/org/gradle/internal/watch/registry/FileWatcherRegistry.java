@@ -90,5 +90,17 @@ public interface FileWatcherRegistry extends Closeable {
         boolean isUnknownEventEncountered();
         int getNumberOfReceivedEvents();
         int getNumberOfWatchedHierarchies();
+
+        /**
+         * The average time between a watcher receiving a change from the operating system and handling it.
+         * Only measured for watchers which report when they received their changes.
+         */
+        long getAverageEventLatencyMillis();
+        long getMaximumEventLatencyMillis();
+
+        /**
+         * The time spent handling the received events, which approximates the CPU used by file watching.
+         */
+        long getEventHandlingTimeMillis();
     }
 }
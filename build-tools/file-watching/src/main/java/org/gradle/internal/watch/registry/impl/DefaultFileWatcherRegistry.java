@@ -72,10 +72,14 @@ public class DefaultFileWatcherRegistry implements FileWatcherRegistry {
                 while (consumeEvents) {
                     FileWatchEvent nextEvent = fileEvents.take();
                     if (!stopping) {
+                        long handlingStart = System.nanoTime();
                         nextEvent.handleEvent(new Handler() {
                             @Override
                             public void handleChangeEvent(ChangeType type, String absolutePath) {
                                 fileWatchingStatistics.eventReceived();
+                                if (nextEvent instanceof ReceivedChangeEvent) {
+                                    fileWatchingStatistics.eventLatency(handlingStart - ((ReceivedChangeEvent) nextEvent).getReceivedNanos());
+                                }
                                 fileWatcherUpdater.triggerWatchProbe(absolutePath);
                                 handler.handleChange(convertType(type), Paths.get(absolutePath));
                             }
@@ -111,6 +115,7 @@ public class DefaultFileWatcherRegistry implements FileWatcherRegistry {
                                 consumeEvents = false;
                             }
                         });
+                        fileWatchingStatistics.eventHandled(System.nanoTime() - handlingStart);
                     }
                 }
             } catch (InterruptedException e) {
@@ -195,6 +200,21 @@ public class DefaultFileWatcherRegistry implements FileWatcherRegistry {
             public int getNumberOfWatchedHierarchies() {
                 return numberOfWatchedHierarchies.get();
             }
+
+            @Override
+            public long getAverageEventLatencyMillis() {
+                return currentStatistics.getAverageEventLatencyMillis();
+            }
+
+            @Override
+            public long getMaximumEventLatencyMillis() {
+                return currentStatistics.getMaximumEventLatencyMillis();
+            }
+
+            @Override
+            public long getEventHandlingTimeMillis() {
+                return currentStatistics.getEventHandlingTimeMillis();
+            }
         };
     }
 
@@ -228,6 +248,10 @@ public class DefaultFileWatcherRegistry implements FileWatcherRegistry {
         private boolean unknownEventEncountered;
         private int numberOfReceivedEvents;
         private Throwable errorWhileReceivingFileChanges;
+        private int numberOfMeasuredLatencies;
+        private long totalEventLatencyNanos;
+        private long maximumEventLatencyNanos;
+        private long eventHandlingTimeNanos;
 
         public Optional<Throwable> getErrorWhileReceivingFileChanges() {
             return Optional.ofNullable(errorWhileReceivingFileChanges);
@@ -241,10 +265,32 @@ public class DefaultFileWatcherRegistry implements FileWatcherRegistry {
             return numberOfReceivedEvents;
         }
 
+        public long getAverageEventLatencyMillis() {
+            return numberOfMeasuredLatencies == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalEventLatencyNanos / numberOfMeasuredLatencies);
+        }
+
+        public long getMaximumEventLatencyMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maximumEventLatencyNanos);
+        }
+
+        public long getEventHandlingTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(eventHandlingTimeNanos);
+        }
+
         public void eventReceived() {
             numberOfReceivedEvents++;
         }
 
+        public void eventLatency(long latencyNanos) {
+            numberOfMeasuredLatencies++;
+            totalEventLatencyNanos += latencyNanos;
+            maximumEventLatencyNanos = Math.max(maximumEventLatencyNanos, latencyNanos);
+        }
+
+        public void eventHandled(long handlingTimeNanos) {
+            eventHandlingTimeNanos += handlingTimeNanos;
+        }
+
         public void errorWhileReceivingFileChanges(Throwable error) {
             if (errorWhileReceivingFileChanges != null) {
                 errorWhileReceivingFileChanges = error;
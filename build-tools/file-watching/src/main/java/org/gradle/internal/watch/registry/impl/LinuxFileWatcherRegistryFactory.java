@@ -1,9 +1,12 @@
 package org.gradle.internal.watch.registry.impl;
 
-import static net.rubygrapefruit.platform.internal.jni.LinuxFileEventFunctions.*;
+import static org.gradle.internal.watch.registry.impl.HierarchicalFileWatcherUpdater.FileSystemLocationToWatchValidator.NO_VALIDATION;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
-import org.gradle.internal.file.FileType;
-import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.watch.registry.FileWatcherProbeRegistry;
 import org.gradle.internal.watch.registry.FileWatcherUpdater;
 
@@ -13,96 +16,305 @@ import net.rubygrapefruit.platform.file.FileWatcher;
 import net.rubygrapefruit.platform.internal.jni.AbstractFileEventFunctions;
 import net.rubygrapefruit.platform.internal.jni.InsufficientResourcesForWatchingException;
 
-import org.apache.commons.vfs2.FileChangeEvent;
-import org.apache.commons.vfs2.FileListener;
-import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.FileSystemException;
-import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.VFS;
-import org.apache.commons.vfs2.impl.DefaultFileMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
+/**
+ * File watching on Linux and Android using {@link WatchService}, which is backed by inotify.
+ *
+ * inotify only watches single directories, so every directory of a watched hierarchy is registered and
+ * directories created later are registered as their creation is reported.
+ * This allows using the {@link HierarchicalFileWatcherUpdater} like on Windows.
+ */
 public class LinuxFileWatcherRegistryFactory extends AbstractFileWatcherRegistryFactory<LinuxFileWatcherRegistryFactory.LinuxFileEventFunctions, LinuxFileWatcherRegistryFactory.LinuxFileWatcher> {
 
-    private final BlockingQueue<FileWatchEvent> queue = new ArrayBlockingQueue<>(10);
-
     protected static class LinuxFileWatcher implements FileWatcher {
+        private static final Logger LOGGER = LoggerFactory.getLogger(LinuxFileWatcher.class);
+
+        /**
+         * Events arriving within this time after the first event of a burst are reported together,
+         * repeated events for the same path are reported once.
+         */
+        private static final long COALESCING_WINDOW_MILLIS = 20;
+
+        private final EventCallback callback;
+        private final WatchService watchService;
+        private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+        private final Map<Path, WatchKey> watchKeys = new ConcurrentHashMap<>();
+        private final Set<Path> watchedHierarchies = ConcurrentHashMap.newKeySet();
+        private final Thread thread;
+
+        public LinuxFileWatcher(EventCallback callback) throws IOException {
+            this.callback = callback;
+            this.watchService = FileSystems.getDefault().newWatchService();
+            this.thread = new Thread(this::processEvents, "File watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
 
-        private final FileSystemManager manager;
-        private DefaultFileMonitor fileMonitor;
-        private final FileListener fileListener;
-
-        public LinuxFileWatcher(FileListener fileListener) {
-            try {
-                manager = VFS.getManager();
-            } catch (FileSystemException e) {
-                throw new RuntimeException(e);
+        @Override
+        public void startWatching(Collection<File> hierarchies) throws InsufficientResourcesForWatchingException {
+            for (File hierarchy : hierarchies) {
+                Path root = hierarchy.toPath().toAbsolutePath();
+                watchedHierarchies.add(root);
+                try {
+                    registerRecursively(root);
+                } catch (IOException e) {
+                    // inotify reports running out of watches as an IOException
+                    throw new InsufficientResourcesForWatchingException("Unable to watch " + root + ": " + e.getMessage());
+                }
             }
-            this.fileListener = fileListener;
         }
 
         @Override
-        public void startWatching(Collection<File> collection) throws InsufficientResourcesForWatchingException {
-            if (fileMonitor != null) {
+        public boolean stopWatching(Collection<File> hierarchies) {
+            for (File hierarchy : hierarchies) {
+                Path root = hierarchy.toPath().toAbsolutePath();
+                watchedHierarchies.remove(root);
+                unregisterRecursively(root);
+            }
+            return true;
+        }
+
+        /**
+         * Stops watching hierarchies whose root is not a directory anymore, e.g. because it has been moved.
+         *
+         * @return the roots of the hierarchies that are not watched anymore
+         */
+        public Collection<File> stopWatchingMovedPaths() {
+            List<File> movedHierarchies = new ArrayList<>();
+            for (Path root : watchedHierarchies) {
+                if (!Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+                    movedHierarchies.add(root.toFile());
+                }
+            }
+            stopWatching(movedHierarchies);
+            return movedHierarchies;
+        }
+
+        private void registerRecursively(Path root) throws IOException {
+            if (!Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
                 return;
             }
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!watchKeys.containsKey(dir)) {
+                        WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                        watchedDirectories.put(key, dir);
+                        watchKeys.put(dir, key);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // the directory was removed while walking, its removal is reported separately
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        private void unregisterRecursively(Path root) {
+            for (Map.Entry<Path, WatchKey> entry : watchKeys.entrySet()) {
+                Path dir = entry.getKey();
+                if (dir.startsWith(root) && !isInWatchedHierarchy(dir)) {
+                    WatchKey key = entry.getValue();
+                    key.cancel();
+                    watchKeys.remove(dir, key);
+                    watchedDirectories.remove(key);
+                }
+            }
+        }
 
-            List<FileObject> files = resolveFileObjects(collection);
-            fileMonitor = new DefaultFileMonitor(fileListener);
-            fileMonitor.setRecursive(true);
-            files.forEach(fileMonitor::addFile);
-            fileMonitor.start();
+        private boolean isInWatchedHierarchy(Path path) {
+            for (Path root : watchedHierarchies) {
+                if (path.startsWith(root)) {
+                    return true;
+                }
+            }
+            return false;
         }
 
-        @Override
-        public boolean stopWatching(Collection<File> collection) {
-            if (fileMonitor == null) {
-                return false;
+        private void processEvents() {
+            try {
+                while (true) {
+                    WatchKey key = watchService.take();
+                    EventBatch batch = new EventBatch(System.nanoTime());
+                    collectEvents(key, batch);
+
+                    long deadline = System.currentTimeMillis() + COALESCING_WINDOW_MILLIS;
+                    long remaining;
+                    while ((remaining = deadline - System.currentTimeMillis()) > 0
+                            && (key = watchService.poll(remaining, TimeUnit.MILLISECONDS)) != null) {
+                        collectEvents(key, batch);
+                    }
+                    report(batch);
+                }
+            } catch (ClosedWatchServiceException e) {
+                // stopped
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                callback.failed(e);
             }
-            List<FileObject> fileObjects = resolveFileObjects(collection);
-            fileObjects.forEach(fileMonitor::removeFile);
-            return true;
         }
 
-        private List<FileObject> resolveFileObjects(Collection<File> collection) {
-            return collection.stream()
-                    .map(File::toString)
-                    .map(path -> {
+        private void collectEvents(WatchKey key, EventBatch batch) {
+            Path dir = watchedDirectories.get(key);
+            if (dir == null) {
+                key.cancel();
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                WatchEvent.Kind<?> kind = event.kind();
+                if (kind == OVERFLOW) {
+                    // inotify drops events once its queue is full, the rest of the burst is
+                    // covered by the overflow, so don't register created directories one by one
+                    batch.overflowed = true;
+                    continue;
+                }
+                Path child = dir.resolve((Path) event.context());
+                FileWatchEvent.ChangeType type;
+                if (kind == ENTRY_CREATE) {
+                    type = FileWatchEvent.ChangeType.CREATED;
+                    if (!batch.overflowed) {
                         try {
-                            return manager.resolveFile(path);
-                        } catch (FileSystemException e) {
-                            return null;
+                            registerRecursively(child);
+                        } catch (IOException e) {
+                            LOGGER.debug("Unable to watch created directory {}", child, e);
+                            // changes inside the directory may be missed
+                            batch.unwatched.add(child);
                         }
-                    })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+                    }
+                } else if (kind == ENTRY_DELETE) {
+                    type = FileWatchEvent.ChangeType.REMOVED;
+                } else {
+                    type = FileWatchEvent.ChangeType.MODIFIED;
+                }
+                batch.changes.merge(child, type, LinuxFileWatcher::coalesce);
+            }
+            if (!key.reset()) {
+                // the directory has been removed or is not accessible anymore
+                watchedDirectories.remove(key);
+                watchKeys.remove(dir, key);
+                batch.changes.merge(dir, FileWatchEvent.ChangeType.REMOVED, LinuxFileWatcher::coalesce);
+            }
+        }
+
+        private static FileWatchEvent.ChangeType coalesce(FileWatchEvent.ChangeType previous, FileWatchEvent.ChangeType next) {
+            if (previous == FileWatchEvent.ChangeType.CREATED && next == FileWatchEvent.ChangeType.MODIFIED) {
+                return FileWatchEvent.ChangeType.CREATED;
+            }
+            return next;
+        }
+
+        private void report(EventBatch batch) throws InterruptedException {
+            if (batch.overflowed) {
+                // directories created during the overflow have not been registered yet, a single
+                // walk from the roots picks them up since registered directories are skipped
+                for (Path root : watchedHierarchies) {
+                    try {
+                        registerRecursively(root);
+                    } catch (IOException e) {
+                        LOGGER.debug("Unable to watch {} after overflow", root, e);
+                    }
+                }
+                // everything watched is invalidated, so the individual changes don't matter
+                callback.overflow(null);
+                return;
+            }
+            for (Path unwatched : batch.unwatched) {
+                callback.overflow(unwatched.toString());
+            }
+            for (Map.Entry<Path, FileWatchEvent.ChangeType> change : batch.changes.entrySet()) {
+                Path path = change.getKey();
+                if (isInvalidatedByOverflow(path, batch.unwatched)) {
+                    continue;
+                }
+                callback.changed(change.getValue(), path.toString(), batch.receivedNanos);
+            }
+        }
+
+        private static boolean isInvalidatedByOverflow(Path path, Set<Path> overflows) {
+            for (Path overflow : overflows) {
+                if (path.startsWith(overflow)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static class EventBatch {
+            /**
+             * When the first key of the batch was taken from the watch service.
+             */
+            private final long receivedNanos;
+            private final Map<Path, FileWatchEvent.ChangeType> changes = new LinkedHashMap<>();
+            /**
+             * Created directories that could not be registered, their content is reported as overflown.
+             */
+            private final Set<Path> unwatched = new LinkedHashSet<>();
+            private boolean overflowed;
+
+            EventBatch(long receivedNanos) {
+                this.receivedNanos = receivedNanos;
+            }
         }
 
         @Override
         public void shutdown() {
-            if (fileMonitor != null) {
-                fileMonitor.stop();
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close watch service", e);
             }
         }
 
         @Override
-        public boolean awaitTermination(long l, TimeUnit timeUnit) throws InterruptedException {
-            shutdown();
-            return true;
+        public boolean awaitTermination(long timeout, TimeUnit timeUnit) throws InterruptedException {
+            thread.join(timeUnit.toMillis(timeout));
+            return !thread.isAlive();
         }
 
-        public Collection<File> stopWatchingMovedPaths(Collection<File> directoriesToCheck) {
-            return Collections.emptyList();
+        protected interface EventCallback {
+            /**
+             * @param receivedNanos the {@link System#nanoTime()} at which the change was received from the operating system
+             */
+            void changed(FileWatchEvent.ChangeType type, String absolutePath, long receivedNanos) throws InterruptedException;
+
+            /**
+             * @param absolutePath the path whose changes may have been missed or {@code null} if changes anywhere may have been missed
+             */
+            void overflow(@Nullable String absolutePath);
+
+            void failed(Throwable failure);
         }
     }
 
@@ -126,83 +338,45 @@ public class LinuxFileWatcherRegistryFactory extends AbstractFileWatcherRegistry
                                                          long l,
                                                          TimeUnit timeUnit,
                                                          NativeFileWatcherCallback nativeFileWatcherCallback) throws InterruptedException {
-                    return new LinuxFileWatcher(new FileListener() {
-                        @Override
-                        public void fileCreated(FileChangeEvent event) throws Exception {
-                            FileObject fileObject = event.getFileObject();
-                            nativeFileWatcherCallback.reportChangeEvent(FileWatchEvent.ChangeType.CREATED.ordinal(), fileObject.getPath().toString());
-                        }
-
-                        @Override
-                        public void fileDeleted(FileChangeEvent event) throws Exception {
-                            FileObject fileObject = event.getFileObject();
-                            nativeFileWatcherCallback.reportChangeEvent(
-                                    FileWatchEvent.ChangeType.REMOVED.ordinal(),
-                                    fileObject.getPath().toString()
-                            );
-                        }
-
-                        @Override
-                        public void fileChanged(FileChangeEvent event) throws Exception {
-                            FileObject fileObject = event.getFileObject();
-                            nativeFileWatcherCallback.reportChangeEvent(
-                                    FileWatchEvent.ChangeType.MODIFIED.ordinal(),
-                                    fileObject.getPath().toString()
-                            );
-                        }
-                    });
+                    try {
+                        return new LinuxFileWatcher(new LinuxFileWatcher.EventCallback() {
+                            @Override
+                            public void changed(FileWatchEvent.ChangeType type, String absolutePath, long receivedNanos) throws InterruptedException {
+                                // queued directly rather than through the native callback, which drops the time
+                                blockingQueue.put(new ReceivedChangeEvent(type, absolutePath, receivedNanos));
+                            }
+
+                            @Override
+                            public void overflow(@Nullable String absolutePath) {
+                                nativeFileWatcherCallback.reportOverflow(absolutePath);
+                            }
+
+                            @Override
+                            public void failed(Throwable failure) {
+                                nativeFileWatcherCallback.reportFailure(failure);
+                            }
+                        });
+                    } catch (IOException e) {
+                        throw new NativeIntegrationUnavailableException("Unable to create a watch service: " + e.getMessage());
+                    }
                 }
             };
         }
     }
 
-    private int getChangeTypeIndex(FileWatchEvent.ChangeType event) {
-        return event.ordinal();
-    }
-
     public LinuxFileWatcherRegistryFactory(Predicate<String> watchFilter) throws NativeIntegrationUnavailableException {
         super(new LinuxFileEventFunctions(), watchFilter);
     }
 
     @Override
     protected LinuxFileWatcher createFileWatcher(BlockingQueue<FileWatchEvent> fileEvents) throws InterruptedException {
-        AbstractWatcherBuilder<LinuxFileWatcher> linuxFileWatcherAbstractWatcherBuilder =
+        AbstractFileEventFunctions.AbstractWatcherBuilder<LinuxFileWatcher> linuxFileWatcherAbstractWatcherBuilder =
                 this.fileEventFunctions.newWatcher(fileEvents);
         return linuxFileWatcherAbstractWatcherBuilder.start();
     }
 
     @Override
     protected FileWatcherUpdater createFileWatcherUpdater(LinuxFileWatcher watcher, FileWatcherProbeRegistry probeRegistry, WatchableHierarchies watchableHierarchies) {
-        return new NonHierarchicalFileWatcherUpdater(watcher, probeRegistry, watchableHierarchies, new LinuxMovedDirectoryHandler(watcher, watchableHierarchies));
-    }
-
-    private static class LinuxMovedDirectoryHandler implements AbstractFileWatcherUpdater.MovedDirectoryHandler {
-        private final LinuxFileWatcher watcher;
-        private final WatchableHierarchies watchableHierarchies;
-
-        public LinuxMovedDirectoryHandler(LinuxFileWatcher watcher, WatchableHierarchies watchableHierarchies) {
-            this.watcher = watcher;
-            this.watchableHierarchies = watchableHierarchies;
-        }
-
-        @Override
-        public Collection<File> stopWatchingMovedDirectories(SnapshotHierarchy vfsRoot) {
-            Collection<File> directoriesToCheck = vfsRoot.rootSnapshots()
-                    .filter(snapshot -> snapshot.getType() != FileType.Missing)
-                    .filter(watchableHierarchies::shouldWatch)
-                    .map(snapshot -> {
-                        switch (snapshot.getType()) {
-                            case RegularFile:
-                                return new File(snapshot.getAbsolutePath()).getParentFile();
-                            case Directory:
-                                return new File(snapshot.getAbsolutePath());
-                            default:
-                                throw new IllegalArgumentException("Unexpected file type:" + snapshot.getType());
-                        }
-                    })
-                    .collect(Collectors.toList());
-            return watcher.stopWatchingMovedPaths(directoriesToCheck);
-        }
+        return new HierarchicalFileWatcherUpdater(watcher, NO_VALIDATION, probeRegistry, watchableHierarchies, root -> watcher.stopWatchingMovedPaths());
     }
 }
-
@@ -0,0 +1,36 @@
+package org.gradle.internal.watch.registry.impl;
+
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+
+/**
+ * A change reported by a watcher together with the time the watcher received it from the
+ * operating system, so the registry can measure how long the change waited to be handled.
+ */
+class ReceivedChangeEvent implements FileWatchEvent {
+    private final ChangeType type;
+    private final String absolutePath;
+    private final long receivedNanos;
+
+    ReceivedChangeEvent(ChangeType type, String absolutePath, long receivedNanos) {
+        this.type = type;
+        this.absolutePath = absolutePath;
+        this.receivedNanos = receivedNanos;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the watcher received the change
+     */
+    long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    @Override
+    public void handleEvent(Handler handler) {
+        handler.handleChangeEvent(type, absolutePath);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + absolutePath;
+    }
+}
@@ -145,6 +145,10 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
                             LOGGER.warn("Received {} file system events since last build while watching {} locations",
                                 statisticsSinceLastBuild.getNumberOfReceivedEvents(),
                                 statisticsSinceLastBuild.getNumberOfWatchedHierarchies());
+                            LOGGER.warn("File system events were handled after {} ms on average, at most {} ms, handling them took {} ms",
+                                statistics.getAverageEventLatencyMillis(),
+                                statistics.getMaximumEventLatencyMillis(),
+                                statistics.getEventHandlingTimeMillis());
                             LOGGER.warn("Virtual file system retained information about {} files, {} directories and {} missing files since last build",
                                 statisticsSinceLastBuild.getRetainedRegularFiles(),
                                 statisticsSinceLastBuild.getRetainedDirectories(),
@@ -240,6 +244,10 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
                             LOGGER.warn("Received {} file system events during the current build while watching {} locations",
                                     statisticsDuringBuild.getNumberOfReceivedEvents(),
                                     statisticsDuringBuild.getNumberOfWatchedHierarchies());
+                            LOGGER.warn("File system events were handled after {} ms on average, at most {} ms, handling them took {} ms",
+                                    statistics.getAverageEventLatencyMillis(),
+                                    statistics.getMaximumEventLatencyMillis(),
+                                    statistics.getEventHandlingTimeMillis());
                             LOGGER.warn("Virtual file system retains information about {} files, {} directories and {} missing files until next build",
                                     statisticsDuringBuild.getRetainedRegularFiles(),
                                     statisticsDuringBuild.getRetainedDirectories(),
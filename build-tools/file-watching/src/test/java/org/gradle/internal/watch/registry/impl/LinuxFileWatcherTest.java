@@ -0,0 +1,174 @@
+package org.gradle.internal.watch.registry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class LinuxFileWatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private LinuxFileWatcherRegistryFactory.LinuxFileWatcher watcher;
+    private File root;
+
+    @Before
+    public void setup() throws IOException {
+        // inotify backs the watch service on Linux, other platforms poll and would need long timeouts
+        assumeTrue(System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("linux"));
+        root = temporaryFolder.newFolder("root");
+        watcher = new LinuxFileWatcherRegistryFactory.LinuxFileWatcher(new LinuxFileWatcherRegistryFactory.LinuxFileWatcher.EventCallback() {
+            @Override
+            public void changed(FileWatchEvent.ChangeType type, String absolutePath, long receivedNanos) {
+                events.add(new Event(type.name(), absolutePath, receivedNanos));
+            }
+
+            @Override
+            public void overflow(String absolutePath) {
+                events.add(new Event("OVERFLOW", absolutePath, System.nanoTime()));
+            }
+
+            @Override
+            public void failed(Throwable failure) {
+                events.add(new Event("FAILED", failure.toString(), System.nanoTime()));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (watcher != null) {
+            watcher.shutdown();
+            assertTrue(watcher.awaitTermination(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void testReportsChangesOfFiles() throws Exception {
+        watcher.startWatching(Collections.singletonList(root));
+        File file = new File(root, "a.txt");
+
+        long beforeChange = System.nanoTime();
+        write(file, "a");
+        Event created = expect("CREATED", file);
+        assertTrue(created.receivedNanos >= beforeChange);
+        assertTrue(created.receivedNanos <= System.nanoTime());
+
+        write(file, "b");
+        expect("MODIFIED", file);
+
+        Files.delete(file.toPath());
+        expect("REMOVED", file);
+    }
+
+    @Test
+    public void testWatchesCreatedDirectories() throws Exception {
+        watcher.startWatching(Collections.singletonList(root));
+        File directory = new File(root, "dir");
+
+        assertTrue(directory.mkdir());
+        expect("CREATED", directory);
+
+        File file = new File(directory, "a.txt");
+        write(file, "a");
+        expect("CREATED", file);
+    }
+
+    @Test
+    public void testWatchesExistingDirectories() throws Exception {
+        File directory = new File(root, "a/b");
+        assertTrue(directory.mkdirs());
+        watcher.startWatching(Collections.singletonList(root));
+
+        File file = new File(directory, "a.txt");
+        write(file, "a");
+        expect("CREATED", file);
+    }
+
+    @Test
+    public void testStopsReportingChangesOfUnwatchedHierarchies() throws Exception {
+        watcher.startWatching(Collections.singletonList(root));
+        watcher.stopWatching(Collections.singletonList(root));
+
+        write(new File(root, "a.txt"), "a");
+
+        assertNull(events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testStopsWatchingMovedHierarchies() throws Exception {
+        File other = temporaryFolder.newFolder("other");
+        watcher.startWatching(Arrays.asList(root, other));
+
+        assertTrue(root.renameTo(new File(temporaryFolder.getRoot(), "moved")));
+
+        assertEquals(Collections.singletonList(root.getAbsoluteFile()), watcher.stopWatchingMovedPaths());
+        File file = new File(other, "a.txt");
+        write(file, "a");
+        expect("CREATED", file);
+    }
+
+    /**
+     * Waits for the given change, other changes reported meanwhile are skipped.
+     */
+    private Event expect(String type, File file) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        long remaining;
+        while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+            Event event = events.poll(remaining, TimeUnit.MILLISECONDS);
+            if (event == null) {
+                break;
+            }
+            if (event.type.equals(type) && event.path.equals(file.getAbsolutePath())) {
+                return event;
+            }
+        }
+        fail("Expected " + type + " " + file + ", but it was not reported within " + TIMEOUT_MILLIS + " ms");
+        return null;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class Event {
+        private final String type;
+        private final String path;
+        private final long receivedNanos;
+
+        Event(String type, String path, long receivedNanos) {
+            this.type = type;
+            this.path = path;
+            this.receivedNanos = receivedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + path;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.tyron.builder.project.api.JavaModule;
 import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.lint.client.Configuration;
 import com.tyron.lint.client.LintDriver;
+import com.tyron.lint.client.SuppressionScopes;
 
 import org.jetbrains.kotlin.com.intellij.psi.PsiAnnotation;
 import org.jetbrains.kotlin.com.intellij.psi.PsiAnonymousClass;
@@ -32,6 +33,7 @@ import java.io.File;
 public class JavaContext extends Context {
     static final String SUPPRESS_COMMENT_PREFIX = "//noinspection ";
     private CompileTask mCompileTask;
+    private SuppressionScopes mSuppressionScopes;
 
     public JavaContext(LintDriver driver, JavaModule project, File file, Configuration config) {
         super(driver, project, file, config);
@@ -39,6 +41,7 @@ public class JavaContext extends Context {
 
     public void setCompileTask(CompileTask root) {
         mCompileTask = root;
+        mSuppressionScopes = null;
     }
 
     public CompileTask getCompileTask() {
@@ -49,6 +52,17 @@ public class JavaContext extends Context {
         return mCompileTask.root();
     }
 
+    /**
+     * Returns the suppressing methods of the compilation unit, computed on first use.
+     */
+    @NonNull
+    public SuppressionScopes getSuppressionScopes() {
+        if (mSuppressionScopes == null) {
+            mSuppressionScopes = SuppressionScopes.create(getCompilationUnit());
+        }
+        return mSuppressionScopes;
+    }
+
     public void report(
             @NonNull Issue issue,
             @Nullable Tree scope,
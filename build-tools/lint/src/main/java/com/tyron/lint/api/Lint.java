@@ -5,6 +5,9 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.lint.JavaVisitor;
@@ -16,19 +19,29 @@ import com.tyron.lint.client.Configuration;
 import com.tyron.lint.client.IssueRegistry;
 import com.tyron.lint.client.LintClient;
 import com.tyron.lint.client.LintDriver;
+import com.tyron.lint.client.LintResultCache;
+import com.tyron.lint.client.SourceSignatures;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class Lint {
     private final JavaModule mProject;
     private final JavaCompilerService mCompiler;
     private final List<Detector> mDetectors;
     private final LintClient mClient;
+    private final LintResultCache mResultCache = new LintResultCache();
+    private final SourceSignatures mSignatures = new SourceSignatures();
+    private JavaVisitor mVisitor;
 
     public Lint(JavaCompilerService compiler, JavaModule project, LintClient client) {
         mCompiler = compiler;
@@ -42,8 +55,75 @@ public class Lint {
     }
 
     public void scanFile(File file) {
+        scanFiles(Collections.singletonList(file));
+    }
+
+    /**
+     * Lints the given files. A file whose contents did not change since it was last linted, and
+     * whose dependencies did not either, has its issues reported again from
+     * {@link LintResultCache} instead of being analyzed. The dependencies of a file are the
+     * signatures of the java files of the module and the libraries, as the detectors look at
+     * attributed trees whose types come from all of them, so editing a method body only causes
+     * the edited file to be analyzed again.
+     * <p>
+     * Only the files that changed since the last call are read and parsed, in parallel, but the
+     * files are analyzed one at a time as the compiler is shared with code completion and is not
+     * thread safe.
+     */
+    public void scanFiles(Collection<File> files) {
         Instant start = Instant.now();
-        LintDriver driver = new LintDriver(new IssueRegistry() {
+        Set<File> sources = new HashSet<>(mProject.getJavaFiles().values());
+        sources.addAll(files);
+        mSignatures.update(sources);
+        mResultCache.retainAll(sources);
+
+        HashCode dependencies = hashDependencies();
+        int analyzed = 0;
+        for (File file : files) {
+            HashCode contents = mSignatures.getContents(file);
+            List<LintResultCache.Report> cached =
+                    contents != null ? mResultCache.get(file, contents, dependencies) : null;
+            if (cached != null) {
+                JavaContext context = createContext(createDriver(mClient), file);
+                for (LintResultCache.Report report : cached) {
+                    mClient.report(context, report.issue, report.severity, report.location,
+                            report.message, report.format);
+                }
+                continue;
+            }
+
+            List<LintResultCache.Report> reports = new ArrayList<>();
+            scan(file, LintResultCache.recording(mClient, reports));
+            if (contents != null) {
+                mResultCache.put(file, contents, dependencies, reports);
+            }
+            analyzed++;
+        }
+
+        Log.d("Lint", "Scanning " + files.size() + " files (" + analyzed + " changed) took " +
+                      Duration.between(start, Instant.now()).toMillis() + " ms");
+    }
+
+    private HashCode hashDependencies() {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putBytes(mSignatures.getSignatures().asBytes());
+        for (File library : mProject.getLibraries()) {
+            hasher.putString(library.getAbsolutePath(), StandardCharsets.UTF_8);
+            hasher.putLong(library.length());
+            hasher.putLong(library.lastModified());
+        }
+        return hasher.hash();
+    }
+
+    private void scan(File file, LintClient client) {
+        if (mVisitor == null) {
+            mVisitor = new JavaVisitor(mCompiler, mDetectors);
+        }
+        mVisitor.visitFile(createContext(createDriver(client), file));
+    }
+
+    private LintDriver createDriver(LintClient client) {
+        return new LintDriver(new IssueRegistry() {
             @NonNull
             @Override
             public List<Issue> getIssues() {
@@ -54,8 +134,11 @@ public class Lint {
                         ToastDetector.ISSUE
                 );
             }
-        }, mClient);
-        JavaContext context = new JavaContext(driver, mProject, file, new Configuration() {
+        }, client);
+    }
+
+    private JavaContext createContext(LintDriver driver, File file) {
+        return new JavaContext(driver, mProject, file, new Configuration() {
             @Override
             public void ignore(@NonNull Context context, @NonNull Issue issue, @Nullable Location location, @NonNull String message) {
 
@@ -66,13 +149,11 @@ public class Lint {
 
             }
         });
-        JavaVisitor visitor = new JavaVisitor(mCompiler, mDetectors);
-        visitor.visitFile(context);
-
-        Log.d("Lint", "Scanning took " + Duration.between(start, Instant.now()).toMillis() + " ms");
     }
 
     public void registerDetector(Detector detector) {
         mDetectors.add(detector);
+        mVisitor = null;
+        mResultCache.clear();
     }
 }
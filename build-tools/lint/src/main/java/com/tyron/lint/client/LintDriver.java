@@ -20,7 +20,6 @@ import com.sun.source.tree.LiteralTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.ModifiersTree;
 import com.sun.source.tree.Tree;
-import com.sun.source.util.TreePath;
 
 import java.util.EnumSet;
 import java.util.List;
@@ -66,22 +65,16 @@ public class LintDriver {
                                 @Nullable Tree scope) {
         boolean checkComments = mClient.checkForSuppressComments() &&
                 context != null && context.containsCommentSuppress();
-        if (context == null) {
+        if (context == null || scope == null) {
             return false;
         }
-        while (scope != null) {
-            if (scope instanceof MethodTree) {
-                if (isSuppressed(issue, ((MethodTree) scope).getModifiers())) {
-                    return true;
-                }
-            }
-
-            TreePath parentPath = TreePath.getPath(context.getCompilationUnit(), scope).getParentPath();
-            if (parentPath == null) {
-                break;
-            } else {
-                scope = parentPath.getLeaf();
+        SuppressionScopes scopes = context.getSuppressionScopes();
+        MethodTree method = scopes.getInnermost(scope);
+        while (method != null) {
+            if (isSuppressed(issue, method.getModifiers())) {
+                return true;
             }
+            method = scopes.getOuter(method);
         }
 
         return false;
@@ -0,0 +1,127 @@
+package com.tyron.lint.client;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.HashCode;
+import com.tyron.lint.api.Context;
+import com.tyron.lint.api.Detector;
+import com.tyron.lint.api.Issue;
+import com.tyron.lint.api.Location;
+import com.tyron.lint.api.Severity;
+import com.tyron.lint.api.TextFormat;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The issues reported for each file by the last time it was linted, so a file whose inputs did
+ * not change does not have to be analyzed again.
+ * <p>
+ * The detectors run on attributed trees, so the issues of a file also depend on the types
+ * declared by other files and libraries. Each file is therefore keyed on the hash of its own
+ * contents along with a hash of what it depends on, such as the signatures of the other files,
+ * and only the files whose key changed are analyzed again.
+ */
+public class LintResultCache {
+
+    public static class Report {
+        @NonNull public final Issue issue;
+        @NonNull public final Severity severity;
+        @Nullable public final Location location;
+        @NonNull public final String message;
+        @NonNull public final TextFormat format;
+
+        Report(@NonNull Issue issue, @NonNull Severity severity, @Nullable Location location,
+               @NonNull String message, @NonNull TextFormat format) {
+            this.issue = issue;
+            this.severity = severity;
+            this.location = location;
+            this.message = message;
+            this.format = format;
+        }
+    }
+
+    private static class Entry {
+        private final HashCode mContents;
+        private final HashCode mDependencies;
+        private final List<Report> mReports;
+
+        Entry(HashCode contents, HashCode dependencies, List<Report> reports) {
+            mContents = contents;
+            mDependencies = dependencies;
+            mReports = reports;
+        }
+    }
+
+    private final Map<File, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the issues of the given file, or {@code null} if it was not linted with the given
+     * contents and dependencies before.
+     */
+    @Nullable
+    public List<Report> get(@NonNull File file, @NonNull HashCode contents,
+                            @NonNull HashCode dependencies) {
+        Entry entry = mEntries.get(file);
+        if (entry == null || !entry.mContents.equals(contents)
+                || !entry.mDependencies.equals(dependencies)) {
+            return null;
+        }
+        return entry.mReports;
+    }
+
+    public void put(@NonNull File file, @NonNull HashCode contents,
+                    @NonNull HashCode dependencies, @NonNull List<Report> reports) {
+        mEntries.put(file, new Entry(contents, dependencies, reports));
+    }
+
+    /**
+     * Forgets the files that are not in the given collection, such as deleted files.
+     */
+    public void retainAll(@NonNull Collection<File> files) {
+        mEntries.keySet().retainAll(files);
+    }
+
+    public void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * Returns a client that adds the issues it is given to {@code reports} before passing them
+     * to {@code delegate}.
+     */
+    @NonNull
+    public static LintClient recording(@NonNull LintClient delegate,
+                                       @NonNull List<Report> reports) {
+        return new LintClient() {
+            @NonNull
+            @Override
+            public Class<? extends Detector> replaceDetector(
+                    @NonNull Class<? extends Detector> detectorClass) {
+                return delegate.replaceDetector(detectorClass);
+            }
+
+            @Override
+            public boolean checkForSuppressComments() {
+                return delegate.checkForSuppressComments();
+            }
+
+            @Override
+            public void report(@NonNull Context context, @NonNull Issue issue,
+                               @NonNull Severity severity, @Nullable Location location,
+                               @NonNull String message, @NonNull TextFormat format) {
+                reports.add(new Report(issue, severity, location, message, format));
+                delegate.report(context, issue, severity, location, message, format);
+            }
+
+            @Override
+            public void log(Throwable t, String s, String name) {
+                delegate.log(t, s, name);
+            }
+        };
+    }
+}
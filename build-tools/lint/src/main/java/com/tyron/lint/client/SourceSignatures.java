@@ -0,0 +1,165 @@
+package com.tyron.lint.client;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.api.JavacTool;
+import com.sun.tools.javac.parser.ParserFactory;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.ListBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the hash of the contents and the hash of the signatures of each java file of a module.
+ * <p>
+ * The signature of a file is its declarations without method bodies, initializer blocks and
+ * comments, so editing the inside of a method does not change it. A file is only read again
+ * when its length or modification time changed, and only parsed again when its contents did.
+ */
+public class SourceSignatures {
+
+    private static class Entry {
+        private final long mLength;
+        private final long mLastModified;
+        private final HashCode mContents;
+        private final HashCode mSignature;
+
+        Entry(long length, long lastModified, HashCode contents, HashCode signature) {
+            mLength = length;
+            mLastModified = lastModified;
+            mContents = contents;
+            mSignature = signature;
+        }
+    }
+
+    private final Map<File, Entry> mEntries = new ConcurrentHashMap<>();
+    private final ThreadLocal<Parser> mParsers = ThreadLocal.withInitial(Parser::new);
+
+    /**
+     * Updates the hashes of the given files that changed since the last call, in parallel, and
+     * forgets the files that are not in the collection anymore. A file that cannot be read has
+     * no hashes.
+     */
+    public void update(@NonNull Collection<File> files) {
+        mEntries.keySet().retainAll(files);
+        files.parallelStream().forEach(file -> {
+            Entry entry = mEntries.get(file);
+            long length = file.length();
+            long lastModified = file.lastModified();
+            if (entry != null && entry.mLength == length && entry.mLastModified == lastModified) {
+                return;
+            }
+            try {
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                HashCode contents = Hashing.murmur3_128().hashBytes(bytes);
+                if (entry != null && entry.mContents.equals(contents)) {
+                    mEntries.put(file, new Entry(length, lastModified, contents, entry.mSignature));
+                    return;
+                }
+                HashCode signature = hashSignature(new String(bytes, StandardCharsets.UTF_8), contents);
+                mEntries.put(file, new Entry(length, lastModified, contents, signature));
+            } catch (IOException e) {
+                mEntries.remove(file);
+            }
+        });
+    }
+
+    /**
+     * @return The hash of the contents of the file when it was last updated, or null if it could
+     * not be read
+     */
+    @Nullable
+    public HashCode getContents(@NonNull File file) {
+        Entry entry = mEntries.get(file);
+        return entry != null ? entry.mContents : null;
+    }
+
+    /**
+     * @return A hash of the signatures of every file, which only changes when a declaration
+     * that other files may depend on changes
+     */
+    @NonNull
+    public HashCode getSignatures() {
+        Map<File, Entry> sorted = new TreeMap<>(mEntries);
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (Map.Entry<File, Entry> entry : sorted.entrySet()) {
+            hasher.putString(entry.getKey().getAbsolutePath(), StandardCharsets.UTF_8);
+            hasher.putBytes(entry.getValue().mSignature.asBytes());
+        }
+        return hasher.hash();
+    }
+
+    public void clear() {
+        mEntries.clear();
+    }
+
+    private HashCode hashSignature(String contents, HashCode fallback) {
+        JCTree.JCCompilationUnit root;
+        try {
+            root = mParsers.get().parse(contents);
+        } catch (RuntimeException e) {
+            // the signature is unknown, so any change of the file counts as a change of it
+            return fallback;
+        }
+        new SignatureScanner().scan(root);
+        return Hashing.murmur3_128().hashString(root.toString(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Removes the parts of the tree that are not visible to other files.
+     */
+    private static class SignatureScanner extends TreeScanner {
+
+        @Override
+        public void visitClassDef(JCTree.JCClassDecl tree) {
+            ListBuffer<JCTree> defs = new ListBuffer<>();
+            for (JCTree def : tree.defs) {
+                if (!(def instanceof JCTree.JCBlock)) {
+                    defs.add(def);
+                }
+            }
+            tree.defs = defs.toList();
+            super.visitClassDef(tree);
+        }
+
+        @Override
+        public void visitMethodDef(JCTree.JCMethodDecl tree) {
+            tree.body = null;
+            super.visitMethodDef(tree);
+        }
+    }
+
+    /**
+     * Creating a task sets up a file manager and a context, which costs more than parsing most
+     * files, so each thread creates a single task and parses with the parser factory of its
+     * context.
+     */
+    private static class Parser {
+        private final ParserFactory mParserFactory;
+
+        Parser() {
+            JavacTaskImpl task = (JavacTaskImpl) JavacTool.create().getTask(null, null,
+                    diagnostic -> {}, Collections.singletonList("-proc:none"), null,
+                    Collections.emptyList());
+            mParserFactory = ParserFactory.instance(task.getContext());
+        }
+
+        JCTree.JCCompilationUnit parse(CharSequence contents) {
+            return mParserFactory.newParser(contents, false, false, false).parseCompilationUnit();
+        }
+    }
+}
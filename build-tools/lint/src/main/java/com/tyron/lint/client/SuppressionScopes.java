@@ -0,0 +1,92 @@
+package com.tyron.lint.client;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreeScanner;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The methods of a compilation unit that are annotated with {@code @SuppressLint} or
+ * {@code @SuppressWarnings}, and the trees they enclose.
+ * <p>
+ * They are computed in a single walk of the compilation unit, so checking whether a tree is
+ * suppressed only visits the suppressing methods around it instead of computing the path of
+ * every enclosing tree from the root.
+ */
+public class SuppressionScopes {
+
+    private final Map<Tree, MethodTree> mInnermost = new IdentityHashMap<>();
+    private final Map<MethodTree, MethodTree> mOuter = new IdentityHashMap<>();
+
+    private SuppressionScopes() {
+
+    }
+
+    @NonNull
+    public static SuppressionScopes create(@NonNull CompilationUnitTree compilationUnit) {
+        SuppressionScopes scopes = new SuppressionScopes();
+        compilationUnit.accept(new TreeScanner<Void, MethodTree>() {
+            @Override
+            public Void scan(Tree tree, MethodTree current) {
+                if (tree == null) {
+                    return null;
+                }
+                MethodTree scope = current;
+                if (tree instanceof MethodTree
+                        && hasSuppressAnnotation(((MethodTree) tree).getModifiers())) {
+                    if (current != null) {
+                        scopes.mOuter.put((MethodTree) tree, current);
+                    }
+                    scope = (MethodTree) tree;
+                }
+                if (scope != null) {
+                    scopes.mInnermost.put(tree, scope);
+                }
+                return super.scan(tree, scope);
+            }
+        }, null);
+        return scopes;
+    }
+
+    /**
+     * Returns the innermost suppressing method that is or encloses the given tree.
+     */
+    @Nullable
+    public MethodTree getInnermost(@NonNull Tree tree) {
+        return mInnermost.get(tree);
+    }
+
+    /**
+     * Returns the suppressing method that encloses the given suppressing method.
+     */
+    @Nullable
+    public MethodTree getOuter(@NonNull MethodTree method) {
+        return mOuter.get(method);
+    }
+
+    private static boolean hasSuppressAnnotation(@Nullable ModifiersTree modifiers) {
+        if (modifiers == null) {
+            return false;
+        }
+        List<? extends AnnotationTree> annotations = modifiers.getAnnotations();
+        if (annotations == null) {
+            return false;
+        }
+        for (AnnotationTree annotation : annotations) {
+            String typeName = annotation.getAnnotationType().toString();
+            if (typeName.endsWith("SuppressLint") || typeName.endsWith("SuppressWarnings")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
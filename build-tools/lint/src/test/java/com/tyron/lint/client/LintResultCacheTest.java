@@ -0,0 +1,53 @@
+package com.tyron.lint.client;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.hash.HashCode;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class LintResultCacheTest {
+
+    private static final File FILE = new File("Test.java");
+    private static final File OTHER_FILE = new File("Other.java");
+    private static final HashCode CONTENTS = HashCode.fromInt(1);
+    private static final HashCode DEPENDENCIES = HashCode.fromInt(10);
+
+    private final LintResultCache mCache = new LintResultCache();
+    private final List<LintResultCache.Report> mReports = new ArrayList<>();
+
+    @Test
+    public void testReportsAreKeptWhileInputsAreTheSame() {
+        mCache.put(FILE, CONTENTS, DEPENDENCIES, mReports);
+
+        assertSame(mReports, mCache.get(FILE, CONTENTS, DEPENDENCIES));
+        assertNull(mCache.get(FILE, HashCode.fromInt(2), DEPENDENCIES));
+    }
+
+    @Test
+    public void testChangeOfDependenciesForgetsReports() {
+        mCache.put(FILE, CONTENTS, DEPENDENCIES, mReports);
+
+        // the file did not change, but a type it uses may have
+        assertNull(mCache.get(FILE, CONTENTS, HashCode.fromInt(11)));
+    }
+
+    @Test
+    public void testChangeOfAFileKeepsTheReportsOfOtherFiles() {
+        List<LintResultCache.Report> otherReports = new ArrayList<>();
+        mCache.put(FILE, CONTENTS, DEPENDENCIES, mReports);
+        mCache.put(OTHER_FILE, CONTENTS, DEPENDENCIES, otherReports);
+
+        mCache.put(FILE, HashCode.fromInt(2), DEPENDENCIES, mReports);
+        assertSame(otherReports, mCache.get(OTHER_FILE, CONTENTS, DEPENDENCIES));
+
+        mCache.retainAll(Collections.singletonList(FILE));
+        assertNull(mCache.get(OTHER_FILE, CONTENTS, DEPENDENCIES));
+    }
+}
@@ -0,0 +1,74 @@
+package com.tyron.lint.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.hash.HashCode;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class SourceSignaturesTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final SourceSignatures mSignatures = new SourceSignatures();
+
+    @Test
+    public void testMethodBodiesAreNotPartOfTheSignature() throws IOException {
+        File file = write("Test.java", "class Test {\n" +
+                "    int a() { return 1; }\n" +
+                "    static { System.out.println(); }\n" +
+                "}");
+        mSignatures.update(Collections.singletonList(file));
+        HashCode contents = mSignatures.getContents(file);
+        HashCode signatures = mSignatures.getSignatures();
+
+        write("Test.java", "class Test {\n" +
+                "    // a comment\n" +
+                "    int a() { return 2; }\n" +
+                "    static { }\n" +
+                "}");
+        mSignatures.update(Collections.singletonList(file));
+        assertNotEquals(contents, mSignatures.getContents(file));
+        assertEquals(signatures, mSignatures.getSignatures());
+
+        write("Test.java", "class Test {\n" +
+                "    long a() { return 2; }\n" +
+                "}");
+        mSignatures.update(Collections.singletonList(file));
+        assertNotEquals(signatures, mSignatures.getSignatures());
+    }
+
+    @Test
+    public void testRemovedFilesAreForgotten() throws IOException {
+        File first = write("First.java", "class First {}");
+        File second = write("Second.java", "class Second {}");
+        mSignatures.update(Arrays.asList(first, second));
+        HashCode signatures = mSignatures.getSignatures();
+
+        mSignatures.update(Collections.singletonList(first));
+        assertNull(mSignatures.getContents(second));
+        assertNotEquals(signatures, mSignatures.getSignatures());
+    }
+
+    private File write(String name, String contents) throws IOException {
+        File file = new File(mFolder.getRoot(), name);
+        byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+        Files.write(file.toPath(), bytes);
+        // the length may be the same, make sure the file is seen as modified
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(file.lastModified() + 2000);
+        return file;
+    }
+}
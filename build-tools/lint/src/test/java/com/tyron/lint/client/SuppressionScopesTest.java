@@ -0,0 +1,82 @@
+package com.tyron.lint.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.api.JavacTool;
+
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+public class SuppressionScopesTest {
+
+    private static final String SOURCE = "class Test {\n" +
+            "    @SuppressLint(\"DrawAllocation\")\n" +
+            "    void outer() {\n" +
+            "        new Runnable() {\n" +
+            "            @SuppressWarnings(\"unused\")\n" +
+            "            public void run() {\n" +
+            "                inner();\n" +
+            "            }\n" +
+            "        };\n" +
+            "        outerCall();\n" +
+            "    }\n" +
+            "    void plain() {\n" +
+            "        plainCall();\n" +
+            "    }\n" +
+            "}";
+
+    @Test
+    public void testScopes() throws Exception {
+        CompilationUnitTree root = parse();
+        Map<String, MethodTree> methods = new HashMap<>();
+        Map<String, MethodInvocationTree> calls = new HashMap<>();
+        root.accept(new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitMethod(MethodTree node, Void unused) {
+                methods.put(node.getName().toString(), node);
+                return super.visitMethod(node, unused);
+            }
+
+            @Override
+            public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+                calls.put(node.getMethodSelect().toString(), node);
+                return super.visitMethodInvocation(node, unused);
+            }
+        }, null);
+
+        SuppressionScopes scopes = SuppressionScopes.create(root);
+        assertEquals(methods.get("run"), scopes.getInnermost(calls.get("inner")));
+        assertEquals(methods.get("outer"), scopes.getOuter(methods.get("run")));
+        assertEquals(methods.get("outer"), scopes.getInnermost(calls.get("outerCall")));
+        assertEquals(methods.get("outer"), scopes.getInnermost(methods.get("outer")));
+        assertNull(scopes.getOuter(methods.get("outer")));
+        assertNull(scopes.getInnermost(calls.get("plainCall")));
+        assertNull(scopes.getInnermost(methods.get("plain")));
+    }
+
+    private static CompilationUnitTree parse() throws Exception {
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///Test.java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return SOURCE;
+            }
+        };
+        JavacTask task = JavacTool.create().getTask(null, null, null, null, null,
+                Collections.singletonList(file));
+        return task.parse().iterator().next();
+    }
+}
@@ -39,7 +39,10 @@ public class Project {
 
     private final Module EMPTY = new MockAndroidModule(null, null);
 
-    private final Map<String, Module> mModules;
+    /**
+     * Replaced rather than modified, so readers never see a partially updated set of modules.
+     */
+    private volatile Map<String, Module> mModules = Collections.emptyMap();
     private final File mRoot;
 
     private final ProjectSettings mSettings;
@@ -49,19 +52,33 @@ public class Project {
 
     public Project(File root) {
         mRoot = root;
-        mModules = new LinkedHashMap<>();
         mSettings = new ProjectSettings(new File(root, "settings.json"));
     }
 
     public void clear() {
-        mModules.clear();
+        mModules = Collections.emptyMap();
     }
 
-    public void addModule(Module module) {
+    public synchronized void addModule(Module module) {
         assert module.getProject() == null;
         module.setProject(this);
 
-        mModules.put(module.getName(), module);
+        Map<String, Module> modules = new LinkedHashMap<>(mModules);
+        modules.put(module.getName(), module);
+        mModules = Collections.unmodifiableMap(modules);
+    }
+
+    /**
+     * Replaces all the modules of this project at once, the given modules may have been added to
+     * another project before, e.g. while they were indexed.
+     */
+    public synchronized void setModules(Collection<Module> modules) {
+        Map<String, Module> map = new LinkedHashMap<>();
+        for (Module module : modules) {
+            module.setProject(this);
+            map.put(module.getName(), module);
+        }
+        mModules = Collections.unmodifiableMap(map);
     }
 
     public boolean isCompiling() {
@@ -96,10 +113,11 @@ public class Project {
 
     @NonNull
     public Module getMainModule() {
-        if (mModules.isEmpty()) {
+        Map<String, Module> modules = mModules;
+        if (modules.isEmpty()) {
             return EMPTY;
         }
-        return mModules.values().iterator().next();
+        return modules.values().iterator().next();
     }
 
     public File getRootFile() {
@@ -26,17 +26,19 @@ public interface FileManager {
     /**
      * Open the file and save its content in memory
      * @param file The file
-     * @param content The contents of the file
+     * @param content The contents of the file, must not be modified afterwards
      */
-    void openFileForSnapshot(@NonNull File file, String content);
+    void openFileForSnapshot(@NonNull File file, CharSequence content);
 
     /**
      * Sets the file content without notifying the passed FileListener
      * @param file The file
-     * @param content The contents
+     * @param content The contents, an immutable snapshot such as a String or a Rope so that
+     *                it can be stored without copying. Snapshots of the same type are compared
+     *                with equals()
      * @param listener The listner to ignore
      */
-    void setSnapshotContent(@NonNull File file, String content, FileListener listener);
+    void setSnapshotContent(@NonNull File file, CharSequence content, FileListener listener);
 
     /**
      * Change the stored contents of this file only if it has been opened before
@@ -45,9 +47,9 @@ public interface FileManager {
      * @param content The contents of the file
      * @param notify whether listeners should be notified
      */
-    void setSnapshotContent(@NonNull File file, String content, boolean notify);
+    void setSnapshotContent(@NonNull File file, CharSequence content, boolean notify);
 
-    default void setSnapshotContent(File file, String content) {
+    default void setSnapshotContent(File file, CharSequence content) {
         setSnapshotContent(file, content, true);
     }
 
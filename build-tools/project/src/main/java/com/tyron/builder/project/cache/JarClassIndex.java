@@ -0,0 +1,163 @@
+package com.tyron.builder.project.cache;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.tyron.builder.project.util.SortedStringTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * A persistent index of the top level class names contained in jar files.
+ * <p>
+ * Each jar is indexed once and stored as a {@link SortedStringTable} named after the hash of
+ * the jar's contents, subsequent lookups of an unchanged jar only memory-map the stored table.
+ * The hash is computed from the zip central directory which already contains the CRC-32 and
+ * size of every entry, so the jar does not have to be read fully to know if it has changed.
+ * <p>
+ * The index of a jar that has changed is stored under a new name, {@link #pruneUnused()}
+ * deletes the ones that are no longer used.
+ */
+public class JarClassIndex {
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private final File mCacheDirectory;
+    private final Set<File> mUsedIndexFiles = ConcurrentHashMap.newKeySet();
+
+    public JarClassIndex(@NonNull File cacheDirectory) {
+        mCacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Returns the class names of the given jar, indexing it first if the jar has not been
+     * seen before or its contents have changed.
+     *
+     * @param jar The jar file to index
+     * @return The memory-mapped table of fully qualified class names in the jar
+     * @throws IOException if the jar is not a valid zip file
+     */
+    @NonNull
+    public SortedStringTable getClassNames(@NonNull File jar) throws IOException {
+        File indexFile = new File(mCacheDirectory, hash(jar) + ".idx");
+        mUsedIndexFiles.add(indexFile);
+        if (indexFile.exists()) {
+            try {
+                return SortedStringTable.open(indexFile);
+            } catch (IOException e) {
+                // the index is corrupted, index the jar again
+            }
+        }
+
+        List<String> classNames = readClassNames(jar);
+
+        if (!mCacheDirectory.exists() && !mCacheDirectory.mkdirs()) {
+            throw new IOException("Unable to create index directory " + mCacheDirectory);
+        }
+        File tempFile = File.createTempFile(indexFile.getName(), ".tmp", mCacheDirectory);
+        try {
+            SortedStringTable.write(tempFile, classNames);
+            if (!tempFile.renameTo(indexFile)) {
+                // another thread may have indexed the same jar
+                if (!indexFile.exists()) {
+                    throw new IOException("Unable to write index " + indexFile);
+                }
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+        return SortedStringTable.open(indexFile);
+    }
+
+    /**
+     * Deletes the index files that have not been returned by this instance, such as the indexes
+     * of libraries that have been updated or removed from the module.
+     */
+    public void pruneUnused() {
+        File[] files = mCacheDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!mUsedIndexFiles.contains(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    private static List<String> readClassNames(File file) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        try (JarFile jar = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+
+                if (!name.endsWith(".class")) {
+                    continue;
+                }
+
+                // We only want top level classes, if it contains $ then
+                // its an inner class, we ignore it
+                if (name.contains("$")) {
+                    continue;
+                }
+
+                classNames.add(name.substring(0, name.length() - ".class".length())
+                                       .replace('/', '.'));
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * Hashes the central directory of the zip file, falls back to hashing the whole file if
+     * the central directory cannot be located (e.g. zip64 archives).
+     */
+    private static String hash(File jar) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(jar, "r")) {
+            long length = file.length();
+            int tailSize = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+            byte[] tail = new byte[tailSize];
+            file.seek(length - tailSize);
+            file.readFully(tail);
+
+            ByteBuffer buffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+                if (buffer.getInt(i) != END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                    continue;
+                }
+                long size = buffer.getInt(i + 12) & 0xFFFFFFFFL;
+                long offset = buffer.getInt(i + 16) & 0xFFFFFFFFL;
+                if (offset == 0xFFFFFFFFL || offset + size > length || size > Integer.MAX_VALUE) {
+                    break;
+                }
+                byte[] centralDirectory = new byte[(int) size];
+                file.seek(offset);
+                file.readFully(centralDirectory);
+
+                Hasher hasher = Hashing.murmur3_128().newHasher();
+                hasher.putLong(length);
+                hasher.putBytes(centralDirectory);
+                return hasher.hash().toString();
+            }
+        }
+        return Files.asByteSource(jar).hash(Hashing.murmur3_128()).toString();
+    }
+}
@@ -20,7 +20,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -29,15 +28,15 @@ public class FileManagerImpl implements FileManager {
 
     private static class FileState {
 
-        private String mContents;
+        private CharSequence mContents;
         private Instant mModified;
 
-        public FileState(String contents, Instant modified) {
+        public FileState(CharSequence contents, Instant modified) {
             mContents = contents;
             mModified = modified;
         }
 
-        public String getContents() {
+        public CharSequence getContents() {
             return mContents;
         }
 
@@ -45,7 +44,7 @@ public class FileManagerImpl implements FileManager {
             return mModified;
         }
 
-        public void setContents(String content) {
+        public void setContents(CharSequence content) {
             mContents = content;
         }
 
@@ -97,20 +96,20 @@ public class FileManagerImpl implements FileManager {
     }
 
     @Override
-    public void openFileForSnapshot(@NonNull File file, String content) {
+    public void openFileForSnapshot(@NonNull File file, CharSequence content) {
         long lastModified = file.lastModified();
         FileState state = new FileState(content, Instant.ofEpochMilli(lastModified));
         mSnapshots.put(file, state);
     }
 
     @Override
-    public void setSnapshotContent(@NonNull File file, String content, FileListener listener) {
+    public void setSnapshotContent(@NonNull File file, CharSequence content, FileListener listener) {
         if (!mSnapshots.containsKey(file)) {
             return;
         }
 
         mSnapshots.computeIfPresent(file, (f, state) -> {
-            boolean equals = Objects.equals(content, state.getContents());
+            boolean equals = contentEquals(content, state.getContents());
             state.setContents(content);
             if (!equals) {
                 state.setModified(Instant.now());
@@ -127,13 +126,13 @@ public class FileManagerImpl implements FileManager {
     }
 
     @Override
-    public void setSnapshotContent(@NonNull File file, String content, boolean notify) {
+    public void setSnapshotContent(@NonNull File file, CharSequence content, boolean notify) {
         if (!mSnapshots.containsKey(file)) {
             return;
         }
 
         mSnapshots.computeIfPresent(file, (f, state) -> {
-            boolean equals = Objects.equals(content, state.getContents());
+            boolean equals = contentEquals(content, state.getContents());
             state.setContents(content);
             if (!equals) {
                 state.setModified(Instant.now());
@@ -153,7 +152,7 @@ public class FileManagerImpl implements FileManager {
             if (file.exists()) {
                 try {
                     FileState state = mSnapshots.get(file);
-                    FileUtils.writeStringToFile(file,
+                    FileUtils.write(file,
                             state.getContents(),
                             StandardCharsets.UTF_8);
                 } catch (IOException e) {
@@ -192,8 +191,8 @@ public class FileManagerImpl implements FileManager {
     public void saveContents() {
         mService.execute(() -> mSnapshots.forEach((k, v) -> {
             try {
-                FileUtils.writeStringToFile(k,
-                                            v.getContents(), StandardCharsets.UTF_8);
+                FileUtils.write(k,
+                                v.getContents(), StandardCharsets.UTF_8);
                 Instant instant = Instant.ofEpochMilli(k.lastModified());
                 ThreadUtil.runOnUiThread(() -> setLastModified(k, instant));
             } catch (IOException e) {
@@ -201,4 +200,30 @@ public class FileManagerImpl implements FileManager {
             }
         }));
     }
-}
\ No newline at end of file
+
+    private static boolean contentEquals(CharSequence first, CharSequence second) {
+        if (first == second) {
+            return true;
+        }
+        if (first == null || second == null || first.length() != second.length()) {
+            return false;
+        }
+        if (first.getClass() == second.getClass()) {
+            // snapshots are immutable values whose equals() compares their contents, a Rope
+            // compares chunk by chunk instead of one character at a time
+            return first.equals(second);
+        }
+        if (first instanceof String) {
+            return ((String) first).contentEquals(second);
+        }
+        if (second instanceof String) {
+            return ((String) second).contentEquals(first);
+        }
+        for (int i = 0; i < first.length(); i++) {
+            if (first.charAt(i) != second.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -7,38 +7,40 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.tyron.builder.model.CodeAssistLibrary;
 import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.cache.JarClassIndex;
 import com.tyron.builder.project.util.PackageTrie;
+import com.tyron.builder.project.util.SortedStringTable;
 import com.tyron.common.util.StringSearch;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.FileFilterUtils;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.jetbrains.kotlin.com.intellij.util.ReflectionUtil;
 
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
-    // Map of fully qualified names and the jar they are contained in
-    private final Map<String, File> mClassFiles;
+    // Map of jar files and the memory-mapped table of class names they contain
+    private final Map<File, SortedStringTable> mClassFiles;
     private final Map<String, File> mJavaFiles;
     private final Map<String, CodeAssistLibrary> mLibraryHashMap;
     private final Map<String, File> mInjectedClassesMap;
     private final Set<File> mLibraries;
 
-    // the index of all the class files in this module
+    // the index of all the class files in this module, the class names of the libraries
+    // are attached as memory-mapped tables
     private final PackageTrie mClassIndex = new PackageTrie();
 
+    private JarClassIndex mJarClassIndex;
+
+    // the class names of the bootstrap jar, they are not part of getAllClasses()
+    private SortedStringTable mBootstrapClasses;
+
     public JavaModuleImpl(File root) {
         super(root);
         mJavaFiles = new HashMap<>();
@@ -97,7 +99,9 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     public Set<String> getAllClasses() {
         Set<String> classes = new HashSet<>();
         classes.addAll(mJavaFiles.keySet());
-        classes.addAll(mClassFiles.keySet());
+        for (SortedStringTable table : mClassFiles.values()) {
+            table.forEach(classes::add);
+        }
         classes.addAll(mInjectedClassesMap.keySet());
         return classes;
     }
@@ -113,8 +117,6 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
             return;
         }
         try {
-            // noinspection unused, used to check if jar is valid.
-            JarFile jarFile = new JarFile(jar);
             putJar(jar);
             mLibraries.add(jar);
         } catch (IOException e) {
@@ -126,28 +128,28 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         if (file == null) {
             return;
         }
-        try (JarFile jar = new JarFile(file)) {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-
-                if (!entry.getName().endsWith(".class")) {
-                    continue;
-                }
-
-                // We only want top level classes, if it contains $ then
-                // its an inner class, we ignore it
-                if (entry.getName().contains("$")) {
-                    continue;
-                }
-
-                String packageName = entry.getName().replace("/", ".")
-                        .substring(0, entry.getName().length() - ".class".length());
+        SortedStringTable classNames = getJarClassIndex().getClassNames(file);
+        SortedStringTable previous = mClassFiles.put(file, classNames);
+        if (previous != null) {
+            mClassIndex.removeTable(previous);
+        }
+        mClassIndex.addTable(classNames);
+    }
 
-                mClassFiles.put(packageName, file);
-                mClassIndex.add(packageName);
-            }
+    private JarClassIndex getJarClassIndex() {
+        if (mJarClassIndex == null) {
+            mJarClassIndex = new JarClassIndex(getClassIndexDirectory());
         }
+        return mJarClassIndex;
+    }
+
+    /**
+     * @return The directory where the class names of each library are persisted. This
+     * does not depend on the module settings since libraries are added before the module
+     * is opened.
+     */
+    protected File getClassIndexDirectory() {
+        return new File(getRootFile(), "build/.index/classes");
     }
 
     @NonNull
@@ -243,12 +245,36 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
     @Override
     public void index() {
+        // the platform classes are searched along with the libraries by the completions
+        // that query the class index
+        if (mBootstrapClasses == null) {
+            try {
+                mBootstrapClasses = getJarClassIndex().getClassNames(getBootstrapJarFile());
+                mClassIndex.addTable(mBootstrapClasses);
+            } catch (IOException e) {
+                // ignored, the platform classes won't be in the class index
+            }
+        }
 
+        // the libraries have been added at this point, so the indexes of the jars
+        // that are no longer used can be deleted
+        if (mJarClassIndex != null) {
+            mJarClassIndex.pruneUnused();
+        }
     }
 
     @Override
     public void clear() {
         mJavaFiles.clear();
+        for (SortedStringTable table : mClassFiles.values()) {
+            mClassIndex.removeTable(table);
+        }
+        mClassFiles.clear();
+        if (mBootstrapClasses != null) {
+            mClassIndex.removeTable(mBootstrapClasses);
+            mBootstrapClasses = null;
+        }
+        mJarClassIndex = null;
         mLibraries.clear();
         mLibraryHashMap.clear();
     }
@@ -48,22 +48,22 @@ public class MockFileManager implements FileManager {
     }
 
     @Override
-    public void openFileForSnapshot(@NonNull File file, String content) {
+    public void openFileForSnapshot(@NonNull File file, CharSequence content) {
         mSnapshots.put(file, content);
     }
 
     @Override
-    public void setSnapshotContent(@NonNull File file, String content, FileListener listener) {
+    public void setSnapshotContent(@NonNull File file, CharSequence content, FileListener listener) {
 
     }
 
     @Override
-    public void setSnapshotContent(@NonNull File file, String content, boolean notify) {
+    public void setSnapshotContent(@NonNull File file, CharSequence content, boolean notify) {
 
     }
 
     @Override
-    public void setSnapshotContent(File file, String content) {
+    public void setSnapshotContent(File file, CharSequence content) {
         mSnapshots.computeIfPresent(file, (f, c) -> content);
     }
 
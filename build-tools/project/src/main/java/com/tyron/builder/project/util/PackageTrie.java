@@ -3,32 +3,101 @@ package com.tyron.builder.project.util;
 import androidx.annotation.NonNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
 
 /**
  * A trie that stores package segments to a node.
  *
  * Example: The package java.lang.String and java.lang.Object will be stored as:
  * <p>
- *     java
- *      |
- *     lang
+ *   java.lang
  *     /  \
  * String Object
  * </p>
+ *
+ * Chains of segments with a single child are compressed into one node, and nodes are stored
+ * in primitive arrays instead of objects. Each distinct segment is interned once and referred
+ * to by its index, and the edges of every node are kept in a single open addressing table
+ * keyed by the parent node and the first segment of the child. Removed nodes leave their slots
+ * unused until enough of them accumulate, then the trie is rebuilt from the remaining names.
+ * <p>
+ * The class names of libraries can be attached as {@link SortedStringTable}s instead of being
+ * added one by one, they stay memory-mapped and are searched along with the nodes of the trie.
  */
 public class PackageTrie {
 
-    private final Node mRoot;
+    /**
+     * Receives the fully qualified names matched by a query.
+     */
+    public interface Visitor {
+
+        /**
+         * @param fqn The fully qualified name, this instance is reused between calls so
+         *            {@link CharSequence#toString()} must be called if it needs to be kept.
+         * @return false to stop visiting the remaining names
+         */
+        boolean visit(@NonNull CharSequence fqn);
+    }
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final long EMPTY_EDGE = -1L;
+
+    // the number of removed nodes before the trie is compacted
+    private static final int MIN_REMOVED_NODES_TO_COMPACT = 1024;
+
+    // interned segments
+    private String[] mSegments;
+    private int mSegmentCount;
+    private int[] mSegmentTable;
+
+    // the labels of each node, as a slice of segment indices in this pool
+    private int[] mLabels;
+    private int mLabelCount;
+
+    private int[] mLabelStart;
+    private int[] mLabelLength;
+    private int[] mParent;
+    private int[] mFirstChild;
+    private int[] mNextSibling;
+    private final BitSet mLeaves = new BitSet();
+    private int mNodeCount;
+    private int mRemovedNodeCount;
+
+    // edges from (parent, first segment of child) to the child node
+    private long[] mEdgeKeys;
+    private int[] mEdgeValues;
+    private int mEdgeCount;
+
+    private final List<SortedStringTable> mTables = new ArrayList<>();
 
     public PackageTrie() {
-        mRoot = new Node();
+        reset();
+    }
+
+    private void reset() {
+        mSegments = new String[256];
+        mSegmentCount = 0;
+        mSegmentTable = newTable(512);
+        mLabels = new int[1024];
+        mLabelCount = 0;
+        mLabelStart = new int[256];
+        mLabelLength = new int[256];
+        mParent = new int[256];
+        mFirstChild = new int[256];
+        mNextSibling = new int[256];
+        mLeaves.clear();
+        mNodeCount = 0;
+        mRemovedNodeCount = 0;
+        mEdgeKeys = newEdgeKeys(512);
+        mEdgeValues = new int[512];
+        mEdgeCount = 0;
+        newNode(0, 0, NONE);
     }
 
     /**
@@ -37,13 +106,56 @@ public class PackageTrie {
      * @param fqn The fully qualified name of a class, including its name
      */
     public void add(@NonNull String fqn) {
-        String[] parts = getParts(fqn);
-        Node current = mRoot;
-        for (String part : parts) {
-            current = current.getOrCreateChild(part);
+        int[] parts = getParts(fqn, true);
+        int current = ROOT;
+        int index = 0;
+        while (index < parts.length) {
+            int child = getChild(current, parts[index]);
+            if (child == NONE) {
+                int start = appendLabels(parts, index);
+                child = newNode(start, parts.length - index, current);
+                addChild(current, child);
+                current = child;
+                break;
+            }
+
+            int common = commonLength(child, parts, index);
+            if (common < mLabelLength[child]) {
+                split(child, common);
+            }
+            current = child;
+            index += common;
         }
         // this is the end node, so mark it as a leaf
-        current.isLeaf = true;
+        mLeaves.set(current);
+    }
+
+    /**
+     * Adds the names of the table to the index without copying them.
+     */
+    public void addTable(@NonNull SortedStringTable table) {
+        mTables.add(table);
+    }
+
+    public void removeTable(@NonNull SortedStringTable table) {
+        mTables.remove(table);
+    }
+
+    /**
+     * @return Whether the fully qualified name has been added to this index
+     */
+    public boolean contains(@NonNull String fqn) {
+        for (SortedStringTable table : mTables) {
+            if (table.contains(fqn)) {
+                return true;
+            }
+        }
+        int[] parts = getParts(fqn, false);
+        if (parts == null) {
+            return false;
+        }
+        int node = find(parts, true);
+        return node != NONE && mLeaves.get(node);
     }
 
     public void remove(@NonNull String fqn) {
@@ -59,158 +171,536 @@ public class PackageTrie {
      * If leafOnly is true, only leaf nodes matching the leaf of the specified name will be deleted.
      * The leaf of the package name is the last word after its dot.
      *
+     * The names of attached tables are not affected, see {@link #removeTable(SortedStringTable)}.
+     *
      * @param fqn The package name
      * @param leafOnly Whether to delete the leaf only
      */
     public void remove(@NonNull String fqn, boolean leafOnly) {
-        String[] parts = getParts(fqn);
-        Node current = mRoot;
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-            boolean isLeaf = i == parts.length - 1;
+        int[] parts = getParts(fqn, false);
+        if (parts == null) {
+            return;
+        }
+        int node = find(parts, leafOnly);
+        if (node == NONE || node == ROOT) {
+            return;
+        }
 
-            if (current == null) {
-                break;
-            }
-            if (current.getChildren() == null) {
-                current = null;
-            } else {
-                Node next = current.getChildren().get(part);
-                if (next != null && (isLeaf || !leafOnly)) {
-                    current.getChildren().remove(next.getValue());
-                }
-                current = next;
+        if (leafOnly) {
+            mLeaves.clear(node);
+            if (mFirstChild[node] != NONE) {
+                return;
             }
         }
+        removeNode(node);
+
+        if (mRemovedNodeCount >= MIN_REMOVED_NODES_TO_COMPACT
+                && mRemovedNodeCount * 2 > mNodeCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Rebuilds the trie from its names, so the nodes, labels and segments that are no longer
+     * used by any name are released.
+     */
+    private void compact() {
+        List<String> names = new ArrayList<>();
+        visitChildren(ROOT, new StringBuilder(), false, fqn -> {
+            names.add(fqn.toString());
+            return true;
+        });
+        reset();
+        for (String name : names) {
+            add(name);
+        }
     }
 
     public List<String> getMatchingPackages(String packageQuery) {
         List<String> result = new ArrayList<>();
-        StringBuilder currentPackage = new StringBuilder();
-        String[] parts = getParts(packageQuery);
-        Node current = mRoot;
-        for (String part : parts) {
-            if (current == null || current.getChildren() == null || !current.getChildren().containsKey(part)) {
-                return result;
-            }
-
-            if (current.isLeaf) {
-                String fqn = currentPackage.length() > 0
-                        ? currentPackage + "." + part
-                        : part;
-                result.add(fqn);
-            } else {
-                boolean insertDot = currentPackage.length() > 0;
-                if (insertDot) {
-                    currentPackage.append('.');
-                }
-                currentPackage.append(part);
+        visitMatchingPackages(packageQuery, fqn -> {
+            result.add(fqn.toString());
+            return true;
+        });
+        return result;
+    }
+
+    /**
+     * Visits every fully qualified name that is inside the given package, without allocating
+     * anything for each name. The names of the attached tables are visited first, then the
+     * names of the trie, which are built in a single reused buffer.
+     * <p>
+     * A name is visited once even if it is both in the trie and in a table, or in several
+     * tables.
+     *
+     * @param packageQuery The package, trailing dots are ignored
+     */
+    public void visitMatchingPackages(@NonNull String packageQuery, @NonNull Visitor visitor) {
+        String prefix = packageQuery.substring(0, trimmedLength(packageQuery)) + ".";
+        for (int i = 0; i < mTables.size(); i++) {
+            int table = i;
+            boolean proceed = mTables.get(table).visitWithPrefix(prefix,
+                    fqn -> isInTable(fqn, table) || visitor.visit(fqn));
+            if (!proceed) {
+                return;
             }
+        }
 
-            current = current.getChildren().get(part);
+        int[] parts = getParts(packageQuery, false);
+        if (parts == null) {
+            return;
+        }
+        int node = find(parts, false);
+        if (node == NONE) {
+            return;
         }
 
-        if (current.getChildren() != null) {
-            for (Node node : current.getChildren().values()) {
-                recurse(node, currentPackage.toString(), result);
-            }
+        Visitor trieVisitor = mTables.isEmpty()
+                ? visitor
+                : fqn -> isInTable(fqn, mTables.size()) || visitor.visit(fqn);
+        StringBuilder builder = new StringBuilder();
+        if (endsWithLabel(node, parts)) {
+            // the query itself is not included, only the names inside it
+            appendPath(node, builder);
+            visitChildren(node, builder, false, trieVisitor);
+        } else {
+            appendPath(mParent[node], builder);
+            visit(node, builder, false, trieVisitor);
         }
+    }
 
-        return result;
+    /**
+     * @return Whether one of the tables before the given index contains the name
+     */
+    private boolean isInTable(CharSequence fqn, int end) {
+        for (int i = 0; i < end; i++) {
+            if (mTables.get(i).contains(fqn)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public Set<String> getTopLevelNonLeafNodes() {
-        if (mRoot.getChildren() == null) {
+        if (mFirstChild[ROOT] == NONE && mTables.isEmpty()) {
             return Collections.emptySet();
         }
 
-        return mRoot.getChildren().keySet();
+        Set<String> nodes = new HashSet<>();
+        for (SortedStringTable table : mTables) {
+            table.forEach(fqn -> {
+                int dot = fqn.indexOf('.');
+                nodes.add(dot == -1 ? fqn : fqn.substring(0, dot));
+            });
+        }
+        for (int child = mFirstChild[ROOT]; child != NONE; child = mNextSibling[child]) {
+            nodes.add(mSegments[mLabels[mLabelStart[child]]]);
+        }
+        return nodes;
     }
 
+    /**
+     * @return The names that are not inside another name, the names below a leaf are skipped
+     */
     public Set<String> getLeafNodes() {
-        return new HashSet<>(getLeafNodes("", mRoot));
+        Set<String> names = new HashSet<>();
+        visitChildren(ROOT, new StringBuilder(), true, fqn -> {
+            names.add(fqn.toString());
+            return true;
+        });
+        if (mTables.isEmpty()) {
+            return names;
+        }
+
+        for (SortedStringTable table : mTables) {
+            table.forEach(names::add);
+        }
+        Set<String> leafNodes = new HashSet<>();
+        for (String name : names) {
+            if (!isInsideName(name, names)) {
+                leafNodes.add(name);
+            }
+        }
+        return leafNodes;
     }
 
-    private Set<String> getLeafNodes(String currentPackage, Node current) {
-        if (current.isLeaf) {
-            return Collections.singleton(currentPackage);
-        } else {
-            if (current.getChildren() == null || current.getChildren().isEmpty()) {
-                return Collections.emptySet();
+    private static boolean isInsideName(String name, Set<String> names) {
+        for (int dot = name.lastIndexOf('.'); dot != -1; dot = name.lastIndexOf('.', dot - 1)) {
+            if (names.contains(name.substring(0, dot))) {
+                return true;
             }
-            Set<String> leafNodes = new HashSet<>();
-            for (Node value : current.getChildren().values()) {
-                String newPackage = currentPackage.isEmpty()
-                        ? value.getValue()
-                        : currentPackage + "." + value.getValue();
-                leafNodes.addAll(getLeafNodes(newPackage, value));
+        }
+        return false;
+    }
+
+    /**
+     * @param stopAtLeaves Whether the children of a leaf are skipped
+     */
+    private boolean visit(int node, StringBuilder builder, boolean stopAtLeaves, Visitor visitor) {
+        int length = builder.length();
+        appendLabel(node, builder);
+        boolean leaf = mLeaves.get(node);
+        boolean proceed = !leaf || visitor.visit(builder);
+        if (proceed && !(leaf && stopAtLeaves)) {
+            proceed = visitChildren(node, builder, stopAtLeaves, visitor);
+        }
+        builder.setLength(length);
+        return proceed;
+    }
+
+    private boolean visitChildren(int node, StringBuilder builder, boolean stopAtLeaves,
+                                  Visitor visitor) {
+        for (int child = mFirstChild[node]; child != NONE; child = mNextSibling[child]) {
+            if (!visit(child, builder, stopAtLeaves, visitor)) {
+                return false;
             }
-            return leafNodes;
         }
+        return true;
+    }
+
+    private void appendPath(int node, StringBuilder builder) {
+        if (node == ROOT) {
+            return;
+        }
+        appendPath(mParent[node], builder);
+        appendLabel(node, builder);
+    }
+
+    private void appendLabel(int node, StringBuilder builder) {
+        int start = mLabelStart[node];
+        int end = start + mLabelLength[node];
+        for (int i = start; i < end; i++) {
+            if (builder.length() > 0) {
+                builder.append('.');
+            }
+            builder.append(mSegments[mLabels[i]]);
+        }
+    }
+
+    /**
+     * Finds the node where the given path ends.
+     *
+     * @param exact If true, the path must end at the end of the node's label, otherwise the
+     *              node whose label contains the end of the path is returned
+     */
+    private int find(int[] parts, boolean exact) {
+        int current = ROOT;
+        int index = 0;
+        while (index < parts.length) {
+            int child = getChild(current, parts[index]);
+            if (child == NONE) {
+                return NONE;
+            }
+            int common = commonLength(child, parts, index);
+            if (common < mLabelLength[child]) {
+                if (index + common < parts.length || exact) {
+                    return NONE;
+                }
+                return child;
+            }
+            current = child;
+            index += common;
+        }
+        return current;
+    }
+
+    private boolean endsWithLabel(int node, int[] parts) {
+        int depth = 0;
+        for (int current = node; current != ROOT; current = mParent[current]) {
+            depth += mLabelLength[current];
+        }
+        return depth == parts.length;
     }
 
-    private void recurse(Node node, String currentPackage, List<String> result) {
-        if (node.isLeaf) {
-            String newResult = currentPackage.length() > 0
-                    ? currentPackage + "." + node.getValue()
-                    : node.getValue();
-            result.add(newResult);
+    private int commonLength(int node, int[] parts, int index) {
+        int start = mLabelStart[node];
+        int max = Math.min(mLabelLength[node], parts.length - index);
+        int common = 0;
+        while (common < max && mLabels[start + common] == parts[index + common]) {
+            common++;
+        }
+        return common;
+    }
+
+    /**
+     * Splits the label of the node at the given position, the node keeps the first part of its
+     * label while a new child takes the rest of it along with its children and leaf flag.
+     */
+    private void split(int node, int position) {
+        int suffix = newNode(mLabelStart[node] + position, mLabelLength[node] - position, node);
+        mLabelLength[node] = position;
+
+        int child = mFirstChild[node];
+        mFirstChild[suffix] = child;
+        while (child != NONE) {
+            int first = mLabels[mLabelStart[child]];
+            removeEdge(node, first);
+            putEdge(suffix, first, child);
+            mParent[child] = suffix;
+            child = mNextSibling[child];
+        }
+        mFirstChild[node] = NONE;
+        addChild(node, suffix);
+
+        if (mLeaves.get(node)) {
+            mLeaves.set(suffix);
+            mLeaves.clear(node);
+        }
+    }
+
+    private void removeNode(int node) {
+        int parent = mParent[node];
+        removeEdge(parent, mLabels[mLabelStart[node]]);
+        if (mFirstChild[parent] == node) {
+            mFirstChild[parent] = mNextSibling[node];
         } else {
-            currentPackage = currentPackage.isEmpty()
-                    ? node.getValue()
-                    : currentPackage + "." + node.getValue();
+            int previous = mFirstChild[parent];
+            while (mNextSibling[previous] != node) {
+                previous = mNextSibling[previous];
+            }
+            mNextSibling[previous] = mNextSibling[node];
         }
+        mRemovedNodeCount += 1 + removeEdges(node);
 
-        if (node.getChildren() == null) {
-            return;
+        // remove the parent as well if it is no longer needed
+        if (parent != ROOT && mFirstChild[parent] == NONE && !mLeaves.get(parent)) {
+            removeNode(parent);
         }
-        for (Node child : node.getChildren().values()) {
-            recurse(child, currentPackage, result);
+    }
+
+    /**
+     * @return the number of descendants of the node
+     */
+    private int removeEdges(int node) {
+        int removed = 0;
+        for (int child = mFirstChild[node]; child != NONE; child = mNextSibling[child]) {
+            removeEdge(node, mLabels[mLabelStart[child]]);
+            removed += 1 + removeEdges(child);
+            mLeaves.clear(child);
         }
+        mLeaves.clear(node);
+        return removed;
+    }
+
+    private void addChild(int parent, int child) {
+        mNextSibling[child] = mFirstChild[parent];
+        mFirstChild[parent] = child;
+        mParent[child] = parent;
+        putEdge(parent, mLabels[mLabelStart[child]], child);
     }
 
-    private String[] getParts(String fqn) {
-        if (fqn.contains(".")) {
-            return fqn.split("\\.");
+    private int newNode(int labelStart, int labelLength, int parent) {
+        if (mNodeCount == mLabelStart.length) {
+            int capacity = mNodeCount * 2;
+            mLabelStart = Arrays.copyOf(mLabelStart, capacity);
+            mLabelLength = Arrays.copyOf(mLabelLength, capacity);
+            mParent = Arrays.copyOf(mParent, capacity);
+            mFirstChild = Arrays.copyOf(mFirstChild, capacity);
+            mNextSibling = Arrays.copyOf(mNextSibling, capacity);
         }
-        return new String[]{fqn};
+        int node = mNodeCount++;
+        mLabelStart[node] = labelStart;
+        mLabelLength[node] = labelLength;
+        mParent[node] = parent;
+        mFirstChild[node] = NONE;
+        mNextSibling[node] = NONE;
+        return node;
     }
 
-    private static class Node {
+    private int appendLabels(int[] parts, int from) {
+        int length = parts.length - from;
+        if (mLabelCount + length > mLabels.length) {
+            mLabels = Arrays.copyOf(mLabels, Math.max(mLabels.length * 2, mLabelCount + length));
+        }
+        int start = mLabelCount;
+        System.arraycopy(parts, from, mLabels, start, length);
+        mLabelCount += length;
+        return start;
+    }
 
-        private Map<String, Node> mChildren;
+    // edges
 
-        private boolean isLeaf;
+    private int getChild(int parent, int segment) {
+        long key = edgeKey(parent, segment);
+        int mask = mEdgeKeys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long current = mEdgeKeys[slot];
+            if (current == EMPTY_EDGE) {
+                return NONE;
+            }
+            if (current == key) {
+                return mEdgeValues[slot];
+            }
+        }
+    }
+
+    private void putEdge(int parent, int segment, int child) {
+        if ((mEdgeCount + 1) * 2 > mEdgeKeys.length) {
+            resizeEdges();
+        }
+        long key = edgeKey(parent, segment);
+        int mask = mEdgeKeys.length - 1;
+        int slot = mix(key) & mask;
+        while (mEdgeKeys[slot] != EMPTY_EDGE && mEdgeKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (mEdgeKeys[slot] == EMPTY_EDGE) {
+            mEdgeCount++;
+        }
+        mEdgeKeys[slot] = key;
+        mEdgeValues[slot] = child;
+    }
 
-        private String mValue;
+    private void removeEdge(int parent, int segment) {
+        long key = edgeKey(parent, segment);
+        int mask = mEdgeKeys.length - 1;
+        int slot = mix(key) & mask;
+        while (mEdgeKeys[slot] != key) {
+            if (mEdgeKeys[slot] == EMPTY_EDGE) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
 
-        public Node() {
+        // shift back the following entries so lookups don't stop at the removed slot
+        int gap = slot;
+        for (int next = (gap + 1) & mask; mEdgeKeys[next] != EMPTY_EDGE; next = (next + 1) & mask) {
+            int ideal = mix(mEdgeKeys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                mEdgeKeys[gap] = mEdgeKeys[next];
+                mEdgeValues[gap] = mEdgeValues[next];
+                gap = next;
+            }
+        }
+        mEdgeKeys[gap] = EMPTY_EDGE;
+        mEdgeCount--;
+    }
 
+    private void resizeEdges() {
+        long[] oldKeys = mEdgeKeys;
+        int[] oldValues = mEdgeValues;
+        mEdgeKeys = newEdgeKeys(oldKeys.length * 2);
+        mEdgeValues = new int[oldKeys.length * 2];
+        int mask = mEdgeKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY_EDGE) {
+                continue;
+            }
+            int slot = mix(oldKeys[i]) & mask;
+            while (mEdgeKeys[slot] != EMPTY_EDGE) {
+                slot = (slot + 1) & mask;
+            }
+            mEdgeKeys[slot] = oldKeys[i];
+            mEdgeValues[slot] = oldValues[i];
         }
+    }
+
+    private static long edgeKey(int parent, int segment) {
+        return ((long) parent << 32) | (segment & 0xFFFFFFFFL);
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long[] newEdgeKeys(int size) {
+        long[] keys = new long[size];
+        Arrays.fill(keys, EMPTY_EDGE);
+        return keys;
+    }
 
-        public Node(String value) {
-            mValue = value;
+    // segments
+
+    /**
+     * Converts the fully qualified name to its interned segment indices. Trailing dots are
+     * ignored, so {@code java.} is the same as {@code java}.
+     *
+     * @param create Whether to intern segments that have not been seen yet, if false and a
+     *               segment is unknown, null is returned
+     */
+    private int[] getParts(String fqn, boolean create) {
+        int length = trimmedLength(fqn);
+        int count = 1;
+        for (int i = 0; i < length; i++) {
+            if (fqn.charAt(i) == '.') {
+                count++;
+            }
         }
 
-        public Node getOrCreateChild(String part) {
-            if (mChildren == null) {
-                mChildren = new HashMap<>();
+        int[] parts = new int[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = fqn.indexOf('.', start);
+            if (end == -1 || end > length) {
+                end = length;
             }
+            int segment = getSegment(fqn, start, end, create);
+            if (segment == NONE) {
+                return null;
+            }
+            parts[i] = segment;
+            start = end + 1;
+        }
+        return parts;
+    }
 
-            return mChildren.computeIfAbsent(part, Node::new);
+    private static int trimmedLength(String fqn) {
+        int length = fqn.length();
+        while (length > 0 && fqn.charAt(length - 1) == '.') {
+            length--;
         }
+        return length;
+    }
 
-        public Map<String, Node> getChildren() {
-            return mChildren;
+    private int getSegment(String fqn, int start, int end, boolean create) {
+        int mask = mSegmentTable.length - 1;
+        int slot = hash(fqn, start, end) & mask;
+        while (mSegmentTable[slot] != NONE) {
+            String segment = mSegments[mSegmentTable[slot]];
+            if (segment.length() == end - start && fqn.startsWith(segment, start)) {
+                return mSegmentTable[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return NONE;
         }
 
-        public String getValue() {
-            return mValue;
+        if (mSegmentCount == mSegments.length) {
+            mSegments = Arrays.copyOf(mSegments, mSegmentCount * 2);
+        }
+        int index = mSegmentCount++;
+        mSegments[index] = fqn.substring(start, end);
+        mSegmentTable[slot] = index;
+
+        if (mSegmentCount * 2 > mSegmentTable.length) {
+            int[] table = newTable(mSegmentTable.length * 2);
+            int newMask = table.length - 1;
+            for (int i = 0; i < mSegmentCount; i++) {
+                String segment = mSegments[i];
+                int newSlot = hash(segment, 0, segment.length()) & newMask;
+                while (table[newSlot] != NONE) {
+                    newSlot = (newSlot + 1) & newMask;
+                }
+                table[newSlot] = i;
+            }
+            mSegmentTable = table;
         }
+        return index;
+    }
 
-        @Override
-        public String toString() {
-            return "Node{" + "isLeaf=" + isLeaf + ", mValue='" + mValue + '\'' + '}';
+    private static int hash(String string, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + string.charAt(i);
         }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int[] newTable(int size) {
+        int[] table = new int[size];
+        Arrays.fill(table, NONE);
+        return table;
     }
 }
@@ -0,0 +1,329 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An immutable table of strings sorted by their UTF-8 bytes that is stored on disk and
+ * memory-mapped when read, so lookups are done directly against the mapped file instead of
+ * keeping every string on the heap.
+ * <p>
+ * File layout:
+ * <pre>
+ *     int magic
+ *     int version
+ *     int count
+ *     int[count + 1] offsets, relative to the start of the data section
+ *     byte[] data, the UTF-8 bytes of each string
+ * </pre>
+ */
+public class SortedStringTable {
+
+    private static final int MAGIC = 0x53535442; // SSTB
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * Writes the given strings to the file in sorted order, duplicates are removed.
+     *
+     * @param file The destination file, it will be overwritten if it exists
+     * @param strings The strings to write
+     */
+    public static void write(@NonNull File file, @NonNull Collection<String> strings) throws IOException {
+        byte[][] encoded = new byte[strings.size()][];
+        int index = 0;
+        for (String string : strings) {
+            encoded[index++] = string.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(encoded, SortedStringTable::compare);
+
+        int count = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            if (count == 0 || compare(encoded[count - 1], encoded[i]) != 0) {
+                encoded[count++] = encoded[i];
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            int offset = 0;
+            for (int i = 0; i < count; i++) {
+                out.writeInt(offset);
+                offset += encoded[i].length;
+            }
+            out.writeInt(offset);
+            for (int i = 0; i < count; i++) {
+                out.write(encoded[i]);
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a table previously written with {@link #write(File, Collection)}.
+     *
+     * @throws IOException if the file cannot be read or is not a valid table
+     */
+    @NonNull
+    public static SortedStringTable open(@NonNull File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid string table size: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Unknown string table format: " + file);
+            }
+            int count = buffer.getInt(8);
+            long dataStart = HEADER_SIZE + 4L * (count + 1);
+            if (count < 0 || dataStart > size
+                || dataStart + buffer.getInt(HEADER_SIZE + 4 * count) != size) {
+                throw new IOException("Corrupted string table: " + file);
+            }
+            return new SortedStringTable(buffer, count, (int) dataStart);
+        }
+    }
+
+    private final ByteBuffer mBuffer;
+    private final int mCount;
+    private final int mDataStart;
+
+    private SortedStringTable(ByteBuffer buffer, int count, int dataStart) {
+        mBuffer = buffer;
+        mCount = count;
+        mDataStart = dataStart;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Decodes the string at the given index, the index is based on the sorted order.
+     */
+    @NonNull
+    public String get(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mCount);
+        }
+        int start = start(index);
+        int length = start(index + 1) - start;
+        byte[] bytes = new byte[length];
+        ByteBuffer duplicate = mBuffer.duplicate();
+        duplicate.position(mDataStart + start);
+        duplicate.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Whether the table contains the given string. The search is done on the
+     * mapped bytes without decoding any of the stored strings.
+     */
+    public boolean contains(@NonNull CharSequence string) {
+        return indexOf(string) >= 0;
+    }
+
+    /**
+     * @return the index of the string, or a negative value if it is not found
+     */
+    public int indexOf(@NonNull CharSequence string) {
+        int index = lowerBound(string);
+        if (index < mCount && compareAt(index, string) == 0) {
+            return index;
+        }
+        return -(index + 1);
+    }
+
+    /**
+     * Passes the strings that start with the given prefix to the consumer in sorted order. The
+     * strings that do not match are skipped without being decoded.
+     *
+     * @param consumer Returns false to stop the iteration
+     * @return false if the iteration has been stopped by the consumer
+     */
+    public boolean forEachWithPrefix(@NonNull String prefix, @NonNull Predicate<String> consumer) {
+        return visitWithPrefix(prefix, string -> consumer.test(string.toString()));
+    }
+
+    /**
+     * Same as {@link #forEachWithPrefix(String, Predicate)}, but each string is decoded into a
+     * single buffer that is reused between calls, so nothing is allocated for each match.
+     * {@link CharSequence#toString()} must be called if the string needs to be kept.
+     *
+     * @param visitor Returns false to stop the iteration
+     * @return false if the iteration has been stopped by the visitor
+     */
+    public boolean visitWithPrefix(@NonNull String prefix,
+                                   @NonNull Predicate<CharSequence> visitor) {
+        int prefixLength = utf8Length(prefix);
+        StringBuilder builder = new StringBuilder(prefix);
+        for (int i = lowerBound(prefix); i < mCount && startsWithAt(i, prefix); i++) {
+            // the prefix is the same for every match, only the rest of it is decoded
+            builder.setLength(prefix.length());
+            decode(mDataStart + start(i) + prefixLength, mDataStart + start(i + 1), builder);
+            if (!visitor.test(builder)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void forEach(@NonNull Consumer<String> consumer) {
+        for (int i = 0; i < mCount; i++) {
+            consumer.accept(get(i));
+        }
+    }
+
+    /**
+     * @return the index of the first string that is not less than the key
+     */
+    private int lowerBound(CharSequence key) {
+        int low = 0;
+        int high = mCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareAt(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean startsWithAt(int index, CharSequence prefix) {
+        return compareAt(index, prefix, true) == 0;
+    }
+
+    private int start(int index) {
+        return mBuffer.getInt(HEADER_SIZE + 4 * index);
+    }
+
+    private int compareAt(int index, CharSequence key) {
+        return compareAt(index, key, false);
+    }
+
+    /**
+     * Compares the stored bytes of the string at the index with the UTF-8 encoding of the key,
+     * the key is encoded one code point at a time as it is compared.
+     *
+     * @param prefixOnly Whether only the first bytes of the stored string are compared
+     */
+    private int compareAt(int index, CharSequence key, boolean prefixOnly) {
+        int position = mDataStart + start(index);
+        int end = mDataStart + start(index + 1);
+        for (int i = 0; i < key.length(); ) {
+            int codePoint = codePointAt(key, i);
+            i += Character.charCount(codePoint);
+            int length = utf8Length(codePoint);
+            for (int b = 0; b < length; b++) {
+                if (position == end) {
+                    return -1;
+                }
+                int compare = Integer.compare(mBuffer.get(position++) & 0xFF,
+                        utf8Byte(codePoint, length, b));
+                if (compare != 0) {
+                    return compare;
+                }
+            }
+        }
+        return position == end || prefixOnly ? 0 : 1;
+    }
+
+    private void decode(int position, int end, StringBuilder builder) {
+        while (position < end) {
+            int b = mBuffer.get(position++);
+            if (b >= 0) {
+                builder.append((char) b);
+                continue;
+            }
+            int codePoint;
+            int remaining;
+            if ((b & 0xE0) == 0xC0) {
+                codePoint = b & 0x1F;
+                remaining = 1;
+            } else if ((b & 0xF0) == 0xE0) {
+                codePoint = b & 0x0F;
+                remaining = 2;
+            } else {
+                codePoint = b & 0x07;
+                remaining = 3;
+            }
+            for (int i = 0; i < remaining; i++) {
+                codePoint = (codePoint << 6) | (mBuffer.get(position++) & 0x3F);
+            }
+            builder.appendCodePoint(codePoint);
+        }
+    }
+
+    /**
+     * Unpaired surrogates are replaced like {@link String#getBytes} does when the table is
+     * written, so they compare the same way.
+     */
+    private static int codePointAt(CharSequence string, int index) {
+        int codePoint = Character.codePointAt(string, index);
+        if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            return '?';
+        }
+        return codePoint;
+    }
+
+    private static int utf8Length(CharSequence string) {
+        int length = 0;
+        for (int i = 0; i < string.length(); ) {
+            int codePoint = codePointAt(string, i);
+            i += Character.charCount(codePoint);
+            length += utf8Length(codePoint);
+        }
+        return length;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+        if (codePoint < 0x800) {
+            return 2;
+        }
+        return codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private static int utf8Byte(int codePoint, int length, int index) {
+        if (length == 1) {
+            return codePoint;
+        }
+        int shift = 6 * (length - 1 - index);
+        if (index == 0) {
+            return ((0xF00 >> length) & 0xFF) | (codePoint >> shift);
+        }
+        return 0x80 | ((codePoint >> shift) & 0x3F);
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int min = Math.min(a.length, b.length);
+        for (int i = 0; i < min; i++) {
+            int compare = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+}
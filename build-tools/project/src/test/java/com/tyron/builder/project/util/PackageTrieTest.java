@@ -1,11 +1,20 @@
 package com.tyron.builder.project.util;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 public class PackageTrieTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testTrie() {
         PackageTrie trie = new PackageTrie();
@@ -47,4 +56,109 @@ public class PackageTrieTest {
         List<String> packages = trie.getMatchingPackages("a");
         assert packages.size() == 1;
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCompressedPrefix() {
+        PackageTrie trie = new PackageTrie();
+        trie.add("java.lang.String");
+        trie.add("java.util.List");
+
+        // java.lang is stored as a single node until java.util is added
+        List<String> packages = trie.getMatchingPackages("java");
+        assert packages.size() == 2;
+        assert trie.contains("java.util.List");
+        assert !trie.contains("java.util");
+
+        trie.remove("java", false);
+        assert trie.getLeafNodes().isEmpty();
+    }
+
+    @Test
+    public void testTrailingDot() {
+        PackageTrie trie = new PackageTrie();
+        trie.add("java.lang.String");
+        trie.add("java.util.List");
+
+        assert trie.getMatchingPackages("java.").size() == 2;
+        assert trie.getMatchingPackages("java.lang.").size() == 1;
+    }
+
+    @Test
+    public void testLeafNodes() {
+        PackageTrie trie = new PackageTrie();
+        trie.add("a.b");
+        trie.add("a.b.c");
+        trie.add("d.E");
+
+        Set<String> leafNodes = trie.getLeafNodes();
+        assert leafNodes.size() == 2;
+        assert leafNodes.contains("a.b");
+        assert leafNodes.contains("d.E");
+    }
+
+    @Test
+    public void testCompact() {
+        PackageTrie trie = new PackageTrie();
+        trie.add("kept.Class");
+        for (int i = 0; i < 5000; i++) {
+            trie.add("removed.p" + i + ".Class");
+            trie.remove("removed.p" + i + ".Class");
+        }
+
+        assert trie.contains("kept.Class");
+        assert !trie.contains("removed.p1.Class");
+        assert trie.getLeafNodes().size() == 1;
+        trie.add("added.Class");
+        assert trie.getMatchingPackages("added").size() == 1;
+    }
+
+    @Test
+    public void testTable() throws Exception {
+        File file = folder.newFile("classes.idx");
+        SortedStringTable.write(file, Arrays.asList("java.lang.String", "java.util.List"));
+        SortedStringTable table = SortedStringTable.open(file);
+
+        PackageTrie trie = new PackageTrie();
+        trie.add("java.lang.Object");
+        trie.add("java.lang.String");
+        trie.addTable(table);
+
+        assert trie.contains("java.util.List");
+        List<String> names = trie.getMatchingPackages("java.lang");
+        assert names.size() == 2;
+        assert names.contains("java.lang.String");
+        assert names.contains("java.lang.Object");
+        assert trie.getTopLevelNonLeafNodes().size() == 1;
+
+        trie.removeTable(table);
+        assert !trie.contains("java.util.List");
+        assert trie.getMatchingPackages("java.util").isEmpty();
+    }
+
+    @Test
+    public void testVisitor() throws Exception {
+        File first = folder.newFile("first.idx");
+        SortedStringTable.write(first, Arrays.asList("java.lang.String", "java.util.List"));
+        File second = folder.newFile("second.idx");
+        SortedStringTable.write(second, Arrays.asList("java.lang.String", "java.lang.Thread"));
+
+        PackageTrie trie = new PackageTrie();
+        trie.add("java.lang.Object");
+        trie.add("java.lang.String");
+        trie.addTable(SortedStringTable.open(first));
+        trie.addTable(SortedStringTable.open(second));
+
+        // each name is visited once even if it is in several tables and in the trie
+        List<String> names = new ArrayList<>();
+        trie.visitMatchingPackages("java.lang", fqn -> names.add(fqn.toString()));
+        assert names.equals(Arrays.asList("java.lang.String", "java.lang.Thread",
+                "java.lang.Object"));
+
+        names.clear();
+        trie.visitMatchingPackages("java", fqn -> {
+            names.add(fqn.toString());
+            return names.size() < 2;
+        });
+        assert names.size() == 2;
+    }
+}
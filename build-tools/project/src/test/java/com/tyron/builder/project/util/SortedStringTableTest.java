@@ -0,0 +1,90 @@
+package com.tyron.builder.project.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SortedStringTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        File file = folder.newFile("classes.idx");
+        SortedStringTable.write(file, Arrays.asList("java.lang.String", "android.view.View",
+                "java.lang.Object", "java.lang.String"));
+
+        SortedStringTable table = SortedStringTable.open(file);
+        assert table.size() == 3;
+        assert table.get(0).equals("android.view.View");
+        assert table.contains("java.lang.Object");
+        assert table.contains("java.lang.String");
+        assert !table.contains("java.lang");
+        assert !table.contains("java.lang.Strings");
+
+        List<String> names = new ArrayList<>();
+        table.forEach(names::add);
+        assert names.equals(Arrays.asList("android.view.View", "java.lang.Object",
+                "java.lang.String"));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        File file = folder.newFile("empty.idx");
+        SortedStringTable.write(file, new ArrayList<>());
+
+        SortedStringTable table = SortedStringTable.open(file);
+        assert table.size() == 0;
+        assert !table.contains("a");
+    }
+
+    @Test
+    public void testPrefix() throws Exception {
+        File file = folder.newFile("prefix.idx");
+        SortedStringTable.write(file, Arrays.asList("java.lang.String", "java.util.List",
+                "java.lang.Object", "javax.Foo", "android.view.View"));
+
+        SortedStringTable table = SortedStringTable.open(file);
+        List<String> names = new ArrayList<>();
+        table.forEachWithPrefix("java.", names::add);
+        assert names.equals(Arrays.asList("java.lang.Object", "java.lang.String",
+                "java.util.List"));
+
+        names.clear();
+        assert !table.forEachWithPrefix("java.", name -> names.add(name) && names.size() < 2);
+        assert names.size() == 2;
+
+        names.clear();
+        table.forEachWithPrefix("kotlin.", names::add);
+        assert names.isEmpty();
+    }
+
+    @Test
+    public void testVisitWithPrefix() throws Exception {
+        File file = folder.newFile("unicode.idx");
+        SortedStringTable.write(file, Arrays.asList("p.\u00e9t\u00e9", "p.\u4e2d\u6587",
+                "p.\ud83d\ude00", "p.ascii", "q.Other"));
+
+        SortedStringTable table = SortedStringTable.open(file);
+        List<String> names = new ArrayList<>();
+        assert table.visitWithPrefix("p.", name -> names.add(name.toString()));
+        assert names.equals(Arrays.asList("p.ascii", "p.\u00e9t\u00e9", "p.\u4e2d\u6587",
+                "p.\ud83d\ude00"));
+
+        // the same buffer is passed for every string
+        List<CharSequence> buffers = new ArrayList<>();
+        table.visitWithPrefix("p.", buffers::add);
+        assert buffers.get(0) == buffers.get(3);
+
+        assert table.contains(new StringBuilder("p.\ud83d\ude00"));
+        assert table.contains("p.\u4e2d\u6587");
+        assert !table.contains("p.\u4e2d");
+        assert table.indexOf("p.\u00e9t\u00e9") == 1;
+    }
+}
@@ -33,13 +33,18 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -47,9 +52,20 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * For creating {@link DirectorySnapshot}s of directories.
+ *
+ * When created with a {@link ForkJoinPool}, the directories near the root are split off into subtrees
+ * which are walked and hashed in parallel. Their snapshots are added to the parent directory when
+ * it is left, and since the children of each directory are sorted by name before hashing, the result
+ * is the same as the one of a sequential walk.
  */
 public class DirectorySnapshotter {
     private static final EnumSet<FileVisitOption> DONT_FOLLOW_SYMLINKS = EnumSet.noneOf(FileVisitOption.class);
+
+    /**
+     * Directories up to this depth below the root are snapshot as separate subtrees in parallel mode.
+     * Deeper directories are walked by the task of their ancestor, which keeps the number of tasks low.
+     */
+    private static final int MAX_PARALLEL_SUBTREE_DEPTH = 3;
     private static final SymbolicLinkMapping EMPTY_SYMBOLIC_LINK_MAPPING = new SymbolicLinkMapping() {
 
         @Override
@@ -72,12 +88,22 @@ public class DirectorySnapshotter {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    @Nullable
+    private final ForkJoinPool forkJoinPool;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, null);
+    }
+
+    /**
+     * @param forkJoinPool The pool to snapshot subtrees in parallel on, or {@code null} to walk each directory on the calling thread.
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, @Nullable ForkJoinPool forkJoinPool) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.forkJoinPool = forkJoinPool;
     }
 
     /**
@@ -98,13 +124,61 @@ public class DirectorySnapshotter {
      * @return The (possible filtered) snapshot of the directory.
      */
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered, Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer) {
+        long startTime = System.nanoTime();
         try {
             Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer);
-            Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+            boolean parallel = forkJoinPool != null;
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer, parallel);
+            if (parallel) {
+                try {
+                    forkJoinPool.invoke(new SubtreeSnapshotTask(rootPath, visitor));
+                } catch (RuntimeException e) {
+                    // report the failure that stopped the walk, not the cancellation of other subtrees or a copy made by the pool
+                    visitor.rethrowFailure();
+                    throw e;
+                }
+            } else {
+                walk(rootPath, visitor);
+            }
             return visitor.getResult();
+        } finally {
+            collector.recordSnapshotTime(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Walks the directory with the given visitor. When the walk fails, the subtrees it forked are
+     * stopped and awaited, so that nothing is walked anymore once the failure is reported.
+     */
+    private static void walk(Path root, PathVisitor visitor) {
+        try {
+            Files.walkFileTree(root, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
         } catch (IOException e) {
-            throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", absolutePath), e);
+            UncheckedIOException failure = new UncheckedIOException(String.format("Could not list contents of directory '%s'.", root), e);
+            visitor.stopForkedSubtrees(failure);
+            throw failure;
+        } catch (RuntimeException | Error e) {
+            visitor.stopForkedSubtrees(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Walks a directory with the given visitor, which may fork further tasks for its subdirectories.
+     */
+    private static class SubtreeSnapshotTask extends RecursiveTask<PathVisitor> {
+        private final Path root;
+        private final PathVisitor visitor;
+
+        public SubtreeSnapshotTask(Path root, PathVisitor visitor) {
+            this.root = root;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected PathVisitor compute() {
+            walk(root, visitor);
+            return visitor;
         }
     }
 
@@ -237,6 +311,13 @@ public class DirectorySnapshotter {
         private final Deque<String> parentDirectories = new ArrayDeque<>();
         private final Set<FileSystemLocationSnapshot> filteredDirectorySnapshots = new HashSet<>();
         private final Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer;
+        private final boolean parallel;
+        // the subtrees forked from each directory currently entered, innermost first
+        private final Deque<List<SubtreeSnapshotTask>> forkedSubtrees = new ArrayDeque<>();
+        // the root of a forked subtree has already been accepted by the parent visitor
+        private boolean rootAccepted;
+        // the first failure of any visitor of the snapshot, which stops all of them
+        private final AtomicReference<Throwable> failure;
 
         public PathVisitor(
                 @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
@@ -246,9 +327,26 @@ public class DirectorySnapshotter {
                 DefaultExcludes defaultExcludes,
                 DirectorySnapshotterStatistics.Collector statisticsCollector,
                 SymbolicLinkMapping symbolicLinkMapping,
-                Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer
+                Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer,
+                boolean parallel
         ) {
-            super(statisticsCollector);
+            this(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, statisticsCollector, symbolicLinkMapping, unfilteredSnapshotConsumer, parallel, true, new AtomicReference<>());
+        }
+
+        private PathVisitor(
+                @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
+                AtomicBoolean hasBeenFiltered,
+                FileHasher hasher,
+                Interner<String> stringInterner,
+                DefaultExcludes defaultExcludes,
+                DirectorySnapshotterStatistics.Collector statisticsCollector,
+                SymbolicLinkMapping symbolicLinkMapping,
+                Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer,
+                boolean parallel,
+                boolean newHierarchy,
+                AtomicReference<Throwable> failure
+        ) {
+            super(statisticsCollector, newHierarchy);
             this.builder = FilteredTrackingMerkleDirectorySnapshotBuilder.sortingRequired(this::consumeUnfilteredSnapshot);
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
@@ -257,6 +355,40 @@ public class DirectorySnapshotter {
             this.defaultExcludes = defaultExcludes;
             this.symbolicLinkMapping = symbolicLinkMapping;
             this.unfilteredSnapshotConsumer = unfilteredSnapshotConsumer;
+            this.parallel = parallel;
+            this.failure = failure;
+        }
+
+        /**
+         * Creates a visitor for a subdirectory of the current directory, which continues with the relative
+         * path and parent directories of this visitor. It is walked on another thread, so it may call the
+         * unfiltered snapshot consumer concurrently with this visitor.
+         */
+        private PathVisitor forSubtree() {
+            PathVisitor subtreeVisitor = new PathVisitor(
+                    predicate,
+                    hasBeenFiltered,
+                    hasher,
+                    stringInterner,
+                    defaultExcludes,
+                    collector,
+                    symbolicLinkMapping,
+                    unfilteredSnapshotConsumer,
+                    true,
+                    false,
+                    failure);
+            subtreeVisitor.pathTracker.enter("");
+            for (String segment : pathTracker.getSegments()) {
+                subtreeVisitor.pathTracker.enter(segment);
+            }
+            subtreeVisitor.parentDirectories.addAll(parentDirectories);
+            subtreeVisitor.rootAccepted = true;
+            return subtreeVisitor;
+        }
+
+        private boolean shouldFork() {
+            // never fork the root of this visitor, it is what this visitor walks
+            return parallel && !forkedSubtrees.isEmpty() && pathTracker.getSegments().size() <= MAX_PARALLEL_SUBTREE_DEPTH;
         }
 
         private void consumeUnfilteredSnapshot(FileSystemLocationSnapshot snapshot) {
@@ -271,11 +403,25 @@ public class DirectorySnapshotter {
 
         @Override
         protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            checkNotFailed();
             String fileName = getInternedFileName(dir);
             pathTracker.enter(fileName);
-            if (shouldVisitDirectory(dir, fileName)) {
+            boolean accepted = rootAccepted || shouldVisitDirectory(dir, fileName);
+            rootAccepted = false;
+            if (accepted) {
+                if (shouldFork()) {
+                    // the subtree visitor enters the directory again from the current relative path
+                    pathTracker.leave();
+                    SubtreeSnapshotTask task = new SubtreeSnapshotTask(dir, forSubtree());
+                    task.fork();
+                    forkedSubtrees.getFirst().add(task);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
                 builder.enterDirectory(AccessType.DIRECT, intern(symbolicLinkMapping.remapAbsolutePath(dir)), fileName, DirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS);
                 parentDirectories.addFirst(dir.toString());
+                if (parallel) {
+                    forkedSubtrees.addFirst(new ArrayList<>());
+                }
                 return FileVisitResult.CONTINUE;
             } else {
                 pathTracker.leave();
@@ -292,6 +438,11 @@ public class DirectorySnapshotter {
             if (isNotFileSystemLoopException(exc)) {
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
+            if (parallel) {
+                // only removed once joined, so the remaining subtrees are stopped if one of them failed
+                joinForkedSubtrees(forkedSubtrees.getFirst());
+                forkedSubtrees.removeFirst();
+            }
             boolean currentLevelComplete = builder.isCurrentLevelUnfiltered();
             FileSystemLocationSnapshot currentLevel = builder.leaveDirectory();
             if (!currentLevelComplete) {
@@ -303,6 +454,7 @@ public class DirectorySnapshotter {
 
         @Override
         protected FileVisitResult doVisitFile(Path file, BasicFileAttributes attrs) {
+            checkNotFailed();
             String internedFileName = getInternedFileName(file);
             pathTracker.enter(internedFileName);
             try {
@@ -339,6 +491,53 @@ public class DirectorySnapshotter {
             }
         }
 
+        /**
+         * Adds the snapshots of the subtrees forked from the current directory, in the same way
+         * leaving each of them would have done in a sequential walk.
+         */
+        private void joinForkedSubtrees(List<SubtreeSnapshotTask> tasks) {
+            for (SubtreeSnapshotTask task : tasks) {
+                PathVisitor subtreeVisitor = task.join();
+                DirectorySnapshot subtreeSnapshot = (DirectorySnapshot) subtreeVisitor.getResult();
+                builder.visitDirectory(subtreeSnapshot);
+                if (!subtreeVisitor.builder.isCurrentLevelUnfiltered()) {
+                    filteredDirectorySnapshots.add(subtreeSnapshot);
+                    builder.markCurrentLevelAsFiltered();
+                }
+            }
+        }
+
+        /**
+         * Stops the subtrees forked from the directories currently entered and waits for them.
+         * Their visitors see the failure before visiting anything else, so this doesn't wait for
+         * them to be walked. Their own failures are ignored in favour of the given one.
+         */
+        private void stopForkedSubtrees(Throwable cause) {
+            failure.compareAndSet(null, cause);
+            for (List<SubtreeSnapshotTask> tasks : forkedSubtrees) {
+                for (SubtreeSnapshotTask task : tasks) {
+                    task.quietlyJoin();
+                }
+            }
+            forkedSubtrees.clear();
+        }
+
+        private void checkNotFailed() {
+            if (failure.get() != null) {
+                throw new CancellationException("Snapshotting has been stopped by a failure in another subtree");
+            }
+        }
+
+        private void rethrowFailure() {
+            Throwable cause = failure.get();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+        }
+
         @Nullable
         private DirectorySnapshot followSymlink(Path file, String internedFileName, AtomicBoolean symlinkHasBeenFiltered) {
             try {
@@ -353,8 +552,11 @@ public class DirectorySnapshotter {
                             defaultExcludes,
                             collector,
                             symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker),
-                            unfilteredSnapshotConsumer);
-                    Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
+                            unfilteredSnapshotConsumer,
+                            parallel,
+                            true,
+                            failure);
+                    walk(targetDir, subtreeVisitor);
                     return (DirectorySnapshot) subtreeVisitor.getResult();
                 } else {
                     return null;
@@ -403,7 +605,9 @@ public class DirectorySnapshotter {
             long lastModified = attrs.lastModifiedTime().toMillis();
             long fileLength = attrs.size();
             FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
+            long hashingStartTime = System.nanoTime();
             HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
+            collector.recordHashingTime(System.nanoTime() - hashingStartTime);
             return new RegularFileSnapshot(internedRemappedAbsoluteFilePath, internedName, hash, metadata);
         }
 
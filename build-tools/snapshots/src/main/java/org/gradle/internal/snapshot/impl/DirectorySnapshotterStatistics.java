@@ -6,6 +6,7 @@ import java.nio.file.FileVisitor;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 public interface DirectorySnapshotterStatistics {
@@ -29,11 +30,29 @@ public interface DirectorySnapshotterStatistics {
      */
     long getFailedFiles();
 
+    /**
+     * The number of subtrees that were snapshot in parallel with their parent directory.
+     */
+    long getParallelSubtreeCount();
+
+    /**
+     * The wall clock time spent snapshotting directory trees, in milliseconds.
+     */
+    long getSnapshotTimeMillis();
+
+    /**
+     * The time spent hashing file contents, summed over all threads, in milliseconds.
+     */
+    long getHashingTimeMillis();
+
     class Collector {
         private final AtomicLong hierarchyCount = new AtomicLong();
         private final AtomicLong directoryCount = new AtomicLong();
         private final AtomicLong fileCount = new AtomicLong();
         private final AtomicLong failedFileCount = new AtomicLong();
+        private final AtomicLong parallelSubtreeCount = new AtomicLong();
+        private final AtomicLong snapshotTime = new AtomicLong();
+        private final AtomicLong hashingTime = new AtomicLong();
 
         public void recordVisitHierarchy() {
             hierarchyCount.incrementAndGet();
@@ -51,11 +70,26 @@ public interface DirectorySnapshotterStatistics {
             failedFileCount.incrementAndGet();
         }
 
+        public void recordParallelSubtree() {
+            parallelSubtreeCount.incrementAndGet();
+        }
+
+        public void recordSnapshotTime(long nanos) {
+            snapshotTime.addAndGet(nanos);
+        }
+
+        public void recordHashingTime(long nanos) {
+            hashingTime.addAndGet(nanos);
+        }
+
         public DirectorySnapshotterStatistics collect() {
             long hierarchyCount = this.hierarchyCount.getAndSet(0);
             long directoryCount = this.directoryCount.getAndSet(0);
             long fileCount = this.fileCount.getAndSet(0);
             long failedFileCount = this.failedFileCount.getAndSet(0);
+            long parallelSubtreeCount = this.parallelSubtreeCount.getAndSet(0);
+            long snapshotTimeMillis = TimeUnit.NANOSECONDS.toMillis(this.snapshotTime.getAndSet(0));
+            long hashingTimeMillis = TimeUnit.NANOSECONDS.toMillis(this.hashingTime.getAndSet(0));
 
             return new DirectorySnapshotterStatistics() {
                 @Override
@@ -78,10 +112,26 @@ public interface DirectorySnapshotterStatistics {
                     return failedFileCount;
                 }
 
+                @Override
+                public long getParallelSubtreeCount() {
+                    return parallelSubtreeCount;
+                }
+
+                @Override
+                public long getSnapshotTimeMillis() {
+                    return snapshotTimeMillis;
+                }
+
+                @Override
+                public long getHashingTimeMillis() {
+                    return hashingTimeMillis;
+                }
+
                 @Override
                 public String toString() {
-                    return MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files)",
-                            hierarchyCount, directoryCount, fileCount, failedFileCount);
+                    return MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files) " +
+                                    "in {4,number,integer} ms ({5,number,integer} ms hashing, {6,number,integer} subtrees snapshot in parallel)",
+                            hierarchyCount, directoryCount, fileCount, failedFileCount, snapshotTimeMillis, hashingTimeMillis, parallelSubtreeCount);
                 }
             };
         }
@@ -89,15 +139,33 @@ public interface DirectorySnapshotterStatistics {
 
     abstract class CollectingFileVisitor implements FileVisitor<Path> {
         protected final Collector collector;
+        // the root of a split off subtree has already been counted by the parent visitor
+        private boolean rootDirectoryCounted;
 
         public CollectingFileVisitor(Collector collector) {
+            this(collector, true);
+        }
+
+        /**
+         * @param newHierarchy Whether this visitor walks a new hierarchy, rather than a part of a hierarchy split off for parallel snapshotting.
+         */
+        protected CollectingFileVisitor(Collector collector, boolean newHierarchy) {
             this.collector = collector;
-            collector.recordVisitHierarchy();
+            if (newHierarchy) {
+                collector.recordVisitHierarchy();
+            } else {
+                collector.recordParallelSubtree();
+                rootDirectoryCounted = true;
+            }
         }
 
         @Override
         public final FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-            collector.recordVisitDirectory();
+            if (rootDirectoryCounted) {
+                rootDirectoryCounted = false;
+            } else {
+                collector.recordVisitDirectory();
+            }
             return doPreVisitDirectory(dir, attrs);
         }
 
@@ -21,11 +21,13 @@ import org.gradle.internal.snapshot.impl.FileSystemSnapshotFilter;
 import org.gradle.internal.vfs.FileSystemAccess;
 import org.gradle.internal.vfs.VirtualFileSystem;
 
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
@@ -43,6 +45,8 @@ public class DefaultFileSystemAccess implements FileSystemAccess {
     private ImmutableList<String> defaultExcludes;
     private DirectorySnapshotter directorySnapshotter;
     private final FileHasher hasher;
+    @Nullable
+    private final ForkJoinPool snapshottingPool;
     private final StripedProducerGuard<String> producingSnapshots = new StripedProducerGuard<>();
 
     public DefaultFileSystemAccess(
@@ -53,13 +57,30 @@ public class DefaultFileSystemAccess implements FileSystemAccess {
             WriteListener writeListener,
             DirectorySnapshotterStatistics.Collector statisticsCollector,
             String... defaultExcludes
+    ) {
+        this(hasher, stringInterner, stat, virtualFileSystem, writeListener, statisticsCollector, null, defaultExcludes);
+    }
+
+    /**
+     * @param snapshottingPool The pool used to snapshot directory trees in parallel, or {@code null} to snapshot them sequentially.
+     */
+    public DefaultFileSystemAccess(
+            FileHasher hasher,
+            Interner<String> stringInterner,
+            Stat stat,
+            VirtualFileSystem virtualFileSystem,
+            WriteListener writeListener,
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            @Nullable ForkJoinPool snapshottingPool,
+            String... defaultExcludes
     ) {
         this.stringInterner = stringInterner;
         this.stat = stat;
         this.writeListener = writeListener;
         this.statisticsCollector = statisticsCollector;
         this.defaultExcludes = ImmutableList.copyOf(defaultExcludes);
-        this.directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, this.defaultExcludes, statisticsCollector);
+        this.snapshottingPool = snapshottingPool;
+        this.directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, this.defaultExcludes, statisticsCollector, snapshottingPool);
         this.hasher = hasher;
         this.virtualFileSystem = virtualFileSystem;
     }
@@ -220,7 +241,7 @@ public class DefaultFileSystemAccess implements FileSystemAccess {
         if (!defaultExcludes.equals(newDefaultExcludes)) {
             LOGGER.debug("Default excludes changes from " + defaultExcludes + " to " + newDefaultExcludes);
             defaultExcludes = newDefaultExcludes;
-            directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, newDefaultExcludes, statisticsCollector);
+            directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, newDefaultExcludes, statisticsCollector, snapshottingPool);
             virtualFileSystem.invalidateAll();
         }
     }
@@ -0,0 +1,144 @@
+package org.gradle.internal.snapshot.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Interners;
+import com.google.common.hash.HashCode;
+
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshotHierarchyVisitor;
+import org.gradle.internal.snapshot.SnapshotVisitResult;
+import org.gradle.internal.snapshot.SnapshottingFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DirectorySnapshotterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final FileHasher fileHasher = new DefaultFileHasher(new DefaultStreamHasher());
+    private ForkJoinPool pool;
+    private File root;
+
+    @Before
+    public void setup() throws IOException {
+        pool = new ForkJoinPool(4);
+        root = temporaryFolder.newFolder("root");
+        createTree(root, 0);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testParallelSnapshotIsSameAsSequential() {
+        FileSystemLocationSnapshot sequential = snapshot(new DirectorySnapshotter(fileHasher, Interners.newStrongInterner(), Collections.emptyList(), new DirectorySnapshotterStatistics.Collector()), null);
+        FileSystemLocationSnapshot parallel = snapshot(new DirectorySnapshotter(fileHasher, Interners.newStrongInterner(), Collections.emptyList(), new DirectorySnapshotterStatistics.Collector(), pool), null);
+
+        assertEquals(sequential.getHash(), parallel.getHash());
+        assertEquals(entries(sequential), entries(parallel));
+    }
+
+    @Test
+    public void testFilteredParallelSnapshotIsSameAsSequential() {
+        SnapshottingFilter.DirectoryWalkerPredicate predicate = (path, name, isDirectory, relativePath) -> isDirectory || !name.endsWith("1.txt");
+        FileSystemLocationSnapshot sequential = snapshot(new DirectorySnapshotter(fileHasher, Interners.newStrongInterner(), Collections.emptyList(), new DirectorySnapshotterStatistics.Collector()), predicate);
+        FileSystemLocationSnapshot parallel = snapshot(new DirectorySnapshotter(fileHasher, Interners.newStrongInterner(), Collections.emptyList(), new DirectorySnapshotterStatistics.Collector(), pool), predicate);
+
+        assertEquals(sequential.getHash(), parallel.getHash());
+        assertEquals(entries(sequential), entries(parallel));
+    }
+
+    @Test
+    public void testFailedParallelSnapshotStopsWalking() throws InterruptedException {
+        AtomicInteger hashedFiles = new AtomicInteger();
+        FileHasher failingHasher = new FileHasher() {
+            @Override
+            public HashCode hash(File file) {
+                return hash(file, file.length(), file.lastModified());
+            }
+
+            @Override
+            public HashCode hash(File file, long length, long lastModified) {
+                hashedFiles.incrementAndGet();
+                if (file.getName().equals("file0.txt") && file.getParentFile().equals(root)) {
+                    throw new IllegalStateException("Failed to hash " + file);
+                }
+                return fileHasher.hash(file, length, lastModified);
+            }
+        };
+        DirectorySnapshotter snapshotter = new DirectorySnapshotter(failingHasher, Interners.newStrongInterner(), Collections.emptyList(), new DirectorySnapshotterStatistics.Collector(), pool);
+        try {
+            snapshot(snapshotter, null);
+            fail("Expected the snapshot to fail");
+        } catch (IllegalStateException expected) {
+            // the subtrees forked before the failure have been stopped and awaited
+        }
+        int hashedAfterFailure = hashedFiles.get();
+        Thread.sleep(100);
+        assertEquals(hashedAfterFailure, hashedFiles.get());
+        assertTrue(pool.awaitQuiescence(0, TimeUnit.MILLISECONDS));
+    }
+
+    private FileSystemLocationSnapshot snapshot(DirectorySnapshotter snapshotter, SnapshottingFilter.DirectoryWalkerPredicate predicate) {
+        return snapshotter.snapshot(root.getAbsolutePath(), predicate, new AtomicBoolean(), snapshot -> {});
+    }
+
+    private static List<String> entries(FileSystemLocationSnapshot snapshot) {
+        List<String> entries = new ArrayList<>();
+        snapshot.accept(new FileSystemSnapshotHierarchyVisitor() {
+            @Override
+            public SnapshotVisitResult visitEntry(FileSystemLocationSnapshot entry) {
+                entries.add(entry.getAbsolutePath() + " " + entry.getHash());
+                return SnapshotVisitResult.CONTINUE;
+            }
+
+            @Override
+            public void leaveDirectory(DirectorySnapshot directorySnapshot) {
+                entries.add("leave " + directorySnapshot.getAbsolutePath());
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Creates a tree deeper than the subtrees snapshot in parallel, with files on every level.
+     */
+    private static void createTree(File dir, int depth) throws IOException {
+        for (int i = 0; i < 3; i++) {
+            File file = new File(dir, "file" + i + ".txt");
+            Files.write(file.toPath(), (dir.getName() + i).getBytes(StandardCharsets.UTF_8));
+        }
+        if (depth < 5) {
+            for (int i = 0; i < 3; i++) {
+                File child = new File(dir, "dir" + i);
+                assertTrue(child.mkdir());
+                createTree(child, depth + 1);
+            }
+        }
+    }
+}
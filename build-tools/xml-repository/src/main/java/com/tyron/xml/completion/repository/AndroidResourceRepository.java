@@ -11,13 +11,17 @@ import com.tyron.xml.completion.repository.api.ResourceReference;
 import com.tyron.xml.completion.repository.api.ResourceValue;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Predicate;
 
 public class AndroidResourceRepository extends SimpleResourceRepository {
 
+    /**
+     * The version of the bundled framework resources, change when android-xml.zip is updated.
+     */
+    private static final String FRAMEWORK_VERSION = "android-31";
 
     private static AndroidResourceRepository sInstance = null;
 
@@ -33,8 +37,28 @@ public class AndroidResourceRepository extends SimpleResourceRepository {
         return sInstance;
     }
 
+    private final File mResDir;
+    private boolean mInitialized;
+
     public AndroidResourceRepository(File resDir, ResourceNamespace namespace) {
         super(resDir, namespace);
+        mResDir = resDir;
+    }
+
+    /**
+     * The framework resources never change, they are parsed once and read from the cache
+     * afterwards.
+     */
+    @Override
+    public synchronized void initialize() throws IOException {
+        if (mInitialized) {
+            return;
+        }
+        File filesDir = ApplicationProvider.getApplicationContext().getFilesDir();
+        ResourceValueCache cache = new ResourceValueCache(new File(filesDir, "cache/resources"));
+        String key = FRAMEWORK_VERSION + ':' + mResDir.getAbsolutePath();
+        parse(mResDir, getNamespace(), null, cache, key);
+        mInitialized = true;
     }
 
     @NotNull
@@ -47,18 +71,16 @@ public class AndroidResourceRepository extends SimpleResourceRepository {
     public boolean hasResources(@NotNull ResourceNamespace namespace,
                                 @NotNull ResourceType resourceType,
                                 @NotNull String resourceName) {
-        return !mTable.getOrPutEmpty(namespace, resourceType).get(resourceName).isEmpty();
+        return !mTable.get(namespace, resourceType).get(resourceName).isEmpty();
     }
 
     @NotNull
     @Override
     public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType type, @NotNull Predicate<ResourceItem> filter) {
-        ListMultimap<String, ResourceItem> value =
-                mTable.get(namespace, type);
         List<ResourceItem> items = new ArrayList<>();
-        for (Map.Entry<String, ResourceItem> entry : value.entries()) {
-            if (filter.test(entry.getValue())) {
-                items.add(entry.getValue());
+        for (ResourceItem item : mTable.get(namespace, type).values()) {
+            if (filter.test(item)) {
+                items.add(item);
             }
         }
         return items;
@@ -69,14 +91,14 @@ public class AndroidResourceRepository extends SimpleResourceRepository {
     public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                            @NotNull ResourceType resourceType,
                                            @NotNull String resourceName) {
-        return mTable.getOrPutEmpty(namespace, resourceType).get(resourceName);
+        return mTable.get(namespace, resourceType).get(resourceName);
     }
 
     @NotNull
     @Override
     public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                                            @NotNull ResourceType resourceType) {
-        return mTable.getOrPutEmpty(namespace, resourceType);
+        return mTable.get(namespace, resourceType);
     }
 
     public static File getOrExtractFiles() {
@@ -0,0 +1,337 @@
+package com.tyron.xml.completion.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash map where {@link #plus} and {@link #minus} return a new map that shares every
+ * node but the path to the changed key with this one, so a change costs O(log n) instead of a
+ * copy of the whole map.
+ * <p>
+ * The map is a hash array mapped trie, each node consumes 5 bits of the hash and only stores
+ * the slots in use, keys whose whole hash is equal are kept in a single collision node.
+ */
+final class PersistentHashMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    @Nullable
+    private final Node mRoot;
+    private final int mSize;
+
+    private PersistentHashMap(@Nullable Node root, int size) {
+        mRoot = root;
+        mSize = size;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(@NotNull K key) {
+        if (mRoot == null) {
+            return null;
+        }
+        return (V) mRoot.get(key, hash(key), 0);
+    }
+
+    @NotNull
+    public PersistentHashMap<K, V> plus(@NotNull K key, @NotNull V value) {
+        if (mRoot == null) {
+            return new PersistentHashMap<>(Node.pair(key, value, hash(key)), 1);
+        }
+        boolean[] added = new boolean[1];
+        Node root = mRoot.put(key, value, hash(key), 0, added);
+        if (root == mRoot) {
+            return this;
+        }
+        return new PersistentHashMap<>(root, added[0] ? mSize + 1 : mSize);
+    }
+
+    @NotNull
+    public PersistentHashMap<K, V> minus(@NotNull K key) {
+        if (mRoot == null) {
+            return this;
+        }
+        Node root = mRoot.remove(key, hash(key), 0);
+        if (root == mRoot) {
+            return this;
+        }
+        return root == null ? empty() : new PersistentHashMap<>(root, mSize - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(@NotNull BiConsumer<? super K, ? super V> action) {
+        if (mRoot != null) {
+            mRoot.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    /**
+     * @return An iterator over the entries of this map, in no particular order
+     */
+    @NotNull
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<>(mRoot);
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Stores two slots per entry, either a key and its value or {@code null} and a child node.
+     * Nodes below the last level of the hash are collision nodes, which only store keys and
+     * values and ignore the bitmap.
+     */
+    private static final class Node {
+        private final int mBitmap;
+        private final Object[] mArray;
+
+        private Node(int bitmap, Object[] array) {
+            mBitmap = bitmap;
+            mArray = array;
+        }
+
+        static Node pair(Object key, Object value, int hash) {
+            return new Node(bit(hash, 0), new Object[]{key, value});
+        }
+
+        static Node pair(Object key1, Object value1, int hash1,
+                         Object key2, Object value2, int hash2,
+                         int shift) {
+            if (shift >= Integer.SIZE) {
+                return new Node(0, new Object[]{key1, value1, key2, value2});
+            }
+            int bit1 = bit(hash1, shift);
+            int bit2 = bit(hash2, shift);
+            if (bit1 == bit2) {
+                Node child = pair(key1, value1, hash1, key2, value2, hash2, shift + BITS);
+                return new Node(bit1, new Object[]{null, child});
+            }
+            Object[] array = Integer.compareUnsigned(bit1, bit2) < 0
+                    ? new Object[]{key1, value1, key2, value2}
+                    : new Object[]{key2, value2, key1, value1};
+            return new Node(bit1 | bit2, array);
+        }
+
+        Object get(Object key, int hash, int shift) {
+            if (shift >= Integer.SIZE) {
+                for (int i = 0; i < mArray.length; i += 2) {
+                    if (key.equals(mArray[i])) {
+                        return mArray[i + 1];
+                    }
+                }
+                return null;
+            }
+            int bit = bit(hash, shift);
+            if ((mBitmap & bit) == 0) {
+                return null;
+            }
+            int index = index(bit);
+            Object current = mArray[index];
+            if (current == null) {
+                return ((Node) mArray[index + 1]).get(key, hash, shift + BITS);
+            }
+            return key.equals(current) ? mArray[index + 1] : null;
+        }
+
+        Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            if (shift >= Integer.SIZE) {
+                for (int i = 0; i < mArray.length; i += 2) {
+                    if (key.equals(mArray[i])) {
+                        return mArray[i + 1] == value ? this : with(i + 1, value);
+                    }
+                }
+                added[0] = true;
+                Object[] array = new Object[mArray.length + 2];
+                System.arraycopy(mArray, 0, array, 0, mArray.length);
+                array[mArray.length] = key;
+                array[mArray.length + 1] = value;
+                return new Node(0, array);
+            }
+
+            int bit = bit(hash, shift);
+            int index = index(bit);
+            if ((mBitmap & bit) == 0) {
+                added[0] = true;
+                Object[] array = new Object[mArray.length + 2];
+                System.arraycopy(mArray, 0, array, 0, index);
+                array[index] = key;
+                array[index + 1] = value;
+                System.arraycopy(mArray, index, array, index + 2, mArray.length - index);
+                return new Node(mBitmap | bit, array);
+            }
+
+            Object current = mArray[index];
+            if (current == null) {
+                Node child = (Node) mArray[index + 1];
+                Node newChild = child.put(key, value, hash, shift + BITS, added);
+                return newChild == child ? this : with(index + 1, newChild);
+            }
+            if (key.equals(current)) {
+                return mArray[index + 1] == value ? this : with(index + 1, value);
+            }
+
+            added[0] = true;
+            Node child = pair(current, mArray[index + 1], hash(current), key, value, hash,
+                              shift + BITS);
+            Object[] array = mArray.clone();
+            array[index] = null;
+            array[index + 1] = child;
+            return new Node(mBitmap, array);
+        }
+
+        /**
+         * @return The node without the given key, this node if it does not contain the key or
+         * null if the node would be empty
+         */
+        @Nullable
+        Node remove(Object key, int hash, int shift) {
+            if (shift >= Integer.SIZE) {
+                for (int i = 0; i < mArray.length; i += 2) {
+                    if (key.equals(mArray[i])) {
+                        return mArray.length == 2 ? null : new Node(0, without(i));
+                    }
+                }
+                return this;
+            }
+
+            int bit = bit(hash, shift);
+            if ((mBitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object current = mArray[index];
+            if (current == null) {
+                Node child = (Node) mArray[index + 1];
+                Node newChild = child.remove(key, hash, shift + BITS);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild == null) {
+                    return mBitmap == bit ? null : new Node(mBitmap & ~bit, without(index));
+                }
+                if (newChild.mArray.length == 2 && newChild.mArray[0] != null) {
+                    // a single entry is kept in its parent so lookups don't descend for it
+                    Object[] array = mArray.clone();
+                    array[index] = newChild.mArray[0];
+                    array[index + 1] = newChild.mArray[1];
+                    return new Node(mBitmap, array);
+                }
+                return with(index + 1, newChild);
+            }
+            if (!key.equals(current)) {
+                return this;
+            }
+            return mBitmap == bit ? null : new Node(mBitmap & ~bit, without(index));
+        }
+
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < mArray.length; i += 2) {
+                if (mArray[i] == null) {
+                    ((Node) mArray[i + 1]).forEach(action);
+                } else {
+                    action.accept(mArray[i], mArray[i + 1]);
+                }
+            }
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(mBitmap & (bit - 1));
+        }
+
+        private Node with(int index, Object value) {
+            Object[] array = mArray.clone();
+            array[index] = value;
+            return new Node(mBitmap, array);
+        }
+
+        private Object[] without(int index) {
+            Object[] array = new Object[mArray.length - 2];
+            System.arraycopy(mArray, 0, array, 0, index);
+            System.arraycopy(mArray, index + 2, array, index, mArray.length - index - 2);
+            return array;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+
+        // the nodes being visited and the index of the next slot of each
+        private final Deque<Node> mNodes = new ArrayDeque<>();
+        private final Deque<Integer> mIndices = new ArrayDeque<>();
+        private Map.Entry<K, V> mNext;
+
+        EntryIterator(@Nullable Node root) {
+            if (root != null) {
+                mNodes.push(root);
+                mIndices.push(0);
+            }
+            mNext = advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNext != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            Map.Entry<K, V> next = mNext;
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            mNext = advance();
+            return next;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map.Entry<K, V> advance() {
+            while (!mNodes.isEmpty()) {
+                Node node = mNodes.peek();
+                int index = mIndices.pop();
+                if (index >= node.mArray.length) {
+                    mNodes.pop();
+                    continue;
+                }
+                mIndices.push(index + 2);
+                Object key = node.mArray[index];
+                if (key == null) {
+                    mNodes.push((Node) node.mArray[index + 1]);
+                    mIndices.push(0);
+                } else {
+                    return new AbstractMap.SimpleImmutableEntry<>((K) key,
+                                                                  (V) node.mArray[index + 1]);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.tyron.xml.completion.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ForwardingListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read only {@link ListMultimap} view of a {@link PersistentHashMap} of lists, so a new version
+ * of a {@link ResourceTable} hands out its resources without copying them into a new multimap.
+ * <p>
+ * Lookups by key, the key set, the values, the entries and {@link #asMap()} read the map
+ * directly. The few remaining methods use an immutable copy that is built when one of them is
+ * first called.
+ */
+final class PersistentListMultimap<K, V> extends ForwardingListMultimap<K, V> {
+
+    private final PersistentHashMap<K, ImmutableList<V>> mMap;
+
+    private volatile int mSize = -1;
+    private volatile ImmutableListMultimap<K, V> mCopy;
+
+    PersistentListMultimap(@NotNull PersistentHashMap<K, ImmutableList<V>> map) {
+        mMap = map;
+    }
+
+    @Override
+    protected ListMultimap<K, V> delegate() {
+        ImmutableListMultimap<K, V> copy = mCopy;
+        if (copy == null) {
+            ImmutableListMultimap.Builder<K, V> builder = ImmutableListMultimap.builder();
+            mMap.forEach(builder::putAll);
+            copy = builder.build();
+            mCopy = copy;
+        }
+        return copy;
+    }
+
+    @Override
+    public List<V> get(@Nullable K key) {
+        ImmutableList<V> values = key == null ? null : mMap.get(key);
+        return values == null ? ImmutableList.of() : values;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsKey(@Nullable Object key) {
+        return key != null && mMap.get((K) key) != null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mMap.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        int size = mSize;
+        if (size < 0) {
+            int[] count = new int[1];
+            mMap.forEach((key, values) -> count[0] += values.size());
+            size = count[0];
+            mSize = size;
+        }
+        return size;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                Iterator<Map.Entry<K, ImmutableList<V>>> entries = mMap.iterator();
+                return new Iterator<K>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public K next() {
+                        return entries.next().getKey();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return mMap.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new FlatteningIterator<V>() {
+                    @Override
+                    V create(K key, V value) {
+                        return value;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return PersistentListMultimap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Map.Entry<K, V>> entries() {
+        return new AbstractCollection<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new FlatteningIterator<Map.Entry<K, V>>() {
+                    @Override
+                    Map.Entry<K, V> create(K key, V value) {
+                        return Maps.immutableEntry(key, value);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return PersistentListMultimap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Map<K, Collection<V>> asMap() {
+        return new AbstractMap<K, Collection<V>>() {
+            @Override
+            public Set<Entry<K, Collection<V>>> entrySet() {
+                return new AbstractSet<Entry<K, Collection<V>>>() {
+                    @Override
+                    public Iterator<Entry<K, Collection<V>>> iterator() {
+                        Iterator<Entry<K, ImmutableList<V>>> entries = mMap.iterator();
+                        return new Iterator<Entry<K, Collection<V>>>() {
+                            @Override
+                            public boolean hasNext() {
+                                return entries.hasNext();
+                            }
+
+                            @Override
+                            public Entry<K, Collection<V>> next() {
+                                Entry<K, ImmutableList<V>> entry = entries.next();
+                                return Maps.immutableEntry(entry.getKey(), entry.getValue());
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return mMap.size();
+                    }
+                };
+            }
+
+            @Override
+            public Collection<V> get(Object key) {
+                return containsKey(key) ? PersistentListMultimap.this.get(castKey(key)) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return PersistentListMultimap.this.containsKey(key);
+            }
+
+            @Override
+            public Set<K> keySet() {
+                return PersistentListMultimap.this.keySet();
+            }
+
+            @Override
+            public int size() {
+                return mMap.size();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private K castKey(Object key) {
+        return (K) key;
+    }
+
+    /**
+     * Visits every value of every key of the map.
+     */
+    private abstract class FlatteningIterator<T> implements Iterator<T> {
+        private final Iterator<Map.Entry<K, ImmutableList<V>>> mEntries = mMap.iterator();
+        private K mKey;
+        private Iterator<V> mValues = Collections.emptyIterator();
+
+        abstract T create(K key, V value);
+
+        @Override
+        public boolean hasNext() {
+            while (!mValues.hasNext()) {
+                if (!mEntries.hasNext()) {
+                    return false;
+                }
+                Map.Entry<K, ImmutableList<V>> entry = mEntries.next();
+                mKey = entry.getKey();
+                mValues = entry.getValue().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return create(mKey, mValues.next());
+        }
+    }
+}
@@ -100,4 +100,17 @@ public interface Repository {
     void initialize() throws IOException;
 
     void updateFile(@NotNull File file, @Nullable String contents) throws IOException;
+
+    /**
+     * Adds a listener that is notified after the resources of a file have been updated with
+     * {@link #updateFile(File, String)}, on the thread that updated them.
+     */
+    void addUpdateListener(@NotNull UpdateListener listener);
+
+    void removeUpdateListener(@NotNull UpdateListener listener);
+
+    interface UpdateListener {
+
+        void onFileUpdated(@NotNull File file);
+    }
 }
@@ -14,7 +14,14 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ResourceRepository extends SimpleResourceRepository {
 
@@ -37,41 +44,98 @@ public class ResourceRepository extends SimpleResourceRepository {
 
     @Override
     public void initialize() throws IOException {
+        List<Callable<Void>> tasks = new ArrayList<>();
         if (sInitializeAndroidRepo) {
-            mAndroidRepository.initialize();
+            tasks.add(() -> {
+                mAndroidRepository.initialize();
+                return null;
+            });
         }
 
         File resDir = mModule.getAndroidResourcesDirectory();
-        parse(resDir, getNamespace(), null);
+        tasks.add(() -> {
+            parse(resDir, getNamespace(), null);
+            return null;
+        });
 
+        ResourceValueCache cache = new ResourceValueCache(
+                new File(mModule.getBuildDirectory(), "intermediates/resource_cache"));
         for (File library : mModule.getLibraries()) {
             File parent = library.getParentFile();
             if (parent == null) {
                 continue;
             }
 
-            ResourceNamespace namespace;
-            File manifest = new File(parent, "AndroidManifest.xml");
-            try {
-                ManifestData data = AndroidManifestParser.parse(manifest);
-                namespace = ResourceNamespace.fromPackageName(data.getPackage());
-            } catch (IOException ignored) {
-                namespace = ResourceNamespace.RES_AUTO;
-            }
-
             File libraryResDir = new File(parent, "res");
             if (!libraryResDir.exists()) {
                 continue;
             }
 
-            CodeAssistLibrary lib = mModule.getLibrary(parent.getName());
-            String name = null;
-            if (lib != null) {
-                name = lib.getSourceFile()
-                        .getName();
-            }
+            tasks.add(() -> {
+                parseLibrary(parent, libraryResDir, cache);
+                return null;
+            });
+        }
+
+        invokeAll(tasks);
+    }
 
-            parse(libraryResDir, namespace, name);
+    private void parseLibrary(File parent, File libraryResDir, ResourceValueCache cache)
+            throws IOException {
+        ResourceNamespace namespace;
+        File manifest = new File(parent, "AndroidManifest.xml");
+        try {
+            ManifestData data = AndroidManifestParser.parse(manifest);
+            namespace = ResourceNamespace.fromPackageName(data.getPackage());
+        } catch (IOException ignored) {
+            namespace = ResourceNamespace.RES_AUTO;
+        }
+
+        // libraries extracted by the project are stored in a directory named after
+        // the hash of the library, other directories are identified by their contents
+        CodeAssistLibrary lib = mModule.getLibrary(parent.getName());
+        String name = null;
+        String hash;
+        if (lib != null) {
+            name = lib.getSourceFile()
+                    .getName();
+            hash = parent.getName();
+        } else {
+            hash = ResourceValueCache.fingerprint(libraryResDir);
+        }
+
+        String key = namespace.getXmlNamespaceUri() + ':' + name + ':' + hash;
+        parse(libraryResDir, namespace, name, cache, key);
+    }
+
+    /**
+     * Runs the given tasks on a pool bounded by the number of processors and waits for all of
+     * them to finish. Each task publishes its own version of the table when it is done.
+     */
+    private static void invokeAll(List<Callable<Void>> tasks) throws IOException {
+        int threads = Math.max(1, Math.min(tasks.size(),
+                                           Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing resources");
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -2,24 +2,32 @@ package com.tyron.xml.completion.repository;
 
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ForwardingTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Table;
-import com.google.common.collect.Tables;
 import com.tyron.builder.compiler.manifest.resources.ResourceType;
 import com.tyron.xml.completion.repository.api.ResourceNamespace;
 import com.tyron.xml.completion.repository.api.ResourceReference;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Mutable, three-dimensional table for storing {@link ResourceItem}, indexed by components of a
- * {@link ResourceReference}.
+ * Immutable, versioned, three-dimensional table for storing {@link ResourceItem}, indexed by
+ * components of a {@link ResourceReference}.
  *
  * <p>The first dimension is namespace. Can be taken straight from {@link ResourceReference}.
  *
@@ -29,63 +37,285 @@ import java.util.List;
  * ResourceItem}s. There can be multiple items defined under the same name with different resource
  * qualifiers.
  *
+ * <p>A table is never modified once created, so it can be read from any thread without locking.
+ * Changes are made through an {@link Editor} which creates a new version of the table. The
+ * resources of a type and the items of each file are kept in {@link PersistentHashMap}s, so a
+ * new version only copies the paths to the names and files that have been changed and shares
+ * everything else with the previous version.
  */
-public final class ResourceTable
-        extends ForwardingTable<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> {
+public final class ResourceTable {
 
-    private final Table<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>>
-            delegate =
-            Tables.newCustomTable(
-                    new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
+    public static final ResourceTable EMPTY =
+            new ResourceTable(0, ImmutableMap.of(), PersistentHashMap.empty());
 
-    @Override
-    protected Table<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>>
-    delegate() {
-        return delegate;
+    private final long mVersion;
+    private final ImmutableMap<ResourceNamespace, ImmutableMap<ResourceType, TypeResources>> mTable;
+    private final PersistentHashMap<File, ImmutableList<ResourceItem>> mFileItems;
+
+    // the resources of a type across all namespaces, computed lazily
+    private final Map<ResourceType, ListMultimap<String, ResourceItem>> mMergedResources =
+            new ConcurrentHashMap<>();
+
+    private ResourceTable(long version,
+                          ImmutableMap<ResourceNamespace, ImmutableMap<ResourceType, TypeResources>> table,
+                          PersistentHashMap<File, ImmutableList<ResourceItem>> fileItems) {
+        mVersion = version;
+        mTable = table;
+        mFileItems = fileItems;
     }
 
     /**
-     * Removes the given {@link ResourceItem} from the table, making sure no empty multimaps are
-     * left as {@link Table} values. This way the set of rows and columns we get from the {@link
-     * Table} reflects reality.
+     * @return The version of this table, each edit increments the version by one
      */
-    public void remove(ResourceItem resourceItem) {
-        ResourceNamespace namespace = resourceItem.getNamespace();
-        ResourceType type = resourceItem.getType();
-        String name = resourceItem.getName();
-
-        ListMultimap<String, ResourceItem> multimap = get(namespace, type);
-        if (multimap != null) {
-            multimap.remove(name, resourceItem);
-            if (multimap.isEmpty()) {
-                remove(namespace, type);
-            }
-        }
+    public long getVersion() {
+        return mVersion;
     }
 
     /**
-     * Gets the corresponding multimap from the table, if necessary creating an empty one and
-     * putting it in the table.
+     * @return The resources of the given namespace and type, empty if there are none
      */
     @NotNull
-    public ListMultimap<String, ResourceItem> getOrPutEmpty(
-            @NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
-        ListMultimap<String, ResourceItem> multimap = get(namespace, resourceType);
-        if (multimap == null) {
-            multimap = ArrayListMultimap.create();
-            put(namespace, resourceType, multimap);
+    public ListMultimap<String, ResourceItem> get(@NotNull ResourceNamespace namespace,
+                                                  @NotNull ResourceType resourceType) {
+        ImmutableMap<ResourceType, TypeResources> row = mTable.get(namespace);
+        if (row == null) {
+            return ImmutableListMultimap.of();
         }
-        return multimap;
+        TypeResources resources = row.get(resourceType);
+        if (resources == null) {
+            return ImmutableListMultimap.of();
+        }
+        return resources.mMultimap;
     }
 
-    @Nullable
+    @NotNull
     public List<ResourceItem> get(@NotNull ResourceReference reference) {
-        ListMultimap<String, ResourceItem> multimap =
-                get(reference.getNamespace(), reference.getResourceType());
-        if (multimap == null) {
-            return null;
+        ImmutableMap<ResourceType, TypeResources> row = mTable.get(reference.getNamespace());
+        if (row == null) {
+            return ImmutableList.of();
+        }
+        TypeResources resources = row.get(reference.getResourceType());
+        if (resources == null) {
+            return ImmutableList.of();
+        }
+        ImmutableList<ResourceItem> items = resources.mItems.get(reference.getName());
+        return items == null ? ImmutableList.of() : items;
+    }
+
+    /**
+     * @return The resources of the given type from every namespace in this table
+     */
+    @NotNull
+    public ListMultimap<String, ResourceItem> getAll(@NotNull ResourceType resourceType) {
+        return mMergedResources.computeIfAbsent(resourceType, type -> {
+            List<ListMultimap<String, ResourceItem>> parts = new ArrayList<>();
+            for (ResourceNamespace namespace : mTable.keySet()) {
+                ListMultimap<String, ResourceItem> resources = get(namespace, type);
+                if (!resources.isEmpty()) {
+                    parts.add(resources);
+                }
+            }
+            if (parts.size() == 1) {
+                // no need to copy the resources of a single namespace
+                return parts.get(0);
+            }
+            ImmutableListMultimap.Builder<String, ResourceItem> builder =
+                    ImmutableListMultimap.builder();
+            parts.forEach(builder::putAll);
+            return builder.build();
+        });
+    }
+
+    @NotNull
+    public Set<ResourceNamespace> rowKeySet() {
+        return mTable.keySet();
+    }
+
+    @NotNull
+    public Set<ResourceType> columnKeySet() {
+        Set<ResourceType> types = new LinkedHashSet<>();
+        for (ImmutableMap<ResourceType, ?> row : mTable.values()) {
+            types.addAll(row.keySet());
         }
+        return ImmutableSet.copyOf(types);
+    }
+
+    @NotNull
+    public List<ResourceItem> getFileItems(@NotNull File file) {
+        ImmutableList<ResourceItem> items = mFileItems.get(file);
+        return items == null ? ImmutableList.of() : items;
+    }
+
+    @NotNull
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    /**
+     * The resources of a namespace and type, by name. Readers get a view of the map, so a new
+     * version does not copy the resources of the types it changed.
+     */
+    private static final class TypeResources {
+        private final PersistentHashMap<String, ImmutableList<ResourceItem>> mItems;
+        private final ListMultimap<String, ResourceItem> mMultimap;
+
+        private TypeResources(PersistentHashMap<String, ImmutableList<ResourceItem>> items) {
+            mItems = items;
+            mMultimap = new PersistentListMultimap<>(items);
+        }
+    }
+
+    /**
+     * Collects changes to a table and publishes them as a new version. An editor must only be
+     * used by a single thread.
+     */
+    public static final class Editor {
 
-        return multimap.get(reference.getName());
+        private final ResourceTable mBase;
+        private final Map<ResourceNamespace, Map<ResourceType, PersistentHashMap<String, ImmutableList<ResourceItem>>>>
+                mChanged = new HashMap<>();
+        private PersistentHashMap<File, ImmutableList<ResourceItem>> mFileItems;
+
+        private Editor(ResourceTable base) {
+            mBase = base;
+            mFileItems = base.mFileItems;
+        }
+
+        /**
+         * Removes every item that was added from the given file.
+         */
+        public Editor removeFile(@NotNull File file) {
+            ImmutableList<ResourceItem> items = mFileItems.get(file);
+            if (items == null) {
+                return this;
+            }
+            for (ResourceItem item : items) {
+                remove(item);
+            }
+            mFileItems = mFileItems.minus(file);
+            return this;
+        }
+
+        public Editor add(@NotNull File file, @NotNull ResourceItem item) {
+            return addAll(file, Collections.singletonList(item));
+        }
+
+        public Editor addAll(@NotNull File file, @NotNull Collection<? extends ResourceItem> items) {
+            if (items.isEmpty()) {
+                return this;
+            }
+            for (ResourceItem item : items) {
+                ResourceNamespace namespace = item.getNamespace();
+                ResourceType type = item.getType();
+                PersistentHashMap<String, ImmutableList<ResourceItem>> names =
+                        getNames(namespace, type);
+                ImmutableList<ResourceItem> existing = names.get(item.getName());
+                ImmutableList<ResourceItem> updated = existing == null
+                        ? ImmutableList.of(item)
+                        : ImmutableList.<ResourceItem>builder().addAll(existing).add(item).build();
+                putNames(namespace, type, names.plus(item.getName(), updated));
+            }
+
+            ImmutableList<ResourceItem> fileItems = mFileItems.get(file);
+            mFileItems = mFileItems.plus(file, fileItems == null
+                    ? ImmutableList.copyOf(items)
+                    : ImmutableList.<ResourceItem>builder().addAll(fileItems).addAll(items).build());
+            return this;
+        }
+
+        /**
+         * @return A new table containing the changes of this editor, the table this editor was
+         * created from is not modified.
+         */
+        @NotNull
+        public ResourceTable publish() {
+            if (mChanged.isEmpty() && mFileItems == mBase.mFileItems) {
+                return mBase;
+            }
+
+            ImmutableMap.Builder<ResourceNamespace, ImmutableMap<ResourceType, TypeResources>>
+                    table = ImmutableMap.builder();
+            Set<ResourceNamespace> namespaces = new LinkedHashSet<>(mBase.mTable.keySet());
+            namespaces.addAll(mChanged.keySet());
+            for (ResourceNamespace namespace : namespaces) {
+                ImmutableMap<ResourceType, TypeResources> row = buildRow(namespace);
+                if (row != null && !row.isEmpty()) {
+                    table.put(namespace, row);
+                }
+            }
+            return new ResourceTable(mBase.mVersion + 1, table.build(), mFileItems);
+        }
+
+        private ImmutableMap<ResourceType, TypeResources> buildRow(ResourceNamespace namespace) {
+            ImmutableMap<ResourceType, TypeResources> baseRow = mBase.mTable.get(namespace);
+            Map<ResourceType, PersistentHashMap<String, ImmutableList<ResourceItem>>> changedRow =
+                    mChanged.get(namespace);
+            if (changedRow == null) {
+                return baseRow;
+            }
+
+            EnumMap<ResourceType, TypeResources> row = new EnumMap<>(ResourceType.class);
+            if (baseRow != null) {
+                row.putAll(baseRow);
+            }
+            for (Map.Entry<ResourceType, PersistentHashMap<String, ImmutableList<ResourceItem>>> entry :
+                    changedRow.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    // make sure no empty types are left so the namespaces and types
+                    // of the table reflect reality
+                    row.remove(entry.getKey());
+                } else {
+                    row.put(entry.getKey(), new TypeResources(entry.getValue()));
+                }
+            }
+            return Maps.immutableEnumMap(row);
+        }
+
+        private void remove(ResourceItem item) {
+            ResourceNamespace namespace = item.getNamespace();
+            ResourceType type = item.getType();
+            PersistentHashMap<String, ImmutableList<ResourceItem>> names = getNames(namespace, type);
+            ImmutableList<ResourceItem> existing = names.get(item.getName());
+            if (existing == null) {
+                return;
+            }
+            int index = existing.indexOf(item);
+            if (index == -1) {
+                return;
+            }
+            if (existing.size() == 1) {
+                putNames(namespace, type, names.minus(item.getName()));
+                return;
+            }
+            ImmutableList<ResourceItem> updated = ImmutableList.<ResourceItem>builder()
+                    .addAll(existing.subList(0, index))
+                    .addAll(existing.subList(index + 1, existing.size()))
+                    .build();
+            putNames(namespace, type, names.plus(item.getName(), updated));
+        }
+
+        private PersistentHashMap<String, ImmutableList<ResourceItem>> getNames(
+                ResourceNamespace namespace, ResourceType type) {
+            Map<ResourceType, PersistentHashMap<String, ImmutableList<ResourceItem>>> row =
+                    mChanged.get(namespace);
+            if (row != null && row.containsKey(type)) {
+                return row.get(type);
+            }
+            ImmutableMap<ResourceType, TypeResources> baseRow = mBase.mTable.get(namespace);
+            TypeResources resources = baseRow == null ? null : baseRow.get(type);
+            return resources == null ? PersistentHashMap.empty() : resources.mItems;
+        }
+
+        private void putNames(ResourceNamespace namespace,
+                              ResourceType type,
+                              PersistentHashMap<String, ImmutableList<ResourceItem>> names) {
+            mChanged.computeIfAbsent(namespace, it -> new EnumMap<>(ResourceType.class))
+                    .put(type, names);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceTable{version=" + mVersion + ", namespaces=" + mTable.keySet() + "}";
     }
 }
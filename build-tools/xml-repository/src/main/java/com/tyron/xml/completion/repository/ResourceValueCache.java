@@ -0,0 +1,162 @@
+package com.tyron.xml.completion.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.tyron.common.logging.IdeLog;
+import com.tyron.xml.completion.repository.api.ResourceValue;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Stores the parsed values of a resource directory on disk so that directories which never
+ * change, such as the resources of a library or of the framework, are only parsed once.
+ * <p>
+ * Entries are keyed by a string that must change whenever the contents of the directory
+ * change, e.g. the hash of the AAR the directory was extracted from. Entries that cannot
+ * be read, for example because they were written by an older version, are treated as missing.
+ */
+public class ResourceValueCache {
+
+    /**
+     * Increment when the format of the cache or the serialized form of a resource value changes.
+     */
+    private static final int VERSION = 2;
+
+    private final Logger mLogger = IdeLog.getCurrentLogger(this);
+
+    private final File mDirectory;
+
+    public ResourceValueCache(@NotNull File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * @return The parsed files of the given key, or null if there is no valid entry
+     */
+    @Nullable
+    public Map<File, ParsedFile> get(@NotNull String key) {
+        File file = getCacheFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            int size = in.readInt();
+            Map<File, ParsedFile> parsed = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                File parsedFile = new File(in.readUTF());
+                parsed.put(parsedFile, (ParsedFile) in.readObject());
+            }
+            return parsed;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            mLogger.warning("Discarding resource cache " + file.getName() + ": " + e.getMessage());
+            FileUtils.deleteQuietly(file);
+            return null;
+        }
+    }
+
+    public void put(@NotNull String key, @NotNull Map<File, ParsedFile> parsed) {
+        File file = getCacheFile(key);
+        File temp = new File(mDirectory, file.getName() + ".tmp");
+        try {
+            FileUtils.forceMkdir(mDirectory);
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(VERSION);
+                out.writeInt(parsed.size());
+                for (Map.Entry<File, ParsedFile> entry : parsed.entrySet()) {
+                    out.writeUTF(entry.getKey().getAbsolutePath());
+                    out.writeObject(entry.getValue());
+                }
+            }
+            // readers never see a partially written entry
+            if (!temp.renameTo(file)) {
+                FileUtils.deleteQuietly(file);
+                FileUtils.moveFile(temp, file);
+            }
+        } catch (IOException e) {
+            mLogger.warning("Unable to write resource cache " + file.getName() + ": " + e.getMessage());
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    @NotNull
+    private File getCacheFile(@NotNull String key) {
+        String name = Hashing.murmur3_128()
+                .hashString(key, StandardCharsets.UTF_8)
+                .toString();
+        return new File(mDirectory, name + ".bin");
+    }
+
+    /**
+     * Computes a key from the paths, sizes and modification times of every file in the given
+     * directory, used for directories that are not identified by a hash already.
+     */
+    @NotNull
+    public static String fingerprint(@NotNull File directory) {
+        Collection<File> files =
+                FileUtils.listFiles(directory, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE);
+        List<String> entries = new ArrayList<>(files.size());
+        for (File file : files) {
+            entries.add(file.getAbsolutePath() + ':' + file.length() + ':' + file.lastModified());
+        }
+        // listing order is not specified
+        entries.sort(null);
+
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (String entry : entries) {
+            hasher.putString(entry, StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * The values parsed from a single resource file.
+     */
+    public static class ParsedFile implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String mFolderName;
+        private final ArrayList<ResourceValue> mValues;
+
+        public ParsedFile(@NotNull String folderName, @NotNull List<ResourceValue> values) {
+            mFolderName = folderName;
+            mValues = new ArrayList<>(values);
+        }
+
+        @NotNull
+        public String getFolderName() {
+            return mFolderName;
+        }
+
+        @NotNull
+        public List<ResourceValue> getValues() {
+            return mValues;
+        }
+    }
+}
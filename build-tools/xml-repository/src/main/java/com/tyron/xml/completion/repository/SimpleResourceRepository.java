@@ -3,11 +3,9 @@ package com.tyron.xml.completion.repository;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Multimap;
 import com.tyron.builder.compiler.manifest.configuration.Configurable;
 import com.tyron.builder.compiler.manifest.configuration.FolderConfiguration;
 import com.tyron.builder.compiler.manifest.resources.ResourceFolderType;
@@ -33,11 +31,14 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
 
@@ -64,8 +65,19 @@ public class SimpleResourceRepository implements Repository {
 
     private final File mResDir;
     private final ResourceNamespace mNamespace;
-    protected final ResourceTable mTable = new ResourceTable();
-    protected final Multimap<File, ResourceItem> mFileItems = ArrayListMultimap.create();
+    /**
+     * The latest version of the resource table. Readers use the snapshot they read without
+     * locking while writers publish a new version under {@link #mWriteLock}.
+     */
+    protected volatile ResourceTable mTable = ResourceTable.EMPTY;
+    private final Object mWriteLock = new Object();
+    /**
+     * The last update started for each file being updated, an update that finishes parsing after
+     * a newer one of the same file has started is dropped so the older contents never win.
+     */
+    private final Map<File, Long> mPendingUpdates = new ConcurrentHashMap<>();
+    private final AtomicLong mUpdateCount = new AtomicLong();
+    private final List<UpdateListener> mUpdateListeners = new CopyOnWriteArrayList<>();
 
     private FolderConfiguration mConfiguration;
 
@@ -82,8 +94,37 @@ public class SimpleResourceRepository implements Repository {
     }
 
     protected void parse(File resDir, ResourceNamespace namespace, String name) throws IOException {
+        publish(parseDirectory(resDir, namespace, name));
+    }
+
+    /**
+     * Parses the given resource directory, reusing the values stored in the cache under the
+     * given key if present. The key must change whenever the contents of the directory change.
+     */
+    protected void parse(File resDir,
+                         ResourceNamespace namespace,
+                         String name,
+                         @NotNull ResourceValueCache cache,
+                         @NotNull String key) throws IOException {
+        Map<File, ResourceValueCache.ParsedFile> parsed = cache.get(key);
+        if (parsed == null) {
+            parsed = parseDirectory(resDir, namespace, name);
+            cache.put(key, parsed);
+        }
+        publish(parsed);
+    }
+
+    /**
+     * Parses every resource file of the given directory without modifying this repository,
+     * so different directories can be parsed concurrently.
+     */
+    @NotNull
+    protected Map<File, ResourceValueCache.ParsedFile> parseDirectory(File resDir,
+                                                                      ResourceNamespace namespace,
+                                                                      String name) {
         Collection<File> dirs = FileUtils.listFilesAndDirs(resDir, FalseFileFilter.INSTANCE,
                                                            TrueFileFilter.INSTANCE);
+        Map<File, ResourceValueCache.ParsedFile> parsed = new HashMap<>();
         for (File dir : dirs) {
 
             ResourceParser parser = getParser(dir);
@@ -96,12 +137,32 @@ public class SimpleResourceRepository implements Repository {
             for (File xmlFile : xmlFiles) {
                 try {
                     String contents = FileUtils.readFileToString(xmlFile, StandardCharsets.UTF_8);
-                    parseFile(parser, xmlFile, contents, dir.getName(), namespace, name);
+                    List<ResourceValue> values =
+                            parser.parse(xmlFile, contents, namespace, name);
+                    parsed.put(xmlFile, new ResourceValueCache.ParsedFile(dir.getName(), values));
                 } catch (IOException e) {
                     logger.warning("Unable to parse " + xmlFile.getName() + ": " + e.getMessage());
                 }
             }
         }
+        return parsed;
+    }
+
+    /**
+     * Publishes the parsed files of a directory as a single version of the table.
+     */
+    protected void publish(@NotNull Map<File, ResourceValueCache.ParsedFile> parsed) {
+        synchronized (mWriteLock) {
+            ResourceTable.Editor editor = mTable.edit();
+            parsed.forEach((file, parsedFile) -> {
+                List<ResourceItem> items = new ArrayList<>(parsedFile.getValues().size());
+                for (ResourceValue value : parsedFile.getValues()) {
+                    items.add(new SimpleResourceItem(value, parsedFile.getFolderName()));
+                }
+                editor.removeFile(file).addAll(file, items);
+            });
+            mTable = editor.publish();
+        }
     }
 
     @Nullable
@@ -113,44 +174,74 @@ public class SimpleResourceRepository implements Repository {
         return sParsers.get(folderType);
     }
 
-    private synchronized void parseFile(@NotNull ResourceParser parser,
-                           @NotNull File xmlFile,
-                           @Nullable String contents,
-                           @NotNull String folderName,
-                           @NotNull ResourceNamespace namespace,
-                           @Nullable String libraryName) throws IOException {
+    private List<ResourceItem> parseFile(@NotNull ResourceParser parser,
+                                         @NotNull File xmlFile,
+                                         @Nullable String contents,
+                                         @NotNull String folderName,
+                                         @NotNull ResourceNamespace namespace,
+                                         @Nullable String libraryName) throws IOException {
         List<ResourceValue> values = parser.parse(xmlFile, contents, namespace, libraryName);
+        List<ResourceItem> items = new ArrayList<>(values.size());
         for (ResourceValue value : values) {
-            ListMultimap<String, ResourceItem> tableValue =
-                    mTable.getOrPutEmpty(value.getNamespace(), value.getResourceType());
-            SimpleResourceItem resourceItem = new SimpleResourceItem(value, folderName);
-            tableValue.put(value.getName(), resourceItem);
-
-            mFileItems.put(xmlFile, resourceItem);
+            items.add(new SimpleResourceItem(value, folderName));
         }
+        return items;
     }
 
     @Override
-    public synchronized void updateFile(@NotNull File file, @Nullable String contents) throws IOException {
-        Collection<ResourceItem> existingItems = mFileItems.get(file);
-        if (existingItems != null) {
-            existingItems.stream()
-                    .filter(Objects::nonNull)
-                    .forEach(mTable::remove);
-        }
+    public void updateFile(@NotNull File file, @Nullable String contents) throws IOException {
+        long update = mUpdateCount.incrementAndGet();
+        mPendingUpdates.merge(file, update, Math::max);
 
         File parent = file.getParentFile();
-        if (parent == null) {
-            return;
+        ResourceParser parser = parent == null ? null : getParser(parent);
+        List<ResourceItem> items;
+        try {
+            // parse outside of the lock, readers keep using the current version meanwhile
+            items = parser == null
+                    ? Collections.emptyList()
+                    : parseFile(parser, file, contents, parent.getName(), mNamespace, null);
+        } catch (IOException | RuntimeException e) {
+            mPendingUpdates.remove(file, update);
+            throw e;
         }
 
-        ResourceParser parser = getParser(parent);
-        if (parser == null) {
-            // should not happen, but return just in case
-            return;
+        synchronized (mWriteLock) {
+            if (!mPendingUpdates.remove(file, update)) {
+                // a newer update of this file has started, it publishes its own items
+                return;
+            }
+            // without a parser the old items of the file still must not stay around
+            mTable = mTable.edit()
+                    .removeFile(file)
+                    .addAll(file, items)
+                    .publish();
         }
+        notifyUpdated(file);
+    }
 
-        parseFile(parser, file, contents, parent.getName(), mNamespace, null);
+    @Override
+    public void addUpdateListener(@NotNull UpdateListener listener) {
+        mUpdateListeners.add(listener);
+    }
+
+    @Override
+    public void removeUpdateListener(@NotNull UpdateListener listener) {
+        mUpdateListeners.remove(listener);
+    }
+
+    private void notifyUpdated(File file) {
+        for (UpdateListener listener : mUpdateListeners) {
+            listener.onFileUpdated(file);
+        }
+    }
+
+    /**
+     * @return The current version of the resource table, it will not change while it is used.
+     */
+    @NotNull
+    public ResourceTable getTable() {
+        return mTable;
     }
 
     @NotNull
@@ -158,14 +249,15 @@ public class SimpleResourceRepository implements Repository {
     public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                            @NotNull ResourceType resourceType,
                                            @NotNull String resourceName) {
+        ResourceTable table = mTable;
         ListMultimap<String, ResourceItem> publicResources =
-                mTable.get(namespace, ResourceType.PUBLIC);
-        if (publicResources != null && !publicResources.isEmpty()) {
+                table.get(namespace, ResourceType.PUBLIC);
+        if (!publicResources.isEmpty()) {
             if (!publicResources.containsKey(resourceName)) {
                 return ImmutableList.of();
             }
         }
-        return mTable.getOrPutEmpty(namespace, resourceType)
+        return table.get(namespace, resourceType)
                 .get(resourceName);
     }
 
@@ -174,11 +266,10 @@ public class SimpleResourceRepository implements Repository {
     public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                            @NotNull ResourceType type,
                                            @NotNull Predicate<ResourceItem> filter) {
-        ListMultimap<String, ResourceItem> value = mTable.get(namespace, type);
         List<ResourceItem> items = new ArrayList<>();
-        for (Map.Entry<String, ResourceItem> entry : value.entries()) {
-            if (filter.test(entry.getValue())) {
-                items.add(entry.getValue());
+        for (ResourceItem item : mTable.get(namespace, type).values()) {
+            if (filter.test(item)) {
+                items.add(item);
             }
         }
         return items;
@@ -188,33 +279,21 @@ public class SimpleResourceRepository implements Repository {
     @Override
     public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                                            @NotNull ResourceType resourceType) {
-        ListMultimap<String, ResourceItem> resources = ArrayListMultimap.create();
         if (namespace.equals(ResourceNamespace.ANDROID)) {
             return AndroidResourceRepository.getInstance()
                     .getResources(namespace, resourceType);
         }
         if (namespace.equals(ResourceNamespace.RES_AUTO)) {
-            Set<ResourceNamespace> namespaces = mTable.rowKeySet();
-            for (ResourceNamespace resourceNamespace : namespaces) {
-                ListMultimap<String, ResourceItem> values =
-                        mTable.get(resourceNamespace, resourceType);
-                if (values != null) {
-                    resources.putAll(values);
-                }
-            }
-            return resources;
+            return mTable.getAll(resourceType);
         }
-
-        ListMultimap<String, ResourceItem> publicResources =
-                mTable.getOrPutEmpty(namespace, ResourceType.PUBLIC);
-        return mTable.getOrPutEmpty(namespace, resourceType);
+        return mTable.get(namespace, resourceType);
     }
 
     @Override
     public boolean hasResources(@NotNull ResourceNamespace namespace,
                                 @NotNull ResourceType resourceType,
                                 @NotNull String resourceName) {
-        return !mTable.getOrPutEmpty(namespace, resourceType)
+        return !mTable.get(namespace, resourceType)
                 .isEmpty();
     }
 
@@ -4,12 +4,13 @@ import org.jetbrains.annotations.Nullable;
 
 import com.google.common.collect.ImmutableList;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 import kotlin.Pair;
 
-public class LayoutInfo {
+public class LayoutInfo implements Serializable {
 
     private String mName;
 
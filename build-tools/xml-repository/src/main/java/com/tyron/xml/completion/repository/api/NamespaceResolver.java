@@ -0,0 +1,56 @@
+package com.tyron.xml.completion.repository.api;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * A {@link ResourceNamespace.Resolver} that holds the namespace prefixes declared in an XML
+ * file. Unlike a resolver that looks them up in the DOM, it can be serialized along with the
+ * resource values parsed from that file.
+ */
+public class NamespaceResolver implements ResourceNamespace.Resolver, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] mPrefixes;
+    private final String[] mUris;
+
+    /**
+     * @param prefixToUri the declared prefixes and their namespace URIs, in declaration order
+     */
+    public NamespaceResolver(@NotNull Map<String, String> prefixToUri) {
+        mPrefixes = new String[prefixToUri.size()];
+        mUris = new String[prefixToUri.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : prefixToUri.entrySet()) {
+            mPrefixes[i] = entry.getKey();
+            mUris[i] = entry.getValue();
+            i++;
+        }
+    }
+
+    @Nullable
+    @Override
+    public String prefixToUri(@NotNull String namespacePrefix) {
+        for (int i = 0; i < mPrefixes.length; i++) {
+            if (mPrefixes[i].equals(namespacePrefix)) {
+                return mUris[i];
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public String uriToPrefix(@NotNull String namespaceUri) {
+        for (int i = 0; i < mUris.length; i++) {
+            if (mUris[i].equals(namespaceUri)) {
+                return mPrefixes[i];
+            }
+        }
+        return null;
+    }
+}
@@ -6,6 +6,10 @@ import org.jetbrains.annotations.NotNull;
 import com.google.common.base.MoreObjects;
 import com.tyron.builder.compiler.manifest.resources.ResourceType;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.Objects;
 
 /** Simple implementation of the {@link ResourceValue} interface. */
@@ -137,6 +141,19 @@ public class ResourceValueImpl implements ResourceValue {
         this.mNamespaceResolver = resolver;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        // values of the same file share their resolver, the stream writes it only once
+        out.writeObject(mNamespaceResolver instanceof Serializable ? mNamespaceResolver : null);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ResourceNamespace.Resolver resolver = (ResourceNamespace.Resolver) in.readObject();
+        mNamespaceResolver =
+                resolver != null ? resolver : ResourceNamespace.Resolver.EMPTY_RESOLVER;
+    }
+
     @Override
     public boolean equals(@Nullable Object o) {
         if (this == o) {
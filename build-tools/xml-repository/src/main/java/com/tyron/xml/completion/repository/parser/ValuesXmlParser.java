@@ -13,6 +13,7 @@ import com.tyron.xml.completion.repository.api.ResourceValue;
 import com.tyron.xml.completion.repository.api.ResourceValueImpl;
 import com.tyron.xml.completion.repository.api.StyleItemResourceValue;
 import com.tyron.xml.completion.repository.api.StyleItemResourceValueImpl;
+import com.tyron.xml.completion.repository.api.StyleResourceValue;
 import com.tyron.xml.completion.repository.api.StyleResourceValueImpl;
 import com.tyron.xml.completion.repository.api.StyleableResourceValue;
 import com.tyron.xml.completion.repository.api.StyleableResourceValueImpl;
@@ -56,12 +57,33 @@ public class ValuesXmlParser implements ResourceParser {
             }
 
             if (SdkConstants.TAG_RESOURCES.equals(root.getNodeName())) {
-                return parseResourceTag(root, namespace, name);
+                List<ResourceValue> values = parseResourceTag(root, namespace, name);
+                ResourceNamespace.Resolver resolver = DOMUtils.getNamespaceResolver(document);
+                for (ResourceValue value : values) {
+                    setNamespaceResolver(value, resolver);
+                }
+                return values;
             }
         }
         return Collections.emptyList();
     }
 
+    /**
+     * Sets the resolver of the prefixes declared in the file on the value and on the items of a
+     * style, which are not returned as values on their own.
+     */
+    private static void setNamespaceResolver(ResourceValue value,
+                                             ResourceNamespace.Resolver resolver) {
+        if (value instanceof ResourceValueImpl) {
+            ((ResourceValueImpl) value).setNamespaceResolver(resolver);
+        }
+        if (value instanceof StyleResourceValue) {
+            for (StyleItemResourceValue item : ((StyleResourceValue) value).getDefinedItems()) {
+                setNamespaceResolver(item, resolver);
+            }
+        }
+    }
+
     private List<ResourceValue> parseResourceTag(DOMNode root,
                                                  ResourceNamespace namespace,
                                                  String name) {
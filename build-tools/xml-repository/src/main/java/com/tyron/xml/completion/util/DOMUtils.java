@@ -1,5 +1,6 @@
 package com.tyron.xml.completion.util;
 
+import com.tyron.xml.completion.repository.api.NamespaceResolver;
 import com.tyron.xml.completion.repository.api.ResourceNamespace;
 
 import org.eclipse.lemminx.dom.DOMAttr;
@@ -12,6 +13,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -104,24 +106,18 @@ public class DOMUtils {
             return (ResourceNamespace.Resolver) userData;
         }
 
-        ResourceNamespace.Resolver resolver = new ResourceNamespace.Resolver() {
-
-            @Nullable
-            @Override
-            public String uriToPrefix(@NotNull String namespaceUri) {
-                return rootElement.getPrefix(namespaceUri);
-            }
-
-            @Nullable
-            @Override
-            public String prefixToUri(@NotNull String namespacePrefix) {
-                DOMAttr xmlns = rootElement.getAttributeNode("xmlns", namespacePrefix);
-                if (xmlns != null) {
-                    return xmlns.getValue();
+        // the prefixes are copied so the resolver can be kept with the values parsed from
+        // this document, e.g. in a cache on disk
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        List<DOMAttr> attributes = rootElement.getAttributeNodes();
+        if (attributes != null) {
+            for (DOMAttr attribute : attributes) {
+                if (attribute.isXmlns() && !attribute.isDefaultXmlns()) {
+                    prefixes.putIfAbsent(attribute.getLocalName(), attribute.getValue());
                 }
-                return null;
             }
-        };
+        }
+        ResourceNamespace.Resolver resolver = new NamespaceResolver(prefixes);
         putUserData(rootElement, RESOLVER_KEY, resolver);
         return resolver;
     }
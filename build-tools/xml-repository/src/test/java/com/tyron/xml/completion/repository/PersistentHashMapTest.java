@@ -0,0 +1,161 @@
+package com.tyron.xml.completion.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+public class PersistentHashMapTest {
+
+    /**
+     * A key with a chosen hash code, so tests can make keys collide.
+     */
+    private static final class Key {
+        private final String mName;
+        private final int mHash;
+
+        Key(String name, int hash) {
+            mName = name;
+            mHash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).mName.equals(mName);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+
+        @Override
+        public String toString() {
+            return mName;
+        }
+    }
+
+    @Test
+    public void testPutAndRemove() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        map = map.plus("a", 1).plus("b", 2).plus("c", 3);
+        assertEquals(3, map.size());
+        assertEquals(Integer.valueOf(2), map.get("b"));
+
+        map = map.plus("b", 4);
+        assertEquals(3, map.size());
+        assertEquals(Integer.valueOf(4), map.get("b"));
+
+        map = map.minus("a");
+        assertEquals(2, map.size());
+        assertNull(map.get("a"));
+        assertSame(map, map.minus("a"));
+
+        map = map.minus("b").minus("c");
+        assertTrue(map.isEmpty());
+        assertSame(PersistentHashMap.empty(), map);
+    }
+
+    @Test
+    public void testOlderVersionsAreNotModified() {
+        PersistentHashMap<String, Integer> first = PersistentHashMap.<String, Integer>empty()
+                .plus("a", 1);
+        PersistentHashMap<String, Integer> second = first.plus("a", 2).plus("b", 3);
+        PersistentHashMap<String, Integer> third = second.minus("a");
+
+        assertEquals(Integer.valueOf(1), first.get("a"));
+        assertNull(first.get("b"));
+        assertEquals(Integer.valueOf(2), second.get("a"));
+        assertNull(third.get("a"));
+        assertEquals(Integer.valueOf(3), third.get("b"));
+    }
+
+    @Test
+    public void testHashCollisions() {
+        Key a = new Key("a", 42);
+        Key b = new Key("b", 42);
+        Key c = new Key("c", 42);
+        // shares the lowest bits of the hash with the others
+        Key d = new Key("d", 42 | (1 << 20));
+
+        PersistentHashMap<Key, String> map = PersistentHashMap.<Key, String>empty()
+                .plus(a, "a").plus(b, "b").plus(c, "c").plus(d, "d");
+        assertEquals(4, map.size());
+        assertEquals("a", map.get(a));
+        assertEquals("b", map.get(b));
+        assertEquals("c", map.get(c));
+        assertEquals("d", map.get(d));
+        assertNull(map.get(new Key("e", 42)));
+
+        map = map.plus(b, "b2");
+        assertEquals(4, map.size());
+        assertEquals("b2", map.get(b));
+
+        map = map.minus(a);
+        assertEquals(3, map.size());
+        assertNull(map.get(a));
+        assertEquals("b2", map.get(b));
+        assertEquals("c", map.get(c));
+
+        // shrinks back to a single entry and to nothing
+        map = map.minus(c).minus(d);
+        assertEquals(1, map.size());
+        assertEquals("b2", map.get(b));
+        assertEquals(Map.of(b, "b2"), toMap(map));
+        map = map.minus(b);
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        Random random = new Random(0);
+        Map<Key, Integer> expected = new HashMap<>();
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            // few distinct hashes so that many keys collide fully or partially
+            int id = random.nextInt(500);
+            Key key = new Key("k" + id, id % 37 * 0x10001);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, toMap(map));
+        for (Map.Entry<Key, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+
+        // remove everything in random order
+        for (Key key : expected.keySet()) {
+            map = map.minus(key);
+        }
+        assertTrue(map.isEmpty());
+        assertTrue(toMap(map).isEmpty());
+    }
+
+    private static <K, V> Map<K, V> toMap(PersistentHashMap<K, V> map) {
+        Map<K, V> visited = new HashMap<>();
+        map.forEach(visited::put);
+
+        Map<K, V> iterated = new HashMap<>();
+        Iterator<Map.Entry<K, V>> iterator = map.iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, V> entry = iterator.next();
+            assertNull(iterated.put(entry.getKey(), entry.getValue()));
+        }
+        assertEquals(visited, iterated);
+        assertEquals(map.size(), iterated.size());
+        return iterated;
+    }
+}
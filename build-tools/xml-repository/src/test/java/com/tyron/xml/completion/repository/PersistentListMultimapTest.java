@@ -0,0 +1,51 @@
+package com.tyron.xml.completion.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class PersistentListMultimapTest {
+
+    @Test
+    public void testViewMatchesCopy() {
+        PersistentHashMap<String, ImmutableList<Integer>> map = PersistentHashMap.empty();
+        map = map.plus("a", ImmutableList.of(1, 2)).plus("b", ImmutableList.of(3));
+        ListMultimap<String, Integer> view = new PersistentListMultimap<>(map);
+        ListMultimap<String, Integer> expected = ImmutableListMultimap.of("a", 1, "a", 2, "b", 3);
+
+        assertEquals(3, view.size());
+        assertEquals(ImmutableList.of(1, 2), view.get("a"));
+        assertTrue(view.get("c").isEmpty());
+        assertTrue(view.containsKey("b"));
+        assertFalse(view.containsKey("c"));
+        assertEquals(ImmutableSet.of("a", "b"), new HashSet<>(view.keySet()));
+        assertEquals(expected.asMap(), view.asMap());
+        assertEquals(new HashSet<>(expected.entries()), new HashSet<>(view.entries()));
+
+        ArrayList<Integer> values = new ArrayList<>(view.values());
+        Collections.sort(values);
+        assertEquals(ImmutableList.of(1, 2, 3), values);
+        assertEquals(expected, view);
+    }
+
+    @Test
+    public void testEmpty() {
+        ListMultimap<String, Integer> view =
+                new PersistentListMultimap<>(PersistentHashMap.empty());
+        assertTrue(view.isEmpty());
+        assertEquals(0, view.size());
+        assertFalse(view.values().iterator().hasNext());
+        assertTrue(view.keySet().isEmpty());
+    }
+}
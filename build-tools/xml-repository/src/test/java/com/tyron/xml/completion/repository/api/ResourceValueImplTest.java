@@ -0,0 +1,62 @@
+package com.tyron.xml.completion.repository.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.collect.ImmutableMap;
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+public class ResourceValueImplTest {
+
+    private static final String APP_URI = "http://schemas.android.com/apk/res/com.example.lib";
+
+    @Test
+    public void testNamespaceResolverIsSerialized() throws Exception {
+        ResourceNamespace namespace = ResourceNamespace.fromPackageName("com.example");
+        StyleItemResourceValueImpl item =
+                new StyleItemResourceValueImpl(namespace, "lib:color", "#fff", null);
+        item.setNamespaceResolver(new NamespaceResolver(ImmutableMap.of("lib", APP_URI)));
+
+        StyleItemResourceValueImpl copy = roundTrip(item);
+
+        assertEquals(APP_URI, copy.getNamespaceResolver().prefixToUri("lib"));
+        assertEquals("lib", copy.getNamespaceResolver().uriToPrefix(APP_URI));
+        ResourceReference attr = copy.getAttr();
+        assertNotNull(attr);
+        assertEquals(item.getAttr(), attr);
+        assertEquals("com.example.lib", attr.getNamespace().getPackageName());
+    }
+
+    @Test
+    public void testValueWithoutResolverIsSerialized() throws Exception {
+        ResourceValueImpl value = new ResourceValueImpl(
+                ResourceNamespace.fromPackageName("com.example"), ResourceType.STRING, "name",
+                "value");
+
+        ResourceValueImpl copy = roundTrip(value);
+
+        assertEquals(value, copy);
+        assertNull(copy.getNamespaceResolver().prefixToUri("lib"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        try (ObjectInputStream in =
+                     new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+}
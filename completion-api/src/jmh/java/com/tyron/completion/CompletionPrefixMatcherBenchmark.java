@@ -0,0 +1,113 @@
+package com.tyron.completion;
+
+import com.tyron.completion.CompletionPrefixMatcher.MatchLevel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import me.xdrop.fuzzywuzzy.FuzzySearch;
+
+/**
+ * Compares matching a set of class names against a prefix using the previous implementation
+ * of {@link CompletionPrefixMatcher} and the current one with precomputed signatures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompletionPrefixMatcherBenchmark {
+
+    private static final String[] WORDS = {
+            "Abstract", "Activity", "Adapter", "Array", "Builder", "Buffer", "Callback",
+            "Compat", "Context", "Drawable", "Event", "Exception", "Factory", "Fragment",
+            "Helper", "Input", "Layout", "List", "Manager", "Map", "Null", "Output", "Pointer",
+            "Provider", "Recycler", "Resource", "Service", "Stream", "String", "View", "Window"
+    };
+
+    @Param({"10000"})
+    public int candidateCount;
+
+    @Param({"s", "Str", "rvad", "NPE"})
+    public String prefix;
+
+    private String[] mCandidates;
+    private MatchSignature[] mSignatures;
+    private MatchSignature mPrefixSignature;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mCandidates = new String[candidateCount];
+        mSignatures = new MatchSignature[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            StringBuilder builder = new StringBuilder();
+            int words = 1 + random.nextInt(4);
+            for (int j = 0; j < words; j++) {
+                builder.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            mCandidates[i] = builder.toString();
+            mSignatures[i] = MatchSignature.of(mCandidates[i]);
+        }
+        mPrefixSignature = MatchSignature.of(prefix);
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (String candidate : mCandidates) {
+            blackhole.consume(legacyMatchLevel(candidate, prefix));
+        }
+    }
+
+    @Benchmark
+    public void current(Blackhole blackhole) {
+        for (String candidate : mCandidates) {
+            blackhole.consume(CompletionPrefixMatcher.computeMatchLevel(candidate, prefix));
+        }
+    }
+
+    @Benchmark
+    public void currentWithSignatures(Blackhole blackhole) {
+        for (MatchSignature signature : mSignatures) {
+            blackhole.consume(CompletionPrefixMatcher.computeMatchLevel(signature,
+                                                                        mPrefixSignature));
+        }
+    }
+
+    /**
+     * The implementation of {@link CompletionPrefixMatcher} before signatures were added.
+     */
+    private static MatchLevel legacyMatchLevel(String candidateName, String completionPrefix) {
+        if (candidateName.startsWith(completionPrefix)) {
+            return candidateName.length() == completionPrefix.length()
+                    ? MatchLevel.CASE_SENSITIVE_EQUAL
+                    : MatchLevel.CASE_SENSITIVE_PREFIX;
+        }
+
+        if (candidateName.toLowerCase().startsWith(completionPrefix.toLowerCase())) {
+            return candidateName.length() == completionPrefix.length()
+                    ? MatchLevel.CASE_INSENSITIVE_EQUAL
+                    : MatchLevel.CASE_INSENSITIVE_PREFIX;
+        }
+
+        int score = FuzzySearch.ratio(candidateName, completionPrefix);
+        if (score > 70) {
+            return MatchLevel.PARTIAL_MATCH;
+        }
+        return MatchLevel.NOT_MATCH;
+    }
+}
@@ -1,17 +1,10 @@
 package com.tyron.completion;
 
-import me.xdrop.fuzzywuzzy.FuzzySearch;
-
 /**
  * Logic of matching a completion name with a given completion prefix
  */
 public class CompletionPrefixMatcher {
 
-    /**
-     * The minimum score needed for a candidate to be considered as partial match.
-     */
-    private static final int MINIMUM_SCORE = 70;
-
     /**
      * How well does the candidate name match the completion prefix.
      *
@@ -22,6 +15,7 @@ public class CompletionPrefixMatcher {
     public enum MatchLevel {
         NOT_MATCH,
         PARTIAL_MATCH,
+        CAMEL_HUMP_MATCH,
         CASE_INSENSITIVE_PREFIX,
         CASE_SENSITIVE_PREFIX,
         CASE_INSENSITIVE_EQUAL,
@@ -29,22 +23,106 @@ public class CompletionPrefixMatcher {
     }
 
     public static MatchLevel computeMatchLevel(String candidateName, String completionPrefix) {
+        long prefixMask = MatchSignature.charMask(completionPrefix);
+        if ((prefixMask & ~MatchSignature.charMask(candidateName)) != 0) {
+            return MatchLevel.NOT_MATCH;
+        }
+        return computeMatchLevel(candidateName, null, completionPrefix);
+    }
+
+    /**
+     * Computes the match level using the precomputed signatures, this does not allocate.
+     *
+     * @param candidate The signature of the candidate name
+     * @param prefix The signature of the completion prefix
+     */
+    public static MatchLevel computeMatchLevel(MatchSignature candidate, MatchSignature prefix) {
+        if ((prefix.getCharMask() & ~candidate.getCharMask()) != 0) {
+            return MatchLevel.NOT_MATCH;
+        }
+        return computeMatchLevel(candidate.getText(), candidate, prefix.getText());
+    }
+
+    private static MatchLevel computeMatchLevel(String candidateName,
+                                                MatchSignature signature,
+                                                String completionPrefix) {
+        int length = completionPrefix.length();
         if (candidateName.startsWith(completionPrefix)) {
-            return candidateName.length() == completionPrefix.length()
+            return candidateName.length() == length
                     ? MatchLevel.CASE_SENSITIVE_EQUAL
                     : MatchLevel.CASE_SENSITIVE_PREFIX;
         }
 
-        if (candidateName.toLowerCase().startsWith(completionPrefix.toLowerCase())) {
-            return candidateName.length() == completionPrefix.length()
+        if (candidateName.regionMatches(true, 0, completionPrefix, 0, length)) {
+            return candidateName.length() == length
                     ? MatchLevel.CASE_INSENSITIVE_EQUAL
                     : MatchLevel.CASE_INSENSITIVE_PREFIX;
         }
 
-        int score = FuzzySearch.ratio(candidateName, completionPrefix);
-        if (score > MINIMUM_SCORE) {
+        if (matchesCamelHumps(candidateName, signature, completionPrefix)) {
+            return MatchLevel.CAMEL_HUMP_MATCH;
+        }
+
+        if (isSubsequence(candidateName, completionPrefix)) {
             return MatchLevel.PARTIAL_MATCH;
         }
         return MatchLevel.NOT_MATCH;
     }
+
+    /**
+     * Greedily matches each character of the prefix either with the character following the
+     * previous match or with the start of a following word, e.g. {@code NPE} and {@code NuPoE}
+     * both match {@code NullPointerException}.
+     */
+    private static boolean matchesCamelHumps(String candidate,
+                                             MatchSignature signature,
+                                             String prefix) {
+        int position = -1;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (position >= 0
+                && position + 1 < candidate.length()
+                && equalsIgnoreCase(candidate.charAt(position + 1), c)) {
+                position++;
+                continue;
+            }
+            position = nextHump(candidate, signature, position + 1, c);
+            if (position == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int nextHump(String candidate, MatchSignature signature, int from, char c) {
+        for (int i = from; i < candidate.length(); i++) {
+            boolean isHump = signature != null
+                    ? signature.isHump(i)
+                    : MatchSignature.isHump(candidate, i);
+            if (isHump && equalsIgnoreCase(candidate.charAt(i), c)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSubsequence(String candidate, String prefix) {
+        int position = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            while (position < candidate.length()
+                   && !equalsIgnoreCase(candidate.charAt(position), c)) {
+                position++;
+            }
+            if (position == candidate.length()) {
+                return false;
+            }
+            position++;
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(char a, char b) {
+        return a == b || Character.toLowerCase(a) == Character.toLowerCase(b);
+    }
 }
@@ -0,0 +1,105 @@
+package com.tyron.completion;
+
+/**
+ * Precomputed information about a string used by {@link CompletionPrefixMatcher} to match it
+ * without allocating.
+ * <p>
+ * The character mask has a bit set for every case folded character in the string, a candidate
+ * can be rejected without looking at its characters if the prefix contains a character that
+ * the candidate doesn't. The hump mask has a bit set for every position that starts a word in a
+ * camel case or snake case name, e.g. the positions of S and B in {@code StringBuilder}.
+ */
+public final class MatchSignature {
+
+    private static final int HUMP_MASK_LENGTH = 64;
+
+    public static MatchSignature of(String text) {
+        return new MatchSignature(text, charMask(text), humpMask(text));
+    }
+
+    private final String mText;
+    private final long mCharMask;
+    private final long mHumpMask;
+
+    private MatchSignature(String text, long charMask, long humpMask) {
+        mText = text;
+        mCharMask = charMask;
+        mHumpMask = humpMask;
+    }
+
+    public String getText() {
+        return mText;
+    }
+
+    public long getCharMask() {
+        return mCharMask;
+    }
+
+    /**
+     * @return Whether the character at the given index starts a word of this string
+     */
+    public boolean isHump(int index) {
+        if (index < HUMP_MASK_LENGTH) {
+            return (mHumpMask & (1L << index)) != 0;
+        }
+        return isHump(mText, index);
+    }
+
+    static long charMask(String text) {
+        long mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            mask |= charBit(text.charAt(i));
+        }
+        return mask;
+    }
+
+    private static long humpMask(String text) {
+        long mask = 0;
+        int length = Math.min(text.length(), HUMP_MASK_LENGTH);
+        for (int i = 0; i < length; i++) {
+            if (isHump(text, i)) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private static long charBit(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return 1L << (c - 'a');
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return 1L << (c - 'A');
+        }
+        if (c >= '0' && c <= '9') {
+            return 1L << (26 + c - '0');
+        }
+        if (c == '_') {
+            return 1L << 36;
+        }
+        if (c == '$') {
+            return 1L << 37;
+        }
+        // other characters share the remaining bits
+        return 1L << (38 + Character.toLowerCase(c) % 26);
+    }
+
+    static boolean isHump(String text, int index) {
+        if (index == 0) {
+            return true;
+        }
+        char c = text.charAt(index);
+        char previous = text.charAt(index - 1);
+        if (!Character.isLetterOrDigit(previous)) {
+            return Character.isLetterOrDigit(c);
+        }
+        if (!Character.isUpperCase(c)) {
+            return false;
+        }
+        if (!Character.isUpperCase(previous)) {
+            return true;
+        }
+        // the last upper case letter of an acronym followed by a word, e.g. C in URLConnection
+        return index + 1 < text.length() && Character.isLowerCase(text.charAt(index + 1));
+    }
+}
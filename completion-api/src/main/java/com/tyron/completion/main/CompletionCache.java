@@ -0,0 +1,167 @@
+package com.tyron.completion.main;
+
+import androidx.annotation.Nullable;
+
+import com.tyron.completion.CompletionParameters;
+import com.tyron.completion.CompletionProvider;
+import com.tyron.completion.model.CompletionList;
+import com.tyron.completion.progress.ProgressManager;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the last complete result of each {@link CompletionProvider} so that it can be
+ * narrowed down while the user keeps typing the same identifier, instead of running the
+ * provider again on each keystroke.
+ * <p>
+ * A cached result is only reused if the only change to the document since it was computed
+ * is the growth of the prefix at the caret. The typed characters are appended to the prefix
+ * the provider matched its items against, which may differ from the prefix of the editor, e.g.
+ * {@code @string/ap} for an attribute value. Results marked as incomplete are never cached.
+ */
+public class CompletionCache {
+
+    private static class Entry {
+        private final CompletionParameters mParameters;
+        private final CompletionList mList;
+
+        Entry(CompletionParameters parameters, CompletionList list) {
+            mParameters = parameters;
+            mList = list;
+        }
+    }
+
+    private final Map<CompletionProvider, Entry> mEntries = new HashMap<>();
+
+    /**
+     * @return The cached result of the provider narrowed to the given parameters, or null if
+     * there is no result that can be reused and the provider needs to be run again
+     */
+    @Nullable
+    public CompletionList get(CompletionProvider provider, CompletionParameters parameters) {
+        Entry entry;
+        synchronized (this) {
+            entry = mEntries.get(provider);
+        }
+        if (entry == null) {
+            return null;
+        }
+        CompletionList narrowed = narrow(entry.mList, entry.mParameters, parameters);
+        if (narrowed == null) {
+            return null;
+        }
+
+        // the next keystroke only needs to filter the items that still match
+        put(provider, parameters, narrowed);
+        return narrowed;
+    }
+
+    /**
+     * @return Whether the only change between the two requests is the text typed at the caret,
+     * so the result of the first one can be narrowed to the second one
+     */
+    public static boolean isContinuation(CompletionParameters previous,
+                                         CompletionParameters parameters) {
+        return getTypedText(previous, parameters) != null;
+    }
+
+    /**
+     * Filters the result computed for {@code computed} with the prefix it would have for
+     * {@code parameters}. The narrowed list is incomplete if the given list is.
+     *
+     * @return The narrowed list, or null if the parameters are not a continuation of the
+     * ones the list has been computed for
+     */
+    @Nullable
+    public static CompletionList narrow(@Nullable CompletionList list,
+                                        CompletionParameters computed,
+                                        CompletionParameters parameters) {
+        if (list == null || list.getPrefix() == null) {
+            return null;
+        }
+        String typed = getTypedText(computed, parameters);
+        if (typed == null) {
+            return null;
+        }
+
+        CompletionList.Builder builder = CompletionList.builder(list.getPrefix() + typed);
+        for (int i = 0; i < list.items.size(); i++) {
+            if (i % 256 == 0) {
+                ProgressManager.checkCanceled();
+            }
+            builder.addSharedItem(list.items.get(i));
+        }
+        if (list.isIncomplete()) {
+            builder.incomplete();
+        }
+        return builder.build();
+    }
+
+    public synchronized void put(CompletionProvider provider,
+                                 CompletionParameters parameters,
+                                 @Nullable CompletionList list) {
+        if (list == null || list.isIncomplete() || list.getPrefix() == null
+                || parameters.getPrefix() == null || parameters.getContents() == null) {
+            mEntries.remove(provider);
+            return;
+        }
+        mEntries.put(provider, new Entry(parameters, list));
+    }
+
+    public synchronized void invalidate() {
+        mEntries.clear();
+    }
+
+    /**
+     * @return The characters typed at the caret since the cached parameters, or null if the
+     * document has changed in any other way
+     */
+    @Nullable
+    private static String getTypedText(CompletionParameters cached, CompletionParameters parameters) {
+        if (cached.getPrefix() == null || cached.getContents() == null) {
+            return null;
+        }
+        File file = parameters.getFile();
+        String prefix = parameters.getPrefix();
+        String contents = parameters.getContents();
+        if (file == null || prefix == null || contents == null) {
+            return null;
+        }
+        if (!file.equals(cached.getFile())) {
+            return null;
+        }
+        if (parameters.getLine() != cached.getLine()) {
+            return null;
+        }
+
+        String cachedPrefix = cached.getPrefix();
+        if (!prefix.startsWith(cachedPrefix)) {
+            return null;
+        }
+        int growth = prefix.length() - cachedPrefix.length();
+        if (parameters.getColumn() - cached.getColumn() != growth
+            || parameters.getIndex() - cached.getIndex() != growth) {
+            return null;
+        }
+        for (int i = cachedPrefix.length(); i < prefix.length(); i++) {
+            if (!Character.isJavaIdentifierPart(prefix.charAt(i))) {
+                return null;
+            }
+        }
+
+        // the typed characters must be the only change in the document
+        String cachedContents = cached.getContents();
+        int cachedIndex = (int) cached.getIndex();
+        if (contents.length() - cachedContents.length() != growth
+            || cachedIndex < 0 || cachedIndex > cachedContents.length()) {
+            return null;
+        }
+        boolean onlyTyped = contents.regionMatches(0, cachedContents, 0, cachedIndex)
+               && contents.regionMatches(cachedIndex, prefix, cachedPrefix.length(), growth)
+               && contents.regionMatches(cachedIndex + growth, cachedContents, cachedIndex,
+                                         cachedContents.length() - cachedIndex);
+        return onlyTyped ? prefix.substring(cachedPrefix.length()) : null;
+    }
+}
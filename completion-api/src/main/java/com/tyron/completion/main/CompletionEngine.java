@@ -8,11 +8,21 @@ import com.tyron.completion.CompletionParameters;
 import com.tyron.completion.CompletionProvider;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.completion.progress.ProcessCanceledException;
+import com.tyron.completion.progress.ProgressIndicator;
+import com.tyron.completion.progress.ProgressManager;
 import com.tyron.editor.Editor;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -20,6 +30,8 @@ import java.util.logging.Logger;
  */
 public class CompletionEngine {
 
+    public static final long DEFAULT_DEADLINE_MILLIS = 1500;
+
     private static CompletionEngine sInstance = null;
 
     public static CompletionEngine getInstance() {
@@ -29,12 +41,44 @@ public class CompletionEngine {
         return sInstance;
     }
 
+    /**
+     * A run of a provider that may still be in progress.
+     */
+    private static class Run {
+        private final CompletionParameters mParameters;
+        private final ProgressIndicator mIndicator;
+        private final CompletableFuture<CompletionList> mFuture = new CompletableFuture<>();
+
+        Run(CompletionParameters parameters, ProgressIndicator indicator) {
+            mParameters = parameters;
+            mIndicator = indicator;
+        }
+    }
+
     private final Logger logger = IdeLog.getCurrentLogger(this);
+    private final CompletionCache mCache = new CompletionCache();
+    private final Map<CompletionProvider, Run> mRuns = new HashMap<>();
+
+    private volatile long mDeadlineMillis = DEFAULT_DEADLINE_MILLIS;
 
     public CompletionEngine() {
 
     }
 
+    /**
+     * Sets the maximum time to wait for the completion providers. The results of the providers
+     * that have not finished by then are left out and the list is marked as incomplete. Those
+     * providers keep running, and their results are reused by the next request if the user
+     * keeps typing the same identifier.
+     */
+    public void setDeadline(long deadlineMillis) {
+        mDeadlineMillis = deadlineMillis;
+    }
+
+    public long getDeadline() {
+        return mDeadlineMillis;
+    }
+
     public CompletionList complete(Project project,
                                    Module module,
                                    Editor editor,
@@ -45,12 +89,10 @@ public class CompletionEngine {
                                    int column,
                                    long index) {
         if (project.isCompiling() || project.isIndexing()) {
+            mCache.invalidate();
             return CompletionList.EMPTY;
         }
 
-        CompletionList list = new CompletionList();
-        list.items = new ArrayList<>();
-
         CompletionParameters parameters = CompletionParameters.builder()
                 .setProject(project)
                 .setModule(module)
@@ -62,26 +104,182 @@ public class CompletionEngine {
                 .setColumn(column)
                 .setIndex(index)
                 .build();
+
         List<CompletionProvider> providers = CompletionProvider.forParameters(parameters);
+        return completeConcurrently(parameters, providers);
+    }
+
+    /**
+     * Runs the providers concurrently and merges their results as they arrive. If the
+     * deadline expires before all of the providers have finished, the list is built from the
+     * results so far and marked as incomplete. Providers whose last result can be narrowed to
+     * the new prefix are not run again.
+     */
+    private CompletionList completeConcurrently(CompletionParameters parameters,
+                                                List<CompletionProvider> providers) {
+        CompletionList.Builder builder = CompletionList.builder(parameters.getPrefix());
+        List<CompletableFuture<CompletionList>> futures = new ArrayList<>(providers.size());
         for (CompletionProvider provider : providers) {
+            CompletionList cached = mCache.get(provider, parameters);
+            if (cached != null) {
+                builder.addMatchedItems(cached.items);
+            } else {
+                futures.add(run(provider, parameters));
+            }
+        }
+        if (futures.isEmpty()) {
+            return builder.build();
+        }
+
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(futures.size());
+        // guards the builder, results that arrive after the list is built are discarded
+        AtomicBoolean done = new AtomicBoolean(false);
+        for (CompletableFuture<CompletionList> future : futures) {
+            future.whenComplete((complete, error) -> {
+                int pending;
+                synchronized (builder) {
+                    if (!done.get()) {
+                        if (complete != null) {
+                            builder.addMatchedItems(complete.items);
+                            if (complete.isIncomplete()) {
+                                builder.incomplete();
+                            }
+                        } else if (error != null) {
+                            builder.incomplete();
+                        }
+                    }
+                    pending = remaining.decrementAndGet();
+                }
+                if (pending == 0) {
+                    finished.complete(null);
+                }
+            });
+        }
+
+        return ProgressManager.getInstance().runWithIndicator(caller -> {
+            // wakes up as soon as the caller is canceled instead of when the deadline expires
+            Runnable onCanceled = () -> finished.complete(null);
+            caller.addCancelListener(onCanceled);
             try {
-                CompletionList complete = provider.complete(parameters);
-                if (complete != null) {
-                    list.items.addAll(complete.items);
+                finished.get(mDeadlineMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // the providers that are still running will be used by the next request
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new AssertionError(e);
+            } finally {
+                caller.removeCancelListener(onCanceled);
+            }
+
+            synchronized (builder) {
+                done.set(true);
+                if (remaining.get() > 0) {
+                    builder.incomplete();
                 }
-            } catch (Throwable e) {
-                if (e instanceof ProcessCanceledException) {
-                    throw e;
+            }
+            ProgressManager.checkCanceled();
+            return builder.build();
+        });
+    }
+
+    /**
+     * Runs the provider, or if it is still running for a previous request which only differs
+     * by the characters typed since, waits for that run and narrows its result instead. A
+     * previous run that cannot be narrowed is canceled.
+     */
+    private CompletableFuture<CompletionList> run(CompletionProvider provider,
+                                                  CompletionParameters parameters) {
+        synchronized (mRuns) {
+            Run previous = mRuns.get(provider);
+            if (previous != null) {
+                if (CompletionCache.isContinuation(previous.mParameters, parameters)) {
+                    return previous.mFuture
+                            .handle((list, error) -> narrowOrRun(provider, previous, list,
+                                    parameters))
+                            .thenCompose(future -> future);
                 }
+                previous.mIndicator.cancel();
+            }
+            return start(provider, parameters);
+        }
+    }
 
-                String message = "Failed to complete: \n" +
-                                 "index: " + index + "\n" +
-                                 "prefix: " + prefix + "\n" +
-                                 "File: " + file.getName() + "\n" +
-                                 "Stack trace: " + Throwables.getStackTraceAsString(e);
-                logger.severe(message);
+    /**
+     * Narrows the result of a previous run, an incomplete result may be missing items that
+     * match the new prefix so the provider is run again in that case, as well as when the
+     * previous run failed or its result cannot be narrowed.
+     */
+    private CompletableFuture<CompletionList> narrowOrRun(CompletionProvider provider,
+                                                          Run previous,
+                                                          CompletionList list,
+                                                          CompletionParameters parameters) {
+        if (list != null && !list.isIncomplete()) {
+            CompletionList narrowed = CompletionCache.narrow(list, previous.mParameters,
+                    parameters);
+            if (narrowed != null) {
+                return CompletableFuture.completedFuture(narrowed);
+            }
+        }
+        synchronized (mRuns) {
+            // a newer request may have started its own run meanwhile, which must not be
+            // replaced by this one
+            if (mRuns.containsKey(provider)) {
+                return startUntracked(provider, parameters);
             }
+            return start(provider, parameters);
         }
-        return list;
+    }
+
+    private CompletableFuture<CompletionList> start(CompletionProvider provider,
+                                                    CompletionParameters parameters) {
+        Run run = new Run(parameters, new ProgressIndicator());
+        mRuns.put(provider, run);
+        execute(provider, run);
+        return run.mFuture;
+    }
+
+    private CompletableFuture<CompletionList> startUntracked(CompletionProvider provider,
+                                                             CompletionParameters parameters) {
+        Run run = new Run(parameters, new ProgressIndicator());
+        execute(provider, run);
+        return run.mFuture;
+    }
+
+    private void execute(CompletionProvider provider, Run run) {
+        CompletionParameters parameters = run.mParameters;
+        ProgressIndicator indicator = run.mIndicator;
+        ProgressManager.getInstance().runAsync(() -> {
+            try {
+                CompletionList complete = provider.complete(parameters);
+                if (!indicator.isCanceled()) {
+                    mCache.put(provider, parameters, complete);
+                }
+                run.mFuture.complete(complete);
+            } catch (ProcessCanceledException e) {
+                run.mFuture.completeExceptionally(e);
+                throw e;
+            } catch (Throwable e) {
+                logFailure(parameters, e);
+
+                // don't cache partial results of a failed provider
+                mCache.put(provider, parameters, null);
+                run.mFuture.completeExceptionally(e);
+            } finally {
+                synchronized (mRuns) {
+                    mRuns.remove(provider, run);
+                }
+            }
+        }, it -> {}, indicator);
+    }
+
+    private void logFailure(CompletionParameters parameters, Throwable e) {
+        String message = "Failed to complete: \n" +
+                         "index: " + parameters.getIndex() + "\n" +
+                         "prefix: " + parameters.getPrefix() + "\n" +
+                         "File: " + parameters.getFile().getName() + "\n" +
+                         "Stack trace: " + Throwables.getStackTraceAsString(e);
+        logger.severe(message);
     }
 }
@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableList;
 import com.tyron.completion.CompletionPrefixMatcher;
 import com.tyron.completion.DefaultInsertHandler;
 import com.tyron.completion.InsertHandler;
+import com.tyron.completion.MatchSignature;
 import com.tyron.completion.util.CompletionUtils;
 import com.tyron.editor.Editor;
 
@@ -53,6 +54,9 @@ public class CompletionItem implements Comparable<CompletionItem> {
     private List<String> filterTexts = new ArrayList<>(1);
     private CompletionPrefixMatcher.MatchLevel matchLevel;
 
+    // lazily computed signatures of the filter texts, reused when the item is filtered again
+    private MatchSignature[] signatures;
+
     public CompletionItem() {
         this.insertHandler = new DefaultInsertHandler(CompletionUtils.JAVA_PREDICATE, this);
         this.sortText = "";
@@ -85,6 +89,43 @@ public class CompletionItem implements Comparable<CompletionItem> {
 
     public void addFilterText(String text) {
         filterTexts.add(text);
+        signatures = null;
+    }
+
+    /**
+     * @return The best match level of this item's filter texts against the prefix
+     */
+    public CompletionPrefixMatcher.MatchLevel computeMatchLevel(MatchSignature prefix) {
+        MatchSignature[] signatures = getSignatures();
+        CompletionPrefixMatcher.MatchLevel best = CompletionPrefixMatcher.MatchLevel.NOT_MATCH;
+        for (MatchSignature signature : signatures) {
+            CompletionPrefixMatcher.MatchLevel level =
+                    CompletionPrefixMatcher.computeMatchLevel(signature, prefix);
+            if (level.compareTo(best) > 0) {
+                best = level;
+            }
+        }
+        return best;
+    }
+
+    private MatchSignature[] getSignatures() {
+        MatchSignature[] current = signatures;
+        if (filterTexts.isEmpty()) {
+            // the label is a public field, so it may have changed
+            if (current == null || current.length != 1 || !current[0].getText().equals(label)) {
+                current = new MatchSignature[]{MatchSignature.of(label)};
+                signatures = current;
+            }
+            return current;
+        }
+        if (current == null) {
+            current = new MatchSignature[filterTexts.size()];
+            for (int i = 0; i < current.length; i++) {
+                current[i] = MatchSignature.of(filterTexts.get(i));
+            }
+            signatures = current;
+        }
+        return current;
     }
 
     public String getSortText() {
@@ -103,6 +144,27 @@ public class CompletionItem implements Comparable<CompletionItem> {
         this.matchLevel = matchLevel;
     }
 
+    /**
+     * @return A copy of this item, so it can be given another match level without changing
+     * the lists this item is already part of. The copy shares the insert handler of this item.
+     */
+    public CompletionItem copy() {
+        CompletionItem copy = new CompletionItem(label);
+        copy.insertHandler = insertHandler;
+        copy.detail = detail;
+        copy.commitText = commitText;
+        copy.action = action;
+        copy.iconKind = iconKind;
+        copy.cursorOffset = cursorOffset;
+        copy.additionalTextEdits = additionalTextEdits;
+        copy.data = data;
+        copy.sortText = sortText;
+        copy.filterTexts = new ArrayList<>(filterTexts);
+        copy.matchLevel = matchLevel;
+        copy.signatures = signatures;
+        return copy;
+    }
+
     public enum Kind {
         OVERRIDE, IMPORT, NORMAL
     }
@@ -3,18 +3,22 @@ package com.tyron.completion.model;
 import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.toList;
 
+import androidx.annotation.Nullable;
+
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ordering;
 import com.google.errorprone.annotations.Immutable;
 import com.tyron.completion.CompletionPrefixMatcher;
 import com.tyron.completion.CompletionPrefixMatcher.MatchLevel;
 import com.tyron.completion.CompletionProvider;
+import com.tyron.completion.MatchSignature;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
 
 /**
  * Represents a list of completion items to be return from a {@link CompletionProvider}
@@ -29,12 +33,34 @@ public class CompletionList {
         return new Builder(prefix);
     }
 
+    /**
+     * Creates a builder that only keeps the best ranked {@code maxItems} items, the list is
+     * marked as incomplete if any item has been dropped.
+     */
+    public static Builder builder(String prefix, int maxItems) {
+        return new Builder(prefix, maxItems, item -> false);
+    }
+
+    /**
+     * Creates a bounded builder whose items accepted by {@code uncapped}, e.g. local variables,
+     * are always kept and don't count towards {@code maxItems}.
+     */
+    public static Builder builder(String prefix, int maxItems, Predicate<CompletionItem> uncapped) {
+        return new Builder(prefix, maxItems, uncapped);
+    }
+
     public static final CompletionList EMPTY = new CompletionList();
 
     public boolean isIncomplete = false;
 
     public List<CompletionItem> items = new ArrayList<>();
 
+    /**
+     * The prefix the items have been matched against, this is the prefix computed by the
+     * provider and may differ from the prefix of the editor.
+     */
+    private String prefix;
+
     /**
      * For performance reasons, the completion items are limited to a certain amount.
      * A completion provider may indicate that its results are incomplete so next as
@@ -54,6 +80,15 @@ public class CompletionList {
         return items;
     }
 
+    /**
+     * @return The prefix the items have been matched against, or null if the list has not
+     * been created by a {@link Builder}
+     */
+    @Nullable
+    public String getPrefix() {
+        return prefix;
+    }
+
     public static CompletionList copy(CompletionList old, String newPrefix) {
         Builder builder = CompletionList.builder(newPrefix);
         if (old.isIncomplete) {
@@ -64,14 +99,34 @@ public class CompletionList {
     }
 
     public static class Builder {
-        private final List<CompletionItem> items;
+        /**
+         * If the builder is bounded, this is a heap whose head is the worst ranked item so it
+         * can be replaced when a better item is added.
+         */
+        private final Collection<CompletionItem> items;
+        private final int maxItems;
+        private final Predicate<CompletionItem> uncapped;
+        private final List<CompletionItem> uncappedItems = new ArrayList<>();
         private boolean incomplete;
 
         private final String completionPrefix;
+        private final MatchSignature prefixSignature;
 
         public Builder(String completionPrefix) {
-            items = new ArrayList<>();
+            this(completionPrefix, Integer.MAX_VALUE, item -> false);
+        }
+
+        public Builder(String completionPrefix, int maxItems, Predicate<CompletionItem> uncapped) {
+            if (maxItems <= 0) {
+                throw new IllegalArgumentException("maxItems must be positive: " + maxItems);
+            }
+            this.items = maxItems == Integer.MAX_VALUE
+                    ? new ArrayList<>()
+                    : new PriorityQueue<>(maxItems + 1, ITEM_ORDERING.reverse());
+            this.maxItems = maxItems;
+            this.uncapped = uncapped;
             this.completionPrefix = completionPrefix;
+            this.prefixSignature = MatchSignature.of(completionPrefix);
         }
 
         public String getPrefix() {
@@ -94,27 +149,98 @@ public class CompletionList {
         }
 
         public Builder addItem(CompletionItem item) {
-            List<MatchLevel> matchLevels = new ArrayList<>();
-            for (String filterText : item.getFilterTexts()) {
-                MatchLevel matchLevel =
-                        CompletionPrefixMatcher.computeMatchLevel(filterText, completionPrefix);
-                if (matchLevel == MatchLevel.NOT_MATCH) {
-                    continue;
-                }
-                matchLevels.add(matchLevel);
-            }
-            if (matchLevels.isEmpty()) {
+            MatchLevel matchLevel = item.computeMatchLevel(prefixSignature);
+            if (matchLevel == MatchLevel.NOT_MATCH) {
                 return this;
             }
-            Collections.sort(matchLevels);
-            MatchLevel matchLevel = matchLevels.get(matchLevels.size() - 1);
             item.setMatchLevel(matchLevel);
-            items.add(item);
+            offer(item);
             return this;
         }
 
+        /**
+         * Like {@link #addItem}, but leaves the item unchanged since it is part of a list that
+         * has already been handed out. The item is copied if its match level changes.
+         */
+        public Builder addSharedItem(CompletionItem item) {
+            MatchLevel matchLevel = item.computeMatchLevel(prefixSignature);
+            if (matchLevel == MatchLevel.NOT_MATCH) {
+                return this;
+            }
+            if (matchLevel != item.getMatchLevel()) {
+                item = item.copy();
+                item.setMatchLevel(matchLevel);
+            }
+            offer(item);
+            return this;
+        }
+
+        /**
+         * Adds items whose match level has already been computed, e.g. the results of
+         * another {@link CompletionProvider} that have been matched against its own prefix.
+         */
+        public Builder addMatchedItems(Collection<CompletionItem> items) {
+            for (CompletionItem item : items) {
+                if (item.getMatchLevel() == null) {
+                    addItem(item);
+                } else {
+                    offer(item);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Checks whether an item with the given filter and sort text would be kept, so providers
+         * with many candidates only create the items that can make it into the list. A matching
+         * candidate that is rejected marks this builder as incomplete.
+         */
+        public boolean accepts(String filterText, String sortText) {
+            MatchLevel matchLevel = CompletionPrefixMatcher.computeMatchLevel(
+                    MatchSignature.of(filterText), prefixSignature);
+            if (matchLevel == MatchLevel.NOT_MATCH) {
+                return false;
+            }
+            if (items.size() < maxItems) {
+                return true;
+            }
+
+            incomplete = true;
+            CompletionItem worst = ((PriorityQueue<CompletionItem>) items).peek();
+            int result = Integer.compare(worst.getMatchLevel().ordinal(), matchLevel.ordinal());
+            if (result == 0) {
+                result = sortText.compareTo(worst.getSortText());
+            }
+            if (result == 0) {
+                result = filterText.compareTo(worst.getFilterTexts().get(0));
+            }
+            return result < 0;
+        }
+
+        private void offer(CompletionItem item) {
+            if (uncapped.test(item)) {
+                uncappedItems.add(item);
+                return;
+            }
+            if (items.size() < maxItems) {
+                items.add(item);
+                return;
+            }
+
+            incomplete = true;
+            PriorityQueue<CompletionItem> heap = (PriorityQueue<CompletionItem>) items;
+            if (ITEM_ORDERING.compare(item, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(item);
+            }
+        }
+
+        /**
+         * @return The number of items kept by this builder, only the uncapped items may exceed
+         * the maximum amount of items of a bounded builder.
+         */
         public int getItemCount() {
-            return items.size();
+            return items.size() + uncappedItems.size();
         }
 
         public void incomplete() {
@@ -129,7 +255,15 @@ public class CompletionList {
         public CompletionList build() {
             CompletionList list = new CompletionList();
             list.isIncomplete = this.incomplete;
-            list.items = ITEM_ORDERING.immutableSortedCopy(items);
+            list.prefix = this.completionPrefix;
+            if (uncappedItems.isEmpty()) {
+                list.items = ITEM_ORDERING.immutableSortedCopy(items);
+            } else {
+                List<CompletionItem> all = new ArrayList<>(items.size() + uncappedItems.size());
+                all.addAll(items);
+                all.addAll(uncappedItems);
+                list.items = ITEM_ORDERING.immutableSortedCopy(all);
+            }
             return list;
         }
     }
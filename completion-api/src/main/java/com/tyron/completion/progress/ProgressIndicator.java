@@ -1,9 +1,13 @@
 package com.tyron.completion.progress;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 public class ProgressIndicator {
 
     private volatile boolean mCanceled;
     private volatile boolean mRunning;
+    private final List<Runnable> mCancelListeners = new CopyOnWriteArrayList<>();
 
     public ProgressIndicator() {
 
@@ -11,6 +15,26 @@ public class ProgressIndicator {
 
     public void setCanceled(boolean cancel) {
         mCanceled = cancel;
+        if (cancel) {
+            for (Runnable listener : mCancelListeners) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Adds a listener which is called on the canceling thread when this indicator is canceled,
+     * or right away if it has already been canceled.
+     */
+    public void addCancelListener(Runnable listener) {
+        mCancelListeners.add(listener);
+        if (mCanceled) {
+            listener.run();
+        }
+    }
+
+    public void removeCancelListener(Runnable listener) {
+        mCancelListeners.remove(listener);
     }
 
     public void cancel() {
@@ -20,6 +20,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class ProgressManager {
 
@@ -42,7 +43,7 @@ public class ProgressManager {
     private final Map<Thread, ProgressIndicator> mThreadToIndicator;
 
     public ProgressManager() {
-        mThreadToIndicator = new WeakHashMap<>();
+        mThreadToIndicator = Collections.synchronizedMap(new WeakHashMap<>());
         if (TestUtil.isDalvik()) {
             mMainHandler = new DefaultHandlerInterface(new Handler(Looper.getMainLooper()));
         } else {
@@ -142,6 +143,33 @@ public class ProgressManager {
         mMainHandler.removeCallbacks(runnable);
     }
 
+    /**
+     * Runs the task on the current thread with an indicator that is canceled by
+     * {@link #cancelThread(Thread)}. If the thread is already running a task started with
+     * {@link #runAsync(Runnable, Consumer, ProgressIndicator)}, its indicator is used,
+     * otherwise a new one is registered until the task returns.
+     */
+    public <T> T runWithIndicator(Function<ProgressIndicator, T> task) {
+        Thread currentThread = Thread.currentThread();
+        ProgressIndicator indicator;
+        boolean registered = false;
+        synchronized (mThreadToIndicator) {
+            indicator = mThreadToIndicator.get(currentThread);
+            if (indicator == null) {
+                indicator = new ProgressIndicator();
+                mThreadToIndicator.put(currentThread, indicator);
+                registered = true;
+            }
+        }
+        try {
+            return task.apply(indicator);
+        } finally {
+            if (registered) {
+                mThreadToIndicator.remove(currentThread, indicator);
+            }
+        }
+    }
+
     public void cancelThread(Thread thread) {
         ProgressIndicator indicator = mThreadToIndicator.get(thread);
         if (indicator == null) {
@@ -0,0 +1,40 @@
+package com.tyron.completion;
+
+import static org.junit.Assert.assertEquals;
+
+import com.tyron.completion.CompletionPrefixMatcher.MatchLevel;
+
+import org.junit.Test;
+
+public class CompletionPrefixMatcherTest {
+
+    @Test
+    public void testPrefix() {
+        assertEquals(MatchLevel.CASE_SENSITIVE_EQUAL, match("String", "String"));
+        assertEquals(MatchLevel.CASE_INSENSITIVE_EQUAL, match("String", "string"));
+        assertEquals(MatchLevel.CASE_SENSITIVE_PREFIX, match("String", "Str"));
+        assertEquals(MatchLevel.CASE_INSENSITIVE_PREFIX, match("String", "str"));
+    }
+
+    @Test
+    public void testCamelHumps() {
+        assertEquals(MatchLevel.CAMEL_HUMP_MATCH, match("NullPointerException", "NPE"));
+        assertEquals(MatchLevel.CAMEL_HUMP_MATCH, match("NullPointerException", "nupoe"));
+        assertEquals(MatchLevel.CAMEL_HUMP_MATCH, match("URLConnection", "UC"));
+        assertEquals(MatchLevel.CAMEL_HUMP_MATCH, match("my_variable", "mv"));
+    }
+
+    @Test
+    public void testSubsequence() {
+        assertEquals(MatchLevel.PARTIAL_MATCH, match("ArrayList", "alt"));
+        assertEquals(MatchLevel.NOT_MATCH, match("ArrayList", "tla"));
+        assertEquals(MatchLevel.NOT_MATCH, match("ArrayList", "xyz"));
+    }
+
+    private static MatchLevel match(String candidate, String prefix) {
+        MatchLevel level = CompletionPrefixMatcher.computeMatchLevel(candidate, prefix);
+        assertEquals(level, CompletionPrefixMatcher.computeMatchLevel(
+                MatchSignature.of(candidate), MatchSignature.of(prefix)));
+        return level;
+    }
+}
@@ -0,0 +1,96 @@
+package com.tyron.completion.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.tyron.completion.CompletionParameters;
+import com.tyron.completion.CompletionPrefixMatcher.MatchLevel;
+import com.tyron.completion.CompletionProvider;
+import com.tyron.completion.model.CompletionItem;
+import com.tyron.completion.model.CompletionList;
+
+import org.junit.Test;
+
+import java.io.File;
+
+public class CompletionCacheTest {
+
+    private static final File FILE = new File("activity_main.xml");
+
+    private final CompletionProvider mProvider = new CompletionProvider() {
+        @Override
+        public boolean accept(File file) {
+            return true;
+        }
+
+        @Override
+        public CompletionList complete(CompletionParameters parameters) {
+            return CompletionList.EMPTY;
+        }
+    };
+
+    @Test
+    public void testNarrowsWithProviderPrefix() {
+        CompletionCache cache = new CompletionCache();
+        // the provider matches against "@string/ap" while the editor prefix is "ap"
+        CompletionList.Builder builder = CompletionList.builder("@string/ap");
+        builder.addItem(CompletionItem.create("@string/app_name", "", "@string/app_name"));
+        builder.addItem(CompletionItem.create("@string/apply", "", "@string/apply"));
+        cache.put(mProvider, parameters("text=\"@string/ap\"", "ap", 16), builder.build());
+
+        CompletionList narrowed = cache.get(mProvider,
+                parameters("text=\"@string/app_\"", "app_", 18));
+        assertNotNull(narrowed);
+        assertEquals(1, narrowed.getItems().size());
+        assertEquals("@string/app_name", narrowed.getItems().get(0).getLabel());
+        assertEquals("@string/app_", narrowed.getPrefix());
+    }
+
+    @Test
+    public void testChangeElsewhere() {
+        CompletionCache cache = new CompletionCache();
+        CompletionList.Builder builder = CompletionList.builder("ap");
+        builder.addItem(CompletionItem.create("apply", "", "apply"));
+        cache.put(mProvider, parameters("a ap", "ap", 4), builder.build());
+
+        assertNull(cache.get(mProvider, parameters("b apa", "apa", 5)));
+        assertNotNull(cache.get(mProvider, parameters("a apl", "apl", 5)));
+    }
+
+    @Test
+    public void testNarrowingKeepsTheItemsOfTheCachedList() {
+        CompletionCache cache = new CompletionCache();
+        CompletionList.Builder builder = CompletionList.builder("ap");
+        builder.addItem(CompletionItem.create("apply", "", "apply"));
+        CompletionList list = builder.build();
+        cache.put(mProvider, parameters("ap", "ap", 2), list);
+
+        CompletionList narrowed = cache.get(mProvider, parameters("apply", "apply", 5));
+        assertNotNull(narrowed);
+        assertEquals(MatchLevel.CASE_SENSITIVE_EQUAL, narrowed.getItems().get(0).getMatchLevel());
+        assertEquals(MatchLevel.CASE_SENSITIVE_PREFIX, list.getItems().get(0).getMatchLevel());
+    }
+
+    @Test
+    public void testIncompleteIsNotCached() {
+        CompletionCache cache = new CompletionCache();
+        CompletionList.Builder builder = CompletionList.builder("ap");
+        builder.addItem(CompletionItem.create("apply", "", "apply"));
+        builder.incomplete();
+        cache.put(mProvider, parameters("ap", "ap", 2), builder.build());
+
+        assertNull(cache.get(mProvider, parameters("apl", "apl", 3)));
+    }
+
+    private static CompletionParameters parameters(String contents, String prefix, int index) {
+        return CompletionParameters.builder()
+                .setFile(FILE)
+                .setContents(contents)
+                .setPrefix(prefix)
+                .setLine(0)
+                .setColumn(index)
+                .setIndex(index)
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.tyron.completion.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class CompletionListTest {
+
+    @Test
+    public void testBoundedKeepsBestItems() {
+        CompletionList.Builder builder = CompletionList.builder("get", 2);
+        builder.addItem(CompletionItem.create("forget", "", "forget"));
+        builder.addItem(CompletionItem.create("getAll", "", "getAll"));
+        builder.addItem(CompletionItem.create("GETTER", "", "GETTER"));
+        builder.addItem(CompletionItem.create("get", "", "get"));
+        builder.addItem(CompletionItem.create("target", "", "target"));
+
+        CompletionList list = builder.build();
+        List<String> labels = list.getItems().stream()
+                .map(CompletionItem::getLabel)
+                .collect(Collectors.toList());
+        assertEquals(2, labels.size());
+        assertEquals("get", labels.get(0));
+        assertEquals("getAll", labels.get(1));
+        assertTrue(list.isIncomplete());
+    }
+
+    @Test
+    public void testUncappedItemsAreKept() {
+        CompletionList.Builder builder = CompletionList.builder("get", 1,
+                item -> "local".equals(item.getSortText()));
+        builder.addItem(CompletionItem.create("get", "", "get"));
+        CompletionItem local = CompletionItem.create("getterValue", "", "getterValue");
+        local.setSortText("local");
+        builder.addItem(local);
+
+        CompletionList list = builder.build();
+        assertEquals(2, list.getItems().size());
+        assertFalse(list.isIncomplete());
+    }
+
+    @Test
+    public void testAccepts() {
+        CompletionList.Builder builder = CompletionList.builder("get", 1);
+        assertFalse(builder.accepts("set", ""));
+        assertTrue(builder.accepts("getAll", ""));
+        builder.addItem(CompletionItem.create("getAll", "", "getAll"));
+        assertFalse(builder.isIncomplete());
+
+        assertTrue(builder.accepts("get", ""));
+        assertFalse(builder.accepts("forget", ""));
+        assertTrue(builder.isIncomplete());
+    }
+
+    @Test
+    public void testUnbounded() {
+        CompletionList.Builder builder = CompletionList.builder("a");
+        builder.addItem(CompletionItem.create("ab", "", "ab"));
+        builder.addItem(CompletionItem.create("aa", "", "aa"));
+
+        CompletionList list = builder.build();
+        assertEquals(2, list.getItems().size());
+        assertFalse(list.isIncomplete());
+    }
+}
@@ -0,0 +1,500 @@
+package com.tyron.editor.util.text;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An immutable text stored as a height balanced tree of small string chunks.
+ * <p>
+ * Inserting, deleting and taking a sub sequence return a new rope in O(log n) that shares every
+ * unchanged chunk with this one, so keeping older versions of a document around is cheap. Each
+ * node also counts the line breaks below it, which makes converting between offsets and lines
+ * O(log n) as well.
+ */
+public final class Rope extends ImmutableCharSequence {
+
+  public static final Rope EMPTY = new Rope("");
+
+  /**
+   * Chunks are split at this length, and adjacent chunks are merged while they fit.
+   */
+  static final int MAX_LEAF_LENGTH = 512;
+
+  @NotNull
+  public static Rope of(@NotNull CharSequence text) {
+    if (text instanceof Rope) {
+      return (Rope)text;
+    }
+    int length = text.length();
+    if (length <= MAX_LEAF_LENGTH) {
+      return length == 0 ? EMPTY : new Rope(text.toString());
+    }
+    int leafCount = (length + MAX_LEAF_LENGTH - 1) / MAX_LEAF_LENGTH;
+    return build(text.toString(), 0, leafCount);
+  }
+
+  private static Rope build(String text, int fromLeaf, int toLeaf) {
+    if (toLeaf - fromLeaf == 1) {
+      int start = fromLeaf * MAX_LEAF_LENGTH;
+      return new Rope(text.substring(start, Math.min(text.length(), start + MAX_LEAF_LENGTH)));
+    }
+    int middle = (fromLeaf + toLeaf) >>> 1;
+    return new Rope(build(text, fromLeaf, middle), build(text, middle, toLeaf));
+  }
+
+  // set for leaves only
+  private final String myLeaf;
+  // set for inner nodes only
+  private final Rope myLeft;
+  private final Rope myRight;
+
+  private final int myLength;
+  private final int myLineBreaks;
+  private final int myHeight;
+
+  private volatile String myString;
+  private volatile int myHash;
+
+  private Rope(@NotNull String leaf) {
+    myLeaf = leaf;
+    myLeft = null;
+    myRight = null;
+    myLength = leaf.length();
+    myLineBreaks = countLineBreaks(leaf);
+    myHeight = 0;
+  }
+
+  private Rope(@NotNull Rope left, @NotNull Rope right) {
+    myLeaf = null;
+    myLeft = left;
+    myRight = right;
+    myLength = left.myLength + right.myLength;
+    myLineBreaks = left.myLineBreaks + right.myLineBreaks;
+    myHeight = Math.max(left.myHeight, right.myHeight) + 1;
+  }
+
+  private boolean isLeaf() {
+    return myLeaf != null;
+  }
+
+  @Override
+  public int length() {
+    return myLength;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= myLength) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of range for length " + myLength);
+    }
+    Rope node = this;
+    while (!node.isLeaf()) {
+      if (index < node.myLeft.myLength) {
+        node = node.myLeft;
+      } else {
+        index -= node.myLeft.myLength;
+        node = node.myRight;
+      }
+    }
+    return node.myLeaf.charAt(index);
+  }
+
+  @NotNull
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return subtext(start, end);
+  }
+
+  /**
+   * @return The number of lines of this text, which is one more than the number of line breaks
+   */
+  public int getLineCount() {
+    return myLineBreaks + 1;
+  }
+
+  /**
+   * @return The offset of the first character of the given line
+   */
+  public int getLineStartOffset(int line) {
+    if (line < 0 || line > myLineBreaks) {
+      throw new IndexOutOfBoundsException("Line " + line + " out of range for " + getLineCount() + " lines");
+    }
+    if (line == 0) {
+      return 0;
+    }
+    // the line starts after its preceding line break
+    int breaks = line;
+    int offset = 0;
+    Rope node = this;
+    while (!node.isLeaf()) {
+      if (breaks <= node.myLeft.myLineBreaks) {
+        node = node.myLeft;
+      } else {
+        breaks -= node.myLeft.myLineBreaks;
+        offset += node.myLeft.myLength;
+        node = node.myRight;
+      }
+    }
+    String leaf = node.myLeaf;
+    for (int i = 0; i < leaf.length(); i++) {
+      if (leaf.charAt(i) == '\n' && --breaks == 0) {
+        return offset + i + 1;
+      }
+    }
+    throw new IllegalStateException("Line break count is inconsistent");
+  }
+
+  /**
+   * @return The offset after the last character of the given line, excluding its line break
+   */
+  public int getLineEndOffset(int line) {
+    return line == myLineBreaks ? myLength : getLineStartOffset(line + 1) - 1;
+  }
+
+  /**
+   * @return The line containing the character at the given offset
+   */
+  public int getLineNumber(int offset) {
+    if (offset < 0 || offset > myLength) {
+      throw new IndexOutOfBoundsException("Offset " + offset + " out of range for length " + myLength);
+    }
+    int line = 0;
+    Rope node = this;
+    while (!node.isLeaf()) {
+      if (offset < node.myLeft.myLength) {
+        node = node.myLeft;
+      } else {
+        offset -= node.myLeft.myLength;
+        line += node.myLeft.myLineBreaks;
+        node = node.myRight;
+      }
+    }
+    String leaf = node.myLeaf;
+    for (int i = 0; i < offset; i++) {
+      if (leaf.charAt(i) == '\n') {
+        line++;
+      }
+    }
+    return line;
+  }
+
+  @NotNull
+  @Contract(pure = true)
+  @Override
+  public Rope concat(@NotNull CharSequence sequence) {
+    return join(this, of(sequence));
+  }
+
+  @NotNull
+  @Contract(pure = true)
+  @Override
+  public Rope insert(int index, @NotNull CharSequence seq) {
+    checkRange(index, index);
+    if (seq.length() == 0) {
+      return this;
+    }
+    return join(join(subtext(0, index), of(seq)), subtext(index, myLength));
+  }
+
+  @NotNull
+  @Contract(pure = true)
+  @Override
+  public Rope delete(int start, int end) {
+    checkRange(start, end);
+    if (start == end) {
+      return this;
+    }
+    return join(subtext(0, start), subtext(end, myLength));
+  }
+
+  @NotNull
+  @Contract(pure = true)
+  @Override
+  public Rope replace(int start, int end, @NotNull CharSequence seq) {
+    checkRange(start, end);
+    return join(join(subtext(0, start), of(seq)), subtext(end, myLength));
+  }
+
+  @NotNull
+  @Contract(pure = true)
+  @Override
+  public Rope subtext(int start, int end) {
+    checkRange(start, end);
+    if (start == 0 && end == myLength) {
+      return this;
+    }
+    if (start == end) {
+      return EMPTY;
+    }
+    if (isLeaf()) {
+      return new Rope(myLeaf.substring(start, end));
+    }
+    int leftLength = myLeft.myLength;
+    if (end <= leftLength) {
+      return myLeft.subtext(start, end);
+    }
+    if (start >= leftLength) {
+      return myRight.subtext(start - leftLength, end - leftLength);
+    }
+    return join(myLeft.subtext(start, leftLength), myRight.subtext(0, end - leftLength));
+  }
+
+  /**
+   * Copies the characters of the given range to the destination array.
+   */
+  public void getChars(int start, int end, char @NotNull [] dst, int dstOffset) {
+    checkRange(start, end);
+    if (start == end) {
+      return;
+    }
+    if (isLeaf()) {
+      myLeaf.getChars(start, end, dst, dstOffset);
+      return;
+    }
+    int leftLength = myLeft.myLength;
+    if (start < leftLength) {
+      int leftEnd = Math.min(end, leftLength);
+      myLeft.getChars(start, leftEnd, dst, dstOffset);
+      dstOffset += leftEnd - start;
+    }
+    if (end > leftLength) {
+      myRight.getChars(Math.max(start - leftLength, 0), end - leftLength, dst, dstOffset);
+    }
+  }
+
+  /**
+   * Compares this text with the given one a chunk at a time, without converting either of them
+   * to a String.
+   */
+  public boolean contentEquals(@NotNull CharSequence other) {
+    if (this == other) {
+      return true;
+    }
+    if (myLength != other.length()) {
+      return false;
+    }
+    if (other instanceof Rope) {
+      return equalChunks(this, 0, (Rope)other, 0, myLength);
+    }
+    return regionMatches(0, other, 0, myLength);
+  }
+
+  /**
+   * Ropes are equal when their texts are, like Strings, so two snapshots of the same buffer can
+   * be compared without knowing their type.
+   */
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof Rope && contentEquals((Rope)o);
+  }
+
+  /**
+   * @return The same hash code as the String of this text
+   */
+  @Override
+  public int hashCode() {
+    int hash = myHash;
+    if (hash == 0 && myLength != 0) {
+      hash = hashChunks(0);
+      myHash = hash;
+    }
+    return hash;
+  }
+
+  private int hashChunks(int hash) {
+    if (isLeaf()) {
+      for (int i = 0; i < myLeaf.length(); i++) {
+        hash = 31 * hash + myLeaf.charAt(i);
+      }
+      return hash;
+    }
+    return myRight.hashChunks(myLeft.hashChunks(hash));
+  }
+
+  /**
+   * @return Whether the given range of this text is equal to the range of the same length of
+   * the other text starting at {@code otherStart}
+   */
+  private boolean regionMatches(int start, CharSequence other, int otherStart, int length) {
+    if (length == 0) {
+      return true;
+    }
+    if (isLeaf()) {
+      if (other instanceof String) {
+        return myLeaf.regionMatches(start, (String)other, otherStart, length);
+      }
+      for (int i = 0; i < length; i++) {
+        if (myLeaf.charAt(start + i) != other.charAt(otherStart + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    int leftLength = myLeft.myLength;
+    if (start + length <= leftLength) {
+      return myLeft.regionMatches(start, other, otherStart, length);
+    }
+    if (start >= leftLength) {
+      return myRight.regionMatches(start - leftLength, other, otherStart, length);
+    }
+    int inLeft = leftLength - start;
+    return myLeft.regionMatches(start, other, otherStart, inLeft) &&
+           myRight.regionMatches(0, other, otherStart + inLeft, length - inLeft);
+  }
+
+  /**
+   * Compares {@code length} characters of two ropes, descending the first one down to its chunks
+   * and matching each chunk against the range of the second one.
+   */
+  private static boolean equalChunks(Rope first, int firstStart, Rope second, int secondStart, int length) {
+    if (length == 0 || (first == second && firstStart == secondStart)) {
+      return true;
+    }
+    if (first.isLeaf()) {
+      return second.regionMatches(secondStart, first.myLeaf, firstStart, length);
+    }
+    int leftLength = first.myLeft.myLength;
+    if (firstStart + length <= leftLength) {
+      return equalChunks(first.myLeft, firstStart, second, secondStart, length);
+    }
+    if (firstStart >= leftLength) {
+      return equalChunks(first.myRight, firstStart - leftLength, second, secondStart, length);
+    }
+    int inLeft = leftLength - firstStart;
+    return equalChunks(first.myLeft, firstStart, second, secondStart, inLeft) &&
+           equalChunks(first.myRight, 0, second, secondStart + inLeft, length - inLeft);
+  }
+
+  @NotNull
+  @Override
+  public String toString() {
+    String string = myString;
+    if (string == null) {
+      if (isLeaf()) {
+        string = myLeaf;
+      } else {
+        char[] chars = new char[myLength];
+        getChars(0, myLength, chars, 0);
+        string = new String(chars);
+      }
+      myString = string;
+    }
+    return string;
+  }
+
+  private void checkRange(int start, int end) {
+    if (start < 0 || end > myLength || start > end) {
+      throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + myLength);
+    }
+  }
+
+  // visible for tests
+  int getLeafCount() {
+    return isLeaf() ? 1 : myLeft.getLeafCount() + myRight.getLeafCount();
+  }
+
+  private String firstLeaf() {
+    Rope node = this;
+    while (!node.isLeaf()) {
+      node = node.myLeft;
+    }
+    return node.myLeaf;
+  }
+
+  private String lastLeaf() {
+    Rope node = this;
+    while (!node.isLeaf()) {
+      node = node.myRight;
+    }
+    return node.myLeaf;
+  }
+
+  private static int countLineBreaks(String text) {
+    int count = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Concatenates two balanced ropes into a balanced rope. The chunks on both sides of the seam
+   * are merged if they fit in one chunk, so repeated small edits at the same place don't leave
+   * a trail of tiny chunks behind.
+   */
+  private static Rope join(Rope left, Rope right) {
+    if (left.myLength == 0) {
+      return right;
+    }
+    if (right.myLength == 0) {
+      return left;
+    }
+    String last = left.lastLeaf();
+    String first = right.firstLeaf();
+    if (last.length() + first.length() <= MAX_LEAF_LENGTH) {
+      Rope merged = new Rope(last + first);
+      if (left.isLeaf() && right.isLeaf()) {
+        return merged;
+      }
+      Rope head = left.subtext(0, left.myLength - last.length());
+      Rope tail = right.subtext(first.length(), right.myLength);
+      return joinBalanced(joinBalanced(head, merged), tail);
+    }
+    return joinBalanced(left, right);
+  }
+
+  /**
+   * Concatenates two balanced ropes into a balanced rope, descending the spine of the higher one
+   * until the heights match and rotating on the way back up.
+   */
+  private static Rope joinBalanced(Rope left, Rope right) {
+    if (left.myLength == 0) {
+      return right;
+    }
+    if (right.myLength == 0) {
+      return left;
+    }
+    if (left.myHeight > right.myHeight + 1) {
+      return joinRight(left, right);
+    }
+    if (right.myHeight > left.myHeight + 1) {
+      return joinLeft(left, right);
+    }
+    return new Rope(left, right);
+  }
+
+  private static Rope joinRight(Rope left, Rope right) {
+    Rope joined = joinBalanced(left.myRight, right);
+    if (joined.myHeight <= left.myLeft.myHeight + 1) {
+      return new Rope(left.myLeft, joined);
+    }
+    // joined is two higher than its new sibling
+    if (joined.myLeft.myHeight > joined.myRight.myHeight) {
+      joined = rotateRight(joined);
+    }
+    return rotateLeft(new Rope(left.myLeft, joined));
+  }
+
+  private static Rope joinLeft(Rope left, Rope right) {
+    Rope joined = joinBalanced(left, right.myLeft);
+    if (joined.myHeight <= right.myRight.myHeight + 1) {
+      return new Rope(joined, right.myRight);
+    }
+    if (joined.myRight.myHeight > joined.myLeft.myHeight) {
+      joined = rotateLeft(joined);
+    }
+    return rotateRight(new Rope(joined, right.myRight));
+  }
+
+  private static Rope rotateLeft(Rope node) {
+    Rope right = node.myRight;
+    return new Rope(new Rope(node.myLeft, right.myLeft), right.myRight);
+  }
+
+  private static Rope rotateRight(Rope node) {
+    Rope left = node.myLeft;
+    return new Rope(left.myLeft, new Rope(left.myRight, node.myRight));
+  }
+}
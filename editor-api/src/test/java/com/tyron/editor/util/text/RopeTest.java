@@ -0,0 +1,133 @@
+package com.tyron.editor.util.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RopeTest {
+
+    @Test
+    public void testEditsMatchStringBuilder() {
+        Random random = new Random(0);
+        StringBuilder expected = new StringBuilder();
+        Rope rope = Rope.EMPTY;
+        for (int i = 0; i < 5000; i++) {
+            if (expected.length() == 0 || random.nextInt(3) != 0) {
+                int index = random.nextInt(expected.length() + 1);
+                String text = random.nextInt(10) == 0 ? "line\n" : "abc";
+                expected.insert(index, text);
+                rope = rope.insert(index, text);
+            } else {
+                int start = random.nextInt(expected.length());
+                int end = Math.min(expected.length(), start + random.nextInt(8));
+                expected.delete(start, end);
+                rope = rope.delete(start, end);
+            }
+        }
+        assertEquals(expected.toString(), rope.toString());
+        assertEquals(expected.length(), rope.length());
+    }
+
+    @Test
+    public void testSmallEditsDontFragmentChunks() {
+        Random random = new Random(0);
+        StringBuilder expected = new StringBuilder(repeat("0123456789", 500));
+        Rope rope = Rope.of(expected);
+        int index = 2500;
+        for (int i = 0; i < 5000; i++) {
+            if (random.nextInt(4) == 0) {
+                // move the caret now and then, like typing in different places
+                index = random.nextInt(expected.length() + 1);
+            }
+            expected.insert(index, 'x');
+            rope = rope.insert(index, "x");
+            index++;
+        }
+        assertEquals(expected.toString(), rope.toString());
+        int maxLeafCount = 2 * expected.length() / Rope.MAX_LEAF_LENGTH + 1;
+        assertTrue(rope.getLeafCount() + " chunks", rope.getLeafCount() <= maxLeafCount);
+    }
+
+    @Test
+    public void testSnapshotsAreNotModified() {
+        Rope original = Rope.of(repeat("0123456789", 200));
+        Rope edited = original.insert(1000, "inserted").delete(0, 10);
+
+        assertEquals(repeat("0123456789", 200), original.toString());
+        assertEquals(2000 - 10 + 8, edited.length());
+        assertEquals("inserted", edited.subSequence(990, 998).toString());
+    }
+
+    @Test
+    public void testLineOffsets() {
+        Rope rope = Rope.of("first\nsecond\n\nlast");
+
+        assertEquals(4, rope.getLineCount());
+        assertEquals(0, rope.getLineStartOffset(0));
+        assertEquals(6, rope.getLineStartOffset(1));
+        assertEquals(13, rope.getLineStartOffset(2));
+        assertEquals(14, rope.getLineStartOffset(3));
+        assertEquals(12, rope.getLineEndOffset(1));
+        assertEquals(18, rope.getLineEndOffset(3));
+
+        assertEquals(0, rope.getLineNumber(5));
+        assertEquals(1, rope.getLineNumber(6));
+        assertEquals(3, rope.getLineNumber(18));
+    }
+
+    @Test
+    public void testLineOffsetsAcrossChunks() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        Rope rope = Rope.of(text);
+
+        assertEquals(1001, rope.getLineCount());
+        int line = 567;
+        int start = rope.getLineStartOffset(line);
+        assertEquals("line 567", rope.subtext(start, rope.getLineEndOffset(line)).toString());
+        assertEquals(line, rope.getLineNumber(start + 3));
+    }
+
+    @Test
+    public void testOfRopeReturnsSameInstance() {
+        Rope rope = Rope.of("text");
+        assertSame(rope, Rope.of(rope));
+    }
+
+    @Test
+    public void testContentEquals() {
+        String text = repeat("0123456789\n", 300);
+        Rope rope = Rope.of(text);
+        // same text with chunks split at other offsets
+        Rope edited = Rope.of(text.substring(0, 700)).concat(text.substring(700));
+        edited = edited.insert(1500, "x").delete(1500, 1501);
+
+        assertTrue(rope.contentEquals(edited));
+        assertTrue(edited.contentEquals(rope));
+        assertTrue(rope.contentEquals(text));
+        assertTrue(rope.contentEquals(new StringBuilder(text)));
+        assertEquals(rope, edited);
+        assertEquals(text.hashCode(), edited.hashCode());
+
+        Rope changed = edited.replace(2000, 2001, "x");
+        assertFalse(rope.contentEquals(changed));
+        assertFalse(changed.contentEquals(text));
+        assertFalse(rope.equals(changed));
+        assertFalse(rope.contentEquals(text.substring(1)));
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+}
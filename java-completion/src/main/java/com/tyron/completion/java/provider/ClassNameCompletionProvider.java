@@ -80,9 +80,8 @@ public class ClassNameCompletionProvider extends BaseCompletionProvider {
             if (uniques.contains(className)) {
                 continue;
             }
-            if (list.getItemCount() >= Completions.MAX_COMPLETION_ITEMS) {
-                list.incomplete();
-                break;
+            if (!list.accepts(simpleName, JavaSortCategory.TO_IMPORT.toString())) {
+                continue;
             }
             CompletionItem item = classItem(className);
             item.data = className;
@@ -21,6 +21,7 @@ import com.tyron.completion.java.compiler.ParseTask;
 import com.tyron.completion.java.compiler.services.CancelAbort;
 import com.tyron.completion.java.patterns.JavacTreePattern;
 import com.tyron.completion.java.util.FileContentFixer;
+import com.tyron.completion.model.CompletionItem;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.completion.progress.ProcessCanceledException;
 
@@ -147,7 +148,8 @@ public class Completions {
     private CompletionList.Builder getCompletionList(CompileTask task, TreePath path, String partial,
                                              boolean endsWithParen) {
         ProcessingContext context = createProcessingContext(task.task, task.root());
-        CompletionList.Builder builder = CompletionList.builder(partial);
+        CompletionList.Builder builder = CompletionList.builder(partial, MAX_COMPLETION_ITEMS,
+                Completions::isUncapped);
 //        switch (path.getLeaf().getKind()) {
 //            case IDENTIFIER:
 //                // suggest only classes on a parameterized tree
@@ -188,6 +190,16 @@ public class Completions {
         return builder;
     }
 
+    /**
+     * Local variables and keywords are few and always relevant, so they are kept even when the
+     * list is full of better matching class names.
+     */
+    private static boolean isUncapped(CompletionItem item) {
+        String sortText = item.getSortText();
+        return JavaSortCategory.LOCAL_VARIABLE.toString().equals(sortText) ||
+               JavaSortCategory.KEYWORD.toString().equals(sortText);
+    }
+
     private void addTopLevelSnippets(ParseTask task, CompletionList list) {
         Path file = Paths.get(task.root.getSourceFile().toUri());
         if (!hasTypeDeclaration(task.root)) {
@@ -7,6 +7,11 @@ import static com.tyron.completion.java.util.CompletionItemFactory.method;
 import static com.tyron.completion.java.util.CompletionItemFactory.packageItem;
 import static com.tyron.completion.progress.ProgressManager.checkCanceled;
 
+import androidx.annotation.Nullable;
+
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.completion.java.compiler.JavaCompilerService;
@@ -32,6 +37,7 @@ import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -50,6 +56,14 @@ public class ImportCompletionProvider extends BaseCompletionProvider {
     public void complete(CompletionList.Builder builder, JavacUtilitiesProvider task, TreePath treePath, String path, boolean endsWithParen) {
         checkCanceled();
 
+        File file = new File(task.root().getSourceFile().toUri());
+        Module module = task.getProject().getModule(file);
+        int lastDot = path.lastIndexOf('.');
+        if (module instanceof JavaModule && lastDot != -1) {
+            addIndexedNames(builder, ((JavaModule) module).getClassIndex(), path, lastDot);
+            return;
+        }
+
         Set<String> names = new HashSet<>();
         for (String className : getCompiler().publicTopLevelTypes()) {
             if (className.startsWith(path)) {
@@ -60,21 +74,75 @@ public class ImportCompletionProvider extends BaseCompletionProvider {
                 if (names.contains(segment)) continue;
                 names.add(segment);
                 boolean isClass = className.endsWith(segment);
+                addItem(builder, path, isClass ? className : null, segment);
+            }
+        }
+    }
 
-                CompletionItem item;
-                if (isClass) {
-                    item = importClassItem(className);
-                } else {
-                    item = packageItem(segment);
-                }
+    /**
+     * Only the names inside the package of the path are visited, and nothing is copied from
+     * a name until it matches the path.
+     */
+    private static void addIndexedNames(CompletionList.Builder builder, PackageTrie index,
+                                        String path, int lastDot) {
+        Set<String> names = new HashSet<>();
+        index.visitMatchingPackages(path.substring(0, lastDot), className -> {
+            if (!regionMatches(className, path, lastDot + 1)) {
+                return true;
+            }
+            int end = indexOf(className, '.', path.length());
+            String segment = className.subSequence(lastDot + 1, end).toString();
+            if (names.add(segment)) {
+                boolean isClass = end == className.length();
+                addItem(builder, path, isClass ? className.toString() : null, segment);
+            }
+            return true;
+        });
+    }
 
-                item.addFilterText(segment);
-                if (path.contains(".")) {
-                    item.addFilterText(path.substring(0, path.lastIndexOf('.')) + "." + segment);
-                }
-                builder.addItem(item);
+    /**
+     * @param className The fully qualified name if the segment is a class, null if it is
+     *                  a package
+     */
+    private static void addItem(CompletionList.Builder builder, String path,
+                                @Nullable String className, String segment) {
+        CompletionItem item;
+        if (className != null) {
+            item = importClassItem(className);
+        } else {
+            item = packageItem(segment);
+        }
+
+        item.addFilterText(segment);
+        if (path.contains(".")) {
+            item.addFilterText(path.substring(0, path.lastIndexOf('.')) + "." + segment);
+        }
+        builder.addItem(item);
+    }
+
+    /**
+     * @return Whether the name has the same characters as the path from the given index to
+     * the end of the path
+     */
+    private static boolean regionMatches(CharSequence name, String path, int from) {
+        if (name.length() < path.length()) {
+            return false;
+        }
+        for (int i = from; i < path.length(); i++) {
+            if (name.charAt(i) != path.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence name, char c, int from) {
+        for (int i = from; i < name.length(); i++) {
+            if (name.charAt(i) == c) {
+                return i;
             }
         }
+        return name.length();
     }
 
     public List<CompletionItem> addAnonymous(CompileTask task, TreePath path, String partial) {
@@ -1,6 +1,5 @@
 package com.tyron.completion.java.provider;
 
-import static com.tyron.completion.java.provider.Completions.MAX_COMPLETION_ITEMS;
 import static com.tyron.completion.java.provider.MemberSelectCompletionProvider.putMethod;
 import static com.tyron.completion.java.util.CompletionItemFactory.item;
 import static com.tyron.completion.java.util.CompletionItemFactory.keyword;
@@ -120,10 +119,6 @@ public class MemberReferenceCompletionProvider extends BaseCompletionProvider {
         if (isStatic) {
             builder.addItem(keyword("new"));
         }
-
-        if (builder.getItemCount() > MAX_COMPLETION_ITEMS) {
-            builder.incomplete();
-        }
     }
 
 }
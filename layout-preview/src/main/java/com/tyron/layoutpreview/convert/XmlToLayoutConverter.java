@@ -0,0 +1,182 @@
+package com.tyron.layoutpreview.convert;
+
+import static com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory.PROTEUS_INSTANCE_HOLDER;
+import static com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory.compileString;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.flipkart.android.proteus.FunctionManager;
+import com.flipkart.android.proteus.ProteusConstants;
+import com.flipkart.android.proteus.ProteusContext;
+import com.flipkart.android.proteus.ViewTypeParser;
+import com.flipkart.android.proteus.value.Array;
+import com.flipkart.android.proteus.value.Layout;
+import com.flipkart.android.proteus.value.ObjectValue;
+import com.flipkart.android.proteus.value.Value;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts an XML layout directly to the {@link Value} that Proteus inflates.
+ * <p>
+ * The result is the same as converting the XML with {@link XmlToJsonConverter} and reading the
+ * json with {@link com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory}, without
+ * building the json tree, writing it to a string and parsing that string again.
+ */
+public class XmlToLayoutConverter {
+
+    private static final String CHILDREN = "children";
+
+    private final ProteusContext mContext;
+
+    public XmlToLayoutConverter(@NonNull ProteusContext context) {
+        mContext = context;
+    }
+
+    /**
+     * Main entry point for the converter
+     * @param contents The xml string to parse
+     * @return The {@link Layout} of the root element, or an {@link ObjectValue} if its type
+     * cannot be inflated
+     * @throws IOException if an error has occurred while reading the string content
+     * @throws XmlPullParserException if the XML content is malformed
+     * @throws ConvertException if the XML has no root element
+     */
+    @NonNull
+    public Value convert(String contents) throws IOException, XmlPullParserException, ConvertException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(new StringReader(contents));
+        advanceToRootNode(parser);
+
+        return convert(parser);
+    }
+
+    @NonNull
+    public Value convert(File file) throws IOException, XmlPullParserException, ConvertException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(file))) {
+            parser.setInput(reader);
+            advanceToRootNode(parser);
+
+            return convert(parser);
+        }
+    }
+
+    /**
+     * Converts the element at the current {@code START_TAG} of the parser along with its children,
+     * the parser is left at its {@code END_TAG}.
+     */
+    @NonNull
+    public Value convert(XmlPullParser parser) throws IOException, XmlPullParserException {
+        String type = parser.getName();
+        if (!PROTEUS_INSTANCE_HOLDER.isLayout(type)) {
+            return convertObject(parser);
+        }
+
+        ViewTypeParser<View> viewParser = mContext.getParser(type);
+        FunctionManager functions = PROTEUS_INSTANCE_HOLDER.getProteus().functions;
+        List<Layout.Attribute> attributes = new ArrayList<>();
+        ObjectValue extras = new ObjectValue();
+
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            addAttribute(viewParser, functions, parser.getAttributeName(i),
+                    compileString(mContext, parser.getAttributeValue(i)), attributes, extras);
+        }
+
+        Array children = convertChildren(parser);
+        if (children.size() > 0) {
+            addAttribute(viewParser, functions, CHILDREN, children, attributes, extras);
+        }
+
+        return new Layout(type, attributes.size() > 0 ? attributes : null, null,
+                extras.entrySet().size() > 0 ? extras : null);
+    }
+
+    /**
+     * Adds the attribute to the attributes of the layout if the parser of its type knows it,
+     * otherwise to its extras.
+     */
+    private void addAttribute(@Nullable ViewTypeParser<View> viewParser,
+                              FunctionManager functions,
+                              String name,
+                              Value value,
+                              List<Layout.Attribute> attributes,
+                              ObjectValue extras) {
+        ViewTypeParser.AttributeSet.Attribute attribute = viewParser != null
+                ? viewParser.getAttributeSet().getAttribute(name)
+                : null;
+        if (attribute != null) {
+            Value compiled = attribute.processor.precompile(value, mContext, functions);
+            attributes.add(new Layout.Attribute(attribute.id, compiled));
+        } else {
+            extras.add(name, value);
+        }
+    }
+
+    /**
+     * Converts an element whose type cannot be inflated, such as a {@code vector}, to an object
+     * with its type, attributes and children.
+     */
+    private Value convertObject(XmlPullParser parser) throws IOException, XmlPullParserException {
+        ObjectValue object = new ObjectValue();
+        object.add(ProteusConstants.TYPE, compileString(mContext, parser.getName()));
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            object.add(parser.getAttributeName(i),
+                    compileString(mContext, parser.getAttributeValue(i)));
+        }
+
+        Array children = convertChildren(parser);
+        if (children.size() > 0) {
+            object.add(CHILDREN, children);
+        }
+        return object;
+    }
+
+    private Array convertChildren(XmlPullParser parser) throws IOException, XmlPullParserException {
+        Array children = new Array();
+        final int depth = parser.getDepth();
+        int type;
+
+        while (((type = parser.next()) != XmlPullParser.END_TAG ||
+                parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
+            if (type != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            children.add(convert(parser));
+        }
+
+        return children;
+    }
+
+    /**
+     * Advances the given parser to the first START_TAG. Throws ConvertException if no start tag is
+     * found.
+     */
+    private void advanceToRootNode(XmlPullParser parser) throws IOException, XmlPullParserException, ConvertException {
+        // Look for the root node
+        int type;
+        while ((type = parser.next()) != XmlPullParser.START_TAG &&
+                type != XmlPullParser.END_DOCUMENT) {
+            // Empty
+        }
+
+        if (type != XmlPullParser.START_TAG) {
+            throw new ConvertException(parser.getPositionDescription()
+                    + ": No start tag found!");
+        }
+    }
+}
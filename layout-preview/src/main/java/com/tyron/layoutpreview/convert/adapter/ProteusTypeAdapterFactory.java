@@ -395,7 +395,7 @@ public class ProteusTypeAdapterFactory implements TypeAdapterFactory {
         return context;
     }
 
-    static Value compileString(ProteusContext context, String string) {
+    public static Value compileString(ProteusContext context, String string) {
         if (Binding.isBindingValue(string)) {
             return Binding.valueOf(string, context, PROTEUS_INSTANCE_HOLDER.getProteus().functions);
         } else {
@@ -0,0 +1,364 @@
+package com.tyron.layoutpreview.inflate;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.flipkart.android.proteus.ProteusContext;
+import com.flipkart.android.proteus.ProteusView;
+import com.flipkart.android.proteus.ViewTypeParser;
+import com.flipkart.android.proteus.value.Array;
+import com.flipkart.android.proteus.value.Layout;
+import com.flipkart.android.proteus.value.ObjectValue;
+import com.flipkart.android.proteus.value.Value;
+import com.flipkart.android.proteus.view.UnknownViewGroup;
+import com.tyron.layoutpreview.convert.XmlToLayoutConverter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The elements of a layout inflated from XML, with the range of the source each element was
+ * parsed from and the view it was inflated to.
+ * <p>
+ * When the source changes, only the innermost element that encloses every changed character is
+ * converted and inflated again, and its new view replaces the old one in the parent. Typing in
+ * the attributes of a view in a large layout then inflates that view again instead of the whole
+ * layout.
+ */
+class LayoutSourceTree {
+
+    private static final String CHILDREN = "children";
+
+    private final ProteusContext mContext;
+    private final Element mRoot;
+    private final ProteusView mView;
+    private String mSource;
+
+    private LayoutSourceTree(ProteusContext context, Element root, ProteusView view, String source) {
+        mContext = context;
+        mRoot = root;
+        mView = view;
+        mSource = source;
+    }
+
+    /**
+     * Returns the tree of a layout inflated from the given source, or {@code null} if the
+     * elements of the source cannot be matched with the layout, in which case it can only be
+     * inflated as a whole.
+     */
+    @Nullable
+    static LayoutSourceTree create(@NonNull ProteusContext context,
+                                   @NonNull String source,
+                                   @NonNull Layout layout,
+                                   @NonNull ProteusView view) {
+        List<Element> roots = scan(source, 0, source.length());
+        if (roots == null || roots.size() != 1) {
+            return null;
+        }
+        Element root = roots.get(0);
+        if (!bindLayouts(context, root, layout)) {
+            return null;
+        }
+        bindViews(root, view);
+        return new LayoutSourceTree(context, root, view, source);
+    }
+
+    @NonNull
+    ProteusView getView() {
+        return mView;
+    }
+
+    /**
+     * Updates the inflated views to the given source.
+     *
+     * @return {@code false} if the changes are not enclosed by an element that can be inflated
+     * on its own, the whole layout has to be inflated again in that case.
+     */
+    boolean update(@NonNull String source) {
+        if (source.equals(mSource)) {
+            return true;
+        }
+        int oldLength = mSource.length();
+        int newLength = source.length();
+        int max = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while (prefix < max && mSource.charAt(prefix) == source.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix &&
+               mSource.charAt(oldLength - 1 - suffix) == source.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+        int delta = newLength - oldLength;
+
+        Element element = findEnclosing(mRoot, prefix, oldLength - suffix);
+        while (element != null && element.view == null) {
+            element = element.parent;
+        }
+        // the root is inflated again by the caller, which may also report the errors in it
+        if (element == null || element.parent == null) {
+            return false;
+        }
+
+        // the new source of the element must still be a single element
+        int end = element.end + delta;
+        List<Element> replacements = scan(source, element.start, end);
+        if (replacements == null || replacements.size() != 1
+                || replacements.get(0).start != element.start || replacements.get(0).end != end) {
+            return false;
+        }
+        Element replacement = replacements.get(0);
+
+        Layout layout;
+        try {
+            // namespaces are not processed, so the element can be parsed without its ancestors
+            Value value = new XmlToLayoutConverter(mContext)
+                    .convert(source.substring(element.start, end));
+            if (!value.isLayout()) {
+                return false;
+            }
+            layout = value.getAsLayout();
+        } catch (Exception e) {
+            return false;
+        }
+        if (!bindLayouts(mContext, replacement, layout)) {
+            return false;
+        }
+
+        View oldView = element.view.getAsView();
+        if (!(oldView.getParent() instanceof ViewGroup)) {
+            return false;
+        }
+        ViewGroup parent = (ViewGroup) oldView.getParent();
+        ObjectValue data = new ObjectValue();
+        int dataIndex = -1;
+        ProteusView.Manager manager = null;
+        if (parent instanceof ProteusView && ((ProteusView) parent).getViewManager() != null) {
+            manager = ((ProteusView) parent).getViewManager();
+            data = manager.getDataContext().getData();
+            dataIndex = manager.getDataContext().getIndex();
+        }
+        ProteusView view = mContext.getInflater().inflate(layout, data, parent, dataIndex);
+        bindViews(replacement, view);
+
+        int index = parent.indexOfChild(oldView);
+        parent.removeViewAt(index);
+        parent.addView(view.getAsView(), index);
+
+        Element owner = element.parent;
+        int position = owner.children.indexOf(element);
+        owner.childLayouts.set(position, layout);
+        // the parent inflates its children again from the layout of its manager, such as when
+        // its data changes, which may not share the children of the parsed layout
+        Array managerChildren = manager != null ? getChildren(mContext, manager.getLayout()) : null;
+        if (managerChildren != null && managerChildren != owner.childLayouts
+                && position < managerChildren.size()) {
+            managerChildren.set(position, layout);
+        }
+        shift(mRoot, element.end, delta);
+        owner.children.set(position, replacement);
+        replacement.parent = owner;
+        mSource = source;
+        return true;
+    }
+
+    /**
+     * Returns the innermost element that strictly encloses the characters from {@code start}
+     * to {@code end}, so its tags are never part of the change.
+     */
+    @Nullable
+    private static Element findEnclosing(Element element, int start, int end) {
+        if (start <= element.start || end >= element.end) {
+            return null;
+        }
+        for (Element child : element.children) {
+            Element enclosing = findEnclosing(child, start, end);
+            if (enclosing != null) {
+                return enclosing;
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Moves the elements after the given offset by the change in length of the source.
+     */
+    private static void shift(Element element, int offset, int delta) {
+        if (element.start >= offset) {
+            element.start += delta;
+        }
+        if (element.end >= offset) {
+            element.end += delta;
+        }
+        for (Element child : element.children) {
+            shift(child, offset, delta);
+        }
+    }
+
+    /**
+     * Matches the children of each element with the children of its layout.
+     */
+    private static boolean bindLayouts(ProteusContext context, Element element, Layout layout) {
+        Array children = getChildren(context, layout);
+        int count = children != null ? children.size() : 0;
+        if (count != element.children.size()) {
+            return false;
+        }
+        element.childLayouts = children;
+        for (int i = 0; i < count; i++) {
+            Value child = children.get(i);
+            if (!child.isLayout() || !bindLayouts(context, element.children.get(i), child.getAsLayout())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Matches each element with the view it was inflated to. The children of a view that does not
+     * have one view for each child element are left without views, a change in them inflates the
+     * view again.
+     */
+    private static void bindViews(Element element, ProteusView view) {
+        element.view = view;
+        View asView = view.getAsView();
+        // the children of an unknown view group are not inflated
+        if (!(asView instanceof ViewGroup) || asView instanceof UnknownViewGroup) {
+            return;
+        }
+        ViewGroup viewGroup = (ViewGroup) asView;
+        if (viewGroup.getChildCount() != element.children.size()) {
+            return;
+        }
+        for (int i = 0; i < viewGroup.getChildCount(); i++) {
+            View child = viewGroup.getChildAt(i);
+            if (child instanceof ProteusView) {
+                bindViews(element.children.get(i), (ProteusView) child);
+            }
+        }
+    }
+
+    @Nullable
+    static Array getChildren(ProteusContext context, Layout layout) {
+        if (layout.extras != null && layout.extras.get(CHILDREN) != null) {
+            Value children = layout.extras.get(CHILDREN);
+            return children.isArray() ? children.getAsArray() : null;
+        }
+        if (layout.attributes == null) {
+            return null;
+        }
+        ViewTypeParser<View> parser = context.getParser(layout.type);
+        int id = parser != null ? parser.getAttributeId(CHILDREN) : -1;
+        for (Layout.Attribute attribute : layout.attributes) {
+            if (attribute.id == id && attribute.value.isArray()) {
+                return attribute.value.getAsArray();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the top level elements between the given offsets of the source, or {@code null} if
+     * a tag is not closed. Only the structure is read, the contents are validated by the parser.
+     */
+    @Nullable
+    static List<Element> scan(String source, int from, int to) {
+        List<Element> roots = new ArrayList<>();
+        Deque<Element> open = new ArrayDeque<>();
+        int offset = from;
+        while (offset < to) {
+            int tag = source.indexOf('<', offset);
+            if (tag == -1 || tag >= to) {
+                break;
+            }
+            int end;
+            if (source.startsWith("<!--", tag)) {
+                end = indexOf(source, "-->", tag + 4, to);
+                offset = end + 3;
+            } else if (source.startsWith("<![CDATA[", tag)) {
+                end = indexOf(source, "]]>", tag + 9, to);
+                offset = end + 3;
+            } else if (source.startsWith("<?", tag)) {
+                end = indexOf(source, "?>", tag + 2, to);
+                offset = end + 2;
+            } else {
+                end = findTagEnd(source, tag, to);
+                offset = end + 1;
+                if (end != -1 && source.startsWith("<!", tag)) {
+                    // a document type declaration
+                    continue;
+                }
+                if (end != -1 && source.charAt(tag + 1) == '/') {
+                    Element element = open.poll();
+                    if (element == null) {
+                        return null;
+                    }
+                    element.end = end + 1;
+                } else if (end != -1) {
+                    Element element = new Element(tag);
+                    Element parent = open.peek();
+                    if (parent == null) {
+                        roots.add(element);
+                    } else {
+                        element.parent = parent;
+                        parent.children.add(element);
+                    }
+                    if (source.charAt(end - 1) == '/') {
+                        element.end = end + 1;
+                    } else {
+                        open.push(element);
+                    }
+                }
+            }
+            if (end == -1) {
+                return null;
+            }
+        }
+        return open.isEmpty() ? roots : null;
+    }
+
+    private static int indexOf(String source, String string, int from, int to) {
+        int index = source.indexOf(string, from);
+        return index == -1 || index + string.length() > to ? -1 : index;
+    }
+
+    /**
+     * Returns the offset of the {@code >} that closes the tag, which may also appear in the
+     * quoted values of its attributes.
+     */
+    private static int findTagEnd(String source, int tag, int to) {
+        char quote = 0;
+        for (int i = tag + 1; i < to; i++) {
+            char c = source.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static class Element {
+        int start;
+        int end;
+        Element parent;
+        final List<Element> children = new ArrayList<>();
+        Array childLayouts;
+        ProteusView view;
+
+        Element(int start) {
+            this.start = start;
+        }
+    }
+}
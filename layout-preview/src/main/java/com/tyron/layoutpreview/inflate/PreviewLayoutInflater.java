@@ -28,22 +28,21 @@ import com.tyron.builder.compiler.manifest.xml.AndroidManifestParser;
 import com.tyron.builder.compiler.manifest.xml.ManifestData;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.Module;
-import com.tyron.common.util.Decompress;
 import com.tyron.layout.appcompat.AppCompatModule;
 import com.tyron.layout.cardview.CardViewModule;
 import com.tyron.layout.constraintlayout.ConstraintLayoutModule;
-import com.tyron.layoutpreview.ResourceManager;
-import com.tyron.layoutpreview.convert.XmlToJsonConverter;
+import com.tyron.layoutpreview.convert.XmlToLayoutConverter;
 import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
-import com.tyron.layoutpreview.manager.ResourceDrawableManager;
-import com.tyron.layoutpreview.manager.ResourceLayoutManager;
-import com.tyron.layoutpreview.resource.ResourceValueParser;
+import com.tyron.layoutpreview.resource.RepositoryResourceResolver;
+import com.tyron.xml.completion.repository.Repository;
+import com.tyron.xml.completion.repository.ResourceRepository;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
 
 import dalvik.system.DexClassLoader;
@@ -54,6 +53,7 @@ public class PreviewLayoutInflater {
     private final Proteus mProteus;
     private final AndroidModule mProject;
     private ProteusContext mContext;
+    private LayoutSourceTree mSourceTree;
 
     private final ProteusLayoutInflater.Callback mCallback = new ProteusLayoutInflater.Callback() {
         @Override
@@ -122,13 +122,13 @@ public class PreviewLayoutInflater {
         }
     };
 
-    private final ResourceValueParser mParser = new ResourceValueParser();
-    private final ResourceDrawableManager mDrawableManager = new ResourceDrawableManager();
-    private final ResourceLayoutManager mLayoutManager = new ResourceLayoutManager();
+    private final Repository mRepository;
+    private final boolean mInitializeRepository;
+    private final RepositoryResourceResolver mResolver;
 
     private ProteusLayoutInflater.ImageLoader mImageLoader = (view, name, callback) -> {
         if (name.startsWith("@drawable")) {
-            DrawableValue value = mDrawableManager.get(name.substring("@drawable".length() + 1));
+            DrawableValue value = mResolver.getDrawable(name.substring("@drawable".length() + 1));
             if (value != null) {
                 value.apply(view, mContext, null, (view::setBackground));
             }
@@ -138,7 +138,23 @@ public class PreviewLayoutInflater {
     };
 
     public PreviewLayoutInflater(Context base, AndroidModule project) {
+        this(base, project, new ResourceRepository(project), true);
+    }
+
+    /**
+     * Creates an inflater that resolves the resources of the project from the given repository,
+     * which must already be initialized.
+     */
+    public PreviewLayoutInflater(Context base, AndroidModule project, Repository repository) {
+        this(base, project, repository, false);
+    }
+
+    private PreviewLayoutInflater(Context base, AndroidModule project, Repository repository,
+                                  boolean initializeRepository) {
         mBaseContext = base;
+        mRepository = repository;
+        mInitializeRepository = initializeRepository;
+        mResolver = new RepositoryResourceResolver(project, repository);
         ProteusBuilder builder = new ProteusBuilder();
         builder.register(ConstraintLayoutModule.create());
         builder.register(CardViewModule.create());
@@ -149,36 +165,28 @@ public class PreviewLayoutInflater {
 
         mContext = mProteus.createContextBuilder(base)
                 .setCallback(mCallback)
-                .setDrawableManager(mDrawableManager)
+                .setDrawableManager(mResolver.getDrawableManager())
                 .setImageLoader(mImageLoader)
-                .setStyleManager(mParser.getStyleManager())
-                .setStringManager(mParser.getStringManager())
-                .setColorManager(mParser.getColorManager())
-                .setDimensionManager(mParser.getDimensionManager())
-                .setLayoutManager(mLayoutManager)
+                .setStyleManager(mResolver.getStyleManager())
+                .setStringManager(mResolver.getStringManager())
+                .setColorManager(mResolver.getColorManager())
+                .setDimensionManager(mResolver.getDimensionManager())
+                .setLayoutManager(mResolver.getLayoutManager())
                 .build();
         mContext.setParserFactory(new MaterialParserFactory(mContext));
         ProteusTypeAdapterFactory.PROTEUS_INSTANCE_HOLDER.setProteus(mProteus);
 
-        mParser.setProteusContext(mContext);
+        mResolver.setProteusContext(mContext);
     }
 
     public CompletableFuture<PreviewLayoutInflater> parseResources(Executor executor) {
         return CompletableFuture.supplyAsync(() -> {
-            ResourceManager resourceManager = new ResourceManager(mContext,
-                    mProject, mProject.getFileManager());
-            mDrawableManager.setDrawables(resourceManager.getDrawables());
-            mLayoutManager.setLayouts(resourceManager.getLayouts());
-
-
-            mParser.parse(mProject);
-
-            File sources = extractAndGetAndroidXml();
-            File valuesFile = new File(sources, "android-31/data/res/values");
-            if (valuesFile.exists()) {
-                File[] children = valuesFile.listFiles(c -> c.getName().endsWith(".xml"));
-                if (children != null) {
-                    mParser.parse(children, "android");
+            // resources are resolved from the repository when they are first used
+            if (mInitializeRepository) {
+                try {
+                    mRepository.initialize();
+                } catch (IOException e) {
+                    throw new CompletionException(e);
                 }
             }
 
@@ -216,15 +224,37 @@ public class PreviewLayoutInflater {
                 inflate(name, value));
     }
 
-    @Deprecated
+    /**
+     * Inflates the given XML layout, the view can later be updated to a modified version of it
+     * with {@link #update(String)}.
+     */
     public ProteusView inflate(String xml) throws InflateException {
+        mSourceTree = null;
+        Value value;
         try {
-            JsonObject object = new XmlToJsonConverter()
+            value = new XmlToLayoutConverter(mContext)
                     .convert(xml);
-            return inflate(object);
         } catch (Exception e) {
             throw new InflateException("Unable to inflate layout: " + e.getMessage());
         }
+        if (!value.isLayout()) {
+            throw new InflateException("Unable to inflate layout: " + value + " is not a layout");
+        }
+        ProteusView view = inflate(value.getAsLayout());
+        mSourceTree = LayoutSourceTree.create(mContext, xml, value.getAsLayout(), view);
+        return view;
+    }
+
+    /**
+     * Updates the view last inflated with {@link #inflate(String)} to the given XML. When the
+     * changes are inside a single child element, only that element is inflated again and the
+     * same root view is returned, otherwise the whole layout is inflated again.
+     */
+    public ProteusView update(String xml) throws InflateException {
+        if (mSourceTree != null && mSourceTree.update(xml)) {
+            return mSourceTree.getView();
+        }
+        return inflate(xml);
     }
 
     /**
@@ -263,11 +293,10 @@ public class PreviewLayoutInflater {
         }
     }
 
-    private File extractAndGetAndroidXml() {
-        File destination = new File(mContext.getFilesDir(), "sources");
-        if (!destination.exists()) {
-            Decompress.unzipFromAssets(mContext, "android-xml.zip", destination.getAbsolutePath());
-        }
-        return destination;
+    /**
+     * Forgets the resources resolved so far, call it when the resources of the project change.
+     */
+    public void clearResources() {
+        mResolver.clear();
     }
 }
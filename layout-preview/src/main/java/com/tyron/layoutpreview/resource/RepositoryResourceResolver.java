@@ -0,0 +1,431 @@
+package com.tyron.layoutpreview.resource;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.flipkart.android.proteus.ColorManager;
+import com.flipkart.android.proteus.DimensionManager;
+import com.flipkart.android.proteus.DrawableManager;
+import com.flipkart.android.proteus.LayoutManager;
+import com.flipkart.android.proteus.ProteusContext;
+import com.flipkart.android.proteus.StringManager;
+import com.flipkart.android.proteus.StyleManager;
+import com.flipkart.android.proteus.value.Color;
+import com.flipkart.android.proteus.value.DrawableValue;
+import com.flipkart.android.proteus.value.Layout;
+import com.flipkart.android.proteus.value.Null;
+import com.flipkart.android.proteus.value.Primitive;
+import com.flipkart.android.proteus.value.Resource;
+import com.flipkart.android.proteus.value.Style;
+import com.flipkart.android.proteus.value.Value;
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.layoutpreview.convert.ConvertException;
+import com.tyron.layoutpreview.util.XmlUtils;
+import com.tyron.xml.completion.repository.NotFoundException;
+import com.tyron.xml.completion.repository.Repository;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceReference;
+import com.tyron.xml.completion.repository.api.ResourceValue;
+import com.tyron.xml.completion.repository.api.StyleItemResourceValue;
+import com.tyron.xml.completion.repository.api.StyleResourceValue;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the resources of the layout preview when they are first used instead of parsing every
+ * resource of the project when the preview is opened.
+ * <p>
+ * Strings, colors, dimensions and styles are looked up in the {@link Repository} that the xml
+ * completion already keeps for the module. Drawables, layouts and color state lists, which the
+ * repository only knows by name, are parsed from their files. The converted values are kept in a
+ * bounded {@link LruCache}, so memory does not grow with the number of layouts previewed.
+ */
+public class RepositoryResourceResolver {
+
+    private static final String TAG = RepositoryResourceResolver.class.getSimpleName();
+
+    private static final int DEFAULT_CACHE_SIZE = 512;
+    private static final String ANDROID_PREFIX = "android:";
+
+    private final AndroidModule mModule;
+    private final Repository mRepository;
+    private final LruCache<String, Value> mCache;
+
+    private ProteusContext mContext;
+    private List<File> mResourceDirectories;
+    private final Map<File, ResourceDrawableParser> mDrawableParsers = new ConcurrentHashMap<>();
+    private final Map<File, ResourceLayoutParser> mLayoutParsers = new ConcurrentHashMap<>();
+
+    private final StringManager mStringManager = new StringManager() {
+        @Override
+        public Map<String, Value> getStrings(@Nullable String tag) {
+            return Collections.emptyMap();
+        }
+
+        @Nullable
+        @Override
+        public Value get(String name, Locale locale) {
+            return getString(name);
+        }
+    };
+    private final StyleManager mStyleManager = new StyleManager() {
+        @Nullable
+        @Override
+        protected Map<String, Style> getStyles() {
+            return Collections.emptyMap();
+        }
+
+        @Nullable
+        @Override
+        public Style get(@NonNull String name) {
+            return getStyle(name);
+        }
+    };
+    private final ColorManager mColorManager = new ColorManager() {
+        @Override
+        protected Map<String, Value> getColors() {
+            return Collections.emptyMap();
+        }
+
+        @Nullable
+        @Override
+        public Value getColor(String name) {
+            return RepositoryResourceResolver.this.getColor(name);
+        }
+    };
+    private final DimensionManager mDimensionManager = new DimensionManager() {
+        @NonNull
+        @Override
+        protected Map<String, Value> getDimensions() {
+            return Collections.emptyMap();
+        }
+
+        @Nullable
+        @Override
+        public Value getDimension(@NonNull String name) {
+            return RepositoryResourceResolver.this.getDimension(name);
+        }
+    };
+    private final DrawableManager mDrawableManager = new DrawableManager() {
+        @Override
+        protected Map<String, DrawableValue> getDrawables() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public DrawableValue get(String name) {
+            return getDrawable(name);
+        }
+    };
+    private final LayoutManager mLayoutManager = new LayoutManager() {
+        @Nullable
+        @Override
+        protected Map<String, Layout> getLayouts() {
+            return Collections.emptyMap();
+        }
+
+        @Nullable
+        @Override
+        public Layout get(@NonNull String name) {
+            return getLayout(name);
+        }
+    };
+
+    public RepositoryResourceResolver(@NonNull AndroidModule module,
+                                      @NonNull Repository repository) {
+        this(module, repository, DEFAULT_CACHE_SIZE);
+    }
+
+    public RepositoryResourceResolver(@NonNull AndroidModule module,
+                                      @NonNull Repository repository,
+                                      int cacheSize) {
+        mModule = module;
+        mRepository = repository;
+        mCache = new LruCache<>(cacheSize);
+    }
+
+    public void setProteusContext(ProteusContext context) {
+        mContext = context;
+    }
+
+    public StringManager getStringManager() {
+        return mStringManager;
+    }
+
+    public StyleManager getStyleManager() {
+        return mStyleManager;
+    }
+
+    public ColorManager getColorManager() {
+        return mColorManager;
+    }
+
+    public DimensionManager getDimensionManager() {
+        return mDimensionManager;
+    }
+
+    public DrawableManager getDrawableManager() {
+        return mDrawableManager;
+    }
+
+    public LayoutManager getLayoutManager() {
+        return mLayoutManager;
+    }
+
+    /**
+     * Forgets the converted values, call it when the resources of the module change.
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    @Nullable
+    public Value getString(String name) {
+        return get(ResourceType.STRING, name);
+    }
+
+    @Nullable
+    public Value getColor(String name) {
+        return get(ResourceType.COLOR, name);
+    }
+
+    @Nullable
+    public Value getDimension(String name) {
+        return get(ResourceType.DIMEN, name);
+    }
+
+    @Nullable
+    public Style getStyle(String name) {
+        Value value = get(ResourceType.STYLE, name);
+        return value instanceof Style ? (Style) value : null;
+    }
+
+    @Nullable
+    public DrawableValue getDrawable(String name) {
+        Value value = get(ResourceType.DRAWABLE, name);
+        return value instanceof DrawableValue ? (DrawableValue) value : null;
+    }
+
+    @Nullable
+    public Layout getLayout(String name) {
+        Value value = get(ResourceType.LAYOUT, name);
+        return value != null && value.isLayout() ? value.getAsLayout() : null;
+    }
+
+    @Nullable
+    private Value get(ResourceType type, String name) {
+        name = normalize(name);
+        String key = type.getName() + '/' + name;
+        Value value = mCache.get(key);
+        if (value == null) {
+            value = load(type, name);
+            // resources that are not found are cached as well, they are often asked for again
+            mCache.put(key, value != null ? value : Null.INSTANCE);
+        }
+        return value == Null.INSTANCE ? null : value;
+    }
+
+    @Nullable
+    private Value load(ResourceType type, String name) {
+        ResourceValue resourceValue;
+        switch (type) {
+            case STRING:
+            case DIMEN:
+                resourceValue = findValue(type, name);
+                if (resourceValue == null || resourceValue.getValue() == null) {
+                    return null;
+                }
+                return new Primitive(resourceValue.getValue());
+            case COLOR:
+                resourceValue = findValue(type, name);
+                if (resourceValue == null || resourceValue.getValue() == null) {
+                    return loadColorStateList(name);
+                }
+                String text = resourceValue.getValue();
+                return Color.isColor(text) ? Color.valueOf(text) : new Resource(text);
+            case STYLE:
+                resourceValue = findValue(type, name);
+                if (!(resourceValue instanceof StyleResourceValue)) {
+                    return null;
+                }
+                return toStyle(name, (StyleResourceValue) resourceValue);
+            case DRAWABLE:
+                return loadDrawable(name);
+            case LAYOUT:
+                return loadLayout(name);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the value of the resource in the framework if its name starts with
+     * {@code android:}, otherwise in the module or any of its libraries.
+     */
+    @Nullable
+    private ResourceValue findValue(ResourceType type, String name) {
+        if (name.startsWith(ANDROID_PREFIX)) {
+            return getValue(ResourceNamespace.ANDROID, type, name.substring(ANDROID_PREFIX.length()));
+        }
+        ResourceNamespace moduleNamespace = mRepository.getNamespace();
+        ResourceValue value = getValue(moduleNamespace, type, name);
+        if (value != null) {
+            return value;
+        }
+        for (ResourceNamespace namespace : mRepository.getNamespaces()) {
+            if (namespace.equals(moduleNamespace) || namespace.equals(ResourceNamespace.ANDROID)) {
+                continue;
+            }
+            value = getValue(namespace, type, name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private ResourceValue getValue(ResourceNamespace namespace, ResourceType type, String name) {
+        try {
+            return mRepository.getValue(new ResourceReference(namespace, type, name));
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Style toStyle(String name, StyleResourceValue value) {
+        String parentName = null;
+        ResourceReference parent = value.getParentStyle();
+        if (parent != null) {
+            parentName = ResourceNamespace.ANDROID.equals(parent.getNamespace())
+                    ? ANDROID_PREFIX + parent.getName()
+                    : parent.getName();
+            // a style of the module may extend the style of a library with the same name,
+            // which cannot be told apart without namespaces
+            if (parentName.equals(name)) {
+                parentName = null;
+            }
+        }
+
+        Style style = new Style(name, parentName);
+        for (StyleItemResourceValue item : value.getDefinedItems()) {
+            String text = item.getValue();
+            if (text == null) {
+                continue;
+            }
+            if (text.contains("@")) {
+                text = text.substring(text.indexOf("@"));
+            }
+            style.addValue(item.getAttrName(), text.trim());
+        }
+        return style;
+    }
+
+    @Nullable
+    private Value loadColorStateList(String name) {
+        for (File resourceDirectory : getResourceDirectories()) {
+            File file = new File(resourceDirectory, "color/" + name + ".xml");
+            if (!file.exists()) {
+                continue;
+            }
+            Optional<CharSequence> contents = mModule.getFileManager().getFileContent(file);
+            if (!contents.isPresent()) {
+                continue;
+            }
+            try {
+                XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+                parser.setInput(new StringReader(contents.get().toString()));
+                XmlUtils.advanceToRootNode(parser);
+                return ResourceColorParser.parseColorStateList(mContext, parser);
+            } catch (XmlPullParserException | IOException | ConvertException e) {
+                Log.e(TAG, "Unable to parse color state list " + file.getName(), e);
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private Value loadDrawable(String name) {
+        for (File resourceDirectory : getResourceDirectories()) {
+            DrawableValue drawable = mDrawableParsers.computeIfAbsent(resourceDirectory,
+                    dir -> new ResourceDrawableParser(mContext, dir, mModule.getFileManager()))
+                    .getDrawable(name);
+            if (drawable != null) {
+                return drawable;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private Value loadLayout(String name) {
+        for (File resourceDirectory : getResourceDirectories()) {
+            Layout layout = mLayoutParsers.computeIfAbsent(resourceDirectory,
+                    dir -> new ResourceLayoutParser(mContext, dir, mModule.getFileManager()))
+                    .getLayout(name);
+            if (layout != null) {
+                return layout;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The resource directories of the module followed by those of its libraries.
+     */
+    private synchronized List<File> getResourceDirectories() {
+        if (mResourceDirectories == null) {
+            List<File> directories = new ArrayList<>();
+            directories.add(mModule.getAndroidResourcesDirectory());
+            for (File library : mModule.getLibraries()) {
+                File parent = library.getParentFile();
+                if (parent == null) {
+                    continue;
+                }
+                File resourcesDir = new File(parent, "res");
+                if (resourcesDir.exists()) {
+                    directories.add(resourcesDir);
+                }
+            }
+            mResourceDirectories = directories;
+        }
+        return mResourceDirectories;
+    }
+
+    /**
+     * Removes the reference syntax from the name of a resource, {@code @android:style/Theme} and
+     * {@code android:Theme} both become {@code android:Theme}.
+     */
+    private static String normalize(String name) {
+        if (name.startsWith("@") || name.startsWith("?")) {
+            name = name.substring(1);
+        }
+        boolean framework = name.startsWith(ANDROID_PREFIX);
+        if (framework) {
+            name = name.substring(ANDROID_PREFIX.length());
+        }
+        int slash = name.indexOf('/');
+        if (slash != -1) {
+            name = name.substring(slash + 1);
+        }
+        return framework ? ANDROID_PREFIX + name : name;
+    }
+}
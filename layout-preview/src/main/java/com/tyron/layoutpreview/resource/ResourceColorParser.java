@@ -1,43 +1,80 @@
 package com.tyron.layoutpreview.resource;
 
-import android.util.Pair;
+import androidx.annotation.Nullable;
 
+import com.flipkart.android.proteus.ProteusContext;
+import com.flipkart.android.proteus.parser.ParseHelper;
+import com.flipkart.android.proteus.value.Array;
 import com.flipkart.android.proteus.value.Color;
-import com.flipkart.android.proteus.value.Resource;
-import com.flipkart.android.proteus.value.Style;
+import com.flipkart.android.proteus.value.DrawableValue;
+import com.flipkart.android.proteus.value.ObjectValue;
 import com.flipkart.android.proteus.value.Value;
-import com.tyron.layoutpreview.util.XmlUtils;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.tyron.layoutpreview.convert.ConvertException;
+import com.tyron.layoutpreview.convert.XmlToJsonConverter;
+import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class ResourceColorParser {
 
-    public static Pair<String, Value> parseColor(XmlPullParser parser) throws IOException,
-            XmlPullParserException {
-        parser.require(XmlPullParser.START_TAG, null, "color");
-
-        String name = null;
-        String parent = null;
-        for (int i = 0; i < parser.getAttributeCount(); i++) {
-            String attributeName = parser.getAttributeName(i);
-            String attributeValue = parser.getAttributeValue(i);
-            if ("name".equals(attributeName)) {
-                name = attributeValue;
-            }
+    /**
+     * Parses the {@code selector} of a color state list file, the parser must be at its root.
+     *
+     * @return the color state list, or {@code null} if the root is not a selector
+     */
+    @Nullable
+    public static Value parseColorStateList(ProteusContext context, XmlPullParser parser)
+            throws IOException, XmlPullParserException, ConvertException {
+        XmlToJsonConverter converter = new XmlToJsonConverter();
+        JsonObject jsonObjects = converter.convert(parser);
+        Value read =
+                new ProteusTypeAdapterFactory(context).VALUE_TYPE_ADAPTER.read(new JsonReader(new StringReader(jsonObjects.toString())), true);
+        if (!read.isObject()) {
+            return null;
         }
+        ObjectValue objectValue = read.getAsObject();
+        Array children = objectValue.getAsArray("children");
+        int[][] states = new int[children.size()][];
+        Value[] colors = new Value[children.size()];
+        float[] alphas = new float[children.size()];
+        for (int i = 0; i < children.size(); i++) {
+            // set the alpha to be 1 by default
+            alphas[i] = 1;
+
+            ObjectValue child = children.get(i).getAsObject();
+            List<Integer> childStates = new ArrayList<>();
+            for (Map.Entry<String, Value> entry : child.entrySet()) {
+                Integer stateInteger =
+                        DrawableValue.StateListValue.sStateMap.get(entry.getKey());
+                if (stateInteger != null) {
+                    int result = ParseHelper.parseBoolean(entry.getValue()) ? stateInteger : -stateInteger;
+                    childStates.add(result);
+                }
 
-        String text = XmlUtils.readText(parser);
+                if ("android:color".equals(entry.getKey())) {
+                    colors[i] = entry.getValue();
+                } else if ("android:alpha".equals(entry.getKey())) {
+                    alphas[i] = ParseHelper.parseFloat(entry.getValue());
+                }
+            }
 
-        Value value;
-        if (Color.isColor(text)) {
-            value = Color.valueOf(text);
-        } else {
-            value = new Resource(text);
+            int[] temp = new int[childStates.size()];
+            for (int j = 0; j < childStates.size(); j++) {
+                Integer childState = childStates.get(j);
+                temp[j] = childState;
+            }
+            states[i] = temp;
         }
-        parser.require(XmlPullParser.END_TAG, null, "color");
-        return Pair.create(name, value);
+
+        return Color.LazyStateList.valueOf(states, colors, alphas);
     }
 }
@@ -1,5 +1,6 @@
 package com.tyron.layoutpreview.resource;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.flipkart.android.proteus.ProteusContext;
@@ -19,54 +20,44 @@ import org.xmlpull.v1.XmlPullParserException;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 
 public class ResourceDrawableParser {
 
+    private static final String[] IMAGE_EXTENSIONS = {".png", ".jpg", ".jpeg"};
+
     private final ProteusContext mContext;
     private final File mResourceDirectory;
     private final FileManager mFileManager;
-    private final Map<String, DrawableValue> drawableValueMap = new HashMap<>();
 
     public ResourceDrawableParser(ProteusContext context, File dir, FileManager fileManager) {
         mContext = context;
         mResourceDirectory = dir;
         mFileManager = fileManager;
-        drawableValueMap.putAll(getDefaultDrawables());
     }
 
-    public Map<String, DrawableValue> getDefaultDrawables() {
-        Map<String, DrawableValue> map = new HashMap<>();
-        File defaultValues = new File(mResourceDirectory, "drawable");
-        File[] xmlFiles = defaultValues.listFiles();
-        if (xmlFiles == null) {
-            return map;
-        }
-
-        for (File file : xmlFiles) {
-            DrawableValue value = null;
-
-            if (isImageFile(file)) {
-                value = parseFile(file);
-            } else if (file.getName().endsWith(".xml")) {
-                try {
-                    value = parseXml(file);
-                    if (value != null) {
-                        map.put(getName(file), value);
-                    }
-                } catch (IOException | ConvertException | XmlPullParserException ignore) {
-
-                }
+    /**
+     * Parses the drawable with the given name, or returns {@code null} if the resource directory
+     * does not have a valid drawable with that name.
+     */
+    @Nullable
+    public DrawableValue getDrawable(@NonNull String name) {
+        File directory = new File(mResourceDirectory, "drawable");
+        File xmlFile = new File(directory, name + ".xml");
+        if (xmlFile.exists()) {
+            try {
+                return parseXml(xmlFile);
+            } catch (IOException | ConvertException | XmlPullParserException ignore) {
+                return null;
             }
-
-            if (value != null) {
-                map.put(getName(file), value);
+        }
+        for (String extension : IMAGE_EXTENSIONS) {
+            File imageFile = new File(directory, name + extension);
+            if (imageFile.exists()) {
+                return parseFile(imageFile);
             }
         }
-
-        return map;
+        return null;
     }
 
     private DrawableValue parseFile(File file) {
@@ -101,13 +92,4 @@ public class ResourceDrawableParser {
         }
         return null;
     }
-
-    private boolean isImageFile(File file) {
-        String n = file.getName();
-        return n.endsWith(".png") || n.endsWith(".jpg") || n.endsWith(".jpeg");
-    }
-
-    private String getName(File file) {
-        return file.getName().substring(0, file.getName().lastIndexOf("."));
-    }
 }
@@ -2,27 +2,21 @@ package com.tyron.layoutpreview.resource;
 
 import android.util.Log;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.flipkart.android.proteus.ProteusContext;
 import com.flipkart.android.proteus.value.Layout;
 import com.flipkart.android.proteus.value.Value;
-import com.google.gson.JsonObject;
-import com.google.gson.stream.JsonReader;
 import com.tyron.builder.project.api.FileManager;
 import com.tyron.layoutpreview.BuildConfig;
 import com.tyron.layoutpreview.convert.ConvertException;
-import com.tyron.layoutpreview.convert.XmlToJsonConverter;
-import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
+import com.tyron.layoutpreview.convert.XmlToLayoutConverter;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 
 public class ResourceLayoutParser {
@@ -32,43 +26,31 @@ public class ResourceLayoutParser {
     private final File mResourceDirectory;
     private final FileManager mFileManager;
 
-    private final Map<String, Layout> layoutMap = new HashMap<>();
-
     public ResourceLayoutParser(ProteusContext context, File dir, FileManager fileManager) {
         mContext = context;
         mResourceDirectory = dir;
         mFileManager = fileManager;
-
-        layoutMap.putAll(getDefaultLayouts());
     }
 
-    public Map<String, Layout> getLayouts() {
-        return layoutMap;
-    }
-
-    private Map<String, Layout> getDefaultLayouts() {
-        File defaultValues = new File(mResourceDirectory, "layout");
-        File[] xmlFiles = defaultValues.listFiles(c -> c.getName().endsWith(".xml"));
-        if (xmlFiles == null) {
-            return Collections.emptyMap();
+    /**
+     * Parses the layout with the given name, or returns {@code null} if the resource directory
+     * does not have a valid layout with that name.
+     */
+    @Nullable
+    public Layout getLayout(@NonNull String name) {
+        File file = new File(mResourceDirectory, "layout/" + name + ".xml");
+        if (!file.exists()) {
+            return null;
         }
-
-        Map<String, Layout> map = new HashMap<>();
-
-        for (File file : xmlFiles) {
-            try {
-                Value layout = parseLayout(file);
-                if (layout != null && layout.isLayout()) {
-                    map.put(getName(file), layout.getAsLayout());
-                }
-            } catch (IOException | XmlPullParserException | ConvertException e) {
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "Unable to parse file: " + file.getName(), e);
-                }
+        try {
+            Value layout = parseLayout(file);
+            return layout != null && layout.isLayout() ? layout.getAsLayout() : null;
+        } catch (IOException | XmlPullParserException | ConvertException e) {
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "Unable to parse file: " + file.getName(), e);
             }
+            return null;
         }
-
-        return map;
     }
 
     @Nullable
@@ -76,15 +58,9 @@ public class ResourceLayoutParser {
         Optional<CharSequence> fileContent = mFileManager.getFileContent(file);
         if (fileContent.isPresent()) {
             String contents = fileContent.get().toString();
-            JsonObject jsonObject = new XmlToJsonConverter()
+            return new XmlToLayoutConverter(mContext)
                     .convert(contents);
-            return new ProteusTypeAdapterFactory(mContext).VALUE_TYPE_ADAPTER
-                    .read(new JsonReader(new StringReader(jsonObject.toString())), false);
         }
         return null;
     }
-
-    private String getName(File file) {
-        return file.getName().substring(0, file.getName().lastIndexOf("."));
-    }
 }
@@ -2,13 +2,16 @@ package com.tyron.layoutpreview;
 
 import com.tyron.builder.project.mock.MockAndroidModule;
 import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.common.ApplicationProvider;
 import com.tyron.layoutpreview.inflate.PreviewLayoutInflater;
+import com.tyron.xml.completion.repository.ResourceRepository;
 
 import org.junit.Before;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
@@ -18,14 +21,24 @@ public abstract class BaseTest {
 
     private static File sResDirectory = new File(getResourcesDirectory(), "test_res");
 
-    private MockAndroidModule mProject;
+    protected MockAndroidModule mProject;
+    protected ResourceRepository mRepository;
     protected PreviewLayoutInflater mInflater;
 
     @Before
-    public void setup() throws ExecutionException, InterruptedException {
+    public void setup() throws ExecutionException, InterruptedException, IOException {
+        ApplicationProvider
+                .initialize(androidx.test.core.app.ApplicationProvider.getApplicationContext());
+        ResourceRepository.setInitializeAndroidRepo(false);
+
         mProject = new MockAndroidModule(null, new MockFileManager(null));
+        mProject.setPackageName("com.tyron.test");
         mProject.setAndroidResourcesDirectory(sResDirectory);
-        mInflater = new PreviewLayoutInflater(null, mProject);
+        mRepository = new ResourceRepository(mProject);
+        mRepository.initialize();
+        mInflater = new PreviewLayoutInflater(
+                androidx.test.core.app.ApplicationProvider.getApplicationContext(), mProject,
+                mRepository);
         mInflater.parseResources(Executors.newSingleThreadExecutor())
                 .get();
     }
@@ -0,0 +1,86 @@
+package com.tyron.layoutpreview;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.flipkart.android.proteus.ProteusResources;
+import com.flipkart.android.proteus.value.Style;
+import com.flipkart.android.proteus.value.Value;
+import com.tyron.layoutpreview.resource.RepositoryResourceResolver;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class TestRepositoryResourceResolver extends BaseTest {
+
+    @Test
+    public void testStyle() {
+        ProteusResources resources = mInflater.getContext().getProteusResources();
+
+        Style style = resources.getStyle("@style/AppTheme");
+        assertThat(style).isNotNull();
+        assertThat(style).isSameInstanceAs(resources.getStyle("AppTheme"));
+    }
+
+    @Test
+    public void testMissingResource() {
+        ProteusResources resources = mInflater.getContext().getProteusResources();
+
+        assertThat(resources.getString("missing_string")).isNull();
+        assertThat(resources.getLayout("missing_layout")).isNull();
+    }
+
+    @Test
+    public void testLayout() {
+        Value layout = mInflater.getContext()
+                .getProteusResources()
+                .getLayout("test");
+        assertThat(layout).isNotNull();
+        assertThat(layout.isLayout()).isTrue();
+    }
+
+    @Test
+    public void testEvictsAtCacheSize() {
+        RepositoryResourceResolver resolver = createResolver(2);
+        Style style = resolver.getStyle("AppTheme");
+        assertThat(style).isNotNull();
+
+        // one more entry still fits, so the style is not converted again
+        resolver.getString("app_name");
+        assertThat(resolver.getStyle("AppTheme")).isSameInstanceAs(style);
+
+        // the style is now the least recently used entry of a full cache
+        resolver.getString("app_name");
+        resolver.getString("missing_string");
+        Style reloaded = resolver.getStyle("AppTheme");
+        assertThat(reloaded).isNotNull();
+        assertThat(reloaded).isNotSameInstanceAs(style);
+    }
+
+    @Test
+    public void testClearResourcesForgetsMissingResources() throws IOException {
+        ProteusResources resources = mInflater.getContext().getProteusResources();
+        assertThat(resources.getString("added_string")).isNull();
+
+        File strings = new File(mProject.getAndroidResourcesDirectory(), "values/strings.xml");
+        mRepository.updateFile(strings, "<resources>\n" +
+                "    <string name=\"app_name\">TEST</string>\n" +
+                "    <string name=\"added_string\">Added</string>\n" +
+                "</resources>");
+        // the miss is cached until the resources are cleared
+        assertThat(resources.getString("added_string")).isNull();
+
+        mInflater.clearResources();
+        Value added = resources.getString("added_string");
+        assertThat(added).isNotNull();
+        assertThat(added.getAsString()).isEqualTo("Added");
+    }
+
+    private RepositoryResourceResolver createResolver(int cacheSize) {
+        RepositoryResourceResolver resolver =
+                new RepositoryResourceResolver(mProject, mRepository, cacheSize);
+        resolver.setProteusContext(mInflater.getContext());
+        return resolver;
+    }
+}
@@ -5,7 +5,6 @@ import static com.google.common.truth.Truth.assertThat;
 import com.flipkart.android.proteus.value.Value;
 import com.tyron.builder.project.mock.MockFileManager;
 import com.tyron.layoutpreview.resource.ResourceStringParser;
-import com.tyron.layoutpreview.resource.ResourceValueParser;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -0,0 +1,75 @@
+package com.tyron.layoutpreview.convert;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.flipkart.android.proteus.Proteus;
+import com.flipkart.android.proteus.ProteusBuilder;
+import com.flipkart.android.proteus.ProteusContext;
+import com.flipkart.android.proteus.value.Value;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.StringReader;
+
+@RunWith(RobolectricTestRunner.class)
+public class TestXmlToLayout {
+
+    private static final String TEST_LAYOUT =
+            "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    xmlns:app=\"http://schemas.android.com/apk/res-auto\"\n" +
+            "    android:layout_width=\"match_parent\"\n" +
+            "    android:layout_height=\"match_parent\"\n" +
+            "    android:orientation=\"vertical\">\n" +
+            "\n" +
+            "    <TextView\n" +
+            "        android:id=\"@+id/title\"\n" +
+            "        android:layout_width=\"wrap_content\"\n" +
+            "        android:layout_height=\"wrap_content\"\n" +
+            "        android:text=\"Title\" />\n" +
+            "\n" +
+            "    <com.example.UnknownView\n" +
+            "        android:layout_width=\"match_parent\"\n" +
+            "        android:layout_height=\"wrap_content\"\n" +
+            "        app:customAttribute=\"value\">\n" +
+            "\n" +
+            "        <Button\n" +
+            "            android:layout_width=\"wrap_content\"\n" +
+            "            android:layout_height=\"wrap_content\"\n" +
+            "            android:text=\"Button\" />\n" +
+            "    </com.example.UnknownView>\n" +
+            "</LinearLayout>";
+
+    private ProteusContext mContext;
+
+    @Before
+    public void setup() {
+        Proteus proteus = new ProteusBuilder().build();
+        mContext = proteus.createContextBuilder(ApplicationProvider.getApplicationContext())
+                .build();
+        ProteusTypeAdapterFactory.PROTEUS_INSTANCE_HOLDER.setProteus(proteus);
+    }
+
+    @Test
+    public void testSameAsJson() throws Exception {
+        JsonObject object = new XmlToJsonConverter().convert(TEST_LAYOUT);
+        Value expected = new ProteusTypeAdapterFactory(mContext).VALUE_TYPE_ADAPTER
+                .read(new JsonReader(new StringReader(object.toString())), false);
+
+        Value result = new XmlToLayoutConverter(mContext).convert(TEST_LAYOUT);
+
+        assertThat(result.isLayout())
+                .isTrue();
+
+        LayoutToXmlConverter converter = new LayoutToXmlConverter(mContext);
+        assertThat(converter.convert(result.getAsLayout()))
+                .isEqualTo(converter.convert(expected.getAsLayout()));
+    }
+}
@@ -0,0 +1,56 @@
+package com.tyron.layoutpreview.inflate;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestLayoutSourceTree {
+
+    private static final String TEST_LAYOUT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<!-- <NotAnElement> -->\n" +
+            "<LinearLayout android:tag=\"a > b\">\n" +
+            "    <TextView android:text='Title' />\n" +
+            "    <FrameLayout>\n" +
+            "        <View />\n" +
+            "    </FrameLayout>\n" +
+            "</LinearLayout>\n";
+
+    @Test
+    public void testScan() {
+        List<LayoutSourceTree.Element> roots =
+                LayoutSourceTree.scan(TEST_LAYOUT, 0, TEST_LAYOUT.length());
+
+        assertThat(roots)
+                .hasSize(1);
+        LayoutSourceTree.Element root = roots.get(0);
+        assertThat(source(root))
+                .startsWith("<LinearLayout");
+        assertThat(source(root))
+                .endsWith("</LinearLayout>");
+        assertThat(root.children)
+                .hasSize(2);
+        assertThat(source(root.children.get(0)))
+                .isEqualTo("<TextView android:text='Title' />");
+        assertThat(root.children.get(1).children)
+                .hasSize(1);
+        assertThat(source(root.children.get(1).children.get(0)))
+                .isEqualTo("<View />");
+    }
+
+    @Test
+    public void testScanUnclosed() {
+        String source = "<LinearLayout>\n    <TextView>\n</LinearLayout>";
+        assertThat(LayoutSourceTree.scan(source, 0, source.length()))
+                .isNull();
+
+        source = "<LinearLayout android:tag=\">";
+        assertThat(LayoutSourceTree.scan(source, 0, source.length()))
+                .isNull();
+    }
+
+    private static String source(LayoutSourceTree.Element element) {
+        return TEST_LAYOUT.substring(element.start, element.end);
+    }
+}
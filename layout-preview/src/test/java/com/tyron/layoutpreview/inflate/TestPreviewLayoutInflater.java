@@ -0,0 +1,63 @@
+package com.tyron.layoutpreview.inflate;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.flipkart.android.proteus.ProteusView;
+import com.flipkart.android.proteus.value.Layout;
+import com.tyron.layoutpreview.BaseTest;
+
+import org.junit.Test;
+
+public class TestPreviewLayoutInflater extends BaseTest {
+
+    private static final String TEST_LAYOUT = "<LinearLayout\n" +
+            "    xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    android:layout_width=\"match_parent\"\n" +
+            "    android:layout_height=\"match_parent\"\n" +
+            "    android:orientation=\"vertical\">\n" +
+            "    <TextView\n" +
+            "        android:layout_width=\"wrap_content\"\n" +
+            "        android:layout_height=\"wrap_content\"\n" +
+            "        android:text=\"First\" />\n" +
+            "    <TextView\n" +
+            "        android:layout_width=\"wrap_content\"\n" +
+            "        android:layout_height=\"wrap_content\"\n" +
+            "        android:text=\"Second\" />\n" +
+            "</LinearLayout>\n";
+
+    @Test
+    public void testUpdateChildAttribute() {
+        ProteusView root = mInflater.inflate(TEST_LAYOUT);
+        ViewGroup viewGroup = (ViewGroup) root.getAsView();
+        View second = viewGroup.getChildAt(1);
+
+        ProteusView updated = mInflater.update(TEST_LAYOUT.replace("First", "Changed"));
+        assertThat(updated)
+                .isSameInstanceAs(root);
+        assertThat(viewGroup.getChildCount())
+                .isEqualTo(2);
+        assertThat(((TextView) viewGroup.getChildAt(0)).getText().toString())
+                .isEqualTo("Changed");
+        assertThat(viewGroup.getChildAt(1))
+                .isSameInstanceAs(second);
+
+        // the parent inflates its children again from the layout of its manager
+        Layout changed = ((ProteusView) viewGroup.getChildAt(0)).getViewManager().getLayout();
+        assertThat(LayoutSourceTree.getChildren(root.getViewManager().getContext(),
+                root.getViewManager().getLayout()).get(0))
+                .isSameInstanceAs(changed);
+    }
+
+    @Test
+    public void testUpdateRootInflatesAgain() {
+        ProteusView root = mInflater.inflate(TEST_LAYOUT);
+
+        ProteusView updated = mInflater.update(TEST_LAYOUT.replace("vertical", "horizontal"));
+        assertThat(updated)
+                .isNotSameInstanceAs(root);
+    }
+}
@@ -1,7 +1,5 @@
 package com.tyron.completion.xml.providers;
 
-import static com.tyron.completion.xml.util.XmlUtils.isIncrementalCompletion;
-
 import android.annotation.SuppressLint;
 import android.os.Build;
 
@@ -12,7 +10,6 @@ import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.completion.CompletionParameters;
 import com.tyron.completion.CompletionProvider;
-import com.tyron.completion.model.CachedCompletion;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.completion.xml.XmlRepository;
 import com.tyron.completion.xml.model.XmlCompletionType;
@@ -39,8 +36,6 @@ import java.io.IOException;
 @SuppressLint("NewApi")
 public class LayoutXmlCompletionProvider extends CompletionProvider {
 
-    private CachedCompletion mCachedCompletion;
-
     public LayoutXmlCompletionProvider() {
 
     }
@@ -80,22 +75,11 @@ public class LayoutXmlCompletionProvider extends CompletionProvider {
                 return CompletionList.EMPTY;
             }
 
-            if (isIncrementalCompletion(mCachedCompletion, params)) {
-                CompletionList completionList = mCachedCompletion.getCompletionList();
-                if (!completionList.items.isEmpty()) {
-                    return CompletionList.copy(completionList, prefix);
-                }
-            }
-
             CompletionList.Builder builder =
                     completeInternal(params.getProject(), ((AndroidModule) params.getModule()),
                                      repository, parsed, prefix, completionType, namespace,
                                      params.getIndex());
-            CompletionList build = builder.build();
-            mCachedCompletion =
-                    new CachedCompletion(params.getFile(), params.getLine(), params.getColumn(),
-                                         builder.getPrefix(), build);
-            return build;
+            return builder.build();
         } catch (XmlPullParserException | IOException | ParserConfigurationException | SAXException e) {
             e.printStackTrace();
         }
@@ -6,8 +6,6 @@ import android.util.Pair;
 
 import androidx.annotation.Nullable;
 
-import com.tyron.completion.CompletionParameters;
-import com.tyron.completion.model.CachedCompletion;
 import com.tyron.completion.model.CompletionItem;
 import com.tyron.completion.model.DrawableKind;
 import com.tyron.completion.progress.ProgressManager;
@@ -34,7 +32,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.stream.Collectors;
@@ -278,52 +275,6 @@ public class XmlUtils {
         return false;
     }
 
-    public static boolean isIncrementalCompletion(CachedCompletion cachedCompletion,
-                                                  CompletionParameters parameters) {
-        File file = parameters.getFile();
-        String prefix = parameters.getPrefix();
-        int line = parameters.getLine();
-        int column = parameters.getColumn();
-
-        prefix = partialIdentifier(prefix, prefix.length());
-
-        if (line == -1) {
-            return false;
-        }
-
-        if (column == -1) {
-            return false;
-        }
-
-        if (cachedCompletion == null) {
-            return false;
-        }
-
-        if (!file.equals(cachedCompletion.getFile())) {
-            return false;
-        }
-
-        if (prefix.endsWith(".")) {
-            return false;
-        }
-
-        if (cachedCompletion.getLine() != line) {
-            return false;
-        }
-
-        if (cachedCompletion.getColumn() > column) {
-            return false;
-        }
-
-        if (!prefix.startsWith(cachedCompletion.getPrefix())) {
-            return false;
-        }
-
-        return prefix.length() -
-               cachedCompletion.getPrefix()
-                       .length() == column - cachedCompletion.getColumn();
-    }
-
     @SuppressLint("NewApi")
     public static CompletionItem getAttributeItem(XmlRepository repository,
                                                   AttributeInfo attributeInfo,